@@ -16,15 +16,20 @@
 
 package com.atlassian.migration.datacenter.api;
 
+import com.atlassian.migration.datacenter.core.events.MigrationEvent
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus
 import com.atlassian.migration.datacenter.spi.MigrationService
 import com.atlassian.migration.datacenter.spi.MigrationStage
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError
 import com.atlassian.migration.datacenter.spi.exceptions.MigrationAlreadyExistsException
+import java.time.Duration
 import javax.ws.rs.Consumes
+import javax.ws.rs.DefaultValue
 import javax.ws.rs.GET
 import javax.ws.rs.POST
 import javax.ws.rs.Path
 import javax.ws.rs.Produces
+import javax.ws.rs.QueryParam
 import javax.ws.rs.core.MediaType
 import javax.ws.rs.core.Response
 
@@ -33,7 +38,15 @@ import javax.ws.rs.core.Response
  * Supports get and create.
  */
 @Path("/migration")
-class MigrationEndpoint(private val migrationService: MigrationService) {
+class MigrationEndpoint(
+    private val migrationService: MigrationService,
+    private val eventBus: MigrationEventBus
+) {
+    companion object {
+        private const val MAX_EVENT_WAIT_SECONDS = 20L
+        private const val EVENT_RETRY_AFTER_SECONDS = 5
+    }
+
     /**
      * @return A response with the status of the current migration
      */
@@ -77,4 +90,57 @@ class MigrationEndpoint(private val migrationService: MigrationService) {
                 .build()
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Long polls for migration events, so the UI is told about stage transitions and file system progress as they
+     * happen instead of re-reading the full status on an interval. Pass the `lastSequence` of the previous response
+     * as `since` to get the events which followed it.
+     *
+     * @param since sequence of the last event the client has seen. 0 returns all retained events.
+     * @param timeout seconds to wait for an event before responding with none. At most 20.
+     * @return the events after `since` and the sequence to pass as `since` on the next request, or 503 with a
+     * Retry-After header when too many clients are already waiting
+     */
+    @GET
+    @Path("/events")
+    @Produces(MediaType.APPLICATION_JSON)
+    fun getEvents(
+        @QueryParam("since") @DefaultValue("0") since: Long,
+        @QueryParam("timeout") @DefaultValue("15") timeout: Long
+    ): Response {
+        if (since < 0 || timeout < 0) {
+            return Response
+                .status(Response.Status.BAD_REQUEST)
+                .entity(mapOf("error" to "since and timeout must not be negative"))
+                .build()
+        }
+        val events = try {
+            eventBus.awaitEventsAfter(since, Duration.ofSeconds(minOf(timeout, MAX_EVENT_WAIT_SECONDS)))
+        } catch (e: InterruptedException) {
+            Thread.currentThread().interrupt()
+            emptyList<MigrationEvent>()
+        } catch (e: MigrationEventBus.TooManyWaitersException) {
+            return Response
+                .status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", EVENT_RETRY_AFTER_SECONDS)
+                .entity(mapOf("error" to e.message))
+                .build()
+        }
+        val lastSequence = events.lastOrNull()?.sequence ?: eventBus.lastSequence
+        return Response
+            .ok(
+                mapOf(
+                    "lastSequence" to lastSequence,
+                    "events" to events.map {
+                        mapOf(
+                            "sequence" to it.sequence,
+                            "timestamp" to it.timestamp.toString(),
+                            "type" to it.type.toString(),
+                            "data" to it.data
+                        )
+                    }
+                )
+            )
+            .build()
+    }
+}
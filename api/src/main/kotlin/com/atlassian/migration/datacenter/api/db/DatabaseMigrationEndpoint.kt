@@ -16,6 +16,7 @@
 package com.atlassian.migration.datacenter.api.db
 
 import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationService
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpSettings
 import com.atlassian.migration.datacenter.spi.MigrationService
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError
 import com.fasterxml.jackson.annotation.JsonAutoDetect
@@ -67,6 +68,33 @@ class DatabaseMigrationEndpoint(
             .build()
     }
 
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/settings")
+    fun getDumpSettings(): Response {
+        return Response
+            .ok(databaseMigrationService.dumpSettings)
+            .build()
+    }
+
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/settings")
+    fun setDumpSettings(settings: DatabaseDumpSettings): Response {
+        return try {
+            databaseMigrationService.dumpSettings = settings
+            Response
+                .ok(databaseMigrationService.dumpSettings)
+                .build()
+        } catch (e: IllegalArgumentException) {
+            Response
+                .status(Response.Status.BAD_REQUEST)
+                .entity(mapOf("error" to e.message))
+                .build()
+        }
+    }
+
     @Path("/report")
     @Produces(MediaType.APPLICATION_JSON)
     @GET
@@ -83,6 +111,22 @@ class DatabaseMigrationEndpoint(
         }
     }
 
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/progress")
+    fun getMigrationProgress(): Response {
+        return try {
+            Response
+                .ok(mapper.writeValueAsString(databaseMigrationService.progress))
+                .build()
+        } catch (e: JsonProcessingException) {
+            Response
+                .serverError()
+                .entity("Unable to get database migration progress. Please contact support and show them this error: ${e.message}")
+                .build()
+        }
+    }
+
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/abort")
@@ -17,18 +17,25 @@ package com.atlassian.migration.datacenter.api.fs
 
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError
 import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService
+import com.atlassian.migration.datacenter.spi.fs.UploadThrottleSettings
 import com.fasterxml.jackson.annotation.JsonAutoDetect
 import com.fasterxml.jackson.annotation.PropertyAccessor
 import com.fasterxml.jackson.core.JsonProcessingException
 import com.fasterxml.jackson.databind.ObjectMapper
+import java.io.BufferedWriter
+import java.io.OutputStreamWriter
+import java.nio.charset.StandardCharsets
 import javax.ws.rs.Consumes
 import javax.ws.rs.DELETE
+import javax.ws.rs.DefaultValue
 import javax.ws.rs.GET
 import javax.ws.rs.PUT
 import javax.ws.rs.Path
 import javax.ws.rs.Produces
+import javax.ws.rs.QueryParam
 import javax.ws.rs.core.MediaType
 import javax.ws.rs.core.Response
+import javax.ws.rs.core.StreamingOutput
 
 @Path("/migration/fs")
 class FileSystemMigrationEndpoint(private val fsMigrationService: FilesystemMigrationService) {
@@ -59,6 +66,58 @@ class FileSystemMigrationEndpoint(private val fsMigrationService: FilesystemMigr
         }
     }
 
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/delta/start")
+    fun runDeltaFileMigration(@QueryParam("deleteRemovedFiles") @DefaultValue("false") deleteRemovedFiles: Boolean): Response {
+        return if (fsMigrationService.isRunning) {
+            Response
+                .status(Response.Status.CONFLICT)
+                .entity(mapOf("status" to fsMigrationService.report.status))
+                .build()
+        } else try {
+            val started = fsMigrationService.scheduleDeltaMigration(deleteRemovedFiles)
+            val builder =
+                if (started) Response.status(Response.Status.ACCEPTED) else Response.status(Response.Status.CONFLICT)
+            builder
+                .entity(mapOf("migrationScheduled" to started))
+                .build()
+        } catch (invalidMigrationStageError: InvalidMigrationStageError) {
+            Response
+                .status(Response.Status.CONFLICT)
+                .entity(mapOf("error" to invalidMigrationStageError.message))
+                .build()
+        }
+    }
+
+    @GET
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/throttle")
+    fun getUploadThrottle(): Response {
+        return Response
+            .ok(fsMigrationService.uploadThrottleSettings)
+            .build()
+    }
+
+    @PUT
+    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces(MediaType.APPLICATION_JSON)
+    @Path("/throttle")
+    fun setUploadThrottle(settings: UploadThrottleSettings): Response {
+        return try {
+            fsMigrationService.uploadThrottleSettings = settings
+            Response
+                .ok(fsMigrationService.uploadThrottleSettings)
+                .build()
+        } catch (e: IllegalArgumentException) {
+            Response
+                .status(Response.Status.BAD_REQUEST)
+                .entity(mapOf("error" to e.message))
+                .build()
+        }
+    }
+
     @Path("/report")
     @Produces(MediaType.APPLICATION_JSON)
     @GET
@@ -80,6 +139,47 @@ class FileSystemMigrationEndpoint(private val fsMigrationService: FilesystemMigr
         }
     }
 
+    /**
+     * Streams the failed files as tab separated lines of path and reason, so all of them can be downloaded however
+     * many there are. Large reports can be downloaded a page at a time using the offset and limit.
+     */
+    @Path("/report/failures")
+    @Produces(MediaType.TEXT_PLAIN)
+    @GET
+    fun getFailedFiles(
+        @QueryParam("offset") @DefaultValue("0") offset: Long,
+        @QueryParam("limit") @DefaultValue("10000") limit: Int
+    ): Response {
+        if (offset < 0 || limit < 0 || limit > MAX_FAILED_FILES_LIMIT) {
+            return Response
+                .status(Response.Status.BAD_REQUEST)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(mapOf("error" to "offset must not be negative and limit must be between 0 and $MAX_FAILED_FILES_LIMIT"))
+                .build()
+        }
+        val report = fsMigrationService.report
+            ?: return Response
+                .status(Response.Status.BAD_REQUEST)
+                .type(MediaType.APPLICATION_JSON)
+                .entity(mapOf("error" to "no file system migration exists"))
+                .build()
+        val output = StreamingOutput { stream ->
+            val writer = BufferedWriter(OutputStreamWriter(stream, StandardCharsets.UTF_8))
+            report.readFailedFiles(offset, limit) { failedFile ->
+                writer.write("${singleLine(failedFile.filePath.toString())}\t${singleLine(failedFile.reason)}\n")
+            }
+            writer.flush()
+        }
+        return Response
+            .ok(output)
+            .header("Content-Disposition", "attachment; filename=\"failed-files.tsv\"")
+            .build()
+    }
+
+    private fun singleLine(value: String?): String {
+        return value?.replace(Regex("[\t\r\n]"), " ") ?: ""
+    }
+
     @DELETE
     @Produces(MediaType.APPLICATION_JSON)
     @Path("/abort")
@@ -99,4 +199,8 @@ class FileSystemMigrationEndpoint(private val fsMigrationService: FilesystemMigr
     init {
         mapper.setVisibility(PropertyAccessor.ALL, JsonAutoDetect.Visibility.ANY)
     }
+
+    companion object {
+        private const val MAX_FAILED_FILES_LIMIT = 100000
+    }
 }
\ No newline at end of file
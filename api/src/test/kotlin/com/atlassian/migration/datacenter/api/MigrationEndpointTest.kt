@@ -15,6 +15,8 @@
  */
 package com.atlassian.migration.datacenter.api
 
+import com.atlassian.migration.datacenter.core.events.MigrationEvent
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus
 import com.atlassian.migration.datacenter.dto.Migration
 import com.atlassian.migration.datacenter.spi.MigrationService
 import com.atlassian.migration.datacenter.spi.MigrationStage
@@ -36,6 +38,8 @@ import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.extension.ExtendWith
+import java.time.Duration
+import java.time.Instant
 import javax.ws.rs.core.Response
 
 @ExtendWith(MockKExtension::class)
@@ -43,6 +47,9 @@ class MigrationEndpointTest {
     @MockK
     lateinit var migrationService: MigrationService
 
+    @MockK
+    lateinit var eventBus: MigrationEventBus
+
     @InjectMockKs
     lateinit var sut: MigrationEndpoint
 
@@ -102,4 +109,52 @@ class MigrationEndpointTest {
         assertEquals("migration already exists", entity["error"])
         verify(exactly = 0) { migrationService.transition(any()) }
     }
-}
\ No newline at end of file
+
+    @Test
+    fun shouldReturnEventsAfterRequestedSequence() {
+        val event = mockk<MigrationEvent>()
+        every { event.sequence } returns 4
+        every { event.timestamp } returns Instant.EPOCH
+        every { event.type } returns MigrationEvent.Type.STAGE_TRANSITION
+        every { event.data } returns mapOf("stage" to MigrationStage.FS_MIGRATION_COPY.toString())
+        every { eventBus.awaitEventsAfter(3, Duration.ofSeconds(15)) } returns listOf(event)
+
+        val response = sut.getEvents(3, 15)
+
+        assertEquals(Response.Status.OK.statusCode, response.status)
+        val entity = response.entity as Map<*, *>
+        assertEquals(4L, entity["lastSequence"])
+        val events = entity["events"] as List<*>
+        assertEquals(1, events.size)
+        assertEquals(mapOf("stage" to MigrationStage.FS_MIGRATION_COPY.toString()), (events[0] as Map<*, *>)["data"])
+    }
+
+    @Test
+    fun shouldReturnLatestSequenceWhenNoEventsArePublishedBeforeTimeout() {
+        every { eventBus.awaitEventsAfter(7, Duration.ofSeconds(20)) } returns emptyList()
+        every { eventBus.lastSequence } returns 7
+
+        val response = sut.getEvents(7, 600)
+
+        val entity = response.entity as Map<*, *>
+        assertEquals(7L, entity["lastSequence"])
+        assertEquals(emptyList<Any>(), entity["events"])
+    }
+
+    @Test
+    fun shouldAskClientToRetryLaterWhenTooManyClientsAreWaiting() {
+        every { eventBus.awaitEventsAfter(7, Duration.ofSeconds(15)) } throws MigrationEventBus.TooManyWaitersException("8 clients are already waiting for migration events")
+
+        val response = sut.getEvents(7, 15)
+
+        assertEquals(Response.Status.SERVICE_UNAVAILABLE.statusCode, response.status)
+        assertEquals(5, response.headers.getFirst("Retry-After"))
+    }
+
+    @Test
+    fun shouldRejectNegativeSequence() {
+        val response = sut.getEvents(-1, 25)
+
+        assertEquals(Response.Status.BAD_REQUEST.statusCode, response.status)
+    }
+}
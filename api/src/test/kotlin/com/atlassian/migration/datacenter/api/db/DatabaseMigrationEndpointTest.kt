@@ -0,0 +1,73 @@
+package com.atlassian.migration.datacenter.api.db
+
+import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationProgress
+import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationService
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpSettings
+import com.atlassian.migration.datacenter.core.db.TableEstimate
+import com.atlassian.migration.datacenter.spi.MigrationService
+import com.fasterxml.jackson.databind.ObjectMapper
+import io.mockk.MockKAnnotations
+import io.mockk.every
+import io.mockk.impl.annotations.InjectMockKs
+import io.mockk.impl.annotations.MockK
+import io.mockk.junit5.MockKExtension
+import io.mockk.just
+import io.mockk.runs
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.BeforeEach
+import org.junit.jupiter.api.Test
+import org.junit.jupiter.api.extension.ExtendWith
+import javax.ws.rs.core.Response
+
+@ExtendWith(MockKExtension::class)
+internal class DatabaseMigrationEndpointTest {
+    @MockK
+    lateinit var databaseMigrationService: DatabaseMigrationService
+
+    @MockK
+    lateinit var migrationService: MigrationService
+
+    @InjectMockKs
+    lateinit var endpoint: DatabaseMigrationEndpoint
+
+    @BeforeEach
+    fun setUp() = MockKAnnotations.init(this)
+
+    @Test
+    fun shouldUpdateDumpSettings() {
+        val settings = DatabaseDumpSettings(8, 3)
+        every { databaseMigrationService.dumpSettings = settings } just runs
+        every { databaseMigrationService.dumpSettings } returns settings
+
+        val response = endpoint.setDumpSettings(settings)
+
+        assertEquals(Response.Status.OK.statusCode, response.status)
+        assertEquals(settings, response.entity)
+    }
+
+    @Test
+    fun shouldRejectInvalidDumpSettings() {
+        val settings = DatabaseDumpSettings(0, 12)
+        every { databaseMigrationService.dumpSettings = settings } throws IllegalArgumentException("Number of dump jobs must be at least 1 but was 0")
+
+        val response = endpoint.setDumpSettings(settings)
+
+        assertEquals(Response.Status.BAD_REQUEST.statusCode, response.status)
+    }
+
+    @Test
+    fun shouldReturnProgressOfEveryTable() {
+        val progress = DatabaseMigrationProgress()
+        progress.exportStarted(mapOf("public.jiraissue" to TableEstimate(1000, 65536)), 4)
+        progress.tableDumpStarted("public.jiraissue")
+        every { databaseMigrationService.progress } returns progress.report
+
+        val response = endpoint.getMigrationProgress()
+
+        assertEquals(Response.Status.OK.statusCode, response.status)
+        val json = ObjectMapper().readTree(response.entity as String)
+        assertEquals("public.jiraissue", json["tables"][0]["name"].asText())
+        assertEquals("DUMPING", json["tables"][0]["status"].asText())
+        assertEquals(65536, json["export"]["totalBytes"].asLong())
+    }
+}
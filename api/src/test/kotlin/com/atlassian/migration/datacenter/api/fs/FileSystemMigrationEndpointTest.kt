@@ -2,18 +2,28 @@ package com.atlassian.migration.datacenter.api.fs
 
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError
 import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService
+import com.atlassian.migration.datacenter.spi.fs.ThrottleWindow
+import com.atlassian.migration.datacenter.spi.fs.UploadThrottleSettings
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport
 import io.mockk.MockKAnnotations
 import io.mockk.every
 import io.mockk.impl.annotations.InjectMockKs
 import io.mockk.impl.annotations.MockK
 import io.mockk.junit5.MockKExtension
 import io.mockk.just
+import io.mockk.mockk
 import io.mockk.runs
+import io.mockk.verify
 import org.junit.jupiter.api.Assertions.assertEquals
 import org.junit.jupiter.api.BeforeEach
 import org.junit.jupiter.api.Test
 import org.junit.jupiter.api.extension.ExtendWith
+import java.io.ByteArrayOutputStream
+import java.nio.file.Paths
+import java.util.function.Consumer
 import javax.ws.rs.core.Response
+import javax.ws.rs.core.StreamingOutput
 
 @ExtendWith(MockKExtension::class)
 internal class FileSystemMigrationEndpointTest {
@@ -44,4 +54,72 @@ internal class FileSystemMigrationEndpointTest {
 
         assertEquals(response.status, Response.Status.CONFLICT.statusCode)
     }
-}
\ No newline at end of file
+
+    @Test
+    fun shouldScheduleDeltaMigrationWhenMigrationIsNotRunning() {
+        every { fsMigrationService.isRunning } returns false
+        every { fsMigrationService.scheduleDeltaMigration(true) } returns true
+
+        val response = endpoint.runDeltaFileMigration(true)
+
+        assertEquals(Response.Status.ACCEPTED.statusCode, response.status)
+        verify { fsMigrationService.scheduleDeltaMigration(true) }
+    }
+
+    @Test
+    fun shouldNotScheduleDeltaMigrationInInvalidStage() {
+        every { fsMigrationService.isRunning } returns false
+        every { fsMigrationService.scheduleDeltaMigration(false) } throws InvalidMigrationStageError("not ready")
+
+        val response = endpoint.runDeltaFileMigration(false)
+
+        assertEquals(Response.Status.CONFLICT.statusCode, response.status)
+    }
+
+    @Test
+    fun shouldUpdateUploadThrottle() {
+        val settings = UploadThrottleSettings(1024, 10, listOf(ThrottleWindow("09:00", "17:00", listOf("MONDAY"), 30)))
+        every { fsMigrationService.uploadThrottleSettings = settings } just runs
+        every { fsMigrationService.uploadThrottleSettings } returns settings
+
+        val response = endpoint.setUploadThrottle(settings)
+
+        assertEquals(Response.Status.OK.statusCode, response.status)
+        assertEquals(settings, response.entity)
+    }
+
+    @Test
+    fun shouldRejectInvalidUploadThrottle() {
+        val settings = UploadThrottleSettings(-1, 0, emptyList())
+        every { fsMigrationService.uploadThrottleSettings = settings } throws IllegalArgumentException("Upload rates must not be negative")
+
+        val response = endpoint.setUploadThrottle(settings)
+
+        assertEquals(Response.Status.BAD_REQUEST.statusCode, response.status)
+    }
+
+    @Test
+    fun shouldStreamFailedFilesAsSingleLines() {
+        val report = mockk<FileSystemMigrationReport>()
+        every { fsMigrationService.report } returns report
+        every { report.readFailedFiles(100, 2, any()) } answers {
+            val consumer = thirdArg<Consumer<FailedFileMigration>>()
+            consumer.accept(FailedFileMigration(Paths.get("/home/file"), "it broke"))
+            consumer.accept(FailedFileMigration(Paths.get("/home/other"), "line one\nline\ttwo"))
+        }
+
+        val response = endpoint.getFailedFiles(100, 2)
+        val body = ByteArrayOutputStream()
+        (response.entity as StreamingOutput).write(body)
+
+        assertEquals(Response.Status.OK.statusCode, response.status)
+        assertEquals("/home/file\tit broke\n/home/other\tline one line two\n", body.toString("UTF-8"))
+    }
+
+    @Test
+    fun shouldRejectNegativeFailedFilesOffset() {
+        val response = endpoint.getFailedFiles(-1, 10)
+
+        assertEquals(Response.Status.BAD_REQUEST.statusCode, response.status)
+    }
+}
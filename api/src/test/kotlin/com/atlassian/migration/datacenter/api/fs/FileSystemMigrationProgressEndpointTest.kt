@@ -66,7 +66,22 @@ class FileSystemMigrationProgressEndpointTest {
             every { numberOfCommencedFileUploads } returns 1L
             every { numberOfFilesFound } returns 1L
             every { failedFiles } returns failedFilesCollection
+            every { numberOfFailedFiles } returns 1L
+            every { failureCountsByReason } returns mapOf(testReason to 1L)
             every { countOfUploadedFiles } returns 1L
+            every { countOfUploadedBytes } returns 1024L
+            every { uploadedFilesPerSecond } returns 1.0
+            every { uploadedBytesPerSecond } returns 1024.0
+            every { numberOfBytesFound } returns 4096L
+            every { countOfSkippedBytes } returns 0L
+            every { countOfFailedBytes } returns 0L
+            every { currentUploadedFilesPerSecond } returns 1.0
+            every { currentUploadedBytesPerSecond } returns 1024.0
+            every { estimatedTimeRemaining } returns Duration.ofSeconds(3)
+            every { uploadQueueDepth } returns 1
+            every { uploadQueueBytes } returns 1024L
+            every { uploadConcurrencyLimit } returns 16
+            every { uploadConcurrencyHistory } returns emptyList()
             every { elapsedTime } returns Duration.ofMinutes(1)
             every { countOfDownloadFiles } returns 1L
             every { isCrawlingFinished } returns true
@@ -85,11 +100,21 @@ class FileSystemMigrationProgressEndpointTest {
         val responseSuccessFileCount = tree.at("/uploadedFiles").asLong()
         val responseDownloadFileCount = tree.at("/downloadedFiles").asLong()
         val responseAllFilesFound = tree.at("/crawlingFinished").asBoolean()
+        val responseUploadedBytes = tree.at("/uploadedBytes").asLong()
+        val responseBytesPerSecond = tree.at("/uploadedBytesPerSecond").asDouble()
+        val responseBytesFound = tree.at("/bytesFound").asLong()
+        val responseCurrentBytesPerSecond = tree.at("/currentUploadedBytesPerSecond").asDouble()
+        val responseTimeRemaining = tree.at("/estimatedTimeRemaining/seconds").asLong()
 
         assertEquals(FilesystemMigrationStatus.UPLOADING.name, responseStatus)
         assertEquals(testReason, responseReason)
         assertEquals(testFile.toUri().toString(), responseFailedFile)
         assertEquals(1, responseSuccessFileCount)
+        assertEquals(1024, responseUploadedBytes)
+        assertEquals(1024.0, responseBytesPerSecond)
+        assertEquals(4096, responseBytesFound)
+        assertEquals(1024.0, responseCurrentBytesPerSecond)
+        assertEquals(3, responseTimeRemaining)
         assertEquals(1, responseDownloadFileCount)
         assertTrue(responseAllFilesFound)
     }
@@ -111,7 +136,22 @@ class FileSystemMigrationProgressEndpointTest {
             failedFiles.add(failedFileMigration)
         }
         every { report.failedFiles } returns failedFiles
+        every { report.numberOfFailedFiles } returns 100L
+        every { report.failureCountsByReason } returns mapOf(testReason to 100L)
         every { report.countOfUploadedFiles } returns 1000000L
+        every { report.countOfUploadedBytes } returns 1000000000L
+        every { report.uploadedFilesPerSecond } returns 100.0
+        every { report.uploadedBytesPerSecond } returns 100000.0
+        every { report.numberOfBytesFound } returns 2000000000L
+        every { report.countOfSkippedBytes } returns 0L
+        every { report.countOfFailedBytes } returns 0L
+        every { report.currentUploadedFilesPerSecond } returns 100.0
+        every { report.currentUploadedBytesPerSecond } returns 100000.0
+        every { report.estimatedTimeRemaining } returns Duration.ofSeconds(10000)
+        every { report.uploadQueueDepth } returns 50
+        every { report.uploadQueueBytes } returns 50000L
+        every { report.uploadConcurrencyLimit } returns 16
+        every { report.uploadConcurrencyHistory } returns emptyList()
 
         val response = endpoint.getFilesystemMigrationStatus()
 
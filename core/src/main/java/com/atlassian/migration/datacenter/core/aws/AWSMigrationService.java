@@ -17,7 +17,10 @@
 package com.atlassian.migration.datacenter.core.aws;
 
 import com.atlassian.activeobjects.external.ActiveObjects;
-import com.atlassian.migration.datacenter.core.proxy.ReadOnlyEntityInvocationHandler;
+import com.atlassian.jira.cluster.ClusterMessageConsumer;
+import com.atlassian.jira.cluster.ClusterMessagingService;
+import com.atlassian.migration.datacenter.core.events.MigrationEvent;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.dto.Migration;
 import com.atlassian.migration.datacenter.dto.MigrationContext;
 import com.atlassian.migration.datacenter.spi.MigrationService;
@@ -27,8 +30,12 @@ import com.atlassian.migration.datacenter.spi.exceptions.MigrationAlreadyExistsE
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.lang.reflect.Proxy;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Collections;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static com.atlassian.migration.datacenter.spi.MigrationStage.ERROR;
 import static com.atlassian.migration.datacenter.spi.MigrationStage.NOT_STARTED;
@@ -36,16 +43,43 @@ import static java.util.Objects.requireNonNull;
 
 /**
  * Manages a migration from on-premise to self-hosted AWS.
+ * <p>
+ * The migration is read from the database once and then served from memory, as the stage is checked on every
+ * request the UI makes while it polls for progress. Readers get a read only copy of the migration and its context,
+ * which is replaced after every change. Changes are written through to the database, and the other nodes of the
+ * cluster are told to drop their copy so they read the migration again on their next access.
  */
 public class AWSMigrationService implements MigrationService {
     private static final Logger log = LoggerFactory.getLogger(AWSMigrationService.class);
+
+    static final String CACHE_INVALIDATION_CHANNEL = "DCMA-Migration";
+    private static final String INVALIDATE_MESSAGE = "invalidate";
+
     private ActiveObjects ao;
+    private final ClusterMessagingService clusterMessagingService;
+    // Jira only holds a weak reference to cluster message listeners
+    private final ClusterMessageConsumer invalidationListener = (channel, message, senderId) -> onMigrationChangedOnAnotherNode();
+    private final AtomicLong cacheGeneration = new AtomicLong();
+    private volatile ReadOnlyMigration cachedMigration;
+    private final MigrationEventBus eventBus;
 
     /**
      * Creates a new, unstarted AWS Migration
      */
-    public AWSMigrationService(ActiveObjects ao) {
+    public AWSMigrationService(ActiveObjects ao, ClusterMessagingService clusterMessagingService, MigrationEventBus eventBus) {
         this.ao = requireNonNull(ao);
+        this.clusterMessagingService = requireNonNull(clusterMessagingService);
+        this.eventBus = requireNonNull(eventBus);
+    }
+
+    @PostConstruct
+    public void registerCacheInvalidationListener() {
+        clusterMessagingService.registerListener(CACHE_INVALIDATION_CHANNEL, invalidationListener);
+    }
+
+    @PreDestroy
+    public void unregisterCacheInvalidationListener() {
+        clusterMessagingService.unregisterListener(CACHE_INVALIDATION_CHANNEL, invalidationListener);
     }
 
     @Override
@@ -60,7 +94,7 @@ public class AWSMigrationService implements MigrationService {
 
     @Override
     public MigrationStage getCurrentStage() {
-        return findFirstOrCreateMigration().getStage();
+        return getCurrentMigration().getStage();
     }
 
     @Override
@@ -74,8 +108,11 @@ public class AWSMigrationService implements MigrationService {
 
     @Override
     public Migration getCurrentMigration() {
-        Migration migration = findFirstOrCreateMigration();
-        return (Migration) Proxy.newProxyInstance(this.getClass().getClassLoader(), new Class[]{Migration.class}, new ReadOnlyEntityInvocationHandler<>(migration));
+        final ReadOnlyMigration migration = cachedMigration;
+        if (migration != null) {
+            return migration;
+        }
+        return loadAndCacheMigration();
     }
 
     @Override
@@ -84,13 +121,26 @@ public class AWSMigrationService implements MigrationService {
     }
 
     @Override
-    public void deleteMigrations() {
+    public synchronized void updateContext(Consumer<MigrationContext> update) {
+        final long generation = cacheGeneration.get();
+        final Migration migration = findFirstOrCreateMigration();
+        final MigrationContext context = migration.getContext();
+        update.accept(context);
+        context.save();
+        cacheCopy(migration, generation);
+        notifyOtherNodes();
+    }
+
+    @Override
+    public synchronized void deleteMigrations() {
         final Migration[] migrations = ao.find(Migration.class);
         for (Migration migration : migrations) {
             ao.delete(migration.getContext());
             ao.delete(migration);
             log.warn("deleted migration {}", migration);
         }
+        invalidateCache();
+        notifyOtherNodes();
     }
 
     @Override
@@ -119,11 +169,66 @@ public class AWSMigrationService implements MigrationService {
     }
 
     protected synchronized void setCurrentStage(Migration migration, MigrationStage stage) {
+        final long generation = cacheGeneration.get();
         migration.setStage(stage);
         migration.save();
+        cacheCopy(migration, generation);
+        notifyOtherNodes();
+        publishStage(stage);
+    }
+
+    protected Migration findFirstOrCreateMigration() {
+        final ReadOnlyMigration migration = cachedMigration;
+        if (migration != null) {
+            return migration.entity();
+        }
+        return loadAndCacheMigration().entity();
+    }
+
+    private synchronized ReadOnlyMigration loadAndCacheMigration() {
+        ReadOnlyMigration migration = cachedMigration;
+        if (migration != null) {
+            return migration;
+        }
+        final long generation = cacheGeneration.get();
+        return cacheCopy(loadFirstOrCreateMigration(), generation);
+    }
+
+    private ReadOnlyMigration cacheCopy(Migration migration, long generation) {
+        final ReadOnlyMigration copy = new ReadOnlyMigration(migration);
+        // Don't cache a migration which was read before another node told us it had changed
+        if (cacheGeneration.get() == generation) {
+            cachedMigration = copy;
+        }
+        return copy;
+    }
+
+    /**
+     * Drops the cached migration, so it is read from the database on the next access
+     */
+    void invalidateCache() {
+        cacheGeneration.incrementAndGet();
+        cachedMigration = null;
+    }
+
+    private void onMigrationChangedOnAnotherNode() {
+        invalidateCache();
+        try {
+            publishStage(getCurrentStage());
+        } catch (RuntimeException e) {
+            log.warn("Unable to read migration stage changed by another node", e);
+        }
+    }
+
+    private void publishStage(MigrationStage stage) {
+        eventBus.publish(MigrationEvent.Type.STAGE_TRANSITION, Collections.singletonMap("stage", stage.toString()));
+    }
+
+    private void notifyOtherNodes() {
+        clusterMessagingService.sendRemote(CACHE_INVALIDATION_CHANNEL, INVALIDATE_MESSAGE);
     }
 
-    protected synchronized Migration findFirstOrCreateMigration() {
+    private Migration loadFirstOrCreateMigration() {
         Migration[] migrations = ao.find(Migration.class);
         if (migrations.length == 1) {
             // In case we have interrupted migration (e.g. the node went down), we want to pick up where we've
@@ -13,14 +13,16 @@
 package com.atlassian.migration.datacenter.core.aws;
 
 import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.cluster.ClusterMessagingService;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.dto.Migration;
 import com.atlassian.migration.datacenter.spi.MigrationService;
 import com.atlassian.migration.datacenter.spi.MigrationStage;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
 
 public class AllowAnyTransitionMigrationServiceFacade extends AWSMigrationService implements MigrationService {
-    public AllowAnyTransitionMigrationServiceFacade(ActiveObjects activeObjects) {
-        super(activeObjects);
+    public AllowAnyTransitionMigrationServiceFacade(ActiveObjects activeObjects, ClusterMessagingService clusterMessagingService, MigrationEventBus eventBus) {
+        super(activeObjects, clusterMessagingService, eventBus);
     }
 
     @Override
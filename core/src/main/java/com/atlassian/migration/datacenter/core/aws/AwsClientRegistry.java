@@ -0,0 +1,249 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws;
+
+import com.atlassian.jira.cluster.ClusterMessageConsumer;
+import com.atlassian.jira.cluster.ClusterMessagingService;
+import com.atlassian.migration.datacenter.core.aws.region.RegionService;
+import com.atlassian.util.concurrent.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.SdkClient;
+import software.amazon.awssdk.http.SdkHttpClient;
+import software.amazon.awssdk.http.apache.ApacheHttpClient;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+import software.amazon.awssdk.regions.Region;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches one AWS SDK client of each type, so the clients and their connection pools are reused for the lifetime of
+ * the migration instead of being built, and leaked, on every call. A cached client is built again only after
+ * {@link #configurationChanged()} reports that the region or the stored credentials have changed, on this node or
+ * on another node of the cluster.
+ * <p>
+ * Clients which have been replaced are closed after {@link #REPLACED_CLIENT_CLOSE_DELAY}, as callers may still be
+ * using them for requests in flight. The configuration only changes while the migration authenticates with AWS, before
+ * any long running transfer, so the delay only needs to outlast the longest request timeout. Callers should get a
+ * client from the supplier whenever they need one rather than keeping it, so they pick up the current region and
+ * credentials.
+ * <p>
+ * All synchronous clients share a single Apache HTTP client, and all asynchronous clients use Netty HTTP clients on
+ * a shared event loop group. Neither is closed with the clients which use them, only when the registry is closed.
+ */
+public class AwsClientRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(AwsClientRegistry.class);
+
+    static final String CONFIGURATION_CHANGED_CHANNEL = "DCMA-AwsConfig";
+    private static final String CONFIGURATION_CHANGED_MESSAGE = "changed";
+    static final Duration REPLACED_CLIENT_CLOSE_DELAY = Duration.ofMinutes(5);
+
+    private final AwsCredentialsProvider credentialsProvider;
+    private final RegionService regionService;
+    private final ClusterMessagingService clusterMessagingService;
+    // Jira only holds a weak reference to cluster message listeners
+    private final ClusterMessageConsumer configurationListener = (channel, message, senderId) -> bumpConfigurationVersion();
+    private final AtomicLong configurationVersion = new AtomicLong();
+    private final Map<Class<?>, CachedClient> clients = new ConcurrentHashMap<>();
+    private final Set<SdkClient> replacedClients = new HashSet<>();
+    private final ScheduledExecutorService closeExecutor;
+    private final Duration replacedClientCloseDelay;
+
+    private SdkHttpClient sharedHttpClient;
+    private SdkEventLoopGroup sharedEventLoopGroup;
+    private volatile boolean closed = false;
+
+    public AwsClientRegistry(AwsCredentialsProvider credentialsProvider, RegionService regionService, ClusterMessagingService clusterMessagingService) {
+        this(credentialsProvider, regionService, clusterMessagingService, Executors.newSingleThreadScheduledExecutor(), REPLACED_CLIENT_CLOSE_DELAY);
+    }
+
+    AwsClientRegistry(AwsCredentialsProvider credentialsProvider, RegionService regionService, ClusterMessagingService clusterMessagingService, ScheduledExecutorService closeExecutor, Duration replacedClientCloseDelay) {
+        this.credentialsProvider = credentialsProvider;
+        this.regionService = regionService;
+        this.clusterMessagingService = clusterMessagingService;
+        this.closeExecutor = closeExecutor;
+        this.replacedClientCloseDelay = replacedClientCloseDelay;
+    }
+
+    @PostConstruct
+    public void registerConfigurationListener() {
+        clusterMessagingService.registerListener(CONFIGURATION_CHANGED_CHANNEL, configurationListener);
+    }
+
+    /**
+     * @param clientType type of the client, which is cached once per type
+     * @param factory    builds a client of the given type from the current region, credentials and shared HTTP resources
+     * @return supplier of the cached client
+     */
+    public <T extends SdkClient> Supplier<T> supplier(Class<T> clientType, Function<ClientResources, T> factory) {
+        return () -> get(clientType, factory);
+    }
+
+    /**
+     * @return the cached client of the given type, built first if there is no client for the current configuration
+     */
+    public <T extends SdkClient> T get(Class<T> clientType, Function<ClientResources, T> factory) {
+        final CachedClient cached = clients.get(clientType);
+        if (!closed && cached != null && cached.version == configurationVersion.get()) {
+            return clientType.cast(cached.client);
+        }
+        return build(clientType, factory);
+    }
+
+    /**
+     * Makes the clients of this and every other node of the cluster be built again on their next use. Must be called
+     * after the region or the credentials have been stored.
+     */
+    public void configurationChanged() {
+        bumpConfigurationVersion();
+        clusterMessagingService.sendRemote(CONFIGURATION_CHANGED_CHANNEL, CONFIGURATION_CHANGED_MESSAGE);
+    }
+
+    /**
+     * Closes all clients and the shared HTTP resources
+     */
+    @PreDestroy
+    public synchronized void close() {
+        closed = true;
+        clusterMessagingService.unregisterListener(CONFIGURATION_CHANGED_CHANNEL, configurationListener);
+        closeExecutor.shutdownNow();
+        clients.values().forEach(cached -> closeQuietly(cached.client));
+        clients.clear();
+        replacedClients.forEach(AwsClientRegistry::closeQuietly);
+        replacedClients.clear();
+        if (sharedHttpClient != null) {
+            sharedHttpClient.close();
+            sharedHttpClient = null;
+        }
+        if (sharedEventLoopGroup != null) {
+            sharedEventLoopGroup.eventLoopGroup().shutdownGracefully();
+            sharedEventLoopGroup = null;
+        }
+    }
+
+    private synchronized <T extends SdkClient> T build(Class<T> clientType, Function<ClientResources, T> factory) {
+        if (closed) {
+            throw new IllegalStateException("AWS client registry has been closed");
+        }
+        // Read before the region, so a change while building makes the next call build again
+        final long version = configurationVersion.get();
+        final CachedClient cached = clients.get(clientType);
+        if (cached != null && cached.version == version) {
+            return clientType.cast(cached.client);
+        }
+        if (cached != null) {
+            logger.info("Region or AWS credentials have changed, rebuilding {}", clientType.getSimpleName());
+            replacedClients.add(cached.client);
+            closeExecutor.schedule(() -> closeReplaced(cached.client), replacedClientCloseDelay.toMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        final String region = regionService.getRegion();
+        final T client = factory.apply(new ClientResources(Region.of(region)));
+        clients.put(clientType, new CachedClient(client, version));
+        logger.debug("Built {} for region {}", clientType.getSimpleName(), region);
+        return client;
+    }
+
+    private synchronized void closeReplaced(SdkClient client) {
+        if (replacedClients.remove(client)) {
+            logger.debug("Closing replaced {}", client.serviceName());
+            closeQuietly(client);
+        }
+    }
+
+    private void bumpConfigurationVersion() {
+        configurationVersion.incrementAndGet();
+    }
+
+    private SdkHttpClient sharedHttpClient() {
+        if (sharedHttpClient == null) {
+            sharedHttpClient = ApacheHttpClient.builder().build();
+        }
+        return sharedHttpClient;
+    }
+
+    private SdkEventLoopGroup sharedEventLoopGroup() {
+        if (sharedEventLoopGroup == null) {
+            sharedEventLoopGroup = SdkEventLoopGroup.builder().build();
+        }
+        return sharedEventLoopGroup;
+    }
+
+    private static void closeQuietly(SdkClient client) {
+        try {
+            client.close();
+        } catch (RuntimeException e) {
+            logger.warn("Unable to close {}", client.serviceName(), e);
+        }
+    }
+
+    /**
+     * Region, credentials and shared HTTP resources with which clients are built
+     */
+    public class ClientResources {
+        private final Region region;
+
+        private ClientResources(Region region) {
+            this.region = region;
+        }
+
+        public Region getRegion() {
+            return region;
+        }
+
+        public AwsCredentialsProvider getCredentialsProvider() {
+            return credentialsProvider;
+        }
+
+        /**
+         * @return HTTP client shared by all synchronous clients
+         */
+        public SdkHttpClient getHttpClient() {
+            return sharedHttpClient();
+        }
+
+        /**
+         * @return builder of an HTTP client for an asynchronous client, which runs on the shared event loop group
+         */
+        public NettyNioAsyncHttpClient.Builder nettyHttpClientBuilder() {
+            return NettyNioAsyncHttpClient.builder().eventLoopGroup(sharedEventLoopGroup());
+        }
+    }
+
+    private static class CachedClient {
+        private final SdkClient client;
+        private final long version;
+
+        CachedClient(SdkClient client, long version) {
+            this.client = client;
+            this.version = version;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws;
+
+import com.atlassian.migration.datacenter.dto.Migration;
+import com.atlassian.migration.datacenter.dto.MigrationContext;
+import com.atlassian.migration.datacenter.spi.MigrationStage;
+import net.java.ao.EntityManager;
+import net.java.ao.RawEntity;
+
+import java.beans.PropertyChangeListener;
+
+/**
+ * Read only copy of a migration which is handed out to callers of {@link AWSMigrationService#getCurrentMigration()}.
+ * The fields of the migration and its context are copied when it is loaded and after every change, and the copy is
+ * shared by every reader until the next change. Changes must be made through {@link AWSMigrationService}.
+ */
+final class ReadOnlyMigration implements Migration {
+
+    private final Migration migration;
+    private final int id;
+    private final MigrationStage stage;
+    private final ReadOnlyMigrationContext context;
+
+    ReadOnlyMigration(Migration migration) {
+        this.migration = migration;
+        this.id = migration.getID();
+        this.stage = migration.getStage();
+        final MigrationContext entityContext = migration.getContext();
+        this.context = entityContext == null ? null : new ReadOnlyMigrationContext(this, entityContext);
+    }
+
+    Migration entity() {
+        return migration;
+    }
+
+    @Override
+    public MigrationStage getStage() {
+        return stage;
+    }
+
+    @Override
+    public void setStage(MigrationStage stage) {
+        throw readOnly();
+    }
+
+    @Override
+    public MigrationContext getContext() {
+        return context;
+    }
+
+    @Override
+    public int getID() {
+        return id;
+    }
+
+    @Override
+    public void init() {
+        throw readOnly();
+    }
+
+    @Override
+    public void save() {
+        throw readOnly();
+    }
+
+    @Override
+    public EntityManager getEntityManager() {
+        throw readOnly();
+    }
+
+    @Override
+    public <X extends RawEntity<Integer>> Class<X> getEntityType() {
+        return migration.getEntityType();
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        throw readOnly();
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        throw readOnly();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return migration.equals(o instanceof ReadOnlyMigration ? ((ReadOnlyMigration) o).migration : o);
+    }
+
+    @Override
+    public int hashCode() {
+        return migration.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return migration.toString();
+    }
+
+    static RuntimeException readOnly() {
+        return new RuntimeException("Called a method which changes the migration on a read only instance of " + Migration.class.getSimpleName());
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws;
+
+import com.atlassian.migration.datacenter.dto.Migration;
+import com.atlassian.migration.datacenter.dto.MigrationContext;
+import net.java.ao.EntityManager;
+import net.java.ao.RawEntity;
+
+import java.beans.PropertyChangeListener;
+
+/**
+ * Read only copy of the context of a {@link ReadOnlyMigration}. The context is changed through
+ * {@link AWSMigrationService#updateContext}.
+ */
+final class ReadOnlyMigrationContext implements MigrationContext {
+
+    private final ReadOnlyMigration migration;
+    private final int id;
+    private final Class<? extends RawEntity<Integer>> entityType;
+    private final String applicationDeploymentId;
+    private final String helperStackDeploymentId;
+
+    ReadOnlyMigrationContext(ReadOnlyMigration migration, MigrationContext context) {
+        this.migration = migration;
+        this.id = context.getID();
+        this.entityType = context.getEntityType();
+        this.applicationDeploymentId = context.getApplicationDeploymentId();
+        this.helperStackDeploymentId = context.getHelperStackDeploymentId();
+    }
+
+    @Override
+    public Migration getMigration() {
+        return migration;
+    }
+
+    @Override
+    public void setMigration(Migration migration) {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public String getApplicationDeploymentId() {
+        return applicationDeploymentId;
+    }
+
+    @Override
+    public void setApplicationDeploymentId(String id) {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public String getHelperStackDeploymentId() {
+        return helperStackDeploymentId;
+    }
+
+    @Override
+    public void setHelperStackDeploymentId(String deploymentId) {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public int getID() {
+        return id;
+    }
+
+    @Override
+    public void init() {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public void save() {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public EntityManager getEntityManager() {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <X extends RawEntity<Integer>> Class<X> getEntityType() {
+        return (Class<X>) entityType;
+    }
+
+    @Override
+    public void addPropertyChangeListener(PropertyChangeListener listener) {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public void removePropertyChangeListener(PropertyChangeListener listener) {
+        throw ReadOnlyMigration.readOnly();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s{id=%d, applicationDeploymentId=%s, helperStackDeploymentId=%s}",
+                MigrationContext.class.getSimpleName(), id, applicationDeploymentId, helperStackDeploymentId);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.atlassian.migration.datacenter.core.aws.cloud;
 
+import com.atlassian.migration.datacenter.core.aws.AwsClientRegistry;
 import com.atlassian.migration.datacenter.core.aws.auth.WriteCredentialsService;
 import com.atlassian.migration.datacenter.core.aws.region.InvalidAWSRegionException;
 import com.atlassian.migration.datacenter.core.aws.region.RegionService;
@@ -33,12 +34,14 @@ public class AWSConfigurationService implements CloudProviderConfigurationServic
     private final WriteCredentialsService writeCredentialsService;
     private final RegionService regionService;
     private final MigrationService migrationService;
+    private final AwsClientRegistry clientRegistry;
     private CloudCredentialsValidator cloudCredentialsValidator;
 
-    public AWSConfigurationService(WriteCredentialsService writeCredentialsService, RegionService regionService, MigrationService migrationService, CloudCredentialsValidator cloudCredentialsValidator) {
+    public AWSConfigurationService(WriteCredentialsService writeCredentialsService, RegionService regionService, MigrationService migrationService, AwsClientRegistry clientRegistry, CloudCredentialsValidator cloudCredentialsValidator) {
         this.writeCredentialsService = writeCredentialsService;
         this.regionService = regionService;
         this.migrationService = migrationService;
+        this.clientRegistry = clientRegistry;
         this.cloudCredentialsValidator = cloudCredentialsValidator;
     }
 
@@ -73,6 +76,7 @@ public class AWSConfigurationService implements CloudProviderConfigurationServic
         logger.info("Storing AWS credentials");
         writeCredentialsService.storeAccessKeyId(entity);
         writeCredentialsService.storeSecretAccessKey(secret);
+        clientRegistry.configurationChanged();
 
         migrationService.transition(MigrationStage.PROVISION_APPLICATION);
     }
@@ -13,6 +13,7 @@
 package com.atlassian.migration.datacenter.core.aws.db;
 
 import com.atlassian.migration.datacenter.core.aws.MigrationStageCallback;
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpSettings;
 import com.atlassian.migration.datacenter.core.db.DatabaseExtractor;
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
@@ -20,6 +21,7 @@ import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageEr
 import java.nio.file.Path;
 
 public class DatabaseArchivalService {
+    static final String DUMP_DIRECTORY_NAME = "db.dump";
 
     private DatabaseExtractor databaseExtractor;
 
@@ -27,13 +29,14 @@ public class DatabaseArchivalService {
         this.databaseExtractor = databaseExtractor;
     }
 
-    public Path archiveDatabase(Path tempDirectory, MigrationStageCallback archiveStageCallback) throws InvalidMigrationStageError
+    public Path archiveDatabase(Path tempDirectory, DatabaseDumpSettings settings, DatabaseMigrationProgress progress, MigrationStageCallback archiveStageCallback) throws InvalidMigrationStageError
     {
-        Path target = tempDirectory.resolve("db.dump");
+        Path target = tempDirectory.resolve(DUMP_DIRECTORY_NAME);
 
         archiveStageCallback.assertInStartingStage();
 
-        Process extractorProcess = this.databaseExtractor.startDatabaseDump(target);
+        progress.exportStarted(databaseExtractor.getTableEstimates(), settings.getJobs());
+        Process extractorProcess = this.databaseExtractor.startDatabaseDump(target, settings, false);
         archiveStageCallback.transitionToServiceWaitStage();
 
         try {
@@ -44,8 +47,27 @@ public class DatabaseArchivalService {
             throw new DatabaseMigrationFailure(msg, e);
         }
 
+        progress.exportFinished();
         archiveStageCallback.transitionToServiceNextStage();
         return target;
     }
+
+    /**
+     * Starts a verbose dump and returns without waiting for it to finish, so the files of the dump can be uploaded
+     * while the remaining tables are still being dumped. The migration moves on to the next stage once
+     * {@link DatabaseDump#waitForCompletion()} returns. The tables being dumped are reported to the given progress.
+     */
+    public DatabaseDump startDatabaseArchive(Path tempDirectory, DatabaseDumpSettings settings, DatabaseMigrationProgress progress, MigrationStageCallback archiveStageCallback) throws InvalidMigrationStageError
+    {
+        Path target = tempDirectory.resolve(DUMP_DIRECTORY_NAME);
+
+        archiveStageCallback.assertInStartingStage();
+
+        progress.exportStarted(databaseExtractor.getTableEstimates(), settings.getJobs());
+        Process extractorProcess = this.databaseExtractor.startDatabaseDump(target, settings, true);
+        archiveStageCallback.transitionToServiceWaitStage();
+
+        return new DatabaseDump(target, extractorProcess, progress, archiveStageCallback);
+    }
 }
 
@@ -21,14 +21,18 @@ import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMig
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
 import com.atlassian.util.concurrent.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 
-import javax.annotation.PostConstruct;
 import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 public class DatabaseArtifactS3UploadService {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseArtifactS3UploadService.class);
+
     private final Supplier<S3AsyncClient> s3AsyncClientSupplier;
-    private S3AsyncClient s3AsyncClient;
     private final FileSystemMigrationReport fileSystemMigrationReport;
 
     public DatabaseArtifactS3UploadService(Supplier<S3AsyncClient> s3AsyncClientSupplier) {
@@ -36,22 +40,84 @@ public class DatabaseArtifactS3UploadService {
         this.fileSystemMigrationReport = new DefaultFileSystemMigrationReport();
     }
 
-    @PostConstruct
-    public void postConstruct() {
-        this.s3AsyncClient = this.s3AsyncClientSupplier.get();
-    }
-
-    public FileSystemMigrationReport upload(Path target, String targetBucketName, DatabaseUploadStageTransitionCallback callback) throws InvalidMigrationStageError, FilesystemUploader.FileUploadException {
+    public FileSystemMigrationReport upload(Path target, String targetBucketName, DatabaseMigrationProgress progress, DatabaseUploadStageTransitionCallback callback) throws InvalidMigrationStageError, FilesystemUploader.FileUploadException {
         callback.assertInStartingStage();
+        S3AsyncClient s3AsyncClient = s3AsyncClientSupplier.get();
         FilesystemUploader filesystemUploader = buildFileSystemUploader(target, targetBucketName, fileSystemMigrationReport, s3AsyncClient);
+        DatabaseDumpBucket dumpBucket = new DatabaseDumpBucket(s3AsyncClient, targetBucketName, target.getFileName().toString());
 
         callback.transitionToServiceWaitStage();
-        filesystemUploader.uploadDirectory(target);
+        clearPreviousDump(dumpBucket);
+        progress.uploadStarted();
+        try {
+            filesystemUploader.uploadDirectory(target);
+        } finally {
+            markUploadComplete(dumpBucket);
+        }
+        progress.uploadFinished();
 
         callback.transitionToServiceNextStage();
         return fileSystemMigrationReport;
     }
 
+    /**
+     * Uploads the files of a database dump while it is still running, each file as soon as pg_dump has finished
+     * writing it. Uploaded files are deleted, so the dump only takes up local disk space for the files which are
+     * still being written or waiting to be uploaded. Returns once the dump has finished and all its files are uploaded.
+     */
+    public FileSystemMigrationReport upload(DatabaseDump dump, String targetBucketName) throws FilesystemUploader.FileUploadException {
+        Path target = dump.getTarget();
+        S3AsyncClient s3AsyncClient = s3AsyncClientSupplier.get();
+        S3UploadConfig config = S3UploadConfig.builder(targetBucketName, s3AsyncClient, target.getParent())
+                .uploadListener(new UploadedFileRemover(target.getParent(), dump.getProgress()))
+                .build();
+        S3Uploader uploader = new S3Uploader(config, fileSystemMigrationReport);
+        Crawler crawler = new DatabaseDumpCrawler(dump, fileSystemMigrationReport);
+        DatabaseDumpBucket dumpBucket = new DatabaseDumpBucket(s3AsyncClient, targetBucketName, target.getFileName().toString());
+
+        clearPreviousDump(dumpBucket);
+        dump.getProgress().uploadStarted();
+        try {
+            new FilesystemUploader(crawler, uploader).uploadDirectory(target);
+        } finally {
+            markUploadComplete(dumpBucket);
+        }
+        dump.getProgress().uploadFinished();
+        return fileSystemMigrationReport;
+    }
+
+    /**
+     * @return schema qualified names of the tables the migration helper has restored so far
+     */
+    public List<String> getRestoredTables(String targetBucketName) throws ExecutionException, InterruptedException {
+        return new DatabaseDumpBucket(s3AsyncClientSupplier.get(), targetBucketName, DatabaseArchivalService.DUMP_DIRECTORY_NAME).getRestoredTables();
+    }
+
+    private static void clearPreviousDump(DatabaseDumpBucket dumpBucket) throws FilesystemUploader.FileUploadException {
+        try {
+            dumpBucket.clear();
+        } catch (ExecutionException e) {
+            throw new FilesystemUploader.FileUploadException("Failed to delete previous database dump from S3", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FilesystemUploader.FileUploadException("Interrupted while deleting previous database dump from S3", e);
+        }
+    }
+
+    /**
+     * Failing to write the marker doesn't fail the upload, as the restore only needs it when a file is missing
+     */
+    private static void markUploadComplete(DatabaseDumpBucket dumpBucket) {
+        try {
+            dumpBucket.markUploadComplete();
+        } catch (ExecutionException e) {
+            logger.error("Failed to mark the database dump upload as complete", e.getCause());
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while marking the database dump upload as complete", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
     //TODO: Use builder pattern instead of creating dependencies like this.
     private static FilesystemUploader buildFileSystemUploader(Path target, String targetBucketName, FileSystemMigrationReport migrationReport, S3AsyncClient s3Client) {
         S3UploadConfig config = new S3UploadConfig(targetBucketName, s3Client, target.getParent());
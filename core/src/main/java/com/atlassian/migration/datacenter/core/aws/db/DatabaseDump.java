@@ -0,0 +1,100 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.aws.MigrationStageCallback;
+import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
+import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
+
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A database dump which is still being written to its target directory by the database extractor.
+ */
+public class DatabaseDump {
+    private final Path target;
+    private final Process process;
+    private final DatabaseMigrationProgress progress;
+    private final MigrationStageCallback archiveStageCallback;
+    private final CompletableFuture<Void> completion = new CompletableFuture<>();
+
+    DatabaseDump(Path target, Process process, DatabaseMigrationProgress progress, MigrationStageCallback archiveStageCallback) {
+        this.target = target;
+        this.process = process;
+        this.progress = progress;
+        this.archiveStageCallback = archiveStageCallback;
+    }
+
+    /**
+     * @return the directory the dump is written to
+     */
+    public Path getTarget() {
+        return target;
+    }
+
+    /**
+     * @return the progress of the migration this dump belongs to
+     */
+    public DatabaseMigrationProgress getProgress() {
+        return progress;
+    }
+
+    /**
+     * @return the verbose output of the extractor, one line per dumped object
+     */
+    public InputStream getLog() {
+        return process.getErrorStream();
+    }
+
+    /**
+     * @return future which is completed when the dump has finished successfully, or completed exceptionally when
+     * the extractor has failed
+     */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Waits for the extractor to exit and moves the migration on to the next stage if the dump is complete.
+     *
+     * @throws DatabaseMigrationFailure if the extractor was interrupted or exited with a non-zero status
+     */
+    public void waitForCompletion() throws InvalidMigrationStageError {
+        final int exit;
+        try {
+            exit = process.waitFor();
+        } catch (InterruptedException e) {
+            archiveStageCallback.transitionToServiceErrorStage();
+            Thread.currentThread().interrupt();
+            throw failed(new DatabaseMigrationFailure("Error while waiting for DB extractor to finish", e));
+        }
+        if (exit != 0) {
+            archiveStageCallback.transitionToServiceErrorStage();
+            throw failed(new DatabaseMigrationFailure("DB extractor exited with non-zero status: " + exit));
+        }
+        progress.exportFinished();
+        archiveStageCallback.transitionToServiceNextStage();
+        completion.complete(null);
+    }
+
+    private DatabaseMigrationFailure failed(DatabaseMigrationFailure failure) {
+        completion.completeExceptionally(failure);
+        return failure;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.fs.S3Uploader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Objects of the database dump in the migration bucket. The migration helper starts restoring the dump while it is
+ * still being uploaded, and restores each table as soon as its object is in the bucket. Objects left by a previous
+ * dump are therefore deleted before the upload starts, and a marker is written once the upload has finished, so
+ * the helper can tell a file which is still being uploaded from one which will never arrive.
+ */
+public class DatabaseDumpBucket {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseDumpBucket.class);
+
+    public static final String UPLOAD_COMPLETE_MARKER = S3Uploader.INTERNAL_PREFIX + "db-dump-uploaded";
+    public static final String RESTORED_TABLES_PREFIX = S3Uploader.INTERNAL_PREFIX + "db-restored/";
+
+    private final S3AsyncClient s3AsyncClient;
+    private final String bucketName;
+    private final String prefix;
+
+    public DatabaseDumpBucket(S3AsyncClient s3AsyncClient, String bucketName, String dumpDirectoryName) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.bucketName = bucketName;
+        this.prefix = dumpDirectoryName + "/";
+    }
+
+    /**
+     * Deletes the objects of a previous dump, the marker of its completed upload and its restored tables
+     */
+    public void clear() throws ExecutionException, InterruptedException {
+        deleteObjects(UPLOAD_COMPLETE_MARKER);
+        int deleted = 0;
+        for (String dumpPrefix : Arrays.asList(prefix, RESTORED_TABLES_PREFIX)) {
+            for (List<String> keys : listKeys(dumpPrefix)) {
+                deleted += deleteObjects(keys.toArray(new String[0]));
+            }
+        }
+        logger.info("Deleted {} objects of a previous database dump from {}", deleted, bucketName);
+    }
+
+    /**
+     * The migration helper writes an empty object named {@code <dump id>/<schema>.<table>} under
+     * {@link #RESTORED_TABLES_PREFIX} once it has restored the data of a table.
+     *
+     * @return schema qualified names of the tables which have been restored
+     */
+    public List<String> getRestoredTables() throws ExecutionException, InterruptedException {
+        List<String> tables = new ArrayList<>();
+        for (List<String> keys : listKeys(RESTORED_TABLES_PREFIX)) {
+            for (String key : keys) {
+                String marker = key.substring(RESTORED_TABLES_PREFIX.length());
+                int separator = marker.indexOf('/');
+                if (separator >= 0) {
+                    tables.add(marker.substring(separator + 1));
+                }
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Tells the migration helper that no more files of the dump will be uploaded
+     */
+    public void markUploadComplete() throws ExecutionException, InterruptedException {
+        PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(bucketName)
+                .key(UPLOAD_COMPLETE_MARKER)
+                .build();
+        s3AsyncClient.putObject(request, AsyncRequestBody.fromString(prefix)).get();
+    }
+
+    private List<List<String>> listKeys(String keyPrefix) throws ExecutionException, InterruptedException {
+        List<List<String>> pages = new ArrayList<>();
+        String continuationToken = null;
+        do {
+            ListObjectsV2Response page = s3AsyncClient.listObjectsV2(ListObjectsV2Request.builder()
+                    .bucket(bucketName)
+                    .prefix(keyPrefix)
+                    .continuationToken(continuationToken)
+                    .build()).get();
+            if (!page.contents().isEmpty()) {
+                pages.add(page.contents().stream().map(S3Object::key).collect(Collectors.toList()));
+            }
+            continuationToken = page.nextContinuationToken();
+        } while (continuationToken != null);
+        return pages;
+    }
+
+    private int deleteObjects(String... keys) throws ExecutionException, InterruptedException {
+        List<ObjectIdentifier> objects = Arrays.stream(keys)
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .collect(Collectors.toList());
+        DeleteObjectsResponse response = s3AsyncClient.deleteObjects(DeleteObjectsRequest.builder()
+                .bucket(bucketName)
+                .delete(Delete.builder().objects(objects).quiet(false).build())
+                .build()).get();
+        response.errors().forEach(error -> logger.warn("Unable to delete {} from S3: {}", error.key(), error.message()));
+        return response.deleted().size();
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.fs.CrawledFile;
+import com.atlassian.migration.datacenter.core.fs.Crawler;
+import com.atlassian.migration.datacenter.core.util.UploadQueue;
+import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
+import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Queues the files of a {@link DatabaseDump} for upload while the dump is still running. A parallel pg_dump logs
+ * a {@code finished item <dump id> ...} line when a worker has finished writing the data file of a table
+ * ({@code <dump id>.dat.gz}), so the file can be uploaded while the remaining tables are dumped. Once pg_dump has
+ * exited, every file which hasn't been queued yet, including the table of contents, is queued. A dump with a
+ * single job doesn't log finished items, so all its files are uploaded after it has finished. The tables pg_dump
+ * starts and finishes dumping are reported to the {@link DatabaseMigrationProgress} of the dump.
+ */
+public class DatabaseDumpCrawler implements Crawler {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseDumpCrawler.class);
+    private static final Pattern FINISHED_ITEM = Pattern.compile("finished item (\\d+) ");
+    private static final Pattern FINISHED_TABLE_DATA = Pattern.compile("finished item (\\d+) TABLE DATA (\\S+)");
+    private static final Pattern DUMPING_TABLE = Pattern.compile("dumping contents of table \"([^\"]+)\"");
+    private static final String[] DATA_FILE_SUFFIXES = {".dat.gz", ".dat"};
+    private static final String TABLE_OF_CONTENTS = "toc.dat";
+
+    private final DatabaseDump dump;
+    private final FileSystemMigrationReport report;
+    private final Set<Path> queuedFiles = new HashSet<>();
+
+    public DatabaseDumpCrawler(DatabaseDump dump, FileSystemMigrationReport report) {
+        this.dump = dump;
+        this.report = report;
+    }
+
+    @Override
+    public void crawlDirectory(Path start, UploadQueue<CrawledFile> queue) throws IOException {
+        try {
+            try (BufferedReader log = new BufferedReader(new InputStreamReader(dump.getLog(), StandardCharsets.UTF_8))) {
+                for (String line = log.readLine(); line != null; line = log.readLine()) {
+                    logDumpOutput(line);
+                    reportProgress(line);
+                    Matcher finishedItem = FINISHED_ITEM.matcher(line);
+                    if (finishedItem.find()) {
+                        queueDataFile(start, finishedItem.group(1), queue);
+                    }
+                }
+            }
+            dump.waitForCompletion();
+            logger.info("Database dump finished after {} of its files were queued, queueing the remaining files", queuedFiles.size());
+            queueRemainingFiles(start, queue);
+        } catch (InvalidMigrationStageError e) {
+            throw new DatabaseMigrationFailure("Invalid migration stage when the database dump finished", e);
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while queueing files of database dump {}", start, e);
+            Thread.currentThread().interrupt();
+            // the upload has to fail, as not all files of the dump are queued
+            final InterruptedIOException failure = new InterruptedIOException("Interrupted while queueing files of database dump " + start);
+            failure.initCause(e);
+            throw failure;
+        } finally {
+            try {
+                report.reportCrawlingFinished();
+                queue.finish();
+            } catch (InterruptedException e) {
+                logger.error("Failed to finalise upload queue.", e);
+            }
+        }
+    }
+
+    private void queueDataFile(Path start, String dumpId, UploadQueue<CrawledFile> queue) throws IOException, InterruptedException {
+        for (String suffix : DATA_FILE_SUFFIXES) {
+            Path file = start.resolve(dumpId + suffix);
+            if (Files.isRegularFile(file)) {
+                queueFile(file, queue);
+                return;
+            }
+        }
+        logger.debug("No data file found for finished dump item {}, it will be uploaded after the dump", dumpId);
+    }
+
+    /**
+     * The table of contents is queued first, as the restore of the schema can start as soon as it is uploaded
+     */
+    private void queueRemainingFiles(Path start, UploadQueue<CrawledFile> queue) throws IOException, InterruptedException {
+        Path tableOfContents = start.resolve(TABLE_OF_CONTENTS);
+        if (Files.isRegularFile(tableOfContents)) {
+            queueFile(tableOfContents, queue);
+        }
+        try (DirectoryStream<Path> paths = Files.newDirectoryStream(start)) {
+            for (Path file : paths) {
+                if (Files.isRegularFile(file)) {
+                    queueFile(file, queue);
+                }
+            }
+        }
+    }
+
+    private void queueFile(Path file, UploadQueue<CrawledFile> queue) throws IOException, InterruptedException {
+        if (!queuedFiles.add(file)) {
+            return;
+        }
+        logger.trace("queueing database dump file: {}", file);
+        final CrawledFile crawledFile = CrawledFile.of(file);
+        queue.put(crawledFile);
+        report.reportFileFound();
+        report.reportBytesFound(crawledFile.getSize());
+    }
+
+    private void reportProgress(String line) {
+        Matcher dumpingTable = DUMPING_TABLE.matcher(line);
+        if (dumpingTable.find()) {
+            dump.getProgress().tableDumpStarted(dumpingTable.group(1));
+            return;
+        }
+        Matcher finishedTableData = FINISHED_TABLE_DATA.matcher(line);
+        if (finishedTableData.find()) {
+            dump.getProgress().tableDumped(Integer.parseInt(finishedTableData.group(1)), finishedTableData.group(2));
+        }
+    }
+
+    private static void logDumpOutput(String line) {
+        if (line.toLowerCase().contains("error")) {
+            logger.error(line);
+        } else {
+            logger.debug(line);
+        }
+    }
+}
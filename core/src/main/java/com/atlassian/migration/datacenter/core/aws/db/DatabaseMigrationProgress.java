@@ -0,0 +1,341 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.db.TableEstimate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Progress of a database migration, per table. The export is followed from the verbose output of pg_dump, the
+ * upload from the files of the dump which have been uploaded and the restore from the tables the migration helper
+ * reports as restored. The actual size of a table is only known once it has been dumped and compressed, so the
+ * rates and remaining times of every phase are based on the table sizes estimated by the database statistics.
+ */
+public class DatabaseMigrationProgress {
+    public enum TableStatus {
+        PENDING, DUMPING, DUMPED, UPLOADED, RESTORED
+    }
+
+    private enum Phase {
+        EXPORT(TableStatus.DUMPED), UPLOAD(TableStatus.UPLOADED), RESTORE(TableStatus.RESTORED);
+
+        private final TableStatus completedStatus;
+
+        Phase(TableStatus completedStatus) {
+            this.completedStatus = completedStatus;
+        }
+    }
+
+    private static final Pattern DATA_FILE = Pattern.compile("^(\\d+)\\.dat(\\.gz)?$");
+    private static final TableEstimate UNKNOWN_ESTIMATE = new TableEstimate(0, 0);
+
+    private Clock clock = Clock.systemUTC();
+    private final Map<String, Table> tables = new TreeMap<>();
+    private final Map<Integer, Table> tablesByDumpId = new HashMap<>();
+    private final Map<Phase, Instant> phaseStarts = new EnumMap<>(Phase.class);
+    private final Map<Phase, Instant> phaseEnds = new EnumMap<>(Phase.class);
+    private boolean singleJobDump;
+    private long uploadedBytes;
+
+    /**
+     * @param estimates estimated size of every table to be dumped, by schema qualified table name
+     * @param jobs      number of tables pg_dump dumps at the same time
+     */
+    public synchronized void exportStarted(Map<String, TableEstimate> estimates, int jobs) {
+        estimates.forEach((name, estimate) -> tables.put(name, new Table(name, estimate)));
+        singleJobDump = jobs == 1;
+        start(Phase.EXPORT);
+    }
+
+    /**
+     * A dump with a single job only logs when it starts dumping a table, so the table it was dumping before is
+     * complete at that point.
+     */
+    public synchronized void tableDumpStarted(String tableName) {
+        if (singleJobDump) {
+            advanceAll(TableStatus.DUMPING, TableStatus.DUMPED);
+        }
+        advance(find(tableName, TableStatus.PENDING), TableStatus.DUMPING);
+    }
+
+    /**
+     * @param tableName name of the table as logged by pg_dump, which may not be qualified by its schema
+     */
+    public synchronized void tableDumped(int dumpId, String tableName) {
+        Table table = find(tableName, TableStatus.DUMPING);
+        tablesByDumpId.put(dumpId, table);
+        advance(table, TableStatus.DUMPED);
+    }
+
+    public synchronized void exportFinished() {
+        advanceAll(TableStatus.DUMPING, TableStatus.DUMPED);
+        advanceAll(TableStatus.PENDING, TableStatus.DUMPED);
+        phaseEnds.put(Phase.EXPORT, Instant.now(clock));
+    }
+
+    public synchronized void uploadStarted() {
+        start(Phase.UPLOAD);
+    }
+
+    /**
+     * Files are only matched to tables when pg_dump has logged which table their dump id belongs to, which it only
+     * does for dumps with more than one job. The other tables are uploaded once the whole upload is finished.
+     */
+    public synchronized void fileUploaded(String fileName, long bytes) {
+        uploadedBytes += bytes;
+        Matcher dataFile = DATA_FILE.matcher(fileName);
+        if (dataFile.matches()) {
+            Table table = tablesByDumpId.get(Integer.parseInt(dataFile.group(1)));
+            if (table != null) {
+                advance(table, TableStatus.UPLOADED);
+            }
+        }
+    }
+
+    public synchronized void uploadFinished() {
+        advanceAll(TableStatus.DUMPED, TableStatus.UPLOADED);
+        phaseEnds.put(Phase.UPLOAD, Instant.now(clock));
+    }
+
+    public synchronized void restoreStarted() {
+        start(Phase.RESTORE);
+    }
+
+    public synchronized boolean isRestoring() {
+        return phaseStarts.containsKey(Phase.RESTORE) && !phaseEnds.containsKey(Phase.RESTORE);
+    }
+
+    public synchronized void tablesRestored(Collection<String> tableNames) {
+        tableNames.forEach(name -> advance(find(name, TableStatus.UPLOADED), TableStatus.RESTORED));
+    }
+
+    public synchronized void restoreFinished() {
+        advanceAll(TableStatus.UPLOADED, TableStatus.RESTORED);
+        phaseEnds.put(Phase.RESTORE, Instant.now(clock));
+    }
+
+    public synchronized Report getReport() {
+        List<TableProgress> tableProgress = new ArrayList<>(tables.size());
+        tables.values().forEach(table -> tableProgress.add(new TableProgress(table)));
+        return new Report(tableProgress, phaseProgress(Phase.EXPORT), phaseProgress(Phase.UPLOAD), phaseProgress(Phase.RESTORE), uploadedBytes);
+    }
+
+    synchronized void setClock(Clock clock) {
+        this.clock = clock;
+    }
+
+    private PhaseProgress phaseProgress(Phase phase) {
+        Predicate<Table> completed = table -> table.status.compareTo(phase.completedStatus) >= 0;
+        long totalBytes = tables.values().stream().mapToLong(table -> table.estimate.getBytes()).sum();
+        long completedBytes = tables.values().stream().filter(completed).mapToLong(table -> table.estimate.getBytes()).sum();
+        int completedTables = (int) tables.values().stream().filter(completed).count();
+
+        Instant start = phaseStarts.get(phase);
+        Instant end = phaseEnds.get(phase);
+        if (start == null) {
+            return new PhaseProgress(completedTables, tables.size(), completedBytes, totalBytes, 0, null);
+        }
+        double elapsedSeconds = Duration.between(start, end != null ? end : Instant.now(clock)).toMillis() / 1000.0;
+        double bytesPerSecond = elapsedSeconds > 0 ? completedBytes / elapsedSeconds : 0;
+
+        Long secondsRemaining = null;
+        if (end != null) {
+            secondsRemaining = 0L;
+        } else if (bytesPerSecond > 0) {
+            secondsRemaining = (long) Math.ceil((totalBytes - completedBytes) / bytesPerSecond);
+        }
+        return new PhaseProgress(completedTables, tables.size(), completedBytes, totalBytes, bytesPerSecond, secondsRemaining);
+    }
+
+    private void start(Phase phase) {
+        phaseStarts.putIfAbsent(phase, Instant.now(clock));
+    }
+
+    /**
+     * pg_dump logs table data items without their schema, so a table which isn't qualified is matched to the table
+     * with that name in any schema, preferring the one in the expected status. Tables without an estimate, for
+     * example those created after the dump started, are tracked without a size.
+     */
+    private Table find(String tableName, TableStatus expectedStatus) {
+        Table table = tables.get(tableName);
+        if (table != null) {
+            return table;
+        }
+        String suffix = "." + tableName;
+        Table candidate = null;
+        for (Table t : tables.values()) {
+            if (t.name.endsWith(suffix) && (candidate == null || t.status == expectedStatus)) {
+                candidate = t;
+            }
+        }
+        if (candidate == null) {
+            candidate = new Table(tableName, UNKNOWN_ESTIMATE);
+            tables.put(tableName, candidate);
+        }
+        return candidate;
+    }
+
+    private static void advance(Table table, TableStatus status) {
+        if (table.status.compareTo(status) < 0) {
+            table.status = status;
+        }
+    }
+
+    private void advanceAll(TableStatus from, TableStatus to) {
+        tables.values().stream().filter(table -> table.status == from).forEach(table -> table.status = to);
+    }
+
+    private static class Table {
+        private final String name;
+        private final TableEstimate estimate;
+        private TableStatus status = TableStatus.PENDING;
+
+        Table(String name, TableEstimate estimate) {
+            this.name = name;
+            this.estimate = estimate;
+        }
+    }
+
+    public static class TableProgress {
+        private final String name;
+        private final TableStatus status;
+        private final long estimatedRows;
+        private final long estimatedBytes;
+
+        TableProgress(Table table) {
+            this.name = table.name;
+            this.status = table.status;
+            this.estimatedRows = table.estimate.getRows();
+            this.estimatedBytes = table.estimate.getBytes();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public TableStatus getStatus() {
+            return status;
+        }
+
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        public long getEstimatedBytes() {
+            return estimatedBytes;
+        }
+    }
+
+    /**
+     * Progress of the export, upload or restore of all tables. The remaining time is unknown until the first table
+     * of the phase is complete.
+     */
+    public static class PhaseProgress {
+        private final int completedTables;
+        private final int totalTables;
+        private final long completedBytes;
+        private final long totalBytes;
+        private final double bytesPerSecond;
+        private final Long secondsRemaining;
+
+        PhaseProgress(int completedTables, int totalTables, long completedBytes, long totalBytes, double bytesPerSecond, Long secondsRemaining) {
+            this.completedTables = completedTables;
+            this.totalTables = totalTables;
+            this.completedBytes = completedBytes;
+            this.totalBytes = totalBytes;
+            this.bytesPerSecond = bytesPerSecond;
+            this.secondsRemaining = secondsRemaining;
+        }
+
+        public int getCompletedTables() {
+            return completedTables;
+        }
+
+        public int getTotalTables() {
+            return totalTables;
+        }
+
+        public long getCompletedBytes() {
+            return completedBytes;
+        }
+
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        public double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        public Long getSecondsRemaining() {
+            return secondsRemaining;
+        }
+    }
+
+    public static class Report {
+        private final List<TableProgress> tables;
+        private final PhaseProgress export;
+        private final PhaseProgress upload;
+        private final PhaseProgress restore;
+        private final long uploadedBytes;
+
+        Report(List<TableProgress> tables, PhaseProgress export, PhaseProgress upload, PhaseProgress restore, long uploadedBytes) {
+            this.tables = Collections.unmodifiableList(tables);
+            this.export = export;
+            this.upload = upload;
+            this.restore = restore;
+            this.uploadedBytes = uploadedBytes;
+        }
+
+        public List<TableProgress> getTables() {
+            return tables;
+        }
+
+        public PhaseProgress getExport() {
+            return export;
+        }
+
+        public PhaseProgress getUpload() {
+            return upload;
+        }
+
+        public PhaseProgress getRestore() {
+            return restore;
+        }
+
+        /**
+         * @return compressed bytes of the dump uploaded so far
+         */
+        public long getUploadedBytes() {
+            return uploadedBytes;
+        }
+    }
+}
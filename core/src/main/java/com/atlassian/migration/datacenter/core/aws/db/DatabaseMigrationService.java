@@ -19,6 +19,8 @@ package com.atlassian.migration.datacenter.core.aws.db;
 import com.atlassian.migration.datacenter.core.aws.db.restore.DatabaseRestoreStageTransitionCallback;
 import com.atlassian.migration.datacenter.core.aws.db.restore.SsmPsqlDatabaseRestoreService;
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpSettings;
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpTuner;
 import com.atlassian.migration.datacenter.core.db.DatabaseMigrationJobRunner;
 import com.atlassian.migration.datacenter.core.fs.FilesystemUploader;
 import com.atlassian.migration.datacenter.core.util.MigrationRunner;
@@ -32,11 +34,18 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DatabaseMigrationService
 {
     private static Logger logger = LoggerFactory.getLogger(DatabaseMigrationService.class);
+    private static final boolean PIPELINED_UPLOAD = Boolean.parseBoolean(System.getProperty("com.atlassian.migration.datacenter.db.pipelinedUpload", "true"));
+    private static final long RESTORE_PROGRESS_REFRESH_MILLIS = 10_000;
 
     private final Path tempDirectory;
     private final DatabaseArchivalService databaseArchivalService;
@@ -48,6 +57,10 @@ public class DatabaseMigrationService
     private final MigrationService migrationService;
     private final MigrationRunner migrationRunner;
     private final AWSMigrationHelperDeploymentService  migrationHelperDeploymentService;
+    private final DatabaseDumpTuner dumpTuner;
+    private volatile DatabaseDumpSettings dumpSettings = DatabaseDumpSettings.automatic();
+    private volatile DatabaseMigrationProgress progress = new DatabaseMigrationProgress();
+    private final AtomicLong lastRestoreProgressRefresh = new AtomicLong();
 
     private final AtomicBoolean isRunning = new AtomicBoolean(false);
 
@@ -59,7 +72,8 @@ public class DatabaseMigrationService
                                     DatabaseArtifactS3UploadService s3UploadService,
                                     DatabaseUploadStageTransitionCallback uploadStageTransitionCallback,
                                     SsmPsqlDatabaseRestoreService restoreService,
-                                    DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback, AWSMigrationHelperDeploymentService migrationHelperDeploymentService)
+                                    DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback, AWSMigrationHelperDeploymentService migrationHelperDeploymentService,
+                                    DatabaseDumpTuner dumpTuner)
     {
         this.tempDirectory = tempDirectory;
         this.databaseArchivalService = databaseArchivalService;
@@ -71,17 +85,132 @@ public class DatabaseMigrationService
         this.migrationService = migrationService;
         this.migrationRunner = migrationRunner;
         this.migrationHelperDeploymentService = migrationHelperDeploymentService;
+        this.dumpTuner = dumpTuner;
+    }
+
+    /**
+     * @return the number of jobs and compression level requested for the next database dump
+     */
+    public DatabaseDumpSettings getDumpSettings() {
+        return dumpSettings;
+    }
+
+    /**
+     * Sets the number of jobs and compression level of the next database dump. Settings left automatic are picked
+     * by the {@link DatabaseDumpTuner} when the dump starts.
+     *
+     * @throws IllegalArgumentException if the settings are out of range
+     */
+    public void setDumpSettings(DatabaseDumpSettings settings) {
+        settings.validate();
+        this.dumpSettings = settings;
+    }
+
+    /**
+     * @return progress of every table in the current or last database migration. While the database is being
+     * restored, the tables restored by the migration helper are read from the migration bucket at most every
+     * {@value #RESTORE_PROGRESS_REFRESH_MILLIS} milliseconds.
+     */
+    public DatabaseMigrationProgress.Report getProgress() {
+        DatabaseMigrationProgress current = progress;
+        if (current.isRestoring()) {
+            refreshRestoredTables(current);
+        }
+        return current.getReport();
+    }
+
+    private void refreshRestoredTables(DatabaseMigrationProgress current) {
+        long now = System.currentTimeMillis();
+        long lastRefresh = lastRestoreProgressRefresh.get();
+        if (now - lastRefresh < RESTORE_PROGRESS_REFRESH_MILLIS || !lastRestoreProgressRefresh.compareAndSet(lastRefresh, now)) {
+            return;
+        }
+        try {
+            current.tablesRestored(s3UploadService.getRestoredTables(migrationHelperDeploymentService.getMigrationS3BucketName()));
+        } catch (ExecutionException e) {
+            logger.warn("Unable to read restored tables from the migration bucket", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
      * Start database dump and upload to S3 bucket. This is a blocking operation and should be started from ExecutorService
      * or preferably from ScheduledJob. The status of the migration can be queried via getStatus().
+     * <p>
+     * Unless the pipelined upload is disabled, the files of the dump are uploaded while the dump is still running,
+     * and the restore is started as soon as the dump is complete, while its last files are still being uploaded.
+     * The migration helper restores each table once its file is in the bucket, so the downtime isn't the sum of the
+     * dump, upload, download and restore time.
      */
     public FileSystemMigrationErrorReport performMigration() throws DatabaseMigrationFailure, InvalidMigrationStageError
     {
         migrationService.transition(MigrationStage.DB_MIGRATION_EXPORT);
 
-        Path pathToDatabaseFile = databaseArchivalService.archiveDatabase(tempDirectory, stageTransitionCallback);
+        DatabaseMigrationProgress progress = new DatabaseMigrationProgress();
+        this.progress = progress;
+
+        return PIPELINED_UPLOAD ? migrateWhileDumping(progress) : migrateAfterDumping(progress);
+    }
+
+    private FileSystemMigrationErrorReport migrateWhileDumping(DatabaseMigrationProgress progress) throws InvalidMigrationStageError
+    {
+        String bucketName = migrationHelperDeploymentService.getMigrationS3BucketName();
+
+        DatabaseDump dump = databaseArchivalService.startDatabaseArchive(tempDirectory, dumpTuner.resolve(dumpSettings), progress, stageTransitionCallback);
+        CompletableFuture<String> restoreCommand = dump.getCompletion().thenApplyAsync(ignored -> {
+            progress.restoreStarted();
+            return restoreService.startRestore();
+        });
+
+        FileSystemMigrationErrorReport report;
+        try {
+            report = s3UploadService.upload(dump, bucketName);
+        } catch (FilesystemUploader.FileUploadException e) {
+            failIfDumpFailed(dump);
+            migrationService.error(e);
+            throw new DatabaseMigrationFailure("Error when uploading database dump to S3", e);
+        }
+        if (!dump.getCompletion().isDone()) {
+            DatabaseMigrationFailure failure = new DatabaseMigrationFailure("Database dump was uploaded before it was complete");
+            migrationService.error(failure);
+            throw failure;
+        }
+        failIfDumpFailed(dump);
+        migrationService.transition(MigrationStage.DB_MIGRATION_UPLOAD_WAIT);
+
+        migrationService.transition(MigrationStage.DATA_MIGRATION_IMPORT);
+        try {
+            restoreService.awaitRestore(restoreCommand.join(), restoreStageTransitionCallback);
+            progress.restoreFinished();
+        } catch (Exception e) {
+            migrationService.error(e);
+            throw new DatabaseMigrationFailure("Error when restoring database", e);
+        }
+        migrationService.transition(MigrationStage.DB_MIGRATION_UPLOAD_WAIT);
+
+        return report;
+    }
+
+    /**
+     * Reports a failed pg_dump as such, rather than as a failure of the upload or the restore which depend on it
+     */
+    private void failIfDumpFailed(DatabaseDump dump) {
+        if (!dump.getCompletion().isCompletedExceptionally()) {
+            return;
+        }
+        try {
+            dump.getCompletion().join();
+        } catch (CompletionException | CancellationException e) {
+            Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+            migrationService.error(cause);
+            throw new DatabaseMigrationFailure("Error when dumping database", cause);
+        }
+    }
+
+    private FileSystemMigrationErrorReport migrateAfterDumping(DatabaseMigrationProgress progress) throws InvalidMigrationStageError
+    {
+        Path pathToDatabaseFile = databaseArchivalService.archiveDatabase(tempDirectory, dumpTuner.resolve(dumpSettings), progress, stageTransitionCallback);
 
         migrationService.transition(MigrationStage.DB_MIGRATION_EXPORT_WAIT);
 
@@ -92,7 +221,7 @@ public class DatabaseMigrationService
         String bucketName = migrationHelperDeploymentService.getMigrationS3BucketName();
 
         try {
-            report = s3UploadService.upload(pathToDatabaseFile, bucketName, this.uploadStageTransitionCallback);
+            report = s3UploadService.upload(pathToDatabaseFile, bucketName, progress, this.uploadStageTransitionCallback);
         } catch (FilesystemUploader.FileUploadException e) {
             migrationService.error(e);
             throw new DatabaseMigrationFailure("Error when uploading database dump to S3", e);
@@ -101,7 +230,9 @@ public class DatabaseMigrationService
 
         migrationService.transition(MigrationStage.DATA_MIGRATION_IMPORT);
         try {
+            progress.restoreStarted();
             restoreService.restoreDatabase(restoreStageTransitionCallback);
+            progress.restoreFinished();
         } catch (Exception e) {
             migrationService.error(e);
             throw new DatabaseMigrationFailure("Error when restoring database", e);
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.fs.UploadListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Deletes every file of the database dump as soon as it has been uploaded, so the dump doesn't take up more local
+ * disk space than the files which are still being written or waiting to be uploaded. Uploaded files are reported
+ * to the progress of the migration.
+ */
+class UploadedFileRemover implements UploadListener {
+    private static final Logger logger = LoggerFactory.getLogger(UploadedFileRemover.class);
+
+    private final Path root;
+    private final DatabaseMigrationProgress progress;
+
+    UploadedFileRemover(Path root, DatabaseMigrationProgress progress) {
+        this.root = root;
+        this.progress = progress;
+    }
+
+    @Override
+    public void fileUploaded(String key, long size) {
+        Path file = root.resolve(key);
+        progress.fileUploaded(file.getFileName().toString(), size);
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.warn("Unable to delete uploaded file {}", file, e);
+        }
+    }
+}
@@ -23,23 +23,29 @@ import com.atlassian.migration.datacenter.core.fs.download.s3sync.EnsureSuccessf
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
 
+import java.time.Duration;
 import java.util.Collections;
 
 public class SsmPsqlDatabaseRestoreService {
 
-    private final int maxCommandRetries;
+    /**
+     * Matches the execution timeout of the restore document on the migration helper
+     */
+    private static final Duration RESTORE_TIMEOUT = Duration.ofHours(12);
+
+    private final Duration restoreTimeout;
 
     private final SSMApi ssm;
     private final AWSMigrationHelperDeploymentService migrationHelperDeploymentService;
 
-    SsmPsqlDatabaseRestoreService(SSMApi ssm, int maxCommandRetries, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
+    SsmPsqlDatabaseRestoreService(SSMApi ssm, Duration restoreTimeout, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
         this.ssm = ssm;
-        this.maxCommandRetries = maxCommandRetries;
+        this.restoreTimeout = restoreTimeout;
         this.migrationHelperDeploymentService = migrationHelperDeploymentService;
     }
 
     public SsmPsqlDatabaseRestoreService(SSMApi ssm, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
-        this(ssm, 10, migrationHelperDeploymentService);
+        this(ssm, RESTORE_TIMEOUT, migrationHelperDeploymentService);
     }
 
     public void restoreDatabase(DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback) throws DatabaseMigrationFailure, InvalidMigrationStageError {
@@ -50,12 +56,39 @@ public class SsmPsqlDatabaseRestoreService {
 
         String commandId = ssm.runSSMDocument(dbRestorePlaybook, migrationInstanceId, Collections.emptyMap());
 
+        awaitRestore(commandId, migrationInstanceId, restoreStageTransitionCallback);
+    }
+
+    /**
+     * Starts the restore on the migration helper without waiting for it to finish. The helper restores the schema
+     * once the table of contents of the dump is in the bucket, and then each table as soon as its file has been
+     * uploaded, so the restore can be started while the rest of the dump is still being uploaded.
+     *
+     * @return id of the restore command, to be passed to {@link #awaitRestore(String, DatabaseRestoreStageTransitionCallback)}
+     */
+    public String startRestore() throws DatabaseMigrationFailure {
+        String dbRestorePlaybook = migrationHelperDeploymentService.getDbRestoreDocument();
+        String migrationInstanceId = migrationHelperDeploymentService.getMigrationHostInstanceId();
+
+        return ssm.runSSMDocument(dbRestorePlaybook, migrationInstanceId, Collections.emptyMap());
+    }
+
+    /**
+     * Waits for a restore started by {@link #startRestore()} to finish
+     */
+    public void awaitRestore(String commandId, DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback) throws DatabaseMigrationFailure, InvalidMigrationStageError {
+        restoreStageTransitionCallback.assertInStartingStage();
+
+        awaitRestore(commandId, migrationHelperDeploymentService.getMigrationHostInstanceId(), restoreStageTransitionCallback);
+    }
+
+    private void awaitRestore(String commandId, String migrationInstanceId, DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback) throws DatabaseMigrationFailure, InvalidMigrationStageError {
         SuccessfulSSMCommandConsumer consumer = new EnsureSuccessfulSSMCommandConsumer(ssm, commandId, migrationInstanceId);
 
         restoreStageTransitionCallback.transitionToServiceWaitStage();
 
         try {
-            consumer.handleCommandOutput(maxCommandRetries);
+            consumer.handleCommandOutput(restoreTimeout);
             restoreStageTransitionCallback.transitionToServiceNextStage();
         } catch (SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException | SuccessfulSSMCommandConsumer.SSMCommandInvocationProcessingError e) {
             restoreStageTransitionCallback.transitionToServiceErrorStage();
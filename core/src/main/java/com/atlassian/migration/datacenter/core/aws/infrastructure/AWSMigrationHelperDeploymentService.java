@@ -17,7 +17,6 @@
 package com.atlassian.migration.datacenter.core.aws.infrastructure;
 
 import com.atlassian.migration.datacenter.core.aws.CfnApi;
-import com.atlassian.migration.datacenter.dto.MigrationContext;
 import com.atlassian.migration.datacenter.spi.MigrationService;
 import com.atlassian.migration.datacenter.spi.MigrationStage;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
@@ -84,9 +83,7 @@ public class AWSMigrationHelperDeploymentService extends CloudformationDeploymen
         super.deployCloudformationStack(MIGRATION_HELPER_TEMPLATE_URL, migrationStackDeploymentId, params);
         migrationService.transition(MigrationStage.PROVISION_MIGRATION_STACK_WAIT);
 
-        final MigrationContext context = migrationService.getCurrentContext();
-        context.setHelperStackDeploymentId(migrationStackDeploymentId);
-        context.save();
+        migrationService.updateContext(context -> context.setHelperStackDeploymentId(migrationStackDeploymentId));
     }
 
     private void resetStackOutputs() {
@@ -18,7 +18,6 @@ package com.atlassian.migration.datacenter.core.aws.infrastructure;
 
 import com.atlassian.migration.datacenter.core.aws.CfnApi;
 import com.atlassian.migration.datacenter.core.aws.db.restore.TargetDbCredentialsStorageService;
-import com.atlassian.migration.datacenter.dto.MigrationContext;
 import com.atlassian.migration.datacenter.spi.MigrationService;
 import com.atlassian.migration.datacenter.spi.MigrationStage;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
@@ -141,9 +140,7 @@ public class QuickstartDeploymentService extends CloudformationDeploymentService
     private void addDeploymentIdToMigrationContext(String deploymentId) {
         logger.info("Storing stack name in migration context");
 
-        MigrationContext context = migrationService.getCurrentContext();
-        context.setApplicationDeploymentId(deploymentId);
-        context.save();
+        migrationService.updateContext(context -> context.setApplicationDeploymentId(deploymentId));
     }
 
     @Override
@@ -26,18 +26,26 @@ import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
 import software.amazon.awssdk.services.ssm.model.SendCommandRequest;
 import software.amazon.awssdk.services.ssm.model.SendCommandResponse;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 public class SSMApi {
 
     private static final Logger logger = LoggerFactory.getLogger(SSMApi.class);
 
-    private Supplier<SsmClient> clientFactory;
+    private final Supplier<SsmClient> clientFactory;
+    private final SsmCommandTracker commandTracker;
     private final AWSMigrationHelperDeploymentService migrationHelperDeploymentService;
 
-    public SSMApi(Supplier<SsmClient> clientFactory, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
+    /**
+     * @param clientFactory  supplies the SSM client for each call. The supplier is expected to cache the client.
+     * @param commandTracker polls running commands until they finish
+     */
+    public SSMApi(Supplier<SsmClient> clientFactory, SsmCommandTracker commandTracker, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
         this.clientFactory = clientFactory;
+        this.commandTracker = commandTracker;
         this.migrationHelperDeploymentService = migrationHelperDeploymentService;
     }
 
@@ -95,4 +103,20 @@ public class SSMApi {
 
         return response;
     }
+
+    /**
+     * Waits for the specified command to finish on the specified EC2 instance without blocking the calling thread.
+     *
+     * @param commandId           The id of the command from calling {@link SSMApi#runSSMDocument(String, String, Map)}
+     * @param targetEc2InstanceId the EC2 instance the command is running on
+     * @param timeout             how long the command may take before it is considered failed
+     * @return future completed with the invocation once the command has succeeded. It is completed exceptionally with an
+     * {@link SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException} when the command fails or doesn't
+     * finish before the timeout.
+     * @see SsmCommandTracker#track(String, String, Duration)
+     */
+    public CompletableFuture<GetCommandInvocationResponse> awaitCommand(String commandId, String targetEc2InstanceId, Duration timeout) {
+        logger.debug("waiting up to {} for command {} on instance {}", timeout, commandId, targetEc2InstanceId);
+        return commandTracker.track(commandId, targetEc2InstanceId, timeout);
+    }
 }
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.ssm;
+
+import com.atlassian.migration.datacenter.core.aws.ssm.SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException;
+import com.atlassian.util.concurrent.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
+import software.amazon.awssdk.services.ssm.model.CommandInvocationStatus;
+import software.amazon.awssdk.services.ssm.model.GetCommandInvocationRequest;
+import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
+import software.amazon.awssdk.services.ssm.model.InvocationDoesNotExistException;
+
+import javax.annotation.PreDestroy;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Waits for SSM commands to finish without holding a thread per command. The invocations of all tracked commands
+ * are polled from a single scheduler with the {@link SsmAsyncClient}. Polls start at a short interval, so short
+ * commands complete within a second or two, and back off to a longer interval for long running commands such as
+ * a database restore. Every command has a deadline rather than a number of polls, so how long a command may run
+ * doesn't depend on the polling interval.
+ */
+public class SsmCommandTracker {
+    private static final Logger logger = LoggerFactory.getLogger(SsmCommandTracker.class);
+
+    static final Duration INITIAL_POLL_DELAY = Duration.ofMillis(500);
+    static final Duration MAX_POLL_DELAY = Duration.ofSeconds(15);
+
+    private static final Set<CommandInvocationStatus> RUNNING_STATUSES = EnumSet.of(
+            CommandInvocationStatus.PENDING,
+            CommandInvocationStatus.IN_PROGRESS,
+            CommandInvocationStatus.DELAYED,
+            CommandInvocationStatus.CANCELLING);
+
+    private final Supplier<SsmAsyncClient> clientFactory;
+    private final ScheduledExecutorService scheduler;
+    private final Clock clock;
+    private final Duration initialPollDelay;
+    private final Duration maxPollDelay;
+    private final Set<TrackedCommand> trackedCommands = ConcurrentHashMap.newKeySet();
+
+    public SsmCommandTracker(Supplier<SsmAsyncClient> clientFactory) {
+        this(clientFactory, Executors.newSingleThreadScheduledExecutor(), Clock.systemUTC(), INITIAL_POLL_DELAY, MAX_POLL_DELAY);
+    }
+
+    SsmCommandTracker(Supplier<SsmAsyncClient> clientFactory, ScheduledExecutorService scheduler, Clock clock, Duration initialPollDelay, Duration maxPollDelay) {
+        this.clientFactory = clientFactory;
+        this.scheduler = scheduler;
+        this.clock = clock;
+        this.initialPollDelay = initialPollDelay;
+        this.maxPollDelay = maxPollDelay;
+    }
+
+    /**
+     * Polls the invocation of a command until it has finished or the timeout has passed. Cancelling the returned
+     * future stops the polling.
+     *
+     * @return future completed with the invocation once the command has succeeded, or completed exceptionally with
+     * an {@link UnsuccessfulSSMCommandInvocationException} if it has failed or is still running after the timeout
+     */
+    public CompletableFuture<GetCommandInvocationResponse> track(String commandId, String instanceId, Duration timeout) {
+        TrackedCommand command = new TrackedCommand(commandId, instanceId, Instant.now(clock).plus(timeout));
+        trackedCommands.add(command);
+        command.result.whenComplete((response, error) -> trackedCommands.remove(command));
+        command.schedule(initialPollDelay);
+        return command.result;
+    }
+
+    /**
+     * Stops polling and fails the commands which are still tracked
+     */
+    @PreDestroy
+    public void close() {
+        scheduler.shutdownNow();
+        trackedCommands.forEach(command -> command.result.completeExceptionally(new CancellationException("SSM command tracker has been closed")));
+    }
+
+    private class TrackedCommand {
+        private final String commandId;
+        private final String instanceId;
+        private final Instant deadline;
+        private final CompletableFuture<GetCommandInvocationResponse> result = new CompletableFuture<>();
+        private Duration pollDelay;
+        private GetCommandInvocationResponse latest;
+
+        TrackedCommand(String commandId, String instanceId, Instant deadline) {
+            this.commandId = commandId;
+            this.instanceId = instanceId;
+            this.deadline = deadline;
+        }
+
+        void schedule(Duration delay) {
+            pollDelay = delay;
+            try {
+                scheduler.schedule(this::poll, delay.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                result.completeExceptionally(e);
+            }
+        }
+
+        private void poll() {
+            if (result.isDone()) {
+                return;
+            }
+            GetCommandInvocationRequest request = GetCommandInvocationRequest.builder()
+                    .commandId(commandId)
+                    .instanceId(instanceId)
+                    .build();
+            try {
+                clientFactory.get().getCommandInvocation(request).whenComplete(this::handle);
+            } catch (RuntimeException e) {
+                handle(null, e);
+            }
+        }
+
+        private void handle(GetCommandInvocationResponse response, Throwable error) {
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                if (cause instanceof InvocationDoesNotExistException) {
+                    logger.debug("Command {} has not reached instance {} yet", commandId, instanceId);
+                } else {
+                    logger.warn("Unable to get status of command {}, will retry", commandId, cause);
+                }
+            } else {
+                latest = response;
+                CommandInvocationStatus status = response.status();
+                logger.debug("Command {} status is {}", commandId, status);
+                if (status == CommandInvocationStatus.SUCCESS) {
+                    result.complete(response);
+                    return;
+                }
+                if (!RUNNING_STATUSES.contains(status)) {
+                    result.completeExceptionally(new UnsuccessfulSSMCommandInvocationException(
+                            String.format("Command %s finished with status %s: %s", commandId, status, response.statusDetails())));
+                    return;
+                }
+            }
+
+            Duration remaining = Duration.between(Instant.now(clock), deadline);
+            if (remaining.isNegative() || remaining.isZero()) {
+                result.completeExceptionally(new UnsuccessfulSSMCommandInvocationException(String.format(
+                        "Command never completed successfully. Latest status is: %s. Latest response from SSM API is: %s",
+                        latest != null ? latest.status() : "unknown",
+                        latest != null && latest.sdkHttpResponse() != null ? latest.sdkHttpResponse().statusText().orElse("") : "none")));
+                return;
+            }
+            Duration backoff = pollDelay.multipliedBy(2);
+            schedule(min(min(backoff, maxPollDelay), remaining));
+        }
+    }
+
+    private static Duration min(Duration a, Duration b) {
+        return a.compareTo(b) <= 0 ? a : b;
+    }
+}
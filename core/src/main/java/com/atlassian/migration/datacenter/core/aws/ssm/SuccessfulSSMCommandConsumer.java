@@ -18,15 +18,17 @@ package com.atlassian.migration.datacenter.core.aws.ssm;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.services.ssm.model.CommandInvocationStatus;
 import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
-import software.amazon.awssdk.services.ssm.model.InvocationDoesNotExistException;
+
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 public abstract class SuccessfulSSMCommandConsumer<T> {
 
     private static final Logger logger = LoggerFactory.getLogger(SuccessfulSSMCommandConsumer.class);
 
-
     private final SSMApi ssmApi;
     private final String commandId;
     private final String instanceId;
@@ -37,36 +39,31 @@ public abstract class SuccessfulSSMCommandConsumer<T> {
         this.instanceId = instanceId;
     }
 
-    public T handleCommandOutput(int maxCommandStatusRetries) throws UnsuccessfulSSMCommandInvocationException, SSMCommandInvocationProcessingError {
-        GetCommandInvocationResponse command = null;
-        for (int i = 0; i < maxCommandStatusRetries; i++) {
-            logger.debug("Checking delivery of s3 sync ssm command. Attempt {}", i);
-
-            try {
-                command = ssmApi.getSSMCommand(commandId, instanceId);
-                final CommandInvocationStatus status = command.status();
-
-                logger.debug("s3 sync command status is {}", status);
-
-                if (status.equals(CommandInvocationStatus.SUCCESS)) {
-                    return handleSuccessfulCommand(command);
-                }
-            } catch (InvocationDoesNotExistException e) {
-                logger.debug("Command does not exist - maybe it hasn't reached the EC2 instance yet. Will continue retrying");
-            }
-
-            try {
-                Thread.sleep(10000);
-            } catch (InterruptedException e) {
-                logger.error("interrupted while waiting for s3 sync ssm command to be delivered", e);
-                throw new UnsuccessfulSSMCommandInvocationException("Interrupted while waiting to check command status", e);
+    /**
+     * Waits for the command to finish and handles its output once it has succeeded.
+     *
+     * @param timeout how long the command may take before it is considered failed
+     */
+    public T handleCommandOutput(Duration timeout) throws UnsuccessfulSSMCommandInvocationException, SSMCommandInvocationProcessingError {
+        final CompletableFuture<GetCommandInvocationResponse> invocation = ssmApi.awaitCommand(commandId, instanceId, timeout);
+        final GetCommandInvocationResponse command;
+        try {
+            command = invocation.get();
+        } catch (InterruptedException e) {
+            logger.error("interrupted while waiting for ssm command {} to complete", commandId, e);
+            invocation.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new UnsuccessfulSSMCommandInvocationException("Interrupted while waiting to check command status", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnsuccessfulSSMCommandInvocationException) {
+                throw (UnsuccessfulSSMCommandInvocationException) e.getCause();
             }
+            throw new UnsuccessfulSSMCommandInvocationException("Unable to get status of command " + commandId, e.getCause());
+        } catch (CancellationException e) {
+            throw new UnsuccessfulSSMCommandInvocationException("Stopped waiting for command " + commandId, e);
         }
-        throw new UnsuccessfulSSMCommandInvocationException(
-                String.format(
-                        "Command never completed successfully. Latest status is: %s. Latest response from SSM API is: %s",
-                        command.status().toString(),
-                        command.sdkHttpResponse().statusText()));
+        logger.debug("ssm command {} completed successfully", commandId);
+        return handleSuccessfulCommand(command);
     }
 
     protected abstract T handleSuccessfulCommand(GetCommandInvocationResponse commandInvocation) throws SSMCommandInvocationProcessingError;
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+/**
+ * Measures how fast this host compresses table data at a given zlib level, which is the work pg_dump does for
+ * every table of a compressed dump. The sample resembles the rows pg_dump writes with COPY: ids, issue keys,
+ * timestamps and text drawn from a small vocabulary.
+ */
+class CompressionBenchmark {
+    private static final int SAMPLE_SIZE = 4 * 1024 * 1024;
+    private static final int WARM_UP_SIZE = 256 * 1024;
+    private static final String[] WORDS = {
+            "the", "issue", "project", "user", "update", "when", "customer", "reported", "that", "a", "build", "fails",
+            "on", "release", "branch", "after", "merge", "please", "review", "attached", "log", "error", "timeout",
+            "connection", "status", "done", "in", "progress", "open", "closed", "resolved", "duplicate", "fixed",
+            "version", "component", "comment", "priority", "major", "minor", "blocker", "workflow", "transition",
+            "assignee", "reporter", "sprint", "board", "epic", "story", "task", "bug"};
+
+    private final byte[] sample;
+
+    CompressionBenchmark() {
+        this(SAMPLE_SIZE);
+    }
+
+    CompressionBenchmark(int sampleSize) {
+        this.sample = generateSample(sampleSize);
+        compress(0, Math.min(WARM_UP_SIZE, sample.length), Deflater.BEST_SPEED);
+    }
+
+    /**
+     * @return rate at which the sample is compressed at the given level, and the compression ratio achieved
+     */
+    CompressionRate measure(int level) {
+        long start = System.nanoTime();
+        long compressedSize = compress(0, sample.length, level);
+        double seconds = Math.max(System.nanoTime() - start, 1) / 1e9;
+        return new CompressionRate(sample.length / seconds, (double) sample.length / Math.max(compressedSize, 1));
+    }
+
+    private long compress(int offset, int length, int level) {
+        Deflater deflater = new Deflater(level);
+        try {
+            deflater.setInput(sample, offset, length);
+            deflater.finish();
+            byte[] buffer = new byte[64 * 1024];
+            long compressedSize = 0;
+            while (!deflater.finished()) {
+                compressedSize += deflater.deflate(buffer);
+            }
+            return compressedSize;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] generateSample(int size) {
+        Random random = new Random(42);
+        StringBuilder rows = new StringBuilder(size + 256);
+        for (long id = 10000; rows.length() < size; id++) {
+            rows.append(id).append('\t')
+                    .append("PROJ-").append(random.nextInt(50000)).append('\t')
+                    .append("2020-").append(10 + random.nextInt(3)).append('-').append(10 + random.nextInt(19))
+                    .append(' ').append(10 + random.nextInt(14)).append(':').append(10 + random.nextInt(50))
+                    .append(':').append(10 + random.nextInt(50)).append('.').append(100 + random.nextInt(900)).append("+00\t");
+            int words = 3 + random.nextInt(30);
+            for (int i = 0; i < words; i++) {
+                rows.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            rows.append('\t').append(random.nextBoolean() ? "\\N" : String.valueOf(random.nextInt(100))).append('\n');
+        }
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] sample = new byte[size];
+        System.arraycopy(bytes, 0, sample, 0, size);
+        return sample;
+    }
+
+    static class CompressionRate {
+        private final double bytesPerSecond;
+        private final double ratio;
+
+        CompressionRate(double bytesPerSecond, double ratio) {
+            this.bytesPerSecond = bytesPerSecond;
+            this.ratio = ratio;
+        }
+
+        /**
+         * @return uncompressed bytes compressed per second by a single job
+         */
+        double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        /**
+         * @return uncompressed size divided by compressed size
+         */
+        double getRatio() {
+            return ratio;
+        }
+    }
+}
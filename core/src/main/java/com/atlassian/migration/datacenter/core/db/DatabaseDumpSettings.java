@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.db;
+
+/**
+ * Number of parallel jobs and compression level of the database dump. Either can be left {@link #AUTOMATIC}, in
+ * which case the {@link DatabaseDumpTuner} picks it when the dump starts.
+ */
+public class DatabaseDumpSettings {
+    public static final int AUTOMATIC = -1;
+    public static final int MAX_COMPRESSION_LEVEL = 9;
+
+    private int jobs;
+    private int compressionLevel;
+
+    public DatabaseDumpSettings() {
+        this(AUTOMATIC, AUTOMATIC);
+    }
+
+    public DatabaseDumpSettings(int jobs, int compressionLevel) {
+        this.jobs = jobs;
+        this.compressionLevel = compressionLevel;
+    }
+
+    public static DatabaseDumpSettings automatic() {
+        return new DatabaseDumpSettings();
+    }
+
+    /**
+     * @return number of tables dumped concurrently, or {@link #AUTOMATIC}
+     */
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * @return gzip compression level of the dumped tables between 0 (uncompressed) and 9, or {@link #AUTOMATIC}
+     */
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the number of jobs or the compression level is out of range
+     */
+    public void validate() {
+        if (jobs != AUTOMATIC && jobs < 1) {
+            throw new IllegalArgumentException("Number of dump jobs must be at least 1 but was " + jobs);
+        }
+        if (compressionLevel != AUTOMATIC && (compressionLevel < 0 || compressionLevel > MAX_COMPRESSION_LEVEL)) {
+            throw new IllegalArgumentException("Compression level must be between 0 and " + MAX_COMPRESSION_LEVEL + " but was " + compressionLevel);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s jobs, compression level %s",
+                jobs == AUTOMATIC ? "automatic" : jobs,
+                compressionLevel == AUTOMATIC ? "automatic" : compressionLevel);
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.db;
+
+import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.OptionalInt;
+
+/**
+ * Picks the settings of the database dump which were left {@link DatabaseDumpSettings#AUTOMATIC}.
+ * <ul>
+ * <li>The number of jobs is the number of available cores, limited by the connections the database still accepts,
+ * as pg_dump opens one connection per job and one for the leader.</li>
+ * <li>The compression level is the one with the highest end-to-end throughput, which is limited either by how fast
+ * the jobs compress the tables or by how fast the compressed files are uploaded. Compression is measured on this
+ * host by a {@link CompressionBenchmark}, and the upload throughput is the one measured by the file system
+ * migration, which uploads to the same bucket.</li>
+ * </ul>
+ */
+public class DatabaseDumpTuner {
+    private static final Logger logger = LoggerFactory.getLogger(DatabaseDumpTuner.class);
+
+    static final int MAX_AUTOMATIC_JOBS = 8;
+    static final int DEFAULT_COMPRESSION_LEVEL = 6;
+    static final int[] CANDIDATE_COMPRESSION_LEVELS = {1, 3, 6, 9};
+    /**
+     * A higher compression level is preferred when its throughput is within this fraction of the best one, as it
+     * takes up less disk and bandwidth
+     */
+    private static final double THROUGHPUT_TOLERANCE = 0.05;
+
+    private final DatabaseExtractor databaseExtractor;
+    private final FilesystemMigrationService filesystemMigrationService;
+    private final int availableProcessors;
+    private CompressionBenchmark compressionBenchmark;
+
+    public DatabaseDumpTuner(DatabaseExtractor databaseExtractor, FilesystemMigrationService filesystemMigrationService) {
+        this(databaseExtractor, filesystemMigrationService, Runtime.getRuntime().availableProcessors(), null);
+    }
+
+    DatabaseDumpTuner(DatabaseExtractor databaseExtractor, FilesystemMigrationService filesystemMigrationService, int availableProcessors, CompressionBenchmark compressionBenchmark) {
+        this.databaseExtractor = databaseExtractor;
+        this.filesystemMigrationService = filesystemMigrationService;
+        this.availableProcessors = availableProcessors;
+        this.compressionBenchmark = compressionBenchmark;
+    }
+
+    /**
+     * @return the requested settings, with the automatic ones replaced by the chosen values
+     */
+    public DatabaseDumpSettings resolve(DatabaseDumpSettings requested) {
+        int jobs = requested.getJobs() != DatabaseDumpSettings.AUTOMATIC
+                ? requested.getJobs()
+                : chooseJobs(databaseExtractor.getAvailableConnections());
+        int compressionLevel = requested.getCompressionLevel() != DatabaseDumpSettings.AUTOMATIC
+                ? requested.getCompressionLevel()
+                : chooseCompressionLevel(jobs, getUploadBytesPerSecond());
+        DatabaseDumpSettings resolved = new DatabaseDumpSettings(jobs, compressionLevel);
+        logger.info("Dumping database with {} (requested {})", resolved, requested);
+        return resolved;
+    }
+
+    int chooseJobs(OptionalInt availableConnections) {
+        int jobs = Math.min(availableProcessors, MAX_AUTOMATIC_JOBS);
+        if (availableConnections.isPresent()) {
+            jobs = Math.min(jobs, availableConnections.getAsInt() - 1);
+        } else {
+            logger.warn("Unable to find out how many connections the database accepts, assuming {} are available", jobs + 1);
+        }
+        return Math.max(jobs, 1);
+    }
+
+    int chooseCompressionLevel(int jobs, double uploadBytesPerSecond) {
+        if (!(uploadBytesPerSecond > 0)) {
+            logger.info("Upload throughput hasn't been measured, using compression level {}", DEFAULT_COMPRESSION_LEVEL);
+            return DEFAULT_COMPRESSION_LEVEL;
+        }
+        int bestLevel = DEFAULT_COMPRESSION_LEVEL;
+        double bestThroughput = 0;
+        for (int level : CANDIDATE_COMPRESSION_LEVELS) {
+            CompressionBenchmark.CompressionRate rate = getCompressionBenchmark().measure(level);
+            double compressBytesPerSecond = rate.getBytesPerSecond() * jobs;
+            double throughput = Math.min(compressBytesPerSecond, uploadBytesPerSecond * rate.getRatio());
+            logger.debug("Compression level {} compresses {} B/s at ratio {}, expected dump throughput {} B/s",
+                    level, (long) compressBytesPerSecond, rate.getRatio(), (long) throughput);
+            if (throughput >= bestThroughput * (1 - THROUGHPUT_TOLERANCE)) {
+                bestLevel = level;
+                bestThroughput = Math.max(throughput, bestThroughput);
+            }
+        }
+        return bestLevel;
+    }
+
+    /**
+     * The rate of the last minute while the file system migration is still uploading, as the dump then shares the
+     * link with it. Otherwise the average of the finished upload, which includes the time it took to find the files
+     * and so somewhat underestimates the link, erring on the side of a higher compression level.
+     */
+    private double getUploadBytesPerSecond() {
+        FileSystemMigrationReport report = filesystemMigrationService.getReport();
+        if (report == null) {
+            return 0;
+        }
+        Double current = report.getCurrentUploadedBytesPerSecond();
+        if (current != null && current > 0) {
+            return current;
+        }
+        Double average = report.getUploadedBytesPerSecond();
+        return average == null ? 0 : average;
+    }
+
+    private synchronized CompressionBenchmark getCompressionBenchmark() {
+        if (compressionBenchmark == null) {
+            compressionBenchmark = new CompressionBenchmark();
+        }
+        return compressionBenchmark;
+    }
+}
@@ -20,11 +20,31 @@ package com.atlassian.migration.datacenter.core.db;
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.OptionalInt;
 
 public interface DatabaseExtractor {
     Process startDatabaseDump(Path target) throws DatabaseMigrationFailure;
 
     Process startDatabaseDump(Path target, Boolean parallel) throws DatabaseMigrationFailure;
 
+    /**
+     * Starts a dump with the given number of jobs and compression level. A verbose dump reports its progress on the
+     * standard error of the returned process rather than the standard error of the calling process, so the caller
+     * can follow which parts of the dump are complete.
+     */
+    Process startDatabaseDump(Path target, DatabaseDumpSettings settings, Boolean verbose) throws DatabaseMigrationFailure;
+
+    /**
+     * @return number of connections the database accepts before reaching its connection limit, if it can be found out
+     */
+    OptionalInt getAvailableConnections();
+
+    /**
+     * @return estimated number of rows and size of every table, by schema qualified table name, or an empty map if
+     * the database can't be queried
+     */
+    Map<String, TableEstimate> getTableEstimates();
+
     void dumpDatabase(Path to) throws DatabaseMigrationFailure;
 }
@@ -20,23 +20,53 @@ import com.atlassian.migration.datacenter.core.application.ApplicationConfigurat
 import com.atlassian.migration.datacenter.core.application.DatabaseConfiguration;
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.concurrent.TimeUnit;
 
 public class PostgresExtractor implements DatabaseExtractor {
+    private static final Logger logger = LoggerFactory.getLogger(PostgresExtractor.class);
+
     private ApplicationConfiguration applicationConfiguration;
 
     private static String[] pddumpPaths = {"/usr/bin/pg_dump", "/usr/local/bin/pg_dump"};
+    private static String[] psqlPaths = {"/usr/bin/psql", "/usr/local/bin/psql"};
+    private static final int DEFAULT_PARALLEL_JOBS = 4;
+    private static final int DEFAULT_COMPRESSION_LEVEL = 9;
+    private static final long PSQL_TIMEOUT_SECONDS = 30;
+    private static final long PSQL_CONNECT_TIMEOUT_SECONDS = 10;
+    private static final String AVAILABLE_CONNECTIONS_QUERY = "SELECT current_setting('max_connections')::int"
+            + " - current_setting('superuser_reserved_connections')::int"
+            + " - (SELECT count(*) FROM pg_stat_activity WHERE datname IS NOT NULL)";
+    private static final String TABLE_ESTIMATES_QUERY = "SELECT s.schemaname || '.' || s.relname,"
+            + " greatest(s.n_live_tup, c.reltuples::bigint), pg_table_size(c.oid)"
+            + " FROM pg_stat_user_tables s JOIN pg_class c ON c.oid = s.relid";
+    private static final String PSQL_FIELD_SEPARATOR = "\t";
 
     public PostgresExtractor(ApplicationConfiguration applicationConfiguration) {
         this.applicationConfiguration = applicationConfiguration;
     }
 
     private Optional<String> getPgdumpPath() {
-        for (String path : pddumpPaths) {
+        return findExecutable(pddumpPaths);
+    }
+
+    private static Optional<String> findExecutable(String[] paths) {
+        for (String path : paths) {
             Path p = Paths.get(path);
             if (Files.isReadable(p) && Files.isExecutable(p)) {
                 return Optional.of(path);
@@ -51,49 +81,177 @@ public class PostgresExtractor implements DatabaseExtractor {
         return startDatabaseDump(target, false);
     }
 
+    @Override
+    public Process startDatabaseDump(Path target, Boolean parallel) throws DatabaseMigrationFailure {
+        return startDatabaseDump(target, new DatabaseDumpSettings(parallel ? DEFAULT_PARALLEL_JOBS : 1, DEFAULT_COMPRESSION_LEVEL), false);
+    }
+
     /**
      * Invoke `pg_dump` against the database details store in the supplied ApplicationConfiguration. Some important notes:
      *
      * <ul>
      * <li>It is the responsibility of the caller to ensure that the filesystems the target resides on has sufficient space.</li>
-     * <li>stdio & stderr are redirected to the stderr of the calling process.</li>
+     * <li>stdio & stderr are redirected to the stderr of the calling process, unless the dump is verbose.</li>
+     * <li>A verbose dump logs every dumped object to the stderr of the returned process, which must be consumed
+     * by the caller. In a parallel dump, pg_dump logs a `finished item` line once the file of a table is complete.</li>
      * </ul>
      *
      * @param target   - The directory to dump the compressed database export to.
-     * @param parallel - Whether to use parallel dump strategy.
+     * @param settings - The number of parallel jobs and the compression level, neither of which may be automatic.
+     * @param verbose  - Whether to run pg_dump with --verbose and pipe its stderr to the caller.
      * @return The underlying process object.
      * @throws DatabaseMigrationFailure on failure.
      */
     @Override
-    public Process startDatabaseDump(Path target, Boolean parallel) throws DatabaseMigrationFailure {
+    public Process startDatabaseDump(Path target, DatabaseDumpSettings settings, Boolean verbose) throws DatabaseMigrationFailure {
         String pgdump = getPgdumpPath()
                 .orElseThrow(() -> new DatabaseMigrationFailure("Failed to find appropriate pg_dump executable."));
-        Integer numJobs = parallel ? 4 : 1;  // Common-case for now, could be tunable or num-CPUs.
+        Integer numJobs = settings.getJobs();
 
         DatabaseConfiguration config = applicationConfiguration.getDatabaseConfiguration();
 
-        ProcessBuilder builder = new ProcessBuilder(pgdump,
+        List<String> command = new ArrayList<>(Arrays.asList(pgdump,
                 "--no-owner",
                 "--no-acl",
-                "--compress=9",
+                "--compress=" + settings.getCompressionLevel(),
                 "--format=directory",
                 "--jobs", numJobs.toString(),
                 "--file", target.toString(),
                 "--dbname", config.getName(),
                 "--host", config.getHost(),
                 "--port", config.getPort().toString(),
-                "--username", config.getUsername())
+                "--username", config.getUsername()));
+        if (verbose) {
+            command.add("--verbose");
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command)
                 .inheritIO();
+        if (verbose) {
+            builder.redirectError(ProcessBuilder.Redirect.PIPE);
+        }
         builder.environment().put("PGPASSWORD", config.getPassword());
 
         try {
             return builder.start();
         } catch (IOException e) {
-            String command = String.join(" ", builder.command());
-            throw new DatabaseMigrationFailure("Failed to start pg_dump process with commandline: " + command, e);
+            throw new DatabaseMigrationFailure("Failed to start pg_dump process with commandline: " + String.join(" ", builder.command()), e);
+        }
+
+
+    }
+
+    /**
+     * Asks the database, using `psql`, how many more connections it accepts. Connections reserved for superusers
+     * are not counted as available.
+     */
+    @Override
+    public OptionalInt getAvailableConnections() {
+        Optional<List<String>> rows = query(AVAILABLE_CONNECTIONS_QUERY, "available database connections");
+        if (!rows.isPresent() || rows.get().isEmpty()) {
+            return OptionalInt.empty();
+        }
+        try {
+            return OptionalInt.of(Integer.parseInt(rows.get().get(0).trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Failed to query available database connections", e);
+            return OptionalInt.empty();
+        }
+    }
+
+    /**
+     * Reads the number of rows and size of every user table from the statistics collector and the system catalog.
+     * The row count is the larger of the live tuples counted since the statistics were last reset and the estimate
+     * of the last vacuum or analyze, so tables which haven't been analyzed still get an estimate.
+     */
+    @Override
+    public Map<String, TableEstimate> getTableEstimates() {
+        Optional<List<String>> rows = query(TABLE_ESTIMATES_QUERY, "table size estimates");
+        if (!rows.isPresent()) {
+            return Collections.emptyMap();
         }
+        Map<String, TableEstimate> estimates = new HashMap<>();
+        for (String row : rows.get()) {
+            String[] columns = row.split(PSQL_FIELD_SEPARATOR);
+            if (columns.length != 3) {
+                continue;
+            }
+            try {
+                estimates.put(columns[0], new TableEstimate(Long.parseLong(columns[1].trim()), Long.parseLong(columns[2].trim())));
+            } catch (NumberFormatException e) {
+                logger.debug("Ignoring table size estimate which isn't a number: {}", row);
+            }
+        }
+        return estimates;
+    }
 
+    /**
+     * Runs a query with `psql` and returns the non-empty lines it printed. The output goes to a temporary file rather
+     * than a pipe, so a psql which hangs, e.g. on an unreachable database, can't block the caller beyond the timeout.
+     */
+    private Optional<List<String>> query(String query, String description) {
+        Optional<String> psql = findExecutable(psqlPaths);
+        if (!psql.isPresent()) {
+            logger.warn("Failed to find psql executable, unable to query {}", description);
+            return Optional.empty();
+        }
+        DatabaseConfiguration config = applicationConfiguration.getDatabaseConfiguration();
+
+        Path output = null;
+        try {
+            output = Files.createTempFile("dcma-psql", ".out");
+            ProcessBuilder builder = new ProcessBuilder(psql.get(),
+                    "--no-align",
+                    "--tuples-only",
+                    "--field-separator", PSQL_FIELD_SEPARATOR,
+                    "--command", query,
+                    "--dbname", config.getName(),
+                    "--host", config.getHost(),
+                    "--port", config.getPort().toString(),
+                    "--username", config.getUsername())
+                    .redirectOutput(output.toFile())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT);
+            builder.environment().put("PGPASSWORD", config.getPassword());
+            // Same as the connect_timeout connection parameter
+            builder.environment().put("PGCONNECT_TIMEOUT", Long.toString(PSQL_CONNECT_TIMEOUT_SECONDS));
 
+            Process process = builder.start();
+            if (!process.waitFor(PSQL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+                logger.warn("Timed out querying {}", description);
+                return Optional.empty();
+            }
+            if (process.exitValue() != 0) {
+                logger.warn("Failed to query {}, psql exited with status {}", description, process.exitValue());
+                return Optional.empty();
+            }
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(output, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+            return Optional.of(lines);
+        } catch (IOException e) {
+            logger.warn("Failed to query {}", description, e);
+            return Optional.empty();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Optional.empty();
+        } finally {
+            deleteQuietly(output);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            logger.debug("Failed to delete temporary psql output {}", file, e);
+        }
     }
 
     /**
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.db;
+
+/**
+ * Size of a table as estimated by the database statistics, used to report the progress of a database migration
+ * before the actual size of the dumped table is known.
+ */
+public class TableEstimate {
+    private final long rows;
+    private final long bytes;
+
+    public TableEstimate(long rows, long bytes) {
+        this.rows = rows;
+        this.bytes = bytes;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return "TableEstimate{rows=" + rows + ", bytes=" + bytes + '}';
+    }
+}
@@ -16,6 +16,9 @@ package com.atlassian.migration.datacenter.core.db;
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 
 import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+import java.util.OptionalInt;
 
 public class UnSupportedDatabaseExtractor implements DatabaseExtractor {
 
@@ -30,6 +33,21 @@ public class UnSupportedDatabaseExtractor implements DatabaseExtractor {
         throw new UnsupportedOperationException("Not implemented");
     }
 
+    @Override
+    public Process startDatabaseDump(Path target, DatabaseDumpSettings settings, Boolean verbose) throws DatabaseMigrationFailure {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public OptionalInt getAvailableConnections() {
+        return OptionalInt.empty();
+    }
+
+    @Override
+    public Map<String, TableEstimate> getTableEstimates() {
+        return Collections.emptyMap();
+    }
+
     @Override
     public void dumpDatabase(Path to) throws DatabaseMigrationFailure {
         throw new UnsupportedOperationException("Not implemented");
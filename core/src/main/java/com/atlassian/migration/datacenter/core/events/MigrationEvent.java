@@ -0,0 +1,69 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.events;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Something that happened to the migration which the UI would otherwise find out about by polling
+ */
+public class MigrationEvent {
+
+    public enum Type {
+        STAGE_TRANSITION,
+        FILESYSTEM_PROGRESS
+    }
+
+    private final long sequence;
+    private final Instant timestamp;
+    private final Type type;
+    private final Map<String, Object> data;
+
+    MigrationEvent(long sequence, Instant timestamp, Type type, Map<String, Object> data) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.data = Collections.unmodifiableMap(data);
+    }
+
+    /**
+     * @return position of this event on the bus. Clients pass the sequence of the last event they have seen to get
+     * the events after it.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Map<String, Object> getData() {
+        return data;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MigrationEvent{sequence=%d, type=%s, data=%s}", sequence, type, data);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.events;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-process bus of migration events which clients read by long polling. Each event gets a sequence number and the
+ * most recent events are kept, so every client waits for the events after the last one it has seen rather than
+ * re-reading the full migration state on an interval. A client which falls further behind than the retained events
+ * gets the retained events and can tell it has missed some from the gap in sequence numbers.
+ * <p>
+ * Every waiting client holds a request thread, so only a few clients may wait at a time. Others are told to come
+ * back later rather than queueing up for threads.
+ */
+public class MigrationEventBus {
+
+    static final int DEFAULT_CAPACITY = 256;
+    static final int DEFAULT_MAX_WAITERS = 8;
+
+    private final int capacity;
+    private final int maxWaiters;
+    private final Clock clock;
+    private final Deque<MigrationEvent> events = new ArrayDeque<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition published = lock.newCondition();
+    private long lastSequence = 0;
+    private int waiters = 0;
+
+    public MigrationEventBus() {
+        this(DEFAULT_CAPACITY, DEFAULT_MAX_WAITERS, Clock.systemUTC());
+    }
+
+    MigrationEventBus(int capacity, Clock clock) {
+        this(capacity, DEFAULT_MAX_WAITERS, clock);
+    }
+
+    MigrationEventBus(int capacity, int maxWaiters, Clock clock) {
+        this.capacity = capacity;
+        this.maxWaiters = maxWaiters;
+        this.clock = clock;
+    }
+
+    public MigrationEvent publish(MigrationEvent.Type type, Map<String, Object> data) {
+        lock.lock();
+        try {
+            final MigrationEvent event = new MigrationEvent(++lastSequence, Instant.now(clock), type, data);
+            if (events.size() == capacity) {
+                events.removeFirst();
+            }
+            events.addLast(event);
+            published.signalAll();
+            return event;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return sequence of the most recent event, or 0 when nothing has been published
+     */
+    public long getLastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until there are events after the given sequence or the timeout has passed.
+     *
+     * @param sequence sequence of the last event the caller has seen, or 0 for all retained events
+     * @param timeout  how long to wait for a new event
+     * @return the retained events after the sequence, oldest first. Empty if nothing was published before the timeout.
+     * @throws TooManyWaitersException if there are no events after the sequence yet and too many clients are
+     *                                 already waiting
+     */
+    public List<MigrationEvent> awaitEventsAfter(long sequence, Duration timeout) throws InterruptedException, TooManyWaitersException {
+        long remainingNanos = timeout.toNanos();
+        lock.lock();
+        try {
+            if (sequence > lastSequence) {
+                // The client saw events from before the plugin was restarted, so it needs all of the current ones
+                sequence = 0;
+            }
+            if (lastSequence <= sequence && remainingNanos > 0) {
+                if (waiters >= maxWaiters) {
+                    throw new TooManyWaitersException(String.format("%d clients are already waiting for migration events", waiters));
+                }
+                waiters++;
+                try {
+                    while (lastSequence <= sequence && remainingNanos > 0) {
+                        remainingNanos = published.awaitNanos(remainingNanos);
+                    }
+                } finally {
+                    waiters--;
+                }
+            }
+            if (lastSequence <= sequence) {
+                return Collections.emptyList();
+            }
+            final List<MigrationEvent> after = new ArrayList<>();
+            for (MigrationEvent event : events) {
+                if (event.getSequence() > sequence) {
+                    after.add(event);
+                }
+            }
+            return after;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static class TooManyWaitersException extends Exception {
+        public TooManyWaitersException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.exception.ApiCallAttemptTimeoutException;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of concurrent uploads using additive increase / multiplicative decrease (AIMD).
+ * <p>
+ * Completed uploads are sampled in windows of at least as many uploads as the current limit. After each window
+ * the limit grows by {@link #INCREASE_STEP} if throughput didn't drop and the average latency stayed close to the
+ * lowest latency observed, and shrinks by one if latency inflated, which means requests are queueing somewhere.
+ * S3 throttling (503 SlowDown) and timeouts halve the limit immediately, at most once per window, so a burst of
+ * errors from the same congestion doesn't collapse the limit to the minimum.
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    static final int INCREASE_STEP = 4;
+    private static final int MIN_WINDOW_SAMPLES = 8;
+    private static final double LATENCY_TOLERANCE = 1.5;
+    private static final double LATENCY_INFLATION = 2.0;
+    private static final double THROUGHPUT_TOLERANCE = 0.9;
+    private static final double BASELINE_DRIFT = 1.01;
+    private static final double DECREASE_FACTOR = 0.5;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final IntConsumer limitListener;
+    private final LongSupplier nanoClock;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition permitReleased = lock.newCondition();
+    private int limit;
+    private int inFlight = 0;
+
+    private long windowStart;
+    private int windowCompletions = 0;
+    private int windowSamples = 0;
+    private long windowBytes = 0;
+    private long windowLatency = 0;
+    private boolean decreasedInWindow = false;
+    private double baselineLatency = 0;
+    private double lastThroughput = 0;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, IntConsumer limitListener) {
+        this(initialLimit, minLimit, maxLimit, limitListener, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, IntConsumer limitListener, LongSupplier nanoClock) {
+        if (minLimit < 1 || maxLimit < minLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException(String.format("Invalid concurrency limits: initial %d, min %d, max %d", initialLimit, minLimit, maxLimit));
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = initialLimit;
+        this.limitListener = limitListener;
+        this.nanoClock = nanoClock;
+        this.windowStart = nanoClock.getAsLong();
+        limitListener.accept(initialLimit);
+    }
+
+    /**
+     * Blocks until the number of uploads in flight is below the current limit
+     *
+     * @return permit which must be released when the upload completes
+     */
+    public Permit acquire() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight >= limit) {
+                permitReleased.await();
+            }
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+        return new Permit(nanoClock.getAsLong());
+    }
+
+    /**
+     * Blocks until no uploads are in flight
+     */
+    public void awaitIdle() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (inFlight > 0) {
+                permitReleased.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return true if the failure indicates that S3 or the network is congested
+     */
+    static boolean isCongestionSignal(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof SdkServiceException) {
+                final SdkServiceException serviceException = (SdkServiceException) t;
+                if (serviceException.isThrottlingException() || serviceException.statusCode() == 503) {
+                    return true;
+                }
+            }
+            if (t instanceof ApiCallTimeoutException
+                    || t instanceof ApiCallAttemptTimeoutException
+                    || t instanceof TimeoutException
+                    || t instanceof SocketTimeoutException
+                    || t.getClass().getSimpleName().endsWith("TimeoutException")) {
+                return true;
+            }
+            if (t.getCause() == t) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    private void onCompletion(long latency, long bytes, Throwable failure) {
+        lock.lock();
+        try {
+            inFlight--;
+            windowCompletions++;
+            if (failure == null) {
+                windowSamples++;
+                windowBytes += bytes;
+                windowLatency += latency;
+            } else if (isCongestionSignal(failure) && !decreasedInWindow) {
+                setLimit((int) (limit * DECREASE_FACTOR), "congestion: " + failure.getMessage());
+                decreasedInWindow = true;
+            }
+
+            if (windowCompletions >= Math.max(limit, MIN_WINDOW_SAMPLES)) {
+                closeWindow();
+            }
+            permitReleased.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeWindow() {
+        final long now = nanoClock.getAsLong();
+        final long elapsed = Math.max(now - windowStart, 1);
+        if (!decreasedInWindow && windowSamples > 0) {
+            final double throughput = (double) windowBytes / elapsed;
+            final double averageLatency = (double) windowLatency / windowSamples;
+
+            baselineLatency = baselineLatency == 0 ? averageLatency : Math.min(averageLatency, baselineLatency * BASELINE_DRIFT);
+
+            if (averageLatency <= baselineLatency * LATENCY_TOLERANCE && throughput >= lastThroughput * THROUGHPUT_TOLERANCE) {
+                setLimit(limit + INCREASE_STEP, "throughput increasing");
+            } else if (averageLatency > baselineLatency * LATENCY_INFLATION) {
+                setLimit(limit - 1, "latency increasing");
+            }
+            lastThroughput = throughput;
+        }
+
+        windowStart = now;
+        windowCompletions = 0;
+        windowSamples = 0;
+        windowBytes = 0;
+        windowLatency = 0;
+        decreasedInWindow = false;
+    }
+
+    private void setLimit(int newLimit, String reason) {
+        final int boundedLimit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+        if (boundedLimit != limit) {
+            logger.debug("Changing upload concurrency limit from {} to {} ({})", limit, boundedLimit, reason);
+            limit = boundedLimit;
+            limitListener.accept(boundedLimit);
+        }
+    }
+
+    /**
+     * Permit for a single upload
+     */
+    public class Permit {
+        private final long startTime;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Permit(long startTime) {
+            this.startTime = startTime;
+        }
+
+        /**
+         * Releases the permit and records the outcome of the upload
+         *
+         * @param bytes   number of bytes uploaded
+         * @param failure cause of the failure or null if the upload was successful
+         */
+        public void release(long bytes, Throwable failure) {
+            if (released.compareAndSet(false, true)) {
+                onCompletion(nanoClock.getAsLong() - startTime, bytes, failure);
+            }
+        }
+
+        /**
+         * Releases the permit without recording a sample, e.g. when the request couldn't be sent at all
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                lock.lock();
+                try {
+                    inFlight--;
+                    permitReleased.signalAll();
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * File found by a {@link Crawler}, together with the attributes which were read while crawling, so the
+ * {@link Uploader} doesn't have to read them from the file system again.
+ */
+public class CrawledFile {
+    private final Path path;
+    private final long size;
+    private final long lastModified;
+
+    public CrawledFile(Path path, long size, long lastModified) {
+        this.path = path;
+        this.size = size;
+        this.lastModified = lastModified;
+    }
+
+    public static CrawledFile of(Path path, BasicFileAttributes attributes) {
+        return new CrawledFile(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+    }
+
+    public static CrawledFile of(Path path) throws IOException {
+        return of(path, Files.readAttributes(path, BasicFileAttributes.class));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return size of the file in bytes when it was crawled
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return last modification time of the file in milliseconds since the epoch when it was crawled
+     */
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        CrawledFile that = (CrawledFile) o;
+        return size == that.size &&
+                lastModified == that.lastModified &&
+                path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(path, size, lastModified);
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+}
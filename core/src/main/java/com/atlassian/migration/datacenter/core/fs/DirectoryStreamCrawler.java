@@ -28,6 +28,7 @@ import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public class DirectoryStreamCrawler implements Crawler {
     private static final Logger logger = LoggerFactory.getLogger(DirectoryStreamCrawler.class);
@@ -39,7 +40,7 @@ public class DirectoryStreamCrawler implements Crawler {
     }
 
     @Override
-    public void crawlDirectory(Path start, UploadQueue<Path> queue) throws IOException {
+    public void crawlDirectory(Path start, UploadQueue<CrawledFile> queue) throws IOException {
         try {
             final DirectoryStream<Path> paths;
             paths = Files.newDirectoryStream(start);
@@ -61,9 +62,17 @@ public class DirectoryStreamCrawler implements Crawler {
         }
     }
 
-    private void listDirectories(UploadQueue<Path> queue, DirectoryStream<Path> paths) {
+    private void listDirectories(UploadQueue<CrawledFile> queue, DirectoryStream<Path> paths) {
         paths.forEach(p -> {
-            if (Files.isDirectory(p)) {
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(p, BasicFileAttributes.class);
+            } catch (IOException e) {
+                logger.error("Error when reading attributes of {}, with exception {}", p, e);
+                report.reportFileNotMigrated(new FailedFileMigration(p, e.getMessage()));
+                return;
+            }
+            if (attributes.isDirectory()) {
                 logger.trace("Found directory while crawling home: {}", p);
                 try (final DirectoryStream<Path> newPaths = Files.newDirectoryStream(p.toAbsolutePath())) {
                     listDirectories(queue, newPaths);
@@ -74,12 +83,13 @@ public class DirectoryStreamCrawler implements Crawler {
             } else {
                 try {
                     logger.trace("queueing file: {}", p);
-                    queue.put(p);
+                    queue.put(CrawledFile.of(p, attributes));
                 } catch (InterruptedException e) {
                     logger.error("Error when queuing {}, with exception {}", p, e);
                     report.reportFileNotMigrated(new FailedFileMigration(p, e.getMessage()));
                 }
                 report.reportFileFound();
+                report.reportBytesFound(attributes.size());
             }
         });
     }
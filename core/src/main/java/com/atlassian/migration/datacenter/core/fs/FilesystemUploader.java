@@ -43,7 +43,7 @@ public class FilesystemUploader {
 
     public void uploadDirectory(Path dir) throws FileUploadException {
         ExecutorService pool = Executors.newFixedThreadPool(2);
-        UploadQueue<Path> queue = new UploadQueue<>(uploader.maxConcurrent());
+        UploadQueue<CrawledFile> queue = new UploadQueue<>(uploader.maxConcurrent(), uploader.maxQueuedBytes(), CrawledFile::getSize);
 
         Future<Boolean> crawlFuture = pool.submit(() -> {
             crawler.crawlDirectory(dir, queue);
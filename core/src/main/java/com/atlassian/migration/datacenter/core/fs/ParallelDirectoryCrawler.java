@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.core.util.UploadQueue;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.NotDirectoryException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Crawls the directory tree using a {@link ForkJoinPool}, so sibling directories are listed concurrently
+ * and idle workers steal pending directories from busy ones. This keeps the upload queue fed on
+ * network file systems where listing a single directory is slow.
+ */
+public class ParallelDirectoryCrawler implements Crawler {
+    private static final Logger logger = LoggerFactory.getLogger(ParallelDirectoryCrawler.class);
+
+    private final FileSystemMigrationReport report;
+    private final int parallelism;
+
+    public ParallelDirectoryCrawler(FileSystemMigrationReport report, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Crawler parallelism must be at least 1 but was " + parallelism);
+        }
+        this.report = report;
+        this.parallelism = parallelism;
+    }
+
+    @Override
+    public void crawlDirectory(Path start, UploadQueue<CrawledFile> queue) throws IOException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        InterruptedException crawlInterrupted = null;
+        try {
+            if (!Files.exists(start)) {
+                throw new NoSuchFileException(start.toString());
+            }
+            if (!Files.isDirectory(start)) {
+                throw new NotDirectoryException(start.toString());
+            }
+            final AtomicBoolean interrupted = new AtomicBoolean(false);
+            pool.submit(new ListDirectoryTask(start.toAbsolutePath(), queue, interrupted)).get();
+            if (interrupted.get()) {
+                crawlInterrupted = new InterruptedException("A crawler worker was interrupted");
+                report.reportFileNotMigrated(new FailedFileMigration(start, "Crawling was interrupted before all files were found"));
+            }
+        } catch (NoSuchFileException | NotDirectoryException e) {
+            logger.error("Failed to find path " + start, e);
+            report.reportFileNotMigrated(new FailedFileMigration(start, e.getMessage()));
+            report.setStatus(FilesystemMigrationStatus.FAILED);
+            throw e;
+        } catch (InterruptedException e) {
+            logger.error("Interrupted while crawling {}", start, e);
+            report.reportFileNotMigrated(new FailedFileMigration(start, "Crawling was interrupted before all files were found"));
+            Thread.currentThread().interrupt();
+            crawlInterrupted = e;
+        } catch (ExecutionException e) {
+            logger.error("Error when crawling {}", start, e.getCause());
+            report.reportFileNotMigrated(new FailedFileMigration(start, e.getCause().getMessage()));
+        } finally {
+            pool.shutdownNow();
+            try {
+                logger.info("Crawled and added {} files for upload.", report.getNumberOfFilesFound());
+                report.reportCrawlingFinished();
+                queue.finish();
+            } catch (InterruptedException e) {
+                logger.error("Failed to finalise upload queue.", e);
+            }
+        }
+        if (crawlInterrupted != null) {
+            final InterruptedIOException failure = new InterruptedIOException("Crawling " + start + " was interrupted");
+            failure.initCause(crawlInterrupted);
+            throw failure;
+        }
+    }
+
+    private class ListDirectoryTask extends RecursiveAction {
+        private final Path directory;
+        private final UploadQueue<CrawledFile> queue;
+        private final AtomicBoolean interrupted;
+
+        ListDirectoryTask(Path directory, UploadQueue<CrawledFile> queue, AtomicBoolean interrupted) {
+            this.directory = directory;
+            this.queue = queue;
+            this.interrupted = interrupted;
+        }
+
+        @Override
+        protected void compute() {
+            final List<ListDirectoryTask> subdirectories = new ArrayList<>();
+            try (final DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+                for (Path p : paths) {
+                    final BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(p, BasicFileAttributes.class);
+                    } catch (IOException e) {
+                        logger.error("Error when reading attributes of {}, with exception {}", p, e);
+                        report.reportFileNotMigrated(new FailedFileMigration(p, e.getMessage()));
+                        continue;
+                    }
+                    if (attributes.isDirectory()) {
+                        logger.trace("Found directory while crawling home: {}", p);
+                        final ListDirectoryTask task = new ListDirectoryTask(p, queue, interrupted);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else if (!queueFile(CrawledFile.of(p, attributes))) {
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                logger.error("Error when traversing directory {}, with exception {}", directory, e);
+                report.reportFileNotMigrated(new FailedFileMigration(directory, e.getMessage()));
+            }
+            subdirectories.forEach(ListDirectoryTask::join);
+        }
+
+        /**
+         * Blocks the worker while the upload queue is full, so no more files are listed than the queue holds
+         *
+         * @return false if the crawler was interrupted before the file was queued
+         */
+        private boolean queueFile(CrawledFile file) {
+            try {
+                logger.trace("queueing file: {}", file);
+                queue.put(file);
+            } catch (InterruptedException e) {
+                logger.error("Error when queuing {}, with exception {}", file, e);
+                report.reportFileNotMigrated(new FailedFileMigration(file.getPath(), e.getMessage()));
+                interrupted.set(true);
+                Thread.currentThread().interrupt();
+                return false;
+            }
+            report.reportFileFound();
+            report.reportBytesFound(file.getSize());
+            return true;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.core.fs.journal.UploadJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.model.Delete;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Removes files which were deleted from the source file system after they had been uploaded. The objects are
+ * deleted from S3 and their keys are written to a tombstone list in the bucket, which the migration helper uses
+ * to delete the same files from the target file system after syncing.
+ */
+public class S3DeletedFileRemover {
+    private static final Logger logger = LoggerFactory.getLogger(S3DeletedFileRemover.class);
+
+    public static final String TOMBSTONES_KEY = ".dc-migration-assistant/tombstones.txt";
+    private static final int MAX_KEYS_PER_DELETE = 1000; // https://docs.aws.amazon.com/AmazonS3/latest/API/API_DeleteObjects.html
+
+    private final S3UploadConfig config;
+
+    public S3DeletedFileRemover(S3UploadConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Removes all files which are in the upload journal but were not seen by the current migration
+     *
+     * @return number of removed files
+     */
+    public int removeDeletedFiles() throws ExecutionException, InterruptedException {
+        final UploadJournal journal = config.getUploadJournal();
+        final List<String> deletedKeys = new ArrayList<>(journal.getKeysNotPresent());
+        if (deletedKeys.isEmpty()) {
+            logger.info("No files were deleted since the previous upload");
+            clearTombstones();
+            return 0;
+        }
+
+        logger.info("Removing {} files which were deleted since the previous upload", deletedKeys.size());
+        for (int i = 0; i < deletedKeys.size(); i += MAX_KEYS_PER_DELETE) {
+            final List<String> batch = deletedKeys.subList(i, Math.min(i + MAX_KEYS_PER_DELETE, deletedKeys.size()));
+            final DeleteObjectsResponse response = deleteObjects(batch).get();
+            response.errors().forEach(error -> logger.warn("Unable to delete {} from S3: {}", error.key(), error.message()));
+            response.deleted().forEach(deleted -> journal.recordDeleted(deleted.key()));
+        }
+
+        writeTombstones(deletedKeys);
+        return deletedKeys.size();
+    }
+
+    /**
+     * Empties the tombstone list, so files removed by a previous delta migration are not removed again if they
+     * have been recreated since.
+     */
+    public void clearTombstones() throws ExecutionException, InterruptedException {
+        writeTombstones(Collections.emptyList());
+    }
+
+    private CompletableFuture<DeleteObjectsResponse> deleteObjects(Collection<String> keys) {
+        final List<ObjectIdentifier> objects = keys.stream()
+                .map(key -> ObjectIdentifier.builder().key(key).build())
+                .collect(Collectors.toList());
+        final DeleteObjectsRequest request = DeleteObjectsRequest.builder()
+                .bucket(config.getBucketName())
+                .delete(Delete.builder().objects(objects).quiet(false).build())
+                .build();
+        return config.getS3AsyncClient().deleteObjects(request);
+    }
+
+    private void writeTombstones(List<String> deletedKeys) throws ExecutionException, InterruptedException {
+        final PutObjectRequest request = PutObjectRequest.builder()
+                .bucket(config.getBucketName())
+                .key(TOMBSTONES_KEY)
+                .build();
+        config.getS3AsyncClient()
+                .putObject(request, AsyncRequestBody.fromString(deletedKeys.stream().map(key -> key + "\n").collect(Collectors.joining())))
+                .get();
+    }
+}
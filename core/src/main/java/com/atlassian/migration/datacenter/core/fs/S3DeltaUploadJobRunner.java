@@ -0,0 +1,72 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.core.util.MigrationJobRunner;
+import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
+import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import com.atlassian.scheduler.JobRunnerRequest;
+import com.atlassian.scheduler.JobRunnerResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.Nullable;
+
+/**
+ * Scheduled job uploading the files of the home directory which changed since the previous upload to S3 bucket.
+ * If there is already a file system migration running, it will abort execution.
+ */
+public class S3DeltaUploadJobRunner implements MigrationJobRunner
+{
+    public static final String KEY = "com.atlassian.migration.datacenter.fs.S3DeltaUploadJobRunner";
+    private static Logger log = LoggerFactory.getLogger(S3DeltaUploadJobRunner.class);
+    private final FilesystemMigrationService fsMigrationService;
+    private final boolean deleteRemovedFiles;
+
+    public S3DeltaUploadJobRunner(FilesystemMigrationService fsMigrationService, boolean deleteRemovedFiles) {
+        this.fsMigrationService = fsMigrationService;
+        this.deleteRemovedFiles = deleteRemovedFiles;
+    }
+
+    @Nullable
+    @Override
+    public JobRunnerResponse runJob(JobRunnerRequest jobRunnerRequest) {
+        if (fsMigrationService.isRunning()) {
+            return JobRunnerResponse.aborted("S3 upload job is still running");
+        }
+
+        log.info("Starting S3 delta migration job");
+        try {
+            fsMigrationService.startDeltaMigration(deleteRemovedFiles);
+        } catch (InvalidMigrationStageError e) {
+            log.error("Invalid migration stage for delta migration - {}", e.getMessage());
+            return JobRunnerResponse.failed(e);
+        }
+
+        final FileSystemMigrationReport report = fsMigrationService.getReport();
+        log.info("Finished S3 delta migration job: {}", report);
+
+        return JobRunnerResponse.success("S3 delta upload completed.");
+    }
+
+    @Override
+    public String getKey()
+    {
+        return KEY;
+    }
+}
@@ -18,8 +18,16 @@ package com.atlassian.migration.datacenter.core.fs;
 
 import com.atlassian.jira.config.util.JiraHome;
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.core.fs.download.s3sync.S3SyncFileSystemDownloadManager;
+import com.atlassian.migration.datacenter.core.fs.checksum.S3ChecksumVerifier;
+import com.atlassian.migration.datacenter.core.fs.journal.FileUploadJournal;
+import com.atlassian.migration.datacenter.core.fs.journal.NoOpUploadJournal;
+import com.atlassian.migration.datacenter.core.fs.journal.UploadJournal;
+import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationErrorReport;
 import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationReport;
+import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFilesystemMigrationProgress;
+import com.atlassian.migration.datacenter.core.fs.throttle.UploadThrottle;
 import com.atlassian.migration.datacenter.core.util.MigrationRunner;
 import com.atlassian.migration.datacenter.dto.Migration;
 import com.atlassian.migration.datacenter.spi.MigrationService;
@@ -27,6 +35,8 @@ import com.atlassian.migration.datacenter.spi.MigrationStage;
 import com.atlassian.migration.datacenter.spi.exceptions.FileSystemMigrationFailure;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
 import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService;
+import com.atlassian.migration.datacenter.spi.fs.UploadThrottleSettings;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationErrorReport;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
 import com.atlassian.scheduler.config.JobId;
 import com.atlassian.util.concurrent.Supplier;
@@ -34,11 +44,15 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 
-import javax.annotation.PostConstruct;
+import java.io.Closeable;
+import java.io.IOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.atlassian.migration.datacenter.spi.MigrationStage.FS_MIGRATION_COPY;
+import static com.atlassian.migration.datacenter.spi.MigrationStage.OFFLINE_WARNING;
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.DONE;
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.DOWNLOADING;
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.FAILED;
@@ -48,8 +62,18 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
     private static final Logger logger = LoggerFactory.getLogger(S3FilesystemMigrationService.class);
 
     private static final String OVERRIDE_UPLOAD_DIRECTORY = System.getProperty("com.atlassian.migration.datacenter.fs.overrideJiraHome", "");
+    private static final long MULTIPART_UPLOAD_THRESHOLD = Long.getLong("com.atlassian.migration.datacenter.fs.multipartUploadThreshold", S3UploadConfig.DEFAULT_MULTIPART_UPLOAD_THRESHOLD);
+    private static final long SMALL_FILE_BUNDLE_THRESHOLD = Long.getLong("com.atlassian.migration.datacenter.fs.smallFileBundleThreshold", 0L);
+    private static final long BUNDLE_SIZE = Long.getLong("com.atlassian.migration.datacenter.fs.bundleSize", S3UploadConfig.DEFAULT_BUNDLE_SIZE);
+    private static final int MAX_UPLOAD_ATTEMPTS = Integer.getInteger("com.atlassian.migration.datacenter.fs.maxUploadAttempts", UploadRetryPolicy.DEFAULT_MAX_ATTEMPTS);
+    private static final long UPLOAD_RETRY_BASE_DELAY = Long.getLong("com.atlassian.migration.datacenter.fs.uploadRetryBaseDelayMillis", UploadRetryPolicy.DEFAULT_BASE_DELAY_MILLIS);
+    private static final long UPLOAD_RETRY_MAX_DELAY = Long.getLong("com.atlassian.migration.datacenter.fs.uploadRetryMaxDelayMillis", UploadRetryPolicy.DEFAULT_MAX_DELAY_MILLIS);
+    private static final boolean SKIP_UNCHANGED_OBJECTS = Boolean.parseBoolean(System.getProperty("com.atlassian.migration.datacenter.fs.skipUnchangedObjects", "true"));
+    private static final S3TransferProfile TRANSFER_PROFILE = S3TransferProfile.fromSystemProperties();
+    private static final boolean VERIFY_CHECKSUMS = Boolean.parseBoolean(System.getProperty("com.atlassian.migration.datacenter.fs.verifyChecksums", "true"));
+    private static final String UPLOAD_JOURNAL_DIRECTORY = "dc-migration-assistant";
+    private static final int CRAWLER_PARALLELISM = Integer.getInteger("com.atlassian.migration.datacenter.fs.crawlerParallelism", Runtime.getRuntime().availableProcessors());
 
-    private S3AsyncClient s3AsyncClient;
     private final JiraHome jiraHome;
     private final MigrationService migrationService;
     private final MigrationRunner migrationRunner;
@@ -57,33 +81,33 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
     private final Supplier<S3AsyncClient> s3AsyncClientSupplier;
     private final AWSMigrationHelperDeploymentService migrationHelperDeploymentService;
 
+    private final MigrationEventBus eventBus;
     private FileSystemMigrationReport report;
     private FilesystemUploader fsUploader;
+    private final AtomicBoolean deltaMigrationRunning = new AtomicBoolean(false);
+    private final UploadThrottle uploadThrottle = new UploadThrottle();
 
     public S3FilesystemMigrationService(Supplier<S3AsyncClient> s3AsyncClientSupplier,
                                         JiraHome jiraHome,
                                         S3SyncFileSystemDownloadManager fileSystemDownloadManager,
                                         MigrationService migrationService,
                                         MigrationRunner migrationRunner,
-                                        AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
+                                        AWSMigrationHelperDeploymentService migrationHelperDeploymentService,
+                                        MigrationEventBus eventBus) {
         this.s3AsyncClientSupplier = s3AsyncClientSupplier;
         this.jiraHome = jiraHome;
         this.migrationService = migrationService;
         this.migrationRunner = migrationRunner;
         this.fileSystemDownloadManager = fileSystemDownloadManager;
         this.migrationHelperDeploymentService = migrationHelperDeploymentService;
+        this.eventBus = eventBus;
 
-        this.report = new DefaultFileSystemMigrationReport();
-    }
-
-    @PostConstruct
-    public void postConstruct() {
-        this.s3AsyncClient = this.s3AsyncClientSupplier.get();
+        this.report = new DefaultFileSystemMigrationReport(eventBus);
     }
 
     @Override
     public boolean isRunning() {
-        return this.migrationService.getCurrentStage().equals(MigrationStage.FS_MIGRATION_COPY_WAIT);
+        return deltaMigrationRunning.get() || this.migrationService.getCurrentStage().equals(MigrationStage.FS_MIGRATION_COPY_WAIT);
     }
 
     @Override
@@ -91,6 +115,16 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
         return report;
     }
 
+    @Override
+    public UploadThrottleSettings getUploadThrottleSettings() {
+        return uploadThrottle.getSettings();
+    }
+
+    @Override
+    public void setUploadThrottleSettings(UploadThrottleSettings settings) {
+        uploadThrottle.update(settings);
+    }
+
     @Override
     public Boolean scheduleMigration() throws InvalidMigrationStageError
     {
@@ -126,22 +160,13 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
             return;
         }
 
-        s3AsyncClient = this.s3AsyncClientSupplier.get();
-        report = new DefaultFileSystemMigrationReport();
-
         migrationService.transition(MigrationStage.FS_MIGRATION_COPY_WAIT);
+        report = newReport();
         report.setStatus(UPLOADING);
 
-        Crawler homeCrawler = new DirectoryStreamCrawler(report);
-
-        S3UploadConfig s3UploadConfig = new S3UploadConfig(getS3Bucket(), s3AsyncClient, getSharedHomeDir());
-        Uploader s3Uploader = new S3Uploader(s3UploadConfig, report);
-
-        fsUploader = new FilesystemUploader(homeCrawler, s3Uploader);
-
         logger.info("commencing upload of shared home");
         try {
-            fsUploader.uploadDirectory(getSharedHomeDir());
+            uploadSharedHome(false, false);
 
             logger.info("upload of shared home complete. commencing shared home download");
             report.setStatus(DOWNLOADING);
@@ -158,6 +183,121 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
         }
     }
 
+    @Override
+    public Boolean scheduleDeltaMigration(boolean deleteRemovedFiles) throws InvalidMigrationStageError {
+        migrationService.assertCurrentStage(OFFLINE_WARNING);
+
+        JobId jobId = getScheduledDeltaJobId();
+        S3DeltaUploadJobRunner jobRunner = new S3DeltaUploadJobRunner(this, deleteRemovedFiles);
+
+        return migrationRunner.runMigration(jobId, jobRunner);
+    }
+
+    /**
+     * Uploads the files which were created or modified since the previous upload of the shared home. Files are
+     * compared with the upload journal of the current migration, so only the changes are uploaded.
+     */
+    @Override
+    public void startDeltaMigration(boolean deleteRemovedFiles) throws InvalidMigrationStageError {
+        migrationService.assertCurrentStage(OFFLINE_WARNING);
+        if (!deltaMigrationRunning.compareAndSet(false, true)) {
+            logger.warn("Filesystem delta migration is currently in progress, aborting new execution.");
+            return;
+        }
+
+        try {
+            report = newReport();
+            report.setStatus(UPLOADING);
+
+            logger.info("commencing delta upload of shared home");
+            uploadSharedHome(true, deleteRemovedFiles);
+
+            logger.info("delta upload of shared home complete. commencing shared home download");
+            report.setStatus(DOWNLOADING);
+            fileSystemDownloadManager.downloadFileSystem(report);
+
+            report.setStatus(DONE);
+            logger.info("Completed file system delta migration.");
+        } catch (FileSystemMigrationFailure e) {
+            logger.error("Encountered critical error during file system delta migration", e);
+            report.setStatus(FAILED);
+            migrationService.error();
+        } finally {
+            deltaMigrationRunning.set(false);
+        }
+    }
+
+    private void uploadSharedHome(boolean deltaMigration, boolean deleteRemovedFiles) throws FileSystemMigrationFailure {
+        Crawler homeCrawler = new ParallelDirectoryCrawler(report, CRAWLER_PARALLELISM);
+
+        final UploadJournal uploadJournal = openUploadJournal();
+        // Fetched per run so the upload uses the current AWS credentials and region
+        S3AsyncClient s3AsyncClient = this.s3AsyncClientSupplier.get();
+        S3UploadConfig s3UploadConfig = S3UploadConfig.builder(getS3Bucket(), s3AsyncClient, getSharedHomeDir())
+                .multipartUploadThreshold(MULTIPART_UPLOAD_THRESHOLD)
+                .uploadJournal(uploadJournal)
+                .smallFileBundling(SMALL_FILE_BUNDLE_THRESHOLD, BUNDLE_SIZE)
+                .uploadThrottle(uploadThrottle)
+                .uploadRetryPolicy(new UploadRetryPolicy(MAX_UPLOAD_ATTEMPTS, UPLOAD_RETRY_BASE_DELAY, UPLOAD_RETRY_MAX_DELAY))
+                .skipUnchangedObjects(SKIP_UNCHANGED_OBJECTS)
+                .maxOpenConnections(TRANSFER_PROFILE.getMaxConcurrency())
+                .build();
+        logger.info("Uploading shared home with {}", TRANSFER_PROFILE);
+        Uploader s3Uploader = new S3Uploader(s3UploadConfig, report);
+
+        fsUploader = new FilesystemUploader(homeCrawler, s3Uploader);
+
+        try {
+            fsUploader.uploadDirectory(getSharedHomeDir());
+
+            if (deltaMigration) {
+                updateTombstones(s3UploadConfig, deleteRemovedFiles);
+            }
+            if (VERIFY_CHECKSUMS) {
+                verifyChecksums(s3UploadConfig);
+            }
+        } finally {
+            uploadJournal.close();
+        }
+    }
+
+    private void updateTombstones(S3UploadConfig s3UploadConfig, boolean deleteRemovedFiles) throws FileSystemMigrationFailure {
+        final S3DeletedFileRemover deletedFileRemover = new S3DeletedFileRemover(s3UploadConfig);
+        try {
+            if (!deleteRemovedFiles) {
+                deletedFileRemover.clearTombstones();
+            } else if (report.getNumberOfFailedFiles() > 0) {
+                // files under a directory which couldn't be crawled would look deleted
+                logger.warn("Not removing deleted files from S3 as {} files could not be migrated", report.getNumberOfFailedFiles());
+                deletedFileRemover.clearTombstones();
+            } else {
+                final int removedFiles = deletedFileRemover.removeDeletedFiles();
+                logger.info("Removed {} deleted files from S3", removedFiles);
+            }
+        } catch (ExecutionException e) {
+            throw new FileSystemMigrationFailure("Unable to remove deleted files from S3", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FileSystemMigrationFailure("Interrupted while removing deleted files from S3", e);
+        }
+    }
+
+    /**
+     * Failures to verify are logged rather than failing the migration, as the files themselves were uploaded
+     */
+    private void verifyChecksums(S3UploadConfig s3UploadConfig) {
+        final S3ChecksumVerifier checksumVerifier = new S3ChecksumVerifier(s3UploadConfig, report);
+        try {
+            checksumVerifier.writeManifest();
+            checksumVerifier.verifyBucket();
+        } catch (ExecutionException | IOException e) {
+            logger.warn("Unable to verify checksums of the uploaded files", e);
+        } catch (InterruptedException e) {
+            logger.warn("Interrupted while verifying checksums of the uploaded files", e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
     @Override
     public void abortMigration() throws InvalidMigrationStageError {
         // We always try to remove scheduled job if the system is in inconsistent state
@@ -174,6 +314,49 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
         migrationService.error();
     }
 
+    /**
+     * Opens the journal of files uploaded by this migration. If the migration was interrupted, the journal
+     * contains the files which were uploaded before the interruption and they won't be uploaded again.
+     */
+    private UploadJournal openUploadJournal() {
+        final Path journalFile = jiraHome.getLocalHome().toPath()
+                .resolve(UPLOAD_JOURNAL_DIRECTORY)
+                .resolve(String.format("fs-upload-journal-%d.log", migrationService.getCurrentMigration().getID()));
+        try {
+            return new FileUploadJournal(journalFile);
+        } catch (IOException e) {
+            logger.warn("Unable to open upload journal {}. The migration will not be resumable.", journalFile, e);
+            return new NoOpUploadJournal();
+        }
+    }
+
+    /**
+     * Replaces the report of the previous run. Failed files are logged to the local home, so every failure of the
+     * run can be downloaded however many there are.
+     */
+    private FileSystemMigrationReport newReport() {
+        if (report instanceof Closeable) {
+            try {
+                ((Closeable) report).close();
+            } catch (IOException e) {
+                logger.warn("Unable to close the failed file log of the previous filesystem migration", e);
+            }
+        }
+        return new DefaultFileSystemMigrationReport(openFailedFileLog(), new DefaultFilesystemMigrationProgress(), eventBus);
+    }
+
+    private FileSystemMigrationErrorReport openFailedFileLog() {
+        final Path logFile = jiraHome.getLocalHome().toPath()
+                .resolve(UPLOAD_JOURNAL_DIRECTORY)
+                .resolve(String.format("fs-failed-files-%d.log.gz", migrationService.getCurrentMigration().getID()));
+        try {
+            return new DefaultFileSystemMigrationErrorReport(logFile);
+        } catch (IOException e) {
+            logger.warn("Unable to open failed file log {}. Only the most recent failed files will be reported.", logFile, e);
+            return new DefaultFileSystemMigrationErrorReport();
+        }
+    }
+
     private String getS3Bucket() {
         return migrationHelperDeploymentService.getMigrationS3BucketName();
     }
@@ -182,6 +365,10 @@ public class S3FilesystemMigrationService implements FilesystemMigrationService
         return JobId.of(S3UploadJobRunner.KEY + migrationService.getCurrentMigration().getID());
     }
 
+    private JobId getScheduledDeltaJobId() {
+        return JobId.of(S3DeltaUploadJobRunner.KEY + migrationService.getCurrentMigration().getID());
+    }
+
     private Path getSharedHomeDir() {
         if (!OVERRIDE_UPLOAD_DIRECTORY.equals("")) {
             return Paths.get(OVERRIDE_UPLOAD_DIRECTORY);
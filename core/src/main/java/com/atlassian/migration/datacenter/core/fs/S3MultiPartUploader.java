@@ -16,9 +16,15 @@
 
 package com.atlassian.migration.datacenter.core.fs;
 
+import com.atlassian.migration.datacenter.core.fs.checksum.Md5;
+import com.atlassian.migration.datacenter.core.fs.journal.MultipartUploadState;
+import com.atlassian.migration.datacenter.core.fs.journal.UploadJournal;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
@@ -26,16 +32,25 @@ import software.amazon.awssdk.services.s3.model.CompletedPart;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Uploads file to S3 in multiple parts.
@@ -44,61 +59,166 @@ import java.util.concurrent.ExecutionException;
  * 2. Split the file into same sized parts (except the last one) and upload them to S3
  * 3. Confirm the upload has finished with all the required parts
  * <p>
+ * Up to {@link #getMaxPartsInFlight()} parts are uploaded concurrently. Each part in flight holds one buffer
+ * from a small pool, which is returned to the pool as soon as the part upload completes. Parts are sent straight
+ * from their buffers without copying. The buffers of all uploads are limited to {@link #MAX_BUFFER_MEMORY} bytes,
+ * so an upload which can't get memory for another buffer uploads fewer parts at a time, and one which can't get
+ * memory for its first buffer waits. An upload whose part size is larger than that budget fails. When a concurrency
+ * limiter is supplied, every part also holds one of its permits while in flight, so parts share the connection
+ * budget of the caller.
+ * <p>
+ * Every part is sent with its Content-MD5, so S3 rejects a part which was corrupted on the way. The MD5 of the
+ * whole file is recorded in the journal, unless the upload resumed with parts uploaded by an earlier run.
+ * <p>
  * All files larger than 5GB (hard AWS limit) are required to be uploaded via this method.
  * <p>
  * https://docs.aws.amazon.com/AmazonS3/latest/dev/mpuoverview.html
  */
 public class S3MultiPartUploader {
     private final static Logger logger = LoggerFactory.getLogger(S3MultiPartUploader.class);
+
+    static final int MAX_NUMBER_OF_PARTS = 10_000; // https://docs.aws.amazon.com/AmazonS3/latest/dev/qfacts.html
+    static final int DEFAULT_PART_SIZE = 16 * 1024 * 1024; // 16 MB
+    private static final int PART_SIZE_ALIGNMENT = 1024 * 1024; // 1 MB
+    private static final int DEFAULT_MAX_PARTS_IN_FLIGHT = 4;
+    static final int MAX_BUFFER_MEMORY = Integer.getInteger("com.atlassian.migration.datacenter.fs.multipartBufferMemory", 256 * 1024 * 1024);
+    /**
+     * Bytes of part buffers which may still be allocated, shared by all multipart uploads
+     */
+    private static final Semaphore BUFFER_MEMORY = new Semaphore(MAX_BUFFER_MEMORY, true);
+
     private final S3UploadConfig config;
     private final File file;
     private final String key;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Semaphore bufferMemory;
+    private final int maxBufferMemory;
 
-    private int sizeToUpload = 100 * 1024 * 1024; // 100 MB
-    private List<CompletedPart> completedParts = new ArrayList<>();
-    private ByteBuffer buffer;
-    private int uploadPartNumber = 1;
+    private int sizeToUpload;
+    private int maxPartsInFlight = DEFAULT_MAX_PARTS_IN_FLIGHT;
+    private final BlockingQueue<ByteBuffer> freeBuffers = new LinkedBlockingQueue<>();
+    private int allocatedBuffers = 0;
+    private int reservedBufferMemory = 0;
+    private final AtomicReference<Throwable> partFailure = new AtomicReference<>();
 
     public S3MultiPartUploader(S3UploadConfig config, File file, String key) {
+        this(config, file, key, null);
+    }
+
+    public S3MultiPartUploader(S3UploadConfig config, File file, String key, AdaptiveConcurrencyLimiter concurrencyLimiter) {
+        this(config, file, key, concurrencyLimiter, BUFFER_MEMORY, MAX_BUFFER_MEMORY);
+    }
+
+    S3MultiPartUploader(S3UploadConfig config, File file, String key, AdaptiveConcurrencyLimiter concurrencyLimiter, Semaphore bufferMemory, int maxBufferMemory) {
         this.config = config;
         this.file = file;
         this.key = key;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.bufferMemory = bufferMemory;
+        this.maxBufferMemory = maxBufferMemory;
+        this.sizeToUpload = calculatePartSize(file.length());
     }
 
     public void upload() throws ExecutionException, InterruptedException {
-        // lazily loaded to save memory
-        buffer = ByteBuffer.allocate(getSizeToUpload());
+        final UploadJournal journal = config.getUploadJournal();
+        final long fileSize = file.length();
+        final long lastModified = file.lastModified();
 
-        String uploadId = initiateUpload();
-
-        try (FileInputStream fileInputStream = new FileInputStream(file);
-             BufferedInputStream bufferedInputStream = new BufferedInputStream(fileInputStream)) {
+        final String uploadId;
+        final Map<Integer, String> uploadedParts;
+        final Optional<MultipartUploadState> previousUpload = journal.getMultipartUpload(key, fileSize, lastModified);
+        previousUpload.ifPresent(upload -> setSizeToUpload(upload.getPartSize()));
+        if (getSizeToUpload() > maxBufferMemory) {
+            throw new ExecutionException(new IllegalStateException(String.format(
+                    "Part size of %d bytes for %s is larger than the multipart buffer memory of %d bytes, raise com.atlassian.migration.datacenter.fs.multipartBufferMemory to upload it",
+                    getSizeToUpload(), file, maxBufferMemory)));
+        }
+        if (previousUpload.isPresent()) {
+            uploadId = previousUpload.get().getUploadId();
+            uploadedParts = previousUpload.get().getCompletedParts();
+            logger.info("Resuming multipart upload {} for {} with {} parts already uploaded", uploadId, key, uploadedParts.size());
+        } else {
+            uploadId = initiateUpload();
+            uploadedParts = Collections.emptyMap();
+            journal.recordMultipartUploadStarted(key, fileSize, lastModified, uploadId, getSizeToUpload());
+        }
 
-            int readBytes;
-            while ((readBytes = bufferedInputStream.read(buffer.array())) > 0) {
-                logger.trace("Read {} bytes from file {}", readBytes, file);
+        final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+        boolean completed = false;
+        try {
+            // the whole file checksum is only known when every part is read in this upload
+            final MessageDigest fileDigest = uploadedParts.isEmpty() ? Md5.newDigest() : null;
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                long position = 0;
+                int uploadPartNumber = 1;
+                while (partFailure.get() == null) {
+                    if (position < fileSize && uploadedParts.containsKey(uploadPartNumber)) {
+                        logger.trace("Part {} of {} was uploaded previously, skipping", uploadPartNumber, key);
+                        parts.add(CompletableFuture.completedFuture(completedPart(uploadPartNumber, uploadedParts.get(uploadPartNumber))));
+                        position += Math.min(getSizeToUpload(), fileSize - position);
+                        uploadPartNumber++;
+                        continue;
+                    }
 
-                String etag = uploadChunk(uploadId, uploadPartNumber, readBytes);
-                logger.debug("Uploaded part {} with etag {}", uploadPartNumber, etag);
+                    config.getUploadThrottle().acquireBytes(Math.min(getSizeToUpload(), fileSize - position));
+                    // blocks while the maximum number of parts are in flight or the buffer memory is used up
+                    final ByteBuffer buffer = acquireBuffer();
+                    final int readBytes = readPart(channel, buffer, position);
+                    if (readBytes <= 0) {
+                        releaseBuffer(buffer);
+                        break;
+                    }
+                    logger.trace("Read {} bytes from file {}", readBytes, file);
+                    position += readBytes;
 
-                uploadPartNumber = completePart(uploadPartNumber, etag);
+                    buffer.flip();
+                    final MessageDigest partDigest = Md5.newDigest();
+                    partDigest.update(buffer.duplicate());
+                    if (fileDigest != null) {
+                        fileDigest.update(buffer.duplicate());
+                    }
+                    final AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter != null ? concurrencyLimiter.acquire() : null;
+                    parts.add(uploadChunk(uploadId, uploadPartNumber, buffer, Md5.toBase64(partDigest.digest()), permit));
+                    uploadPartNumber++;
+                }
+            } catch (IOException e) {
+                logger.error("Cannot read file for the multi-part upload", e);
+                throw new ExecutionException("Cannot read file for the multi-part upload " + file, e);
             }
-        } catch (IOException e) {
-            logger.error("Cannot open file for the multi-part upload", e);
-        }
-        buffer.clear();
 
-        logger.trace("Finished uploading parts, sending complete request.");
-        try {
-            completeUpload(key, uploadId).get();
-            logger.debug("Finished multipart upload for {} with {} parts", key, completedParts.size());
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Encountered error when uploading multipart file.", e);
+            logger.trace("Finished reading parts, waiting for {} part uploads to complete.", parts.size());
+            try {
+                final List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+                for (CompletableFuture<CompletedPart> part : parts) {
+                    completedParts.add(part.get());
+                }
+
+                logger.trace("Finished uploading parts, sending complete request.");
+                final CompleteMultipartUploadResponse response = completeUpload(uploadId, completedParts).get();
+                completed = true;
+                journal.recordMultipartUploadEnded(uploadId);
+                journal.recordUploaded(key, fileSize, lastModified, response.eTag(), fileDigest != null ? Md5.toHex(fileDigest.digest()) : null);
+                config.getUploadListener().fileUploaded(key, fileSize);
+                logger.debug("Finished multipart upload for {} with {} parts", key, completedParts.size());
+            } catch (ExecutionException e) {
+                logger.error("Encountered error when uploading multipart file.", e);
+                throw e;
+            }
+        } finally {
+            if (!completed) {
+                // the buffers of the parts in flight are only free once their requests have finished
+                awaitQuietly(parts);
+            }
+            releaseBuffers();
+            if (!completed) {
+                abortUpload(uploadId);
+            }
         }
     }
 
     /**
-     * Size of each chunk into which the file is split into
+     * Size of each chunk into which the file is split into. By default this is chosen from the file size so
+     * that the file is split into no more than {@link #MAX_NUMBER_OF_PARTS} parts.
      *
      * @return size of the chunk
      */
@@ -115,6 +235,85 @@ public class S3MultiPartUploader {
         this.sizeToUpload = sizeToUpload;
     }
 
+    /**
+     * Maximum number of parts which are uploaded concurrently. This also bounds the number of chunk
+     * buffers held in memory.
+     *
+     * @return maximum number of parts in flight
+     */
+    public int getMaxPartsInFlight() {
+        return maxPartsInFlight;
+    }
+
+    /**
+     * Changes the maximum number of parts which are uploaded concurrently
+     *
+     * @param maxPartsInFlight maximum number of parts in flight
+     */
+    public void setMaxPartsInFlight(int maxPartsInFlight) {
+        this.maxPartsInFlight = maxPartsInFlight;
+    }
+
+    static int availableBufferMemory() {
+        return BUFFER_MEMORY.availablePermits();
+    }
+
+    static int calculatePartSize(long fileSize) {
+        final long minimumPartSize = (fileSize + MAX_NUMBER_OF_PARTS - 1) / MAX_NUMBER_OF_PARTS;
+        final long alignedPartSize = ((minimumPartSize + PART_SIZE_ALIGNMENT - 1) / PART_SIZE_ALIGNMENT) * PART_SIZE_ALIGNMENT;
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(DEFAULT_PART_SIZE, alignedPartSize));
+    }
+
+    private ByteBuffer acquireBuffer() throws InterruptedException {
+        final ByteBuffer buffer = freeBuffers.poll();
+        if (buffer != null) {
+            return buffer;
+        }
+        if (allocatedBuffers < maxPartsInFlight) {
+            // lazily allocated to save memory, and only while the buffers of all uploads fit in the shared budget
+            final int bufferSize = getSizeToUpload();
+            if (allocatedBuffers == 0) {
+                // an upload can't start without a buffer, so it waits for other uploads to free some memory
+                bufferMemory.acquire(bufferSize);
+            } else if (!bufferMemory.tryAcquire(bufferSize)) {
+                return freeBuffers.take();
+            }
+            reservedBufferMemory += bufferSize;
+            allocatedBuffers++;
+            return ByteBuffer.allocate(bufferSize);
+        }
+        return freeBuffers.take();
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        freeBuffers.offer(buffer);
+    }
+
+    private void releaseBuffers() {
+        freeBuffers.clear();
+        allocatedBuffers = 0;
+        bufferMemory.release(reservedBufferMemory);
+        reservedBufferMemory = 0;
+    }
+
+    private static void awaitQuietly(List<CompletableFuture<CompletedPart>> parts) {
+        // waits even when interrupted, as the buffers must not be released while parts are in flight
+        CompletableFuture.allOf(parts.toArray(new CompletableFuture[0])).handle((result, error) -> null).join();
+    }
+
+    private int readPart(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int totalRead = 0;
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position + totalRead);
+            if (read < 0) {
+                break;
+            }
+            totalRead += read;
+        }
+        return totalRead;
+    }
+
     private String initiateUpload() throws InterruptedException, ExecutionException {
         CreateMultipartUploadRequest createMultipartUploadRequest = CreateMultipartUploadRequest.builder()
                 .bucket(config.getBucketName())
@@ -124,39 +323,52 @@ public class S3MultiPartUploader {
         return response.uploadId();
     }
 
-    private String uploadChunk(String uploadId, int uploadPartNumber, int readBytes) throws InterruptedException, ExecutionException {
+    private CompletableFuture<CompletedPart> uploadChunk(String uploadId, int uploadPartNumber, ByteBuffer buffer, String contentMd5, AdaptiveConcurrencyLimiter.Permit permit) {
         UploadPartRequest uploadPartRequest = UploadPartRequest.builder()
                 .bucket(config.getBucketName())
                 .key(key)
                 .uploadId(uploadId)
                 .partNumber(uploadPartNumber)
+                .contentMD5(contentMd5)
                 .build();
 
-        AsyncRequestBody body;
-        if (readBytes < buffer.limit()) {
-            // We need to limit the buffer if the rest of the file is smaller than the allocated size.
-            // If don't do this, the size of the sent part will be always equal to the buffer size.
-            body = AsyncRequestBody.fromByteBuffer((ByteBuffer) buffer.limit(readBytes));
-        } else {
-            body = AsyncRequestBody.fromByteBuffer(buffer);
+        final int partSize = buffer.remaining();
+        final CompletableFuture<UploadPartResponse> response;
+        try {
+            response = config.getS3AsyncClient().uploadPart(uploadPartRequest, new PartRequestBody(buffer));
+        } catch (RuntimeException e) {
+            if (permit != null) {
+                permit.release();
+            }
+            releaseBuffer(buffer);
+            throw e;
         }
-        return config.getS3AsyncClient()
-                .uploadPart(uploadPartRequest, body)
-                .get()
-                .eTag();
+        return response
+                .whenComplete((uploadPartResponse, throwable) -> {
+                    if (permit != null) {
+                        permit.release(partSize, throwable);
+                    }
+                    releaseBuffer(buffer);
+                    if (throwable != null) {
+                        partFailure.compareAndSet(null, throwable);
+                    }
+                })
+                .thenApply(uploadPartResponse -> {
+                    logger.debug("Uploaded part {} with etag {}", uploadPartNumber, uploadPartResponse.eTag());
+                    config.getUploadJournal().recordPartUploaded(uploadId, uploadPartNumber, uploadPartResponse.eTag());
+                    return completedPart(uploadPartNumber, uploadPartResponse.eTag());
+                });
     }
 
-    private int completePart(int uploadPartNumber, String etag) {
-        CompletedPart part = CompletedPart.builder()
-                .partNumber(uploadPartNumber)
-                .eTag(etag)
+    private CompletedPart completedPart(int partNumber, String eTag) {
+        return CompletedPart.builder()
+                .partNumber(partNumber)
+                .eTag(eTag)
                 .build();
-        completedParts.add(part);
-
-        return uploadPartNumber + 1;
     }
 
-    private CompletableFuture<CompleteMultipartUploadResponse> completeUpload(String key, String uploadId) {
+
+    private CompletableFuture<CompleteMultipartUploadResponse> completeUpload(String uploadId, List<CompletedPart> completedParts) {
         CompletedMultipartUpload completedMultipartUpload = CompletedMultipartUpload.builder()
                 .parts(completedParts)
                 .build();
@@ -169,4 +381,59 @@ public class S3MultiPartUploader {
                         .build();
         return config.getS3AsyncClient().completeMultipartUpload(completeMultipartUploadRequest);
     }
+
+    private void abortUpload(String uploadId) {
+        logger.warn("Aborting multipart upload {} for {}", uploadId, key);
+        AbortMultipartUploadRequest abortMultipartUploadRequest = AbortMultipartUploadRequest.builder()
+                .bucket(config.getBucketName())
+                .key(key)
+                .uploadId(uploadId)
+                .build();
+        config.getS3AsyncClient().abortMultipartUpload(abortMultipartUploadRequest);
+        config.getUploadJournal().recordMultipartUploadEnded(uploadId);
+    }
+
+    /**
+     * Publishes a read-only view of the part buffer, unlike {@link AsyncRequestBody#fromByteBuffer(ByteBuffer)}
+     * which copies it. The buffer is only reused once the part request has finished, so a retried request can
+     * subscribe again.
+     */
+    private static class PartRequestBody implements AsyncRequestBody {
+        private final ByteBuffer buffer;
+
+        PartRequestBody(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public Optional<Long> contentLength() {
+            return Optional.of((long) buffer.remaining());
+        }
+
+        @Override
+        public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+            subscriber.onSubscribe(new Subscription() {
+                private boolean done = false;
+
+                @Override
+                public void request(long n) {
+                    if (done) {
+                        return;
+                    }
+                    done = true;
+                    if (n <= 0) {
+                        subscriber.onError(new IllegalArgumentException("Requested a non-positive number of buffers: " + n));
+                    } else {
+                        subscriber.onNext(buffer.asReadOnlyBuffer());
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    done = true;
+                }
+            });
+        }
+    }
 }
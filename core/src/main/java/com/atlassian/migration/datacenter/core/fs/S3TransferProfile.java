@@ -0,0 +1,160 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import io.netty.channel.ChannelOption;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.http.nio.netty.SdkEventLoopGroup;
+
+import java.time.Duration;
+
+/**
+ * Settings of the HTTP client used to upload the shared home to S3. The SDK defaults suit a handful of API calls,
+ * not thousands of concurrent PUT requests, so the connection pool, timeouts and event loop are sized for bulk
+ * transfer from the number of cores and the bandwidth available to this node.
+ * <p>
+ * The profile is detected when the client is built and each setting can be overridden with a system property
+ * prefixed with {@link #PROPERTY_PREFIX}.
+ */
+public class S3TransferProfile {
+    public static final String PROPERTY_PREFIX = "com.atlassian.migration.datacenter.fs.s3.";
+
+    static final String STANDARD = "standard";
+    static final String BULK = "bulk";
+
+    /**
+     * Throughput of a single connection to S3 is typically limited to 10MB/s, so the bandwidth of the node is only
+     * used with enough connections in parallel
+     */
+    static final long MBPS_PER_CONNECTION = 80;
+    /**
+     * Assumed bandwidth per core when the bandwidth isn't configured, as the network performance of EC2 instances
+     * grows with their size
+     */
+    static final long ASSUMED_MBPS_PER_CORE = 500;
+    static final int MIN_CONNECTIONS = 32;
+    static final int MAX_CONNECTIONS = 256;
+    private static final int SDK_DEFAULT_CONNECTIONS = 50;
+    private static final int MAX_EVENT_LOOP_THREADS = 32;
+
+    private final String name;
+    private final int maxConcurrency;
+    private final int eventLoopThreads;
+    private final Duration connectionAcquisitionTimeout;
+    private final Duration readTimeout;
+    private final Duration writeTimeout;
+    private final boolean tcpKeepAlive;
+
+    public S3TransferProfile(String name, int maxConcurrency, int eventLoopThreads, Duration connectionAcquisitionTimeout, Duration readTimeout, Duration writeTimeout, boolean tcpKeepAlive) {
+        if (maxConcurrency < 1 || eventLoopThreads < 1) {
+            throw new IllegalArgumentException("S3 transfer profile needs at least one connection and event loop thread");
+        }
+        this.name = name;
+        this.maxConcurrency = maxConcurrency;
+        this.eventLoopThreads = eventLoopThreads;
+        this.connectionAcquisitionTimeout = connectionAcquisitionTimeout;
+        this.readTimeout = readTimeout;
+        this.writeTimeout = writeTimeout;
+        this.tcpKeepAlive = tcpKeepAlive;
+    }
+
+    /**
+     * @return profile detected for this node, with any overrides from system properties applied
+     */
+    public static S3TransferProfile fromSystemProperties() {
+        final S3TransferProfile detected = detect(Runtime.getRuntime().availableProcessors(), Long.getLong(PROPERTY_PREFIX + "bandwidthMbps", 0L));
+        return new S3TransferProfile(
+                detected.name,
+                Integer.getInteger(PROPERTY_PREFIX + "maxConcurrency", detected.maxConcurrency),
+                Integer.getInteger(PROPERTY_PREFIX + "eventLoopThreads", detected.eventLoopThreads),
+                Duration.ofSeconds(Long.getLong(PROPERTY_PREFIX + "connectionAcquisitionTimeoutSeconds", detected.connectionAcquisitionTimeout.getSeconds())),
+                Duration.ofSeconds(Long.getLong(PROPERTY_PREFIX + "readTimeoutSeconds", detected.readTimeout.getSeconds())),
+                Duration.ofSeconds(Long.getLong(PROPERTY_PREFIX + "writeTimeoutSeconds", detected.writeTimeout.getSeconds())),
+                Boolean.parseBoolean(System.getProperty(PROPERTY_PREFIX + "tcpKeepAlive", Boolean.toString(detected.tcpKeepAlive))));
+    }
+
+    /**
+     * @param cores         number of cores available to the JVM
+     * @param bandwidthMbps bandwidth available for the upload in megabits per second, or 0 if it is unknown
+     */
+    static S3TransferProfile detect(int cores, long bandwidthMbps) {
+        final long bandwidth = bandwidthMbps > 0 ? bandwidthMbps : cores * ASSUMED_MBPS_PER_CORE;
+        final int connections = (int) Math.max(MIN_CONNECTIONS, Math.min(MAX_CONNECTIONS, bandwidth / MBPS_PER_CONNECTION));
+        if (connections <= SDK_DEFAULT_CONNECTIONS) {
+            return new S3TransferProfile(STANDARD, connections, Math.max(2, cores), Duration.ofSeconds(30), Duration.ofSeconds(60), Duration.ofSeconds(60), true);
+        }
+        return new S3TransferProfile(BULK, connections, Math.min(MAX_EVENT_LOOP_THREADS, Math.max(2, cores * 2)), Duration.ofSeconds(60), Duration.ofSeconds(120), Duration.ofSeconds(120), true);
+    }
+
+    /**
+     * @return builder of an HTTP client with this profile. The client has its own event loop, which is closed with
+     * the client.
+     */
+    public NettyNioAsyncHttpClient.Builder httpClientBuilder() {
+        return NettyNioAsyncHttpClient.builder()
+                .maxConcurrency(maxConcurrency)
+                .connectionAcquisitionTimeout(connectionAcquisitionTimeout)
+                .readTimeout(readTimeout)
+                .writeTimeout(writeTimeout)
+                .putChannelOption(ChannelOption.SO_KEEPALIVE, tcpKeepAlive)
+                .eventLoopGroupBuilder(SdkEventLoopGroup.builder().numberOfThreads(eventLoopThreads));
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return maximum number of connections to S3, which also bounds the number of requests in flight
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getEventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public Duration getConnectionAcquisitionTimeout() {
+        return connectionAcquisitionTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public Duration getWriteTimeout() {
+        return writeTimeout;
+    }
+
+    public boolean isTcpKeepAlive() {
+        return tcpKeepAlive;
+    }
+
+    @Override
+    public String toString() {
+        return "S3TransferProfile{" +
+                "name='" + name + '\'' +
+                ", maxConcurrency=" + maxConcurrency +
+                ", eventLoopThreads=" + eventLoopThreads +
+                ", connectionAcquisitionTimeout=" + connectionAcquisitionTimeout +
+                ", readTimeout=" + readTimeout +
+                ", writeTimeout=" + writeTimeout +
+                ", tcpKeepAlive=" + tcpKeepAlive +
+                '}';
+    }
+}
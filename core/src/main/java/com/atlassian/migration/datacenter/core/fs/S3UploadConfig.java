@@ -16,6 +16,9 @@
 
 package com.atlassian.migration.datacenter.core.fs;
 
+import com.atlassian.migration.datacenter.core.fs.journal.NoOpUploadJournal;
+import com.atlassian.migration.datacenter.core.fs.journal.UploadJournal;
+import com.atlassian.migration.datacenter.core.fs.throttle.UploadThrottle;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 
 import java.nio.file.Path;
@@ -24,14 +27,47 @@ import java.nio.file.Path;
  * Contains configuration for S3 upload calls
  */
 public class S3UploadConfig {
-    private String bucketName;
-    private S3AsyncClient s3AsyncClient;
-    private Path sharedHome;
+    public static final long DEFAULT_MULTIPART_UPLOAD_THRESHOLD = 64 * 1024 * 1024L; // 64 MB
+    public static final long DEFAULT_BUNDLE_SIZE = 64 * 1024 * 1024L; // 64 MB
+
+    private final String bucketName;
+    private final S3AsyncClient s3AsyncClient;
+    private final Path sharedHome;
+    private final long multipartUploadThreshold;
+    private final UploadJournal uploadJournal;
+    private final long smallFileBundleThreshold;
+    private final long bundleSize;
+    private final UploadThrottle uploadThrottle;
+    private final UploadRetryPolicy uploadRetryPolicy;
+    private final boolean skipUnchangedObjects;
+    private final int maxOpenConnections;
+    private final UploadListener uploadListener;
 
     public S3UploadConfig(String bucketName, S3AsyncClient s3AsyncClient, Path sharedHome) {
-        this.bucketName = bucketName;
-        this.s3AsyncClient = s3AsyncClient;
-        this.sharedHome = sharedHome;
+        this(builder(bucketName, s3AsyncClient, sharedHome));
+    }
+
+    private S3UploadConfig(Builder builder) {
+        this.bucketName = builder.bucketName;
+        this.s3AsyncClient = builder.s3AsyncClient;
+        this.sharedHome = builder.sharedHome;
+        this.multipartUploadThreshold = builder.multipartUploadThreshold;
+        this.uploadJournal = builder.uploadJournal;
+        this.smallFileBundleThreshold = builder.smallFileBundleThreshold;
+        this.bundleSize = builder.bundleSize;
+        this.uploadThrottle = builder.uploadThrottle;
+        this.uploadRetryPolicy = builder.uploadRetryPolicy;
+        this.skipUnchangedObjects = builder.skipUnchangedObjects;
+        this.maxOpenConnections = builder.maxOpenConnections;
+        this.uploadListener = builder.uploadListener;
+    }
+
+    /**
+     * Starts a configuration for uploading files from the given home to the given bucket. Everything else defaults
+     * to a plain upload: no journal, bundling or throttling, and the default retry policy.
+     */
+    public static Builder builder(String bucketName, S3AsyncClient s3AsyncClient, Path sharedHome) {
+        return new Builder(bucketName, s3AsyncClient, sharedHome);
     }
 
     /**
@@ -60,4 +96,157 @@ public class S3UploadConfig {
     public Path getSharedHome() {
         return sharedHome;
     }
+
+    /**
+     * Files larger than this size are uploaded in concurrent parts rather than with a single PUT request
+     *
+     * @return multipart upload threshold in bytes
+     */
+    public long getMultipartUploadThreshold() {
+        return multipartUploadThreshold;
+    }
+
+    /**
+     * Journal of uploaded files, used to skip files which were uploaded by a previous run of the migration
+     *
+     * @return upload journal
+     */
+    public UploadJournal getUploadJournal() {
+        return uploadJournal;
+    }
+
+    /**
+     * Files smaller than this size are packed into archives by the {@link SmallFileBundler}. Bundling is disabled
+     * when the threshold is not positive.
+     *
+     * @return small file bundle threshold in bytes
+     */
+    public long getSmallFileBundleThreshold() {
+        return smallFileBundleThreshold;
+    }
+
+    /**
+     * Size of the content after which a bundle of small files is uploaded
+     *
+     * @return bundle size in bytes
+     */
+    public long getBundleSize() {
+        return bundleSize;
+    }
+
+    /**
+     * Limits the rate of reading and uploading files
+     *
+     * @return upload throttle
+     */
+    public UploadThrottle getUploadThrottle() {
+        return uploadThrottle;
+    }
+
+    /**
+     * Decides which failed uploads are retried and when
+     *
+     * @return upload retry policy
+     */
+    public UploadRetryPolicy getUploadRetryPolicy() {
+        return uploadRetryPolicy;
+    }
+
+    /**
+     * Whether the bucket is listed before the upload, so files which are already in the bucket are skipped even
+     * if they aren't in the upload journal
+     *
+     * @return true if unchanged objects are skipped
+     */
+    public boolean isSkipUnchangedObjects() {
+        return skipUnchangedObjects;
+    }
+
+    /**
+     * Maximum number of requests the uploader keeps in flight. This should not exceed the connection pool of the
+     * S3 client, see {@link S3TransferProfile#getMaxConcurrency()}.
+     *
+     * @return maximum number of open connections
+     */
+    public int getMaxOpenConnections() {
+        return maxOpenConnections;
+    }
+
+    /**
+     * Notified about every file which has been uploaded
+     *
+     * @return upload listener
+     */
+    public UploadListener getUploadListener() {
+        return uploadListener;
+    }
+
+    public static class Builder {
+        private final String bucketName;
+        private final S3AsyncClient s3AsyncClient;
+        private final Path sharedHome;
+        private long multipartUploadThreshold = DEFAULT_MULTIPART_UPLOAD_THRESHOLD;
+        private UploadJournal uploadJournal = new NoOpUploadJournal();
+        private long smallFileBundleThreshold = 0;
+        private long bundleSize = DEFAULT_BUNDLE_SIZE;
+        private UploadThrottle uploadThrottle = new UploadThrottle();
+        private UploadRetryPolicy uploadRetryPolicy = new UploadRetryPolicy();
+        private boolean skipUnchangedObjects = false;
+        private int maxOpenConnections = S3Uploader.MAX_OPEN_CONNECTIONS;
+        private UploadListener uploadListener = UploadListener.NONE;
+
+        private Builder(String bucketName, S3AsyncClient s3AsyncClient, Path sharedHome) {
+            this.bucketName = bucketName;
+            this.s3AsyncClient = s3AsyncClient;
+            this.sharedHome = sharedHome;
+        }
+
+        public Builder multipartUploadThreshold(long multipartUploadThreshold) {
+            this.multipartUploadThreshold = multipartUploadThreshold;
+            return this;
+        }
+
+        public Builder uploadJournal(UploadJournal uploadJournal) {
+            this.uploadJournal = uploadJournal;
+            return this;
+        }
+
+        /**
+         * Packs files smaller than the threshold into bundles of about the given size
+         */
+        public Builder smallFileBundling(long smallFileBundleThreshold, long bundleSize) {
+            this.smallFileBundleThreshold = smallFileBundleThreshold;
+            this.bundleSize = bundleSize;
+            return this;
+        }
+
+        public Builder uploadThrottle(UploadThrottle uploadThrottle) {
+            this.uploadThrottle = uploadThrottle;
+            return this;
+        }
+
+        public Builder uploadRetryPolicy(UploadRetryPolicy uploadRetryPolicy) {
+            this.uploadRetryPolicy = uploadRetryPolicy;
+            return this;
+        }
+
+        public Builder skipUnchangedObjects(boolean skipUnchangedObjects) {
+            this.skipUnchangedObjects = skipUnchangedObjects;
+            return this;
+        }
+
+        public Builder maxOpenConnections(int maxOpenConnections) {
+            this.maxOpenConnections = maxOpenConnections;
+            return this;
+        }
+
+        public Builder uploadListener(UploadListener uploadListener) {
+            this.uploadListener = uploadListener;
+            return this;
+        }
+
+        public S3UploadConfig build() {
+            return new S3UploadConfig(this);
+        }
+    }
 }
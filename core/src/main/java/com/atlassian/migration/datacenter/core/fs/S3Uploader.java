@@ -16,135 +16,302 @@
 
 package com.atlassian.migration.datacenter.core.fs;
 
+import com.atlassian.migration.datacenter.core.fs.checksum.ChecksumAsyncRequestBody;
+import com.atlassian.migration.datacenter.core.fs.checksum.Md5;
+import com.atlassian.migration.datacenter.core.fs.inventory.ObjectInventory;
+import com.atlassian.migration.datacenter.core.fs.inventory.S3InventoryLoader;
 import com.atlassian.migration.datacenter.core.util.UploadQueue;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
 
-import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.LinkedList;
+import java.util.Collections;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
+/**
+ * Uploads files from the {@link UploadQueue} to S3. The number of PUT requests in flight is adapted to the
+ * observed throughput, latency and throttling by an {@link AdaptiveConcurrencyLimiter}, between
+ * {@link #MIN_OPEN_CONNECTIONS} and {@link S3UploadConfig#getMaxOpenConnections()}, which defaults to
+ * {@link #MAX_OPEN_CONNECTIONS}; each completed request immediately frees its slot for the next file in the queue.
+ * Files larger than the configured multipart threshold are uploaded in concurrent parts which draw on the
+ * same connection slots. When small file bundling is configured, files below the bundle threshold are packed
+ * into archives by the {@link SmallFileBundler} instead of being uploaded one by one.
+ * <p>
+ * Failed uploads are handed to the {@link UploadRetryScheduler}, which uploads the file again after a backoff
+ * while the uploader carries on with the queue. Retried files are always uploaded on their own, not in a bundle.
+ * <p>
+ * When skipping unchanged objects is enabled, the bucket is listed into an {@link ObjectInventory} before the
+ * first file is uploaded, and files whose object is already in the bucket are skipped like files in the journal.
+ * <p>
+ * The MD5 of every file is computed while it is streamed to S3 and recorded in the journal. A single PUT whose
+ * ETag doesn't match the checksum is retried.
+ */
 public class S3Uploader implements Uploader {
     private static final Logger logger = LoggerFactory.getLogger(S3Uploader.class);
     public static final int MAX_OPEN_CONNECTIONS = 50;
+    static final int MIN_OPEN_CONNECTIONS = 4;
+    static final int INITIAL_OPEN_CONNECTIONS = 16;
+    public static final long MAX_QUEUED_BYTES = 1024 * 1024 * 1024L; // 1GB
     private static final long MAXIMUM_FILE_SIZE_TO_UPLOAD = 5 * 1024 * 1024 * 1024L; // 5GB  https://docs.aws.amazon.com/AmazonS3/latest/dev/UploadingObjects.html
+    private static final int MAX_CONCURRENT_MULTIPART_UPLOADS = 2;
+    public static final String INTERNAL_PREFIX = ".dc-migration-assistant/";
 
     private final FileSystemMigrationReport report;
-    private final Queue<S3UploadOperation> responsesQueue = new LinkedList<>();
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Queue<Future<?>> multipartUploads = new ConcurrentLinkedQueue<>();
     private final S3UploadConfig config;
+    private ExecutorService multipartUploadExecutor;
+    private UploadRetryScheduler retryScheduler;
+    private SmallFileBundler smallFileBundler;
+    private ObjectInventory inventory;
 
     public S3Uploader(S3UploadConfig config, FileSystemMigrationReport report) {
         this.config = config;
         this.report = report;
+        final int maxOpenConnections = config.getMaxOpenConnections();
+        this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(
+                Math.min(INITIAL_OPEN_CONNECTIONS, maxOpenConnections),
+                Math.min(MIN_OPEN_CONNECTIONS, maxOpenConnections),
+                maxOpenConnections,
+                report::reportUploadConcurrencyLimit);
     }
 
     @Override
     public Integer maxConcurrent() {
-        return MAX_OPEN_CONNECTIONS;
+        return config.getMaxOpenConnections();
+    }
+
+    @Override
+    public Long maxQueuedBytes() {
+        return MAX_QUEUED_BYTES;
     }
 
     @Override
-    public void upload(UploadQueue<Path> queue) throws FilesystemUploader.FileUploadException {
+    public void upload(UploadQueue<CrawledFile> queue) throws FilesystemUploader.FileUploadException {
+        multipartUploadExecutor = Executors.newFixedThreadPool(MAX_CONCURRENT_MULTIPART_UPLOADS);
+        retryScheduler = new UploadRetryScheduler(config.getUploadRetryPolicy(), report, this::uploadFile);
+        smallFileBundler = config.getSmallFileBundleThreshold() > 0 ? new SmallFileBundler(config, report, concurrencyLimiter, retryScheduler) : null;
         try {
-            for (Optional<Path> opt = queue.take(); opt.isPresent(); opt = queue.take()) {
-                uploadFile(opt.get());
+            inventory = loadInventory();
+            for (Optional<CrawledFile> opt = queue.take(); opt.isPresent(); opt = queue.take()) {
+                report.reportUploadQueueOccupancy(queue.size(), queue.weight());
+                uploadFile(opt.get(), 1);
             }
+            report.reportUploadQueueOccupancy(0, 0);
+            if (smallFileBundler != null) {
+                logger.debug("Finished uploading all files, uploading remaining bundle of small files");
+                smallFileBundler.finish();
+            }
+            logger.debug("Finished uploading all files, waiting for pending responses");
+            awaitPendingUploads();
         } catch (InterruptedException e) {
             String msg = "InterruptedException while fetching file from queue";
             logger.error(msg, e);
             throw new FilesystemUploader.FileUploadException(msg, e);
+        } finally {
+            retryScheduler.shutdown();
+            multipartUploadExecutor.shutdownNow();
+            config.getUploadJournal().flush();
         }
-        logger.debug("Finished uploading all files, acknowledging pending responses");
-        acknowledgeAndFlushResponses();
         logger.info("Finished uploading files to S3");
     }
 
-    private void uploadFile(Path path) {
-        if (responsesQueue.size() >= MAX_OPEN_CONNECTIONS) {
-            logger.trace("Response queue greater than connection threshold. Acknowledging response queue");
-            acknowledgeAndFlushResponses();
+    private void uploadFile(CrawledFile file, int attempt) throws InterruptedException {
+        final Path path = file.getPath();
+        logger.trace("Uploading {}, attempt {}", path, attempt);
+        String key = config.getSharedHome().relativize(path).toString();
+        final long fileSize = file.getSize();
+        final long lastModified = file.getLastModified();
+        config.getUploadJournal().markPresent(key);
+        if (config.getUploadJournal().isUploaded(key, fileSize, lastModified)) {
+            logger.trace("{} was uploaded by a previous migration, skipping", path);
+            report.reportFileUploaded();
+            report.reportBytesSkipped(fileSize);
+            return;
         }
+        if (inventory != null && inventory.isUnchanged(key, fileSize, lastModified)) {
+            logger.trace("{} is already in the bucket and hasn't changed since, skipping", path);
+            report.reportFileUploaded();
+            report.reportBytesSkipped(fileSize);
+            return;
+        }
+        config.getUploadThrottle().acquireFile();
+        if (attempt == 1 && smallFileBundler != null && fileSize < config.getSmallFileBundleThreshold()) {
+            logger.trace("Adding {} to bundle of small files", path);
+            smallFileBundler.add(file, key);
+        } else if (fileSize > getMultipartUploadThreshold()) {
+            logger.debug("File {} is larger than {}, running multipart upload", path, FileUtils.byteCountToDisplaySize(getMultipartUploadThreshold()));
+            uploadMultipartFile(file, key, attempt);
+        } else {
+            config.getUploadThrottle().acquireBytes(fileSize);
+            logger.trace("Waiting for a free connection to upload {}", path);
+            final AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
 
-        if (Files.exists(path)) {
-            logger.trace("Consuming {} from upload queue", path);
-            String key = config.getSharedHome().relativize(path).toString();
-            if (path.toFile().length() > MAXIMUM_FILE_SIZE_TO_UPLOAD) {
-                logger.debug("File {} is larger than {}, running multipart upload", path, FileUtils.byteCountToDisplaySize(MAXIMUM_FILE_SIZE_TO_UPLOAD));
-
-                final S3MultiPartUploader multiPartUploader = new S3MultiPartUploader(config, path.toFile(), key);
-                try {
-                    multiPartUploader.upload();
-                } catch (InterruptedException | ExecutionException e) {
-                    logger.error("Error when running multi-part upload for file {} with exception {}", path, e.getMessage());
-                }
-            } else {
-                logger.trace("uploading file {}", path);
-                final PutObjectRequest putRequest = PutObjectRequest.builder()
-                        .bucket(config.getBucketName())
-                        .key(key)
-                        .build();
-                final CompletableFuture<PutObjectResponse> response = config.getS3AsyncClient().putObject(putRequest, path);
-                final S3UploadOperation uploadOperation = new S3UploadOperation(path, response);
-                responsesQueue.add(uploadOperation);
+            logger.trace("uploading file {}", path);
+            final PutObjectRequest putRequest = PutObjectRequest.builder()
+                    .bucket(config.getBucketName())
+                    .key(key)
+                    .build();
+            final ChecksumAsyncRequestBody requestBody = new ChecksumAsyncRequestBody(AsyncRequestBody.fromFile(path));
+            final CompletableFuture<PutObjectResponse> response;
+            try {
+                response = config.getS3AsyncClient().putObject(putRequest, requestBody);
+            } catch (RuntimeException e) {
+                permit.release();
+                retryScheduler.retryOrFail(file, attempt, e);
+                return;
+            }
 
+            if (attempt == 1) {
                 report.reportFileUploadCommenced();
             }
-        } else {
-            addFailedFile(path, String.format("File doesn't exist: %s", path));
+            final S3UploadOperation operation = new S3UploadOperation(file, key, attempt, requestBody);
+            response.whenComplete((putObjectResponse, throwable) -> {
+                try {
+                    handlePutObjectResponse(operation, putObjectResponse, throwable);
+                } finally {
+                    permit.release(fileSize, throwable);
+                }
+            });
         }
     }
 
-    private void acknowledgeAndFlushResponses() {
-        final int initialQueueSize = responsesQueue.size();
-        for (int i = 0; i < initialQueueSize; i++) {
-            S3UploadOperation operation = responsesQueue.poll();
-            if (operation != null) {
-                handlePutObjectResponse(operation);
-            }
+    /**
+     * Runs the multipart upload on a separate thread, so the large file doesn't hold up smaller files in the
+     * queue. The parts are uploaded using the same connection permits as single PUT requests.
+     */
+    private void uploadMultipartFile(CrawledFile file, String key, int attempt) {
+        final Path path = file.getPath();
+        final S3MultiPartUploader multiPartUploader = new S3MultiPartUploader(config, path.toFile(), key, concurrencyLimiter);
+        if (attempt == 1) {
+            report.reportFileUploadCommenced();
         }
+        final Future<?> multipartUpload = multipartUploadExecutor.submit(() -> {
+            try {
+                multiPartUploader.upload();
+                logger.trace("{} migrated successfully", path);
+                report.reportFileUploaded();
+                report.reportBytesUploaded(file.getSize());
+            } catch (ExecutionException e) {
+                logger.error("Error when running multi-part upload for file {} with exception {}", path, e.getMessage());
+                retryScheduler.retryOrFail(file, attempt, e.getCause() != null ? e.getCause() : e);
+            } catch (InterruptedException e) {
+                addFailedFile(file, e.getMessage());
+                Thread.currentThread().interrupt();
+            }
+        });
+        multipartUploads.removeIf(Future::isDone);
+        multipartUploads.add(multipartUpload);
     }
 
-    private void handlePutObjectResponse(S3UploadOperation operation) {
+    private ObjectInventory loadInventory() throws InterruptedException {
+        if (!config.isSkipUnchangedObjects()) {
+            return null;
+        }
+        logger.info("Listing bucket {} to skip files which are already uploaded", config.getBucketName());
         try {
-            logger.trace("acknowledging file upload for {}", operation.path);
-            final PutObjectResponse evaluatedResponse = operation.response.get();
-            if (!evaluatedResponse.sdkHttpResponse().isSuccessful()) {
-                final String errorMessage = String.format(
-                        "Error when uploading %s to S3, %s",
-                        operation.path,
-                        evaluatedResponse.sdkHttpResponse().statusText());
-                logger.warn("error uploading {} to S3 - {}", operation.path, evaluatedResponse);
-                addFailedFile(operation.path, errorMessage);
-            } else {
-                logger.trace("{} migrated successfully", operation.path);
-                report.reportFileUploaded();
+            return new S3InventoryLoader(config.getS3AsyncClient(), config.getBucketName(), Collections.singletonList(INTERNAL_PREFIX)).load();
+        } catch (ExecutionException | RuntimeException e) {
+            logger.warn("Unable to list bucket {}, all files not in the upload journal will be uploaded", config.getBucketName(), e);
+            return null;
+        }
+    }
+
+    private long getMultipartUploadThreshold() {
+        return Math.min(config.getMultipartUploadThreshold(), MAXIMUM_FILE_SIZE_TO_UPLOAD);
+    }
+
+    /**
+     * Waits until every upload has finished and no further retry was scheduled by the uploads which finished
+     * in the meantime. Failed uploads schedule their retry before they release their connection permit, so
+     * a retry can't be missed between the two.
+     */
+    private void awaitPendingUploads() throws InterruptedException {
+        long scheduledRetries;
+        do {
+            scheduledRetries = retryScheduler.awaitIdle();
+            for (Future<?> multipartUpload = multipartUploads.poll(); multipartUpload != null; multipartUpload = multipartUploads.poll()) {
+                try {
+                    multipartUpload.get();
+                } catch (ExecutionException e) {
+                    logger.error("Unexpected error in multipart upload", e.getCause());
+                }
             }
-        } catch (InterruptedException | ExecutionException e) {
-            addFailedFile(operation.path, e.getMessage());
+            concurrencyLimiter.awaitIdle();
+        } while (retryScheduler.awaitIdle() != scheduledRetries);
+    }
+
+    private void handlePutObjectResponse(S3UploadOperation operation, PutObjectResponse response, Throwable throwable) {
+        final Path path = operation.file.getPath();
+        logger.trace("acknowledging file upload for {}", path);
+        if (throwable != null) {
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            retryScheduler.retryOrFail(operation.file, operation.attempt, cause);
+        } else if (!response.sdkHttpResponse().isSuccessful()) {
+            final String errorMessage = String.format(
+                    "Error when uploading %s to S3, %s",
+                    path,
+                    response.sdkHttpResponse().statusText());
+            logger.warn("error uploading {} to S3 - {}", path, response);
+            final boolean retryable = config.getUploadRetryPolicy().isRetryableStatus(response.sdkHttpResponse().statusCode());
+            retryScheduler.retryOrFail(operation.file, operation.attempt, retryable, errorMessage);
+        } else if (operation.checksumMismatch(response.eTag())) {
+            final String errorMessage = String.format(
+                    "Checksum of %s (%s) does not match the ETag of the uploaded object (%s)",
+                    path,
+                    operation.requestBody.getChecksum(),
+                    response.eTag());
+            logger.warn(errorMessage);
+            retryScheduler.retryOrFail(operation.file, operation.attempt, true, errorMessage);
+        } else {
+            logger.trace("{} migrated successfully", path);
+            config.getUploadJournal().recordUploaded(operation.key, operation.file.getSize(), operation.file.getLastModified(), response.eTag(), operation.requestBody.getChecksum());
+            config.getUploadListener().fileUploaded(operation.key, operation.file.getSize());
+            report.reportFileUploaded();
+            report.reportBytesUploaded(operation.file.getSize());
         }
     }
 
-    private void addFailedFile(Path path, String reason) {
-        report.reportFileNotMigrated(new FailedFileMigration(path, reason));
-        logger.error("File {} wasn't uploaded. Reason: {}", path, reason);
+    private void addFailedFile(CrawledFile file, String reason) {
+        report.reportFileNotMigrated(new FailedFileMigration(file.getPath(), reason));
+        report.reportBytesFailed(file.getSize());
+        logger.error("File {} wasn't uploaded. Reason: {}", file.getPath(), reason);
     }
 
     private static class S3UploadOperation {
-        Path path;
-        CompletableFuture<PutObjectResponse> response;
+        final CrawledFile file;
+        final String key;
+        final int attempt;
+        final ChecksumAsyncRequestBody requestBody;
+
+        S3UploadOperation(CrawledFile file, String key, int attempt, ChecksumAsyncRequestBody requestBody) {
+            this.file = file;
+            this.key = key;
+            this.attempt = attempt;
+            this.requestBody = requestBody;
+        }
 
-        S3UploadOperation(Path path, CompletableFuture<PutObjectResponse> response) {
-            this.path = path;
-            this.response = response;
+        /**
+         * The bucket is encrypted with SSE-S3, so the ETag of an object uploaded in a single PUT is the MD5 of
+         * its content
+         */
+        boolean checksumMismatch(String eTag) {
+            final String checksum = requestBody.getChecksum();
+            return checksum != null && eTag != null && !checksum.equals(Md5.normalizeETag(eTag));
         }
     }
 }
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.core.fs.checksum.Md5;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Packs small files into uncompressed zip archives which are uploaded to S3 as a single object, so the upload of
+ * many tiny files isn't dominated by the latency and cost of one PUT request per file. Each archive ends with a
+ * manifest entry listing the size, modification time and key of every file it contains.
+ * <p>
+ * Archives are stored under {@link #BUNDLES_PREFIX}, grouped by upload pass, and are unpacked by the migration
+ * helper in the order of the passes, so a file which was modified between passes ends up with its latest content.
+ * Files of a bundle which fails to upload are passed to the {@link UploadRetryScheduler} to be retried on their own.
+ * <p>
+ * Archives are uploaded with their Content-MD5, and the MD5 of every file in the archive is recorded in the journal.
+ * <p>
+ * This class is not thread safe; files must be added from the thread consuming the upload queue.
+ */
+public class SmallFileBundler {
+    private static final Logger logger = LoggerFactory.getLogger(SmallFileBundler.class);
+
+    public static final String BUNDLES_PREFIX = ".dc-migration-assistant/bundles/";
+    public static final String MANIFEST_ENTRY = ".dc-migration-assistant/manifest.tsv";
+
+    private final S3UploadConfig config;
+    private final FileSystemMigrationReport report;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final UploadRetryScheduler retryScheduler;
+    private final String passPrefix;
+    private final List<CompletableFuture<?>> pendingUploads = new ArrayList<>();
+
+    private Bundle currentBundle;
+    private int bundleSequence = 0;
+
+    public SmallFileBundler(S3UploadConfig config, FileSystemMigrationReport report, AdaptiveConcurrencyLimiter concurrencyLimiter, UploadRetryScheduler retryScheduler) {
+        this.config = config;
+        this.report = report;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.retryScheduler = retryScheduler;
+        this.passPrefix = BUNDLES_PREFIX + String.format("%013d", System.currentTimeMillis()) + "/";
+    }
+
+    /**
+     * Adds the file to the current archive. The archive is uploaded once it reaches the configured bundle size.
+     */
+    public void add(CrawledFile file, String key) throws InterruptedException {
+        final Path path = file.getPath();
+        config.getUploadThrottle().acquireBytes(file.getSize());
+        final byte[] content;
+        try {
+            content = Files.readAllBytes(path);
+        } catch (IOException e) {
+            retryScheduler.retryOrFail(file, 1, e);
+            return;
+        }
+
+        if (currentBundle == null) {
+            try {
+                currentBundle = new Bundle(passPrefix + String.format("%06d.zip", bundleSequence++));
+            } catch (IOException e) {
+                logger.error("Unable to create bundle for {}", path, e);
+                retryScheduler.retryOrFail(file, 1, e);
+                return;
+            }
+        }
+
+        report.reportFileUploadCommenced();
+        try {
+            currentBundle.add(new BundledFile(file, key, Md5.hex(content)), content);
+        } catch (IOException e) {
+            logger.error("Unable to write {} to bundle {}", path, currentBundle.key, e);
+            retryScheduler.retryOrFail(file, 1, e);
+            currentBundle.abandon(e);
+            currentBundle = null;
+            return;
+        }
+
+        if (currentBundle.contentSize >= config.getBundleSize()) {
+            uploadCurrentBundle();
+        }
+    }
+
+    /**
+     * Uploads the partially filled archive, if there is one, and waits until all archives are uploaded
+     */
+    public void finish() throws InterruptedException {
+        uploadCurrentBundle();
+        for (CompletableFuture<?> upload : pendingUploads) {
+            try {
+                upload.join();
+            } catch (CompletionException e) {
+                logger.error("Unexpected error when uploading bundle", e.getCause());
+            }
+        }
+        pendingUploads.clear();
+    }
+
+    private void uploadCurrentBundle() throws InterruptedException {
+        if (currentBundle == null) {
+            return;
+        }
+        final Bundle bundle = currentBundle;
+        currentBundle = null;
+
+        try {
+            bundle.close();
+        } catch (IOException e) {
+            logger.error("Unable to finish bundle {}", bundle.key, e);
+            bundle.abandon(e);
+            return;
+        }
+
+        logger.trace("Waiting for a free connection to upload bundle {}", bundle.key);
+        final AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.acquire();
+
+        logger.debug("Uploading bundle {} with {} files", bundle.key, bundle.files.size());
+        final PutObjectRequest putRequest = PutObjectRequest.builder()
+                .bucket(config.getBucketName())
+                .key(bundle.key)
+                .contentMD5(Md5.toBase64(bundle.digest.digest()))
+                .build();
+        final CompletableFuture<PutObjectResponse> response;
+        try {
+            response = config.getS3AsyncClient().putObject(putRequest, bundle.archive);
+        } catch (RuntimeException e) {
+            permit.release();
+            bundle.abandon(e);
+            return;
+        }
+
+        pendingUploads.removeIf(CompletableFuture::isDone);
+        pendingUploads.add(response.whenComplete((putObjectResponse, throwable) -> {
+            try {
+                handlePutObjectResponse(bundle, putObjectResponse, throwable);
+            } finally {
+                permit.release(bundle.contentSize, throwable);
+            }
+        }));
+    }
+
+    private void handlePutObjectResponse(Bundle bundle, PutObjectResponse response, Throwable throwable) {
+        if (throwable != null) {
+            final Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable;
+            bundle.abandon(cause);
+        } else if (!response.sdkHttpResponse().isSuccessful()) {
+            logger.warn("error uploading bundle {} to S3 - {}", bundle.key, response);
+            final boolean retryable = config.getUploadRetryPolicy().isRetryableStatus(response.sdkHttpResponse().statusCode());
+            bundle.abandon(retryable, String.format("Error when uploading bundle %s to S3, %s", bundle.key, response.sdkHttpResponse().statusText()));
+        } else {
+            logger.trace("bundle {} migrated successfully", bundle.key);
+            for (BundledFile file : bundle.files) {
+                config.getUploadJournal().recordUploaded(file.key, file.file.getSize(), file.file.getLastModified(), response.eTag(), file.checksum);
+                config.getUploadListener().fileUploaded(file.key, file.file.getSize());
+                report.reportFileUploaded();
+                report.reportBytesUploaded(file.file.getSize());
+            }
+            bundle.delete();
+        }
+    }
+
+    private class Bundle {
+        private final String key;
+        private final Path archive;
+        private final MessageDigest digest = Md5.newDigest();
+        private final ZipOutputStream zip;
+        private final List<BundledFile> files = new ArrayList<>();
+        private long contentSize = 0;
+
+        Bundle(String key) throws IOException {
+            this.key = key;
+            this.archive = Files.createTempFile("dc-migration-bundle", ".zip");
+            this.zip = new ZipOutputStream(new BufferedOutputStream(new DigestOutputStream(Files.newOutputStream(archive), digest)));
+            this.zip.setMethod(ZipOutputStream.STORED);
+        }
+
+        void add(BundledFile file, byte[] content) throws IOException {
+            zip.putNextEntry(storedEntry(file.key, content));
+            zip.write(content);
+            zip.closeEntry();
+            files.add(file);
+            contentSize += content.length;
+        }
+
+        void close() throws IOException {
+            final StringBuilder manifest = new StringBuilder();
+            for (BundledFile file : files) {
+                manifest.append(file.file.getSize()).append('\t').append(file.file.getLastModified()).append('\t').append(file.key).append('\n');
+            }
+            final byte[] content = manifest.toString().getBytes(StandardCharsets.UTF_8);
+            zip.putNextEntry(storedEntry(MANIFEST_ENTRY, content));
+            zip.write(content);
+            zip.closeEntry();
+            zip.close();
+        }
+
+        void abandon(Throwable failure) {
+            files.forEach(file -> retryScheduler.retryOrFail(file.file, 1, failure));
+            discard();
+        }
+
+        void abandon(boolean retryable, String reason) {
+            files.forEach(file -> retryScheduler.retryOrFail(file.file, 1, retryable, reason));
+            discard();
+        }
+
+        private void discard() {
+            try {
+                zip.close();
+            } catch (IOException e) {
+                logger.debug("Unable to close abandoned bundle {}", key, e);
+            }
+            delete();
+        }
+
+        void delete() {
+            try {
+                Files.deleteIfExists(archive);
+            } catch (IOException e) {
+                logger.warn("Unable to delete temporary bundle {}", archive, e);
+            }
+        }
+
+        private ZipEntry storedEntry(String name, byte[] content) {
+            final CRC32 crc = new CRC32();
+            crc.update(content);
+            final ZipEntry entry = new ZipEntry(name);
+            entry.setSize(content.length);
+            entry.setCompressedSize(content.length);
+            entry.setCrc(crc.getValue());
+            return entry;
+        }
+    }
+
+    private static class BundledFile {
+        final CrawledFile file;
+        final String key;
+        final String checksum;
+
+        BundledFile(CrawledFile file, String key, String checksum) {
+            this.file = file;
+            this.key = key;
+            this.checksum = checksum;
+        }
+    }
+}
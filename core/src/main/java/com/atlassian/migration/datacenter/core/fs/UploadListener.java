@@ -0,0 +1,35 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+/**
+ * Notified by the uploader whenever a file has been uploaded successfully, after it has been recorded in the
+ * upload journal. Files uploaded in a bundle are reported once the bundle has been uploaded. Implementations must
+ * be thread safe as they are called from multiple upload threads.
+ */
+@FunctionalInterface
+public interface UploadListener {
+
+    UploadListener NONE = (key, size) -> {
+    };
+
+    /**
+     * @param key  key of the uploaded file, relative to the shared home
+     * @param size size of the uploaded file in bytes
+     */
+    void fileUploaded(String key, long size);
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import software.amazon.awssdk.awscore.exception.AwsServiceException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.core.exception.SdkServiceException;
+
+import java.io.IOException;
+import java.nio.file.FileSystemException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeoutException;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Decides whether a failed upload is retried and how long to wait before the next attempt. The wait grows
+ * exponentially with the attempt number up to a cap, and a random delay up to that bound is chosen ("full jitter"),
+ * so files which failed together, e.g. during a short S3 outage, are not retried in lockstep.
+ */
+public class UploadRetryPolicy {
+    public static final int DEFAULT_MAX_ATTEMPTS = 5;
+    public static final long DEFAULT_BASE_DELAY_MILLIS = 1000;
+    public static final long DEFAULT_MAX_DELAY_MILLIS = 60 * 1000;
+
+    private final int maxAttempts;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final DoubleSupplier random;
+
+    public UploadRetryPolicy() {
+        this(DEFAULT_MAX_ATTEMPTS, DEFAULT_BASE_DELAY_MILLIS, DEFAULT_MAX_DELAY_MILLIS);
+    }
+
+    public UploadRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis) {
+        this(maxAttempts, baseDelayMillis, maxDelayMillis, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    UploadRetryPolicy(int maxAttempts, long baseDelayMillis, long maxDelayMillis, DoubleSupplier random) {
+        if (maxAttempts < 1) {
+            throw new IllegalArgumentException("At least one upload attempt is required but was " + maxAttempts);
+        }
+        this.maxAttempts = maxAttempts;
+        this.baseDelayMillis = Math.max(baseDelayMillis, 0);
+        this.maxDelayMillis = Math.max(maxDelayMillis, this.baseDelayMillis);
+        this.random = random;
+    }
+
+    /**
+     * @return number of times a file is attempted to be uploaded, including the first attempt
+     */
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @param failedAttempt number of the attempt which failed, starting at 1
+     * @return milliseconds to wait before the next attempt
+     */
+    public long getBackoffMillis(int failedAttempt) {
+        final int exponent = Math.min(Math.max(failedAttempt - 1, 0), 30);
+        final long bound = Math.min(maxDelayMillis, baseDelayMillis << exponent);
+        return (long) (random.getAsDouble() * bound);
+    }
+
+    /**
+     * Transient failures, such as server errors, throttling, timeouts and dropped connections, are retryable.
+     * Client errors like access denied, and local files which are missing or unreadable, will fail again and are fatal.
+     */
+    public boolean isRetryable(Throwable failure) {
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            if (t instanceof SdkServiceException) {
+                final SdkServiceException serviceException = (SdkServiceException) t;
+                return serviceException.isThrottlingException() || isRetryableStatus(serviceException.statusCode()) || isBadDigest(serviceException);
+            }
+            if (t instanceof FileSystemException) {
+                return false;
+            }
+            if (t instanceof IOException || t instanceof TimeoutException) {
+                return true;
+            }
+            if (t.getCause() == null || t.getCause() == t) {
+                // the SDK reports network failures as client exceptions, sometimes without a cause
+                return t instanceof SdkClientException;
+            }
+        }
+        return false;
+    }
+
+    public boolean isRetryableStatus(int statusCode) {
+        return statusCode >= 500 || statusCode == 408 || statusCode == 429;
+    }
+
+    /**
+     * S3 rejects content which doesn't match its Content-MD5 with BadDigest, which means it was corrupted on
+     * the way and should be sent again
+     */
+    private static boolean isBadDigest(SdkServiceException exception) {
+        return exception instanceof AwsServiceException
+                && ((AwsServiceException) exception).awsErrorDetails() != null
+                && "BadDigest".equals(((AwsServiceException) exception).awsErrorDetails().errorCode());
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries failed uploads on its own thread after the backoff given by the {@link UploadRetryPolicy}, so waiting
+ * for a retry never holds up the upload of fresh files from the queue. A file is reported as not migrated once
+ * the failure isn't retryable or the file has used up its attempts.
+ */
+public class UploadRetryScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(UploadRetryScheduler.class);
+
+    private final UploadRetryPolicy policy;
+    private final FileSystemMigrationReport report;
+    private final RetryableUpload upload;
+    private final ScheduledExecutorService executor;
+
+    private int pendingRetries = 0;
+    private long scheduledRetries = 0;
+
+    public UploadRetryScheduler(UploadRetryPolicy policy, FileSystemMigrationReport report, RetryableUpload upload) {
+        this.policy = policy;
+        this.report = report;
+        this.upload = upload;
+        this.executor = Executors.newSingleThreadScheduledExecutor();
+    }
+
+    /**
+     * Schedules another attempt of the failed upload, or reports the file as not migrated
+     *
+     * @param file          the file which failed to upload
+     * @param failedAttempt number of the attempt which failed, starting at 1
+     * @param failure       the cause of the failure
+     */
+    public void retryOrFail(CrawledFile file, int failedAttempt, Throwable failure) {
+        retryOrFail(file, failedAttempt, policy.isRetryable(failure), failure.getMessage());
+    }
+
+    /**
+     * Schedules another attempt of the failed upload, or reports the file as not migrated
+     *
+     * @param file          the file which failed to upload
+     * @param failedAttempt number of the attempt which failed, starting at 1
+     * @param retryable     whether the failure is transient
+     * @param reason        description of the failure
+     */
+    public void retryOrFail(CrawledFile file, int failedAttempt, boolean retryable, String reason) {
+        if (!retryable || failedAttempt >= policy.getMaxAttempts()) {
+            fail(file, failedAttempt, reason);
+            return;
+        }
+
+        final long delay = policy.getBackoffMillis(failedAttempt);
+        logger.warn("Upload of {} failed on attempt {} of {}, retrying in {}ms. Reason: {}", file.getPath(), failedAttempt, policy.getMaxAttempts(), delay, reason);
+        synchronized (this) {
+            pendingRetries++;
+            scheduledRetries++;
+        }
+        try {
+            executor.schedule(() -> retry(file, failedAttempt + 1), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            retryFinished();
+            fail(file, failedAttempt, reason);
+        }
+    }
+
+    /**
+     * Blocks until every scheduled retry has been handed over to the uploader
+     *
+     * @return total number of retries scheduled so far. If it didn't change between two calls, no upload that
+     * finished in between was retried.
+     */
+    public synchronized long awaitIdle() throws InterruptedException {
+        while (pendingRetries > 0) {
+            wait();
+        }
+        return scheduledRetries;
+    }
+
+    /**
+     * Drops retries which haven't started yet
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        synchronized (this) {
+            if (pendingRetries > 0) {
+                logger.warn("Abandoned {} pending upload retries", pendingRetries);
+            }
+            pendingRetries = 0;
+            notifyAll();
+        }
+    }
+
+    private void retry(CrawledFile file, int attempt) {
+        try {
+            logger.debug("Retrying upload of {}, attempt {} of {}", file.getPath(), attempt, policy.getMaxAttempts());
+            upload.upload(file, attempt);
+        } catch (InterruptedException e) {
+            fail(file, attempt, "Interrupted while retrying upload");
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            logger.error("Unexpected error when retrying upload of {}", file.getPath(), e);
+            fail(file, attempt, e.getMessage());
+        } finally {
+            retryFinished();
+        }
+    }
+
+    private synchronized void retryFinished() {
+        if (pendingRetries > 0) {
+            pendingRetries--;
+        }
+        notifyAll();
+    }
+
+    private void fail(CrawledFile file, int attempt, String reason) {
+        logger.error("File {} wasn't uploaded after {} attempt(s). Reason: {}", file.getPath(), attempt, reason);
+        report.reportFileNotMigrated(new FailedFileMigration(file.getPath(), reason));
+        report.reportBytesFailed(file.getSize());
+    }
+
+    /**
+     * Starts another attempt of an upload. Failures of the attempt are expected to be passed back to
+     * {@link #retryOrFail} with the attempt number.
+     */
+    @FunctionalInterface
+    public interface RetryableUpload {
+        void upload(CrawledFile file, int attempt) throws InterruptedException;
+    }
+}
@@ -18,10 +18,13 @@ package com.atlassian.migration.datacenter.core.fs;
 
 import com.atlassian.migration.datacenter.core.util.UploadQueue;
 
-import java.nio.file.Path;
-
 public interface Uploader {
-    void upload(UploadQueue<Path> queue) throws FilesystemUploader.FileUploadException;
+    void upload(UploadQueue<CrawledFile> queue) throws FilesystemUploader.FileUploadException;
 
     Integer maxConcurrent();
+
+    /**
+     * @return maximum total size in bytes of the files waiting in the upload queue
+     */
+    Long maxQueuedBytes();
 }
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.checksum;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Optional;
+
+/**
+ * Request body which computes the MD5 of the content while the SDK streams it to S3, so the uploaded content can
+ * be compared with the ETag returned by S3 without reading the file a second time. If the SDK retries the request
+ * and subscribes again, the checksum is computed from the new subscription.
+ */
+public class ChecksumAsyncRequestBody implements AsyncRequestBody {
+
+    private final AsyncRequestBody delegate;
+    private volatile String checksum;
+
+    public ChecksumAsyncRequestBody(AsyncRequestBody delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Optional<Long> contentLength() {
+        return delegate.contentLength();
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super ByteBuffer> subscriber) {
+        checksum = null;
+        final MessageDigest digest = Md5.newDigest();
+        delegate.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                digest.update(buffer.duplicate());
+                subscriber.onNext(buffer);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                checksum = Md5.toHex(digest.digest());
+                subscriber.onComplete();
+            }
+        });
+    }
+
+    /**
+     * @return hex encoded MD5 of the content, or null if the content hasn't been streamed completely
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+}
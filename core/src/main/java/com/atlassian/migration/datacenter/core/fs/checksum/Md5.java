@@ -0,0 +1,76 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.checksum;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Locale;
+
+/**
+ * MD5 helpers. MD5 is used because it is the checksum S3 validates with the Content-MD5 header and returns as
+ * the ETag of objects uploaded in a single request, and it can be verified on the target with md5sum.
+ */
+public final class Md5 {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private Md5() {
+    }
+
+    public static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform is required to support MD5
+            throw new IllegalStateException("MD5 is not available", e);
+        }
+    }
+
+    /**
+     * @return lower case hex encoded MD5 of the content
+     */
+    public static String hex(byte[] content) {
+        return toHex(newDigest().digest(content));
+    }
+
+    public static String toHex(byte[] digest) {
+        final char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[digest[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * @return the digest encoded for the Content-MD5 header
+     */
+    public static String toBase64(byte[] digest) {
+        return Base64.getEncoder().encodeToString(digest);
+    }
+
+    /**
+     * @return the ETag returned by S3 without the surrounding quotes, or null if there is no ETag
+     */
+    public static String normalizeETag(String eTag) {
+        if (eTag == null) {
+            return null;
+        }
+        return eTag.replace("\"", "").toLowerCase(Locale.ENGLISH);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.checksum;
+
+import com.atlassian.migration.datacenter.core.fs.S3UploadConfig;
+import com.atlassian.migration.datacenter.core.fs.S3Uploader;
+import com.atlassian.migration.datacenter.core.fs.inventory.ObjectInventory;
+import com.atlassian.migration.datacenter.core.fs.inventory.S3InventoryLoader;
+import com.atlassian.migration.datacenter.core.fs.journal.FileChecksum;
+import com.atlassian.migration.datacenter.core.fs.journal.UploadJournal;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Verifies the files uploaded by a pass against the checksums recorded in the {@link UploadJournal}.
+ * <p>
+ * The bucket is listed and the ETag of every object uploaded in a single PUT is compared with its checksum, and
+ * such files whose object is missing are reported. The checksums of the pass are also written to the bucket as an
+ * md5sum manifest under {@link #CHECKSUMS_PREFIX}, which the migration helper checks the target shared home
+ * against once the files are copied.
+ */
+public class S3ChecksumVerifier {
+    private static final Logger logger = LoggerFactory.getLogger(S3ChecksumVerifier.class);
+
+    public static final String CHECKSUMS_PREFIX = ".dc-migration-assistant/checksums/";
+
+    private final S3UploadConfig config;
+    private final FileSystemMigrationReport report;
+
+    public S3ChecksumVerifier(S3UploadConfig config, FileSystemMigrationReport report) {
+        this.config = config;
+        this.report = report;
+    }
+
+    /**
+     * Writes the checksums of the files uploaded since the journal was opened to the bucket
+     *
+     * @return number of checksums in the manifest
+     */
+    public int writeManifest() throws ExecutionException, InterruptedException, IOException {
+        final Path manifest = Files.createTempFile("dc-migration-checksums", ".md5");
+        try {
+            final AtomicInteger entries = new AtomicInteger();
+            try (BufferedWriter writer = Files.newBufferedWriter(manifest, StandardCharsets.UTF_8)) {
+                config.getUploadJournal().forEachChecksum(true, checksum -> {
+                    if (!isManifestSafe(checksum.getKey())) {
+                        logger.debug("Not adding {} to the checksum manifest as md5sum can't check its name", checksum.getKey());
+                        return;
+                    }
+                    try {
+                        writer.write(checksum.getChecksum());
+                        writer.write("  ");
+                        writer.write(checksum.getKey());
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    entries.incrementAndGet();
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+
+            if (entries.get() == 0) {
+                logger.info("No files were uploaded, not writing a checksum manifest");
+                return 0;
+            }
+            final String key = CHECKSUMS_PREFIX + String.format("%013d.md5", System.currentTimeMillis());
+            final PutObjectRequest request = PutObjectRequest.builder()
+                    .bucket(config.getBucketName())
+                    .key(key)
+                    .build();
+            config.getS3AsyncClient().putObject(request, AsyncRequestBody.fromFile(manifest)).get();
+            logger.info("Wrote {} checksums to {}", entries.get(), key);
+            return entries.get();
+        } finally {
+            Files.deleteIfExists(manifest);
+        }
+    }
+
+    /**
+     * Lists the bucket and reports every file uploaded since the journal was opened whose object is missing, or
+     * doesn't match its checksum, as not migrated.
+     *
+     * @return number of files which failed verification
+     */
+    public int verifyBucket() throws ExecutionException, InterruptedException {
+        final UploadJournal journal = config.getUploadJournal();
+        final ObjectInventory listedObjects = new ObjectInventory();
+        final AtomicInteger failures = new AtomicInteger();
+
+        new S3InventoryLoader(config.getS3AsyncClient(), config.getBucketName(), Collections.singletonList(S3Uploader.INTERNAL_PREFIX))
+                .forEachObject(object -> {
+                    listedObjects.put(object.key(), object.size(), object.lastModified().toEpochMilli());
+                    journal.getChecksum(object.key())
+                            .filter(FileChecksum::isObjectETag)
+                            .filter(checksum -> !checksum.getChecksum().equals(Md5.normalizeETag(object.eTag())))
+                            .ifPresent(checksum -> {
+                                failures.incrementAndGet();
+                                reportFailure(checksum.getKey(), String.format("Object in S3 has ETag %s but the uploaded file has checksum %s", object.eTag(), checksum.getChecksum()));
+                            });
+                });
+
+        // files uploaded in bundles have no object of their own
+        journal.forEachChecksum(true, checksum -> {
+            if (checksum.isObjectETag() && !listedObjects.contains(checksum.getKey())) {
+                failures.incrementAndGet();
+                reportFailure(checksum.getKey(), "File was uploaded but is missing from S3");
+            }
+        });
+        logger.info("Verified checksums of {} objects in bucket {}, {} failed", listedObjects.size(), config.getBucketName(), failures.get());
+        return failures.get();
+    }
+
+    private void reportFailure(String key, String reason) {
+        logger.error("File {} failed checksum verification: {}", key, reason);
+        report.reportFileNotMigrated(new FailedFileMigration(config.getSharedHome().resolve(key), reason));
+    }
+
+    /**
+     * md5sum escapes names containing a backslash or a newline, which the manifest doesn't
+     */
+    private static boolean isManifestSafe(String key) {
+        return key.indexOf('\n') < 0 && key.indexOf('\\') < 0;
+    }
+}
@@ -22,6 +22,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.google.common.collect.ImmutableList;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 
@@ -44,6 +45,7 @@ public class S3SyncCommandStatus {
     private int filesRemaining;
     private boolean calculating;
     private List<String> errors;
+    private List<String> verificationFailures;
 
     @JsonProperty("status")
     @JsonInclude(JsonInclude.Include.NON_ABSENT)
@@ -89,6 +91,14 @@ public class S3SyncCommandStatus {
         return ImmutableList.copyOf(errors);
     }
 
+    /**
+     * @return md5sum output lines, e.g. {@code path/to/file: FAILED}, of the files in the shared home which don't
+     * match the checksums recorded during the upload. Only present once the download is complete.
+     */
+    public List<String> getVerificationFailures() {
+        return verificationFailures == null ? Collections.emptyList() : ImmutableList.copyOf(verificationFailures);
+    }
+
     @Override
     public String toString() {
         return "S3SyncCommandStatus{" +
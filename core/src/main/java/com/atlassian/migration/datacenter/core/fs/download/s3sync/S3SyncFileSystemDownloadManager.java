@@ -16,49 +16,90 @@
 
 package com.atlassian.migration.datacenter.core.fs.download.s3sync;
 
-import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationProgress;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Follows the download of the file system into the new stack. Each status query runs the status document on the
+ * migration host and waits for it through the tracked SSM command, and only once it has finished is the next query
+ * scheduled. The interval between queries backs off, as a large download takes hours.
+ */
 public class S3SyncFileSystemDownloadManager {
 
     private static final Logger logger = LoggerFactory.getLogger(S3SyncFileSystemDownloadManager.class);
 
+    private static final String VERIFICATION_FAILURE_SUFFIX = ": FAILED";
+    static final Duration INITIAL_STATUS_DELAY = Duration.ofSeconds(5);
+    static final Duration MAX_STATUS_DELAY = Duration.ofSeconds(30);
+
     private final S3SyncFileSystemDownloader downloader;
 
     public S3SyncFileSystemDownloadManager(S3SyncFileSystemDownloader downloader) {
         this.downloader = downloader;
     }
 
-    public void downloadFileSystem(FileSystemMigrationProgress progress) throws S3SyncFileSystemDownloader.CannotLaunchCommandException {
+    public void downloadFileSystem(FileSystemMigrationReport report) throws S3SyncFileSystemDownloader.CannotLaunchCommandException {
         logger.debug("beginning file system download");
         downloader.initiateFileSystemDownload();
 
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
         CompletableFuture<?> syncCompleteFuture = new CompletableFuture<>();
+        syncCompleteFuture.whenComplete((_i, _j) -> scheduler.shutdown());
 
+        scheduleStatusQuery(report, scheduler, syncCompleteFuture, Duration.ZERO);
+    }
 
-        ScheduledFuture<?> scheduledFuture = Executors.newSingleThreadScheduledExecutor().scheduleAtFixedRate(() -> {
+    private void scheduleStatusQuery(FileSystemMigrationReport report, ScheduledExecutorService scheduler, CompletableFuture<?> syncCompleteFuture, Duration delay) {
+        scheduler.schedule(() -> {
             logger.debug("querying file system download status");
-            S3SyncCommandStatus status = downloader.getFileSystemDownloadStatus();
-
-            long remaining = status.getFilesRemainingToDownload();
-            long downloadedFiles = progress.getCountOfUploadedFiles() - remaining;
+            downloader.getFileSystemDownloadStatus().whenComplete((status, error) -> {
+                if (error != null) {
+                    logger.warn("unable to get status of file system download, will retry", error);
+                } else {
+                    updateReport(status, report);
+                    if (status.isComplete()) {
+                        logger.debug("file system download is complete");
+                        reportVerificationFailures(status, report);
+                        syncCompleteFuture.complete(null);
+                        return;
+                    }
+                }
+                Duration nextDelay = delay.isZero() ? INITIAL_STATUS_DELAY : delay.multipliedBy(2);
+                scheduleStatusQuery(report, scheduler, syncCompleteFuture, nextDelay.compareTo(MAX_STATUS_DELAY) < 0 ? nextDelay : MAX_STATUS_DELAY);
+            });
+        }, delay.toMillis(), TimeUnit.MILLISECONDS);
+    }
 
-            progress.setNumberOfFilesDownloaded(downloadedFiles);
+    private static void updateReport(S3SyncCommandStatus status, FileSystemMigrationReport report) {
+        long remaining = status.getFilesRemainingToDownload();
+        long downloadedFiles = report.getCountOfUploadedFiles() - remaining;
 
-            logger.debug("got status of file system download: " + status.toString());
+        report.setNumberOfFilesDownloaded(downloadedFiles);
 
-            if (status.isComplete()) {
-                logger.debug("file system download is complete");
-                syncCompleteFuture.complete(null);
-            }
-        }, 0, 10, TimeUnit.SECONDS);
+        logger.debug("got status of file system download: " + status.toString());
+    }
 
-        syncCompleteFuture.whenComplete((_i, _j) -> scheduledFuture.cancel(true));
+    /**
+     * Files which don't match their checksum after the copy to the shared home are reported as not migrated
+     */
+    private void reportVerificationFailures(S3SyncCommandStatus status, FileSystemMigrationReport report) {
+        for (String failure : status.getVerificationFailures()) {
+            logger.warn("File failed checksum verification in the target shared home: {}", failure);
+            final int suffix = failure.lastIndexOf(": ");
+            final String path = suffix > 0 ? failure.substring(0, suffix) : failure;
+            final String reason = suffix > 0 && !failure.endsWith(VERIFICATION_FAILURE_SUFFIX)
+                    ? "Checksum verification failed in the target shared home: " + failure.substring(suffix + 2)
+                    : "Checksum verification failed in the target shared home";
+            report.reportFileNotMigrated(new FailedFileMigration(Paths.get(path), reason));
+        }
     }
 }
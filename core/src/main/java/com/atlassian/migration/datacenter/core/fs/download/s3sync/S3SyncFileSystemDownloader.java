@@ -23,24 +23,29 @@ import com.atlassian.migration.datacenter.spi.exceptions.FileSystemMigrationFail
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class S3SyncFileSystemDownloader {
 
     private static final Logger logger = LoggerFactory.getLogger(S3SyncFileSystemDownloader.class);
 
-    private int maxCommandStatusRetries;
+    private static final Duration COMMAND_TIMEOUT = Duration.ofMinutes(2);
+
+    private final Duration commandTimeout;
 
     private final SSMApi ssmApi;
     private final AWSMigrationHelperDeploymentService migrationHelperDeploymentService;
 
     public S3SyncFileSystemDownloader(SSMApi ssmApi, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
-        this(ssmApi, migrationHelperDeploymentService, 10);
+        this(ssmApi, migrationHelperDeploymentService, COMMAND_TIMEOUT);
     }
 
-    S3SyncFileSystemDownloader(SSMApi ssmApi, AWSMigrationHelperDeploymentService migrationHelperDeploymentService, int maxCommandStatusRetries) {
+    S3SyncFileSystemDownloader(SSMApi ssmApi, AWSMigrationHelperDeploymentService migrationHelperDeploymentService, Duration commandTimeout) {
         this.ssmApi = ssmApi;
-        this.maxCommandStatusRetries = maxCommandStatusRetries;
+        this.commandTimeout = commandTimeout;
         this.migrationHelperDeploymentService = migrationHelperDeploymentService;
     }
 
@@ -53,7 +58,7 @@ public class S3SyncFileSystemDownloader {
         SuccessfulSSMCommandConsumer consumer = new EnsureSuccessfulSSMCommandConsumer(ssmApi, commandID, migrationHost);
 
         try {
-            consumer.handleCommandOutput(maxCommandStatusRetries);
+            consumer.handleCommandOutput(commandTimeout);
         } catch (SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException e) {
             logger.error("error launching s3 sync command", e);
             throw new CannotLaunchCommandException("unable to launch file system download command successfully.", e);
@@ -62,27 +67,34 @@ public class S3SyncFileSystemDownloader {
     }
 
     /**
-     * Gets the current status of the running download in the new stack
+     * Gets the current status of the running download in the new stack. The status command is awaited through the
+     * SSM command tracker, so no thread is blocked while it runs.
      *
-     * @return the status of the S3 sync or null if the status was not able to be retrieved.
+     * @return future completed with the status of the S3 sync, or completed exceptionally if the status could not
+     * be retrieved.
      */
-    public S3SyncCommandStatus getFileSystemDownloadStatus() {
+    public CompletableFuture<S3SyncCommandStatus> getFileSystemDownloadStatus() {
         String fsRestoreStatusDocument = migrationHelperDeploymentService.getFsRestoreStatusDocument();
         String migrationHostId = getMigrationHostId();
 
-        String statusCommandId = ssmApi.runSSMDocument(fsRestoreStatusDocument, migrationHostId, Collections.emptyMap());
-
-        SuccessfulSSMCommandConsumer<S3SyncCommandStatus> consumer = new UnmarshalS3SyncStatusSSMCommandConsumer(ssmApi, statusCommandId, migrationHostId);
-
+        String statusCommandId;
         try {
-            return consumer.handleCommandOutput(maxCommandStatusRetries);
-        } catch (SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException e) {
-            logger.error("Status command did not complete successfully", e);
-            return null;
-        } catch (SuccessfulSSMCommandConsumer.SSMCommandInvocationProcessingError e) {
-            logger.error("Unable to read status of s3 sync command", e);
-            return null;
+            statusCommandId = ssmApi.runSSMDocument(fsRestoreStatusDocument, migrationHostId, Collections.emptyMap());
+        } catch (RuntimeException e) {
+            CompletableFuture<S3SyncCommandStatus> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
         }
+
+        UnmarshalS3SyncStatusSSMCommandConsumer consumer = new UnmarshalS3SyncStatusSSMCommandConsumer(ssmApi, statusCommandId, migrationHostId);
+
+        return ssmApi.awaitCommand(statusCommandId, migrationHostId, commandTimeout).thenApply(invocation -> {
+            try {
+                return consumer.handleSuccessfulCommand(invocation);
+            } catch (SuccessfulSSMCommandConsumer.SSMCommandInvocationProcessingError e) {
+                throw new CompletionException(e);
+            }
+        });
     }
 
     private String getMigrationHostId() {
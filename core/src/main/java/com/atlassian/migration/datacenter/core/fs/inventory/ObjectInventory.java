@@ -0,0 +1,129 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.inventory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compact index of the objects which are already in the migration bucket, used to skip files which don't need to
+ * be uploaded again. Keys are stored as 64 bit hashes in an open addressing table of primitive arrays, which
+ * keeps the index at a few dozen bytes per object even for tens of millions of objects.
+ * <p>
+ * S3 doesn't return the modification time of the source file when listing objects, so a file is considered
+ * unchanged when the object has the same size and was written well after the file was last modified.
+ */
+public class ObjectInventory {
+    /**
+     * Allowance for the clock of this node being behind the clock of S3
+     */
+    static final long CLOCK_SKEW_TOLERANCE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private long[] sizes = new long[INITIAL_CAPACITY];
+    private long[] lastModified = new long[INITIAL_CAPACITY];
+    private int count = 0;
+
+    /**
+     * Adds an object to the inventory, replacing any object with the same key
+     *
+     * @param lastModified time the object was written to S3, in epoch milliseconds
+     */
+    public synchronized void put(String key, long size, long lastModified) {
+        if ((count + 1) * 2 > hashes.length) {
+            resize(hashes.length * 2);
+        }
+        insert(hash(key), size, lastModified);
+    }
+
+    /**
+     * @param localLastModified modification time of the local file, in epoch milliseconds
+     * @return true if the bucket already contains the current content of the file
+     */
+    public synchronized boolean isUnchanged(String key, long size, long localLastModified) {
+        final int slot = find(hash(key));
+        return slot >= 0
+                && sizes[slot] == size
+                && lastModified[slot] > localLastModified + CLOCK_SKEW_TOLERANCE_MILLIS;
+    }
+
+    public synchronized boolean contains(String key) {
+        return find(hash(key)) >= 0;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    private int find(long hash) {
+        final int mask = hashes.length - 1;
+        for (int slot = (int) hash & mask; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void insert(long hash, long size, long modified) {
+        final int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+        while (hashes[slot] != EMPTY && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        if (hashes[slot] == EMPTY) {
+            count++;
+        }
+        hashes[slot] = hash;
+        sizes[slot] = size;
+        lastModified[slot] = modified;
+    }
+
+    private void resize(int capacity) {
+        final long[] oldHashes = hashes;
+        final long[] oldSizes = sizes;
+        final long[] oldLastModified = lastModified;
+        hashes = new long[capacity];
+        sizes = new long[capacity];
+        lastModified = new long[capacity];
+        count = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY) {
+                insert(oldHashes[i], oldSizes[i], oldLastModified[i]);
+            }
+        }
+    }
+
+    /**
+     * 64 bit FNV-1a hash of the key, followed by the MurmurHash3 finalizer to spread the bits used for the slot
+     */
+    public static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash == EMPTY ? 1 : hash;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.inventory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
+
+/**
+ * Lists the migration bucket into an {@link ObjectInventory}. The first levels of the key hierarchy are listed
+ * with a delimiter to discover the prefixes, and the prefixes are then listed in parallel, so a bucket with
+ * millions of objects is indexed in minutes rather than paging through a single listing.
+ */
+public class S3InventoryLoader {
+    private static final Logger logger = LoggerFactory.getLogger(S3InventoryLoader.class);
+
+    public static final int DEFAULT_PREFIX_DEPTH = 3;
+    public static final int DEFAULT_PARALLELISM = 16;
+
+    private static final String DELIMITER = "/";
+
+    private final S3AsyncClient s3AsyncClient;
+    private final String bucketName;
+    private final List<String> excludedPrefixes;
+    private final int prefixDepth;
+    private final int parallelism;
+
+    public S3InventoryLoader(S3AsyncClient s3AsyncClient, String bucketName, List<String> excludedPrefixes) {
+        this(s3AsyncClient, bucketName, excludedPrefixes, DEFAULT_PREFIX_DEPTH, DEFAULT_PARALLELISM);
+    }
+
+    public S3InventoryLoader(S3AsyncClient s3AsyncClient, String bucketName, List<String> excludedPrefixes, int prefixDepth, int parallelism) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.bucketName = bucketName;
+        this.excludedPrefixes = excludedPrefixes;
+        this.prefixDepth = prefixDepth;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * @return index of every object in the bucket outside of the excluded prefixes
+     * @throws ExecutionException if any of the listings failed, as a partial inventory would be misleading
+     */
+    public ObjectInventory load() throws ExecutionException, InterruptedException {
+        final ObjectInventory inventory = new ObjectInventory();
+        final long start = System.currentTimeMillis();
+        forEachObject(object -> inventory.put(object.key(), object.size(), object.lastModified().toEpochMilli()));
+        logger.info("Listed {} objects in bucket {} in {}ms", inventory.size(), bucketName, System.currentTimeMillis() - start);
+        return inventory;
+    }
+
+    /**
+     * Lists every object in the bucket outside of the excluded prefixes
+     *
+     * @param consumer called concurrently from the listing threads
+     * @throws ExecutionException if any of the listings failed
+     */
+    public void forEachObject(Consumer<S3Object> consumer) throws ExecutionException, InterruptedException {
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(new ListPrefixTask(consumer, "", 0)).get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private boolean isExcluded(String key) {
+        return excludedPrefixes.stream().anyMatch(key::startsWith);
+    }
+
+    private class ListPrefixTask extends RecursiveAction {
+        private final Consumer<S3Object> consumer;
+        private final String prefix;
+        private final int depth;
+
+        ListPrefixTask(Consumer<S3Object> consumer, String prefix, int depth) {
+            this.consumer = consumer;
+            this.prefix = prefix;
+            this.depth = depth;
+        }
+
+        @Override
+        protected void compute() {
+            final boolean expandPrefixes = depth < prefixDepth;
+            final List<ListPrefixTask> subtasks = new ArrayList<>();
+            String continuationToken = null;
+            do {
+                final ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+                        .bucket(bucketName)
+                        .prefix(prefix)
+                        .continuationToken(continuationToken);
+                if (expandPrefixes) {
+                    request.delimiter(DELIMITER);
+                }
+                final ListObjectsV2Response response = s3AsyncClient.listObjectsV2(request.build()).join();
+
+                for (S3Object object : response.contents()) {
+                    if (!isExcluded(object.key())) {
+                        consumer.accept(object);
+                    }
+                }
+                for (CommonPrefix commonPrefix : response.commonPrefixes()) {
+                    if (!isExcluded(commonPrefix.prefix())) {
+                        final ListPrefixTask task = new ListPrefixTask(consumer, commonPrefix.prefix(), depth + 1);
+                        task.fork();
+                        subtasks.add(task);
+                    }
+                }
+                continuationToken = Boolean.TRUE.equals(response.isTruncated()) ? response.nextContinuationToken() : null;
+            } while (continuationToken != null);
+            logger.trace("Listed objects with prefix {}", prefix);
+            subtasks.forEach(ListPrefixTask::join);
+        }
+    }
+}
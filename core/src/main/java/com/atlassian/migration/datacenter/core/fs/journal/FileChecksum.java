@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.journal;
+
+/**
+ * MD5 checksum of the content of an uploaded file, as recorded in the {@link UploadJournal}
+ */
+public class FileChecksum {
+    private final String key;
+    private final String checksum;
+    private final boolean objectETag;
+
+    public FileChecksum(String key, String checksum, boolean objectETag) {
+        this.key = key;
+        this.checksum = checksum;
+        this.objectETag = objectETag;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * @return hex encoded MD5 of the file content
+     */
+    public String getChecksum() {
+        return checksum;
+    }
+
+    /**
+     * @return true if the file was uploaded as a single object whose ETag is the checksum. Files uploaded in
+     * parts or in a bundle are stored in objects with a different ETag.
+     */
+    public boolean isObjectETag() {
+        return objectETag;
+    }
+}
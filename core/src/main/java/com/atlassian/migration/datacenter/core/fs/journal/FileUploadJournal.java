@@ -0,0 +1,570 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs.journal;
+
+import com.atlassian.migration.datacenter.core.fs.checksum.Md5;
+import com.atlassian.migration.datacenter.core.fs.inventory.ObjectInventory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Upload journal backed by an append-only text file. The file is replayed when the journal is opened, so a
+ * restarted migration knows which files and multipart upload parts are already in S3.
+ * <p>
+ * Each line is one tab separated record:
+ * <ul>
+ * <li>{@code U size lastModified eTag key}: file uploaded</li>
+ * <li>{@code C size lastModified eTag checksum key}: file uploaded, with the MD5 of its content</li>
+ * <li>{@code D key}: uploaded file deleted from the remote location</li>
+ * <li>{@code M uploadId size lastModified partSize key}: multipart upload started</li>
+ * <li>{@code P uploadId partNumber eTag}: multipart upload part uploaded</li>
+ * <li>{@code E uploadId}: multipart upload completed or aborted</li>
+ * </ul>
+ * Uploaded files are indexed in memory like the {@link ObjectInventory}: an open addressing table of primitive
+ * arrays holding the 64 bit hash of the key, a fingerprint of the size and modification time, and the position of
+ * the latest record of the file in the journal. That is about 25 bytes per slot, and the table is kept at most
+ * three quarters full, so tens of millions of files fit in a few hundred MB to a couple of GB. Keys, eTags and
+ * checksums are only kept in the file and read from it when they are needed.
+ * <p>
+ * Records are buffered and written to the file every {@value #RECORDS_PER_FLUSH} records, and every write is
+ * forced to the disk. A crash of the node loses at most the records since the last write, which only causes the
+ * affected files to be uploaded again.
+ */
+public class FileUploadJournal implements UploadJournal {
+    private static final Logger logger = LoggerFactory.getLogger(FileUploadJournal.class);
+
+    private static final int RECORDS_PER_FLUSH = 1000;
+    private static final int WRITE_BUFFER_SIZE = 256 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 1024 * 1024;
+    private static final int RECORD_BUFFER_SIZE = 4096;
+    private static final String SEPARATOR = "\t";
+    private static final String UPLOADED = "U";
+    private static final String UPLOADED_WITH_CHECKSUM = "C";
+    private static final String DELETED = "D";
+    private static final String MULTIPART_STARTED = "M";
+    private static final String PART_UPLOADED = "P";
+    private static final String MULTIPART_ENDED = "E";
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long EMPTY = 0;
+    private static final long NOT_WRITTEN = -1;
+    private static final byte HAS_CHECKSUM = 1;
+    private static final byte PRESENT = 1 << 1;
+    private static final byte UPLOADED_SINCE_OPENED = 1 << 2;
+    private static final byte REMOVED = 1 << 3;
+
+    private final Path journalFile;
+    private final FileChannel channel;
+    private final ByteBuffer writeBuffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private final Map<String, MultipartUploadState> multipartUploadsByKey = new ConcurrentHashMap<>();
+    private final Map<String, MultipartUploadState> multipartUploadsById = new ConcurrentHashMap<>();
+
+    private long writtenPosition;
+    private int unflushedRecords = 0;
+
+    private long[] hashes = new long[INITIAL_CAPACITY];
+    private long[] versions = new long[INITIAL_CAPACITY];
+    private long[] offsets = new long[INITIAL_CAPACITY];
+    private byte[] flags = new byte[INITIAL_CAPACITY];
+    private int count = 0;
+
+    public FileUploadJournal(Path journalFile) throws IOException {
+        this.journalFile = journalFile;
+        Files.createDirectories(journalFile.toAbsolutePath().getParent());
+        this.channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.writtenPosition = channel.size();
+        if (writtenPosition > 0) {
+            replay();
+            terminatePartialRecord();
+        }
+    }
+
+    @Override
+    public synchronized boolean isUploaded(String key, long size, long lastModified) {
+        final int slot = find(ObjectInventory.hash(key));
+        return slot >= 0 && (flags[slot] & REMOVED) == 0 && versions[slot] == version(size, lastModified);
+    }
+
+    @Override
+    public void recordUploaded(String key, long size, long lastModified, String eTag) {
+        recordUploaded(key, size, lastModified, eTag, null);
+    }
+
+    @Override
+    public synchronized void recordUploaded(String key, long size, long lastModified, String eTag, String checksum) {
+        final long offset;
+        byte flag = PRESENT | UPLOADED_SINCE_OPENED;
+        if (isChecksum(checksum)) {
+            offset = append(UPLOADED_WITH_CHECKSUM, Long.toString(size), Long.toString(lastModified), String.valueOf(eTag), checksum, escape(key));
+            flag |= HAS_CHECKSUM;
+        } else {
+            offset = append(UPLOADED, Long.toString(size), Long.toString(lastModified), String.valueOf(eTag), escape(key));
+        }
+        put(ObjectInventory.hash(key), version(size, lastModified), offset, flag);
+    }
+
+    @Override
+    public synchronized Optional<FileChecksum> getChecksum(String key) {
+        final long hash = ObjectInventory.hash(key);
+        final int slot = find(hash);
+        if (slot < 0 || (flags[slot] & (HAS_CHECKSUM | REMOVED)) != HAS_CHECKSUM || offsets[slot] == NOT_WRITTEN) {
+            return Optional.empty();
+        }
+        try {
+            final String[] fields = readRecord(offsets[slot]);
+            return Optional.ofNullable(parseChecksum(fields))
+                    .filter(checksum -> ObjectInventory.hash(checksum.getKey()) == hash);
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Unable to read the checksum of {} from upload journal {}", key, journalFile, e);
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public void forEachChecksum(boolean uploadedSinceOpened, Consumer<FileChecksum> consumer) {
+        final byte required = uploadedSinceOpened ? (byte) (HAS_CHECKSUM | UPLOADED_SINCE_OPENED) : HAS_CHECKSUM;
+        scanLatestRecords(required, (byte) 0, fields -> {
+            final FileChecksum checksum = parseChecksum(fields);
+            if (checksum != null) {
+                consumer.accept(checksum);
+            }
+        });
+    }
+
+    @Override
+    public synchronized void markPresent(String key) {
+        final int slot = find(ObjectInventory.hash(key));
+        if (slot >= 0) {
+            flags[slot] |= PRESENT;
+        }
+    }
+
+    @Override
+    public Set<String> getKeysNotPresent() {
+        final Set<String> keys = new HashSet<>();
+        scanLatestRecords((byte) 0, PRESENT, fields -> keys.add(unescape(fields[fields.length - 1])));
+        return keys;
+    }
+
+    @Override
+    public synchronized void recordDeleted(String key) {
+        remove(ObjectInventory.hash(key));
+        append(DELETED, escape(key));
+    }
+
+    @Override
+    public Optional<MultipartUploadState> getMultipartUpload(String key, long size, long lastModified) {
+        return Optional.ofNullable(multipartUploadsByKey.get(key))
+                .filter(state -> state.getSize() == size && state.getLastModified() == lastModified);
+    }
+
+    @Override
+    public void recordMultipartUploadStarted(String key, long size, long lastModified, String uploadId, int partSize) {
+        startMultipartUpload(new MultipartUploadState(key, uploadId, size, lastModified, partSize));
+        append(MULTIPART_STARTED, uploadId, Long.toString(size), Long.toString(lastModified), Integer.toString(partSize), escape(key));
+    }
+
+    @Override
+    public void recordPartUploaded(String uploadId, int partNumber, String eTag) {
+        addPart(uploadId, partNumber, eTag);
+        append(PART_UPLOADED, uploadId, Integer.toString(partNumber), String.valueOf(eTag));
+    }
+
+    @Override
+    public void recordMultipartUploadEnded(String uploadId) {
+        endMultipartUpload(uploadId);
+        append(MULTIPART_ENDED, uploadId);
+    }
+
+    @Override
+    public synchronized void flush() {
+        try {
+            writeBuffered();
+            channel.force(false);
+        } catch (IOException e) {
+            logger.warn("Unable to flush upload journal {}", journalFile, e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        flush();
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.warn("Unable to close upload journal {}", journalFile, e);
+        }
+    }
+
+    /**
+     * @return position of the record in the journal, or {@link #NOT_WRITTEN} if it couldn't be written
+     */
+    private synchronized long append(String... fields) {
+        final byte[] record = (String.join(SEPARATOR, fields) + "\n").getBytes(StandardCharsets.UTF_8);
+        try {
+            if (record.length > writeBuffer.remaining()) {
+                writeBuffered();
+            }
+            final long offset = writtenPosition + writeBuffer.position();
+            if (record.length > writeBuffer.capacity()) {
+                write(ByteBuffer.wrap(record));
+            } else {
+                writeBuffer.put(record);
+            }
+            if (++unflushedRecords >= RECORDS_PER_FLUSH) {
+                writeBuffered();
+                channel.force(false);
+            }
+            return offset;
+        } catch (IOException e) {
+            logger.warn("Unable to write to upload journal {}. The file will be uploaded again if the migration is restarted.", journalFile, e);
+            return NOT_WRITTEN;
+        }
+    }
+
+    private void writeBuffered() throws IOException {
+        writeBuffer.flip();
+        try {
+            write(writeBuffer);
+        } finally {
+            // records which couldn't be written are dropped, so the positions of later records stay correct
+            writeBuffer.clear();
+            unflushedRecords = 0;
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            writtenPosition += channel.write(buffer, writtenPosition);
+        }
+    }
+
+    private void replay() throws IOException {
+        final int[] records = {0};
+        scan(writtenPosition, (offset, line) -> {
+            try {
+                replayRecord(offset, line.split(SEPARATOR, -1));
+                records[0]++;
+            } catch (RuntimeException e) {
+                // most likely a partially written record from a crash, the file will be uploaded again
+                logger.warn("Skipping malformed upload journal record: {}", line);
+            }
+        });
+        logger.info("Loaded {} records from upload journal {}: {} files already uploaded, {} multipart uploads to resume",
+                records[0], journalFile, countUploaded(), multipartUploadsById.size());
+    }
+
+    private void replayRecord(long offset, String[] fields) {
+        switch (fields[0]) {
+            case UPLOADED:
+                put(ObjectInventory.hash(unescape(fields[4])), version(Long.parseLong(fields[1]), Long.parseLong(fields[2])), offset, (byte) 0);
+                break;
+            case UPLOADED_WITH_CHECKSUM:
+                put(ObjectInventory.hash(unescape(fields[5])), version(Long.parseLong(fields[1]), Long.parseLong(fields[2])), offset,
+                        isChecksum(fields[4]) ? HAS_CHECKSUM : 0);
+                break;
+            case DELETED:
+                remove(ObjectInventory.hash(unescape(fields[1])));
+                break;
+            case MULTIPART_STARTED:
+                startMultipartUpload(new MultipartUploadState(unescape(fields[5]), fields[1], Long.parseLong(fields[2]), Long.parseLong(fields[3]), Integer.parseInt(fields[4])));
+                break;
+            case PART_UPLOADED:
+                addPart(fields[1], Integer.parseInt(fields[2]), fields[3]);
+                break;
+            case MULTIPART_ENDED:
+                endMultipartUpload(fields[1]);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record type " + fields[0]);
+        }
+    }
+
+    /**
+     * Makes sure a record which was cut off by a crash doesn't swallow the first record appended now
+     */
+    private void terminatePartialRecord() throws IOException {
+        final ByteBuffer lastByte = ByteBuffer.allocate(1);
+        channel.read(lastByte, writtenPosition - 1);
+        if (lastByte.get(0) != '\n') {
+            write(ByteBuffer.wrap(new byte[]{'\n'}));
+        }
+    }
+
+    /**
+     * Passes the fields of the latest upload record of each file which is still in the journal, and whose flags
+     * contain all the required flags and none of the excluded flags, to the consumer. The journal is read from the
+     * file in one pass rather than looking up each record.
+     */
+    private void scanLatestRecords(byte required, byte excluded, Consumer<String[]> consumer) {
+        final long end;
+        synchronized (this) {
+            try {
+                writeBuffered();
+            } catch (IOException e) {
+                logger.warn("Unable to write buffered records to upload journal {}", journalFile, e);
+            }
+            end = writtenPosition;
+        }
+        try {
+            scan(end, (offset, line) -> {
+                final String[] fields = line.split(SEPARATOR, -1);
+                if (!UPLOADED.equals(fields[0]) && !UPLOADED_WITH_CHECKSUM.equals(fields[0])) {
+                    return;
+                }
+                if (isLatestRecord(ObjectInventory.hash(unescape(fields[fields.length - 1])), offset, required, excluded)) {
+                    consumer.accept(fields);
+                }
+            });
+        } catch (IOException e) {
+            throw new RuntimeException("Unable to read upload journal " + journalFile, e);
+        }
+    }
+
+    private synchronized boolean isLatestRecord(long hash, long offset, byte required, byte excluded) {
+        final int slot = find(hash);
+        return slot >= 0
+                && offsets[slot] == offset
+                && (flags[slot] & REMOVED) == 0
+                && (flags[slot] & required) == required
+                && (flags[slot] & excluded) == 0;
+    }
+
+    /**
+     * Passes each line of the journal up to the given position to the visitor, along with the position it starts at
+     */
+    private void scan(long end, RecordVisitor visitor) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long position = 0;
+        while (position < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - position));
+            readFully(buffer, position);
+            final int limit = buffer.position();
+            final byte[] bytes = buffer.array();
+
+            int lineStart = 0;
+            for (int i = 0; i < limit; i++) {
+                if (bytes[i] == '\n') {
+                    visitor.visit(position + lineStart, new String(bytes, lineStart, i - lineStart, StandardCharsets.UTF_8));
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart < limit && position + limit >= end) {
+                visitor.visit(position + lineStart, new String(bytes, lineStart, limit - lineStart, StandardCharsets.UTF_8));
+                lineStart = limit;
+            }
+            if (lineStart == 0) {
+                // a single record is larger than the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+                continue;
+            }
+            position += lineStart;
+        }
+    }
+
+    private String[] readRecord(long offset) throws IOException {
+        if (offset >= writtenPosition) {
+            writeBuffered();
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_BUFFER_SIZE);
+        while (true) {
+            readFully(buffer, offset);
+            final byte[] bytes = buffer.array();
+            for (int i = 0; i < buffer.position(); i++) {
+                if (bytes[i] == '\n') {
+                    return new String(bytes, 0, i, StandardCharsets.UTF_8).split(SEPARATOR, -1);
+                }
+            }
+            if (buffer.hasRemaining()) {
+                return new String(bytes, 0, buffer.position(), StandardCharsets.UTF_8).split(SEPARATOR, -1);
+            }
+            buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+        }
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                return;
+            }
+        }
+    }
+
+    private static FileChecksum parseChecksum(String[] fields) {
+        if (!UPLOADED_WITH_CHECKSUM.equals(fields[0]) || !isChecksum(fields[4])) {
+            return null;
+        }
+        final String checksum = fields[4].toLowerCase(Locale.ENGLISH);
+        return new FileChecksum(unescape(fields[5]), checksum, checksum.equals(Md5.normalizeETag(fields[3])));
+    }
+
+    private static boolean isChecksum(String checksum) {
+        return checksum != null && checksum.length() == 32;
+    }
+
+    private void startMultipartUpload(MultipartUploadState state) {
+        final MultipartUploadState previous = multipartUploadsByKey.put(state.getKey(), state);
+        if (previous != null) {
+            multipartUploadsById.remove(previous.getUploadId());
+        }
+        multipartUploadsById.put(state.getUploadId(), state);
+    }
+
+    private void addPart(String uploadId, int partNumber, String eTag) {
+        final MultipartUploadState state = multipartUploadsById.get(uploadId);
+        if (state != null) {
+            state.addCompletedPart(partNumber, eTag);
+        }
+    }
+
+    private void endMultipartUpload(String uploadId) {
+        final MultipartUploadState state = multipartUploadsById.remove(uploadId);
+        if (state != null) {
+            multipartUploadsByKey.remove(state.getKey(), state);
+        }
+    }
+
+    private int find(long hash) {
+        final int mask = hashes.length - 1;
+        for (int slot = (int) hash & mask; hashes[slot] != EMPTY; slot = (slot + 1) & mask) {
+            if (hashes[slot] == hash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private void put(long hash, long version, long offset, byte flag) {
+        if ((count + 1) * 4L > hashes.length * 3L) {
+            resize(hashes.length * 2);
+        }
+        insert(hash, version, offset, flag);
+    }
+
+    /**
+     * Removed files keep their slot, so the probe sequences of other files stay intact
+     */
+    private void remove(long hash) {
+        final int slot = find(hash);
+        if (slot >= 0) {
+            flags[slot] = REMOVED;
+        }
+    }
+
+    private void insert(long hash, long version, long offset, byte flag) {
+        final int mask = hashes.length - 1;
+        int slot = (int) hash & mask;
+        while (hashes[slot] != EMPTY && hashes[slot] != hash) {
+            slot = (slot + 1) & mask;
+        }
+        if (hashes[slot] == EMPTY) {
+            count++;
+        }
+        hashes[slot] = hash;
+        versions[slot] = version;
+        offsets[slot] = offset;
+        flags[slot] = flag;
+    }
+
+    private void resize(int capacity) {
+        final long[] oldHashes = hashes;
+        final long[] oldVersions = versions;
+        final long[] oldOffsets = offsets;
+        final byte[] oldFlags = flags;
+        hashes = new long[capacity];
+        versions = new long[capacity];
+        offsets = new long[capacity];
+        flags = new byte[capacity];
+        count = 0;
+        for (int i = 0; i < oldHashes.length; i++) {
+            if (oldHashes[i] != EMPTY && (oldFlags[i] & REMOVED) == 0) {
+                insert(oldHashes[i], oldVersions[i], oldOffsets[i], oldFlags[i]);
+            }
+        }
+    }
+
+    private int countUploaded() {
+        int uploaded = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            if (hashes[i] != EMPTY && (flags[i] & REMOVED) == 0) {
+                uploaded++;
+            }
+        }
+        return uploaded;
+    }
+
+    /**
+     * Fingerprint of the size and modification time of a file, so a changed file is uploaded again
+     */
+    private static long version(long size, long lastModified) {
+        long version = size * 0x9e3779b97f4a7c15L ^ lastModified;
+        version ^= version >>> 33;
+        version *= 0xff51afd7ed558ccdL;
+        version ^= version >>> 33;
+        return version;
+    }
+
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(long offset, String line);
+    }
+
+    static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\t", "\\t").replace("\n", "\\n").replace("\r", "\\r");
+    }
+
+    static String unescape(String value) {
+        final StringBuilder builder = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                final char next = value.charAt(++i);
+                switch (next) {
+                    case 't':
+                        builder.append('\t');
+                        break;
+                    case 'n':
+                        builder.append('\n');
+                        break;
+                    case 'r':
+                        builder.append('\r');
+                        break;
+                    default:
+                        builder.append(next);
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        return builder.toString();
+    }
+}
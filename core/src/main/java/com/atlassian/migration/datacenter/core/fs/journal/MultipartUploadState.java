@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs.journal;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * Unfinished multipart upload which can be resumed from its last completed part.
+ */
+public class MultipartUploadState {
+    private final String key;
+    private final String uploadId;
+    private final long size;
+    private final long lastModified;
+    private final int partSize;
+    private final SortedMap<Integer, String> completedParts = new ConcurrentSkipListMap<>();
+
+    public MultipartUploadState(String key, String uploadId, long size, long lastModified, int partSize) {
+        this.key = key;
+        this.uploadId = uploadId;
+        this.size = size;
+        this.lastModified = lastModified;
+        this.partSize = partSize;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public String getUploadId() {
+        return uploadId;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * @return size of the parts the file was split into when the upload was started
+     */
+    public int getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @return ETags of the uploaded parts keyed by part number
+     */
+    public Map<Integer, String> getCompletedParts() {
+        return Collections.unmodifiableMap(completedParts);
+    }
+
+    void addCompletedPart(int partNumber, String eTag) {
+        completedParts.put(partNumber, eTag);
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs.journal;
+
+import java.util.Collections;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Journal which doesn't record anything, every file is always uploaded.
+ */
+public class NoOpUploadJournal implements UploadJournal {
+
+    @Override
+    public boolean isUploaded(String key, long size, long lastModified) {
+        return false;
+    }
+
+    @Override
+    public void recordUploaded(String key, long size, long lastModified, String eTag) {
+    }
+
+    @Override
+    public void recordUploaded(String key, long size, long lastModified, String eTag, String checksum) {
+    }
+
+    @Override
+    public Optional<FileChecksum> getChecksum(String key) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void forEachChecksum(boolean uploadedSinceOpened, Consumer<FileChecksum> consumer) {
+    }
+
+    @Override
+    public void markPresent(String key) {
+    }
+
+    @Override
+    public Set<String> getKeysNotPresent() {
+        return Collections.emptySet();
+    }
+
+    @Override
+    public void recordDeleted(String key) {
+    }
+
+    @Override
+    public Optional<MultipartUploadState> getMultipartUpload(String key, long size, long lastModified) {
+        return Optional.empty();
+    }
+
+    @Override
+    public void recordMultipartUploadStarted(String key, long size, long lastModified, String uploadId, int partSize) {
+    }
+
+    @Override
+    public void recordPartUploaded(String uploadId, int partNumber, String eTag) {
+    }
+
+    @Override
+    public void recordMultipartUploadEnded(String uploadId) {
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs.journal;
+
+import java.io.Closeable;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Durable record of the files which have already been uploaded, so that an interrupted file system migration
+ * can resume without uploading them again. Implementations must be thread safe as they are called from
+ * multiple upload threads.
+ */
+public interface UploadJournal extends Closeable {
+
+    /**
+     * @return true if a file with the given key, size and modification time has already been uploaded
+     */
+    boolean isUploaded(String key, long size, long lastModified);
+
+    /**
+     * Records that a file has been uploaded successfully
+     */
+    void recordUploaded(String key, long size, long lastModified, String eTag);
+
+    /**
+     * Records that a file has been uploaded successfully, along with the MD5 checksum of the uploaded content
+     *
+     * @param checksum hex encoded MD5 of the content, or null if it is unknown
+     */
+    void recordUploaded(String key, long size, long lastModified, String eTag, String checksum);
+
+    /**
+     * @return the checksum of the uploaded file with the given key, if it was recorded
+     */
+    Optional<FileChecksum> getChecksum(String key);
+
+    /**
+     * Passes the checksum of every uploaded file which has one to the consumer
+     *
+     * @param uploadedSinceOpened only files uploaded since the journal was opened
+     */
+    void forEachChecksum(boolean uploadedSinceOpened, Consumer<FileChecksum> consumer);
+
+    /**
+     * Notes that the file with the given key still exists in the source file system. Keys which were uploaded
+     * previously but are not marked present during a migration belong to files which have since been deleted.
+     */
+    void markPresent(String key);
+
+    /**
+     * @return keys of previously uploaded files which have not been marked present or uploaded since the journal
+     * was opened
+     */
+    Set<String> getKeysNotPresent();
+
+    /**
+     * Records that a previously uploaded file was deleted from the remote location
+     */
+    void recordDeleted(String key);
+
+    /**
+     * @return the state of an unfinished multipart upload of the given file, if the file has not changed since
+     * the multipart upload was started
+     */
+    Optional<MultipartUploadState> getMultipartUpload(String key, long size, long lastModified);
+
+    /**
+     * Records that a multipart upload has been initiated for the given file
+     */
+    void recordMultipartUploadStarted(String key, long size, long lastModified, String uploadId, int partSize);
+
+    /**
+     * Records that a part of a multipart upload has been uploaded successfully
+     */
+    void recordPartUploaded(String uploadId, int partNumber, String eTag);
+
+    /**
+     * Records that a multipart upload was completed or aborted and cannot be resumed anymore
+     */
+    void recordMultipartUploadEnded(String uploadId);
+
+    /**
+     * Writes any buffered records to durable storage
+     */
+    void flush();
+
+    /**
+     * Flushes and releases the underlying storage. No records can be written after the journal is closed.
+     */
+    @Override
+    void close();
+}
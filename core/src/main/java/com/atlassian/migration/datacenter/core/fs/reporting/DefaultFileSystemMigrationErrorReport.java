@@ -19,41 +19,275 @@ package com.atlassian.migration.datacenter.core.fs.reporting;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationErrorReport;
 import com.google.common.collect.ImmutableSet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Manages files which have had an error throughout the file migration
  * This class is threadsafe and is intended to be added to by any agents which
  * are a part of the file system migration
+ * <p>
+ * Every failure is appended to a gzipped log file, so all of them can be downloaded however many there are. Only a
+ * summary is kept in memory: the number of failures for each reason and the most recent failures. When the log file
+ * can't be written the failures are still counted, but only the most recent ones can be read back.
  */
-public class DefaultFileSystemMigrationErrorReport implements FileSystemMigrationErrorReport {
+public class DefaultFileSystemMigrationErrorReport implements FileSystemMigrationErrorReport, Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(DefaultFileSystemMigrationErrorReport.class);
 
-    private final Set<FailedFileMigration> failedMigrations;
+    static final int RECENT_FAILURES = 100;
+    /**
+     * Reasons often include the file path, so once there are this many, including {@link #OTHER_REASONS}, new ones
+     * are counted together
+     */
+    static final int MAX_REASONS = 100;
+    static final String OTHER_REASONS = "Other";
+    private static final char SEPARATOR = '\t';
+
+    private final Path logFile;
+    private final AtomicLong failures = new AtomicLong();
+    private final ConcurrentMap<String, LongAdder> failuresByReason = new ConcurrentHashMap<>();
+    private final Deque<FailedFileMigration> recentFailures = new ArrayDeque<>();
+
+    private Writer writer;
+    private long loggedFailures;
 
+    /**
+     * Creates a report which only keeps the summary in memory
+     */
     public DefaultFileSystemMigrationErrorReport() {
-        this.failedMigrations = ConcurrentHashMap.newKeySet();
+        this.logFile = null;
     }
 
     /**
-     * tries to report a failed file migration. If 100 files have failed already the report will be dropped to save memory.
-     * In this scenario it is likely the migration will fail and that the lost errors will have the same cause.
+     * Creates a report which logs every failure to the given file. An existing file is replaced.
+     */
+    public DefaultFileSystemMigrationErrorReport(Path logFile) throws IOException {
+        this.logFile = logFile;
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        this.writer = new BufferedWriter(new OutputStreamWriter(
+                new GZIPOutputStream(Files.newOutputStream(logFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE), 8192, true),
+                StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Reports a failed file migration. The failure is counted, logged to disk and kept as one of the most recent
+     * failures.
      *
      * @param failedFileMigration the failed file migration to report
      */
     public void reportFileNotMigrated(FailedFileMigration failedFileMigration) {
-        if (failedMigrations.size() >= 100) {
-            return;
+        failures.incrementAndGet();
+        countReason(failedFileMigration.getReason());
+        synchronized (recentFailures) {
+            if (recentFailures.size() == RECENT_FAILURES) {
+                recentFailures.removeFirst();
+            }
+            recentFailures.addLast(failedFileMigration);
         }
-        failedMigrations.add(failedFileMigration);
+        log(failedFileMigration);
     }
 
     /**
-     * @return an immutable copy of the FailedFileMigrations in this report. Note the returned value
+     * @return an immutable copy of the most recent FailedFileMigrations in this report. Note the returned value
      * is not backed by the underlying collection so will not be updated as other producers add to it.
+     * @see #readFailedFiles(long, int, Consumer) to read all of them
      */
     public Set<FailedFileMigration> getFailedFiles() {
-        return ImmutableSet.copyOf(failedMigrations);
+        synchronized (recentFailures) {
+            return ImmutableSet.copyOf(recentFailures);
+        }
+    }
+
+    @Override
+    public long getNumberOfFailedFiles() {
+        return failures.get();
+    }
+
+    @Override
+    public Map<String, Long> getFailureCountsByReason() {
+        final Map<String, Long> counts = new TreeMap<>();
+        failuresByReason.forEach((reason, count) -> counts.put(reason, count.sum()));
+        return counts;
+    }
+
+    /**
+     * Reads failures from the log in the order they were reported, without holding them all in memory.
+     */
+    @Override
+    public void readFailedFiles(long offset, int limit, Consumer<FailedFileMigration> consumer) throws IOException {
+        if (logFile == null) {
+            final List<FailedFileMigration> recent;
+            synchronized (recentFailures) {
+                recent = new ArrayList<>(recentFailures);
+            }
+            recent.stream().skip(offset).limit(limit).forEach(consumer);
+            return;
+        }
+
+        final long loggedFailures;
+        synchronized (this) {
+            if (writer != null) {
+                // Sync flushes the compressor, so everything reported so far can be read
+                writer.flush();
+            }
+            loggedFailures = this.loggedFailures;
+        }
+        final long end = Math.min(loggedFailures, offset + limit);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FlushedGzipInputStream(Files.newInputStream(logFile)), StandardCharsets.UTF_8))) {
+            String line;
+            for (long i = 0; i < end && (line = reader.readLine()) != null; i++) {
+                if (i >= offset) {
+                    consumer.accept(parse(line));
+                }
+            }
+        }
+    }
+
+    /**
+     * Finishes the log. Failures reported afterwards are only kept in the summary.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void countReason(String reason) {
+        String key = reason == null ? "" : reason;
+        if (!failuresByReason.containsKey(key) && failuresByReason.size() >= MAX_REASONS - 1) {
+            key = OTHER_REASONS;
+        }
+        failuresByReason.computeIfAbsent(key, k -> new LongAdder()).increment();
+    }
+
+    private synchronized void log(FailedFileMigration failedFileMigration) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.write(escape(String.valueOf(failedFileMigration.getFilePath())));
+            writer.write(SEPARATOR);
+            writer.write(escape(failedFileMigration.getReason()));
+            writer.write('\n');
+            loggedFailures++;
+        } catch (IOException e) {
+            logger.warn("Unable to write to failed file log {}. Only the most recent failures will be available.", logFile, e);
+            try {
+                writer.close();
+            } catch (IOException ignored) {
+            }
+            writer = null;
+        }
+    }
+
+    private static FailedFileMigration parse(String line) {
+        final int separator = line.indexOf(SEPARATOR);
+        return new FailedFileMigration(Paths.get(unescape(line.substring(0, separator))), unescape(line.substring(separator + 1)));
+    }
+
+    private static String escape(String value) {
+        if (value == null) {
+            return "";
+        }
+        final StringBuilder escaped = new StringBuilder(value.length());
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    private static String unescape(String value) {
+        final StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                final char next = value.charAt(++i);
+                unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+
+    /**
+     * Reads a gzip stream which is still being written. Everything up to the last flush can be read, but the stream
+     * ends without a trailer.
+     */
+    private static class FlushedGzipInputStream extends FilterInputStream {
+        FlushedGzipInputStream(InputStream in) throws IOException {
+            super(new GZIPInputStream(in));
+        }
+
+        @Override
+        public int read() throws IOException {
+            try {
+                return super.read();
+            } catch (EOFException endOfFlushedData) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            try {
+                return super.read(b, off, len);
+            } catch (EOFException endOfFlushedData) {
+                return -1;
+            }
+        }
+
+        @Override
+        public int available() {
+            // Reading beyond the flushed data fails, so never claim more can be read without blocking
+            return 0;
+        }
     }
 }
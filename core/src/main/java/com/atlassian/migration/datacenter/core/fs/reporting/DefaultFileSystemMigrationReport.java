@@ -16,16 +16,26 @@
 
 package com.atlassian.migration.datacenter.core.fs.reporting;
 
+import com.atlassian.migration.datacenter.core.events.MigrationEvent;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
+import com.atlassian.migration.datacenter.spi.fs.reporting.ConcurrencyLimitChange;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationErrorReport;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationProgress;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.DONE;
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.DOWNLOADING;
@@ -33,24 +43,49 @@ import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigr
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.NOT_STARTED;
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.UPLOADING;
 
-public class DefaultFileSystemMigrationReport implements FileSystemMigrationReport {
+public class DefaultFileSystemMigrationReport implements FileSystemMigrationReport, Closeable {
+
+    /**
+     * Progress is published at most this often, as files are reported from many upload threads
+     */
+    static final Duration PROGRESS_EVENT_INTERVAL = Duration.ofSeconds(1);
 
     private Clock clock;
 
     private final FileSystemMigrationErrorReport errorReport;
     private final FileSystemMigrationProgress progress;
+    private final MigrationEventBus eventBus;
 
     private Instant startTime;
     private Instant completeTime;
     private FilesystemMigrationStatus currentStatus;
 
+    private final ThroughputWindow throughput = new ThroughputWindow();
+
+    private final AtomicLong lastProgressEventMillis = new AtomicLong();
+    private long publishedUploadedFiles;
+    private long publishedUploadedBytes;
+    private long publishedDownloadedFiles;
+
     public DefaultFileSystemMigrationReport() {
         this(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress());
     }
 
+    /**
+     * Creates a report which publishes its progress to the event bus
+     */
+    public DefaultFileSystemMigrationReport(MigrationEventBus eventBus) {
+        this(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress(), eventBus);
+    }
+
     public DefaultFileSystemMigrationReport(FileSystemMigrationErrorReport errorReport, FileSystemMigrationProgress progress) {
+        this(errorReport, progress, null);
+    }
+
+    public DefaultFileSystemMigrationReport(FileSystemMigrationErrorReport errorReport, FileSystemMigrationProgress progress, MigrationEventBus eventBus) {
         this.errorReport = errorReport;
         this.progress = progress;
+        this.eventBus = eventBus;
         this.currentStatus = NOT_STARTED;
         this.clock = Clock.systemUTC();
     }
@@ -59,11 +94,14 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
     public void setStatus(FilesystemMigrationStatus status) {
         if (isStartingMigration(status)) {
             startTime = Instant.now(clock);
+            throughput.clear();
         } else if (isEndingMigration(status)) {
             completeTime = Instant.now(clock);
         }
 
         this.currentStatus = status;
+        recordThroughput();
+        publishProgress();
     }
 
     @Override
@@ -80,6 +118,69 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
         return Duration.between(startTime, end);
     }
 
+    @Override
+    public Double getUploadedFilesPerSecond() {
+        return perSecond(progress.getCountOfUploadedFiles());
+    }
+
+    @Override
+    public Double getUploadedBytesPerSecond() {
+        return perSecond(progress.getCountOfUploadedBytes());
+    }
+
+    private Double perSecond(Long count) {
+        if (startTime == null || count == null) {
+            return 0.0;
+        }
+        final long elapsedMillis = getElapsedTime().toMillis();
+        if (elapsedMillis <= 0) {
+            return 0.0;
+        }
+        return count * 1000.0 / elapsedMillis;
+    }
+
+    @Override
+    public Double getCurrentUploadedFilesPerSecond() {
+        if (currentStatus != UPLOADING) {
+            return 0.0;
+        }
+        recordThroughput();
+        return throughput.filesPerSecond(clock.millis(), progress.getCountOfUploadedFiles());
+    }
+
+    @Override
+    public Double getCurrentUploadedBytesPerSecond() {
+        if (currentStatus != UPLOADING) {
+            return 0.0;
+        }
+        recordThroughput();
+        return throughput.bytesPerSecond(clock.millis(), progress.getCountOfUploadedBytes());
+    }
+
+    @Override
+    public Duration getEstimatedTimeRemaining() {
+        if (currentStatus == DONE) {
+            return Duration.ZERO;
+        }
+        final double bytesPerSecond = getCurrentUploadedBytesPerSecond();
+        if (bytesPerSecond <= 0) {
+            return null;
+        }
+        final long remainingBytes = Math.max(0, progress.getNumberOfBytesFound() - progress.getCountOfUploadedBytes() - progress.getCountOfSkippedBytes() - progress.getCountOfFailedBytes());
+        return Duration.ofMillis((long) (remainingBytes * 1000 / bytesPerSecond));
+    }
+
+    /**
+     * Samples the upload totals for the current rates. Cheap enough to call for every uploaded file, as the totals
+     * are only read when a sample is due.
+     */
+    private void recordThroughput() {
+        final long now = clock.millis();
+        if (currentStatus == UPLOADING && throughput.isDue(now)) {
+            throughput.record(now, progress.getCountOfUploadedFiles(), progress.getCountOfUploadedBytes());
+        }
+    }
+
     private boolean isRunning() {
         return currentStatus == UPLOADING || currentStatus == DOWNLOADING;
     }
@@ -100,15 +201,70 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
         return toStatus == DONE || toStatus == FAILED;
     }
 
+    private void publishProgressIfDue() {
+        if (eventBus == null) {
+            return;
+        }
+        final long now = clock.millis();
+        final long last = lastProgressEventMillis.get();
+        if (now - last < PROGRESS_EVENT_INTERVAL.toMillis() || !lastProgressEventMillis.compareAndSet(last, now)) {
+            return;
+        }
+        publishProgress();
+    }
+
+    /**
+     * Publishes the totals along with how much they have changed since the previous event
+     */
+    private synchronized void publishProgress() {
+        if (eventBus == null) {
+            return;
+        }
+        lastProgressEventMillis.set(clock.millis());
+        final long uploadedFiles = progress.getCountOfUploadedFiles();
+        final long uploadedBytes = progress.getCountOfUploadedBytes();
+        final long downloadedFiles = progress.getCountOfDownloadFiles();
+
+        final Map<String, Object> data = new HashMap<>();
+        data.put("status", currentStatus.toString());
+        data.put("filesFound", progress.getNumberOfFilesFound());
+        data.put("bytesFound", progress.getNumberOfBytesFound());
+        data.put("crawlingFinished", progress.isCrawlingFinished());
+        data.put("uploadedFiles", uploadedFiles);
+        data.put("uploadedFilesDelta", uploadedFiles - publishedUploadedFiles);
+        data.put("uploadedBytes", uploadedBytes);
+        data.put("uploadedBytesDelta", uploadedBytes - publishedUploadedBytes);
+        data.put("downloadedFiles", downloadedFiles);
+        data.put("downloadedFilesDelta", downloadedFiles - publishedDownloadedFiles);
+        data.put("failedFiles", errorReport.getNumberOfFailedFiles());
+        final Duration timeRemaining = getEstimatedTimeRemaining();
+        data.put("estimatedSecondsRemaining", timeRemaining == null ? null : timeRemaining.getSeconds());
+        eventBus.publish(MigrationEvent.Type.FILESYSTEM_PROGRESS, data);
+
+        publishedUploadedFiles = uploadedFiles;
+        publishedUploadedBytes = uploadedBytes;
+        publishedDownloadedFiles = downloadedFiles;
+    }
+
     @Override
     public String toString() {
         return String.format("Filesystem migration report = { status: %s, migratedFiles: %d, erroredFiles: %d }",
                 currentStatus,
                 progress.getCountOfUploadedFiles(),
-                errorReport.getFailedFiles().size()
+                errorReport.getNumberOfFailedFiles()
         );
     }
 
+    /**
+     * Closes the error report, if it holds on to a log of the failed files
+     */
+    @Override
+    public void close() throws IOException {
+        if (errorReport instanceof Closeable) {
+            ((Closeable) errorReport).close();
+        }
+    }
+
     /*
     DELEGATED METHODS FOLLOW
      */
@@ -118,9 +274,25 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
         return errorReport.getFailedFiles();
     }
 
+    @Override
+    public long getNumberOfFailedFiles() {
+        return errorReport.getNumberOfFailedFiles();
+    }
+
+    @Override
+    public Map<String, Long> getFailureCountsByReason() {
+        return errorReport.getFailureCountsByReason();
+    }
+
+    @Override
+    public void readFailedFiles(long offset, int limit, Consumer<FailedFileMigration> consumer) throws IOException {
+        errorReport.readFailedFiles(offset, limit, consumer);
+    }
+
     @Override
     public void reportFileNotMigrated(FailedFileMigration failedFileMigration) {
         errorReport.reportFileNotMigrated(failedFileMigration);
+        publishProgressIfDue();
     }
 
     @Override
@@ -131,6 +303,17 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
     @Override
     public void reportFileFound() {
         progress.reportFileFound();
+        publishProgressIfDue();
+    }
+
+    @Override
+    public Long getNumberOfBytesFound() {
+        return progress.getNumberOfBytesFound();
+    }
+
+    @Override
+    public void reportBytesFound(long bytes) {
+        progress.reportBytesFound(bytes);
     }
 
     @Override
@@ -161,6 +344,70 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
     @Override
     public void reportFileUploaded() {
         progress.reportFileUploaded();
+        recordThroughput();
+        publishProgressIfDue();
+    }
+
+    @Override
+    public Long getCountOfUploadedBytes() {
+        return progress.getCountOfUploadedBytes();
+    }
+
+    @Override
+    public void reportBytesUploaded(long bytes) {
+        progress.reportBytesUploaded(bytes);
+        recordThroughput();
+        publishProgressIfDue();
+    }
+
+    @Override
+    public Long getCountOfSkippedBytes() {
+        return progress.getCountOfSkippedBytes();
+    }
+
+    @Override
+    public void reportBytesSkipped(long bytes) {
+        progress.reportBytesSkipped(bytes);
+    }
+
+    @Override
+    public Long getCountOfFailedBytes() {
+        return progress.getCountOfFailedBytes();
+    }
+
+    @Override
+    public void reportBytesFailed(long bytes) {
+        progress.reportBytesFailed(bytes);
+    }
+
+    @Override
+    public Integer getUploadQueueDepth() {
+        return progress.getUploadQueueDepth();
+    }
+
+    @Override
+    public Long getUploadQueueBytes() {
+        return progress.getUploadQueueBytes();
+    }
+
+    @Override
+    public void reportUploadQueueOccupancy(int depth, long bytes) {
+        progress.reportUploadQueueOccupancy(depth, bytes);
+    }
+
+    @Override
+    public Integer getUploadConcurrencyLimit() {
+        return progress.getUploadConcurrencyLimit();
+    }
+
+    @Override
+    public List<ConcurrencyLimitChange> getUploadConcurrencyHistory() {
+        return progress.getUploadConcurrencyHistory();
+    }
+
+    @Override
+    public void reportUploadConcurrencyLimit(int limit) {
+        progress.reportUploadConcurrencyLimit(limit);
     }
 
     @Override
@@ -171,6 +418,7 @@ public class DefaultFileSystemMigrationReport implements FileSystemMigrationRepo
     @Override
     public void setNumberOfFilesDownloaded(long downloadedFiles) {
         progress.setNumberOfFilesDownloaded(downloadedFiles);
+        publishProgressIfDue();
     }
 }
 
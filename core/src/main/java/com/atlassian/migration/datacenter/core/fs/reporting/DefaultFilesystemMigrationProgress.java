@@ -16,31 +16,68 @@
 
 package com.atlassian.migration.datacenter.core.fs.reporting;
 
+import com.atlassian.migration.datacenter.spi.fs.reporting.ConcurrencyLimitChange;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationProgress;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * Counters are {@link LongAdder}s, as they are updated for every file by all the crawling and uploading threads
+ */
 public class DefaultFilesystemMigrationProgress implements FileSystemMigrationProgress {
 
-    private AtomicLong numFilesUploaded = new AtomicLong(0);
+    private static final int MAX_CONCURRENCY_HISTORY = 100;
+
+    private final LongAdder numFilesUploaded = new LongAdder();
+
+    private final LongAdder filesFound = new LongAdder();
+
+    private final LongAdder bytesFound = new LongAdder();
+
+    private final AtomicBoolean allFilesFound = new AtomicBoolean(false);
+
+    private final LongAdder fileUploadsCommenced = new LongAdder();
+
+    private final AtomicLong fileDownloadsCompleted = new AtomicLong(0);
 
-    private AtomicLong filesFound = new AtomicLong(0);
+    private final LongAdder bytesUploaded = new LongAdder();
 
-    private AtomicBoolean allFilesFound = new AtomicBoolean(false);
+    private final LongAdder bytesSkipped = new LongAdder();
 
-    private AtomicLong fileUploadsCommenced = new AtomicLong(0);
+    private final LongAdder bytesFailed = new LongAdder();
 
-    private AtomicLong fileDownloadsCompleted = new AtomicLong(0);
+    private volatile int uploadQueueDepth = 0;
+
+    private volatile long uploadQueueBytes = 0;
+
+    private volatile int uploadConcurrencyLimit = 0;
+
+    private final Deque<ConcurrencyLimitChange> uploadConcurrencyHistory = new ArrayDeque<>();
 
     @Override
     public Long getNumberOfFilesFound() {
-        return filesFound.get();
+        return filesFound.sum();
     }
 
     @Override
     public void reportFileFound() {
-        filesFound.incrementAndGet();
+        filesFound.increment();
+    }
+
+    @Override
+    public Long getNumberOfBytesFound() {
+        return bytesFound.sum();
+    }
+
+    @Override
+    public void reportBytesFound(long bytes) {
+        bytesFound.add(bytes);
     }
 
     @Override
@@ -55,22 +92,91 @@ public class DefaultFilesystemMigrationProgress implements FileSystemMigrationPr
 
     @Override
     public Long getNumberOfCommencedFileUploads() {
-        return fileUploadsCommenced.get();
+        return fileUploadsCommenced.sum();
     }
 
     @Override
     public void reportFileUploadCommenced() {
-        fileUploadsCommenced.incrementAndGet();
+        fileUploadsCommenced.increment();
     }
 
     @Override
     public Long getCountOfUploadedFiles() {
-        return numFilesUploaded.get();
+        return numFilesUploaded.sum();
     }
 
     @Override
     public void reportFileUploaded() {
-        numFilesUploaded.incrementAndGet();
+        numFilesUploaded.increment();
+    }
+
+    @Override
+    public Long getCountOfUploadedBytes() {
+        return bytesUploaded.sum();
+    }
+
+    @Override
+    public void reportBytesUploaded(long bytes) {
+        bytesUploaded.add(bytes);
+    }
+
+    @Override
+    public Long getCountOfSkippedBytes() {
+        return bytesSkipped.sum();
+    }
+
+    @Override
+    public void reportBytesSkipped(long bytes) {
+        bytesSkipped.add(bytes);
+    }
+
+    @Override
+    public Long getCountOfFailedBytes() {
+        return bytesFailed.sum();
+    }
+
+    @Override
+    public void reportBytesFailed(long bytes) {
+        bytesFailed.add(bytes);
+    }
+
+    @Override
+    public Integer getUploadQueueDepth() {
+        return uploadQueueDepth;
+    }
+
+    @Override
+    public Long getUploadQueueBytes() {
+        return uploadQueueBytes;
+    }
+
+    @Override
+    public void reportUploadQueueOccupancy(int depth, long bytes) {
+        uploadQueueDepth = depth;
+        uploadQueueBytes = bytes;
+    }
+
+    @Override
+    public Integer getUploadConcurrencyLimit() {
+        return uploadConcurrencyLimit;
+    }
+
+    @Override
+    public List<ConcurrencyLimitChange> getUploadConcurrencyHistory() {
+        synchronized (uploadConcurrencyHistory) {
+            return new ArrayList<>(uploadConcurrencyHistory);
+        }
+    }
+
+    @Override
+    public void reportUploadConcurrencyLimit(int limit) {
+        uploadConcurrencyLimit = limit;
+        synchronized (uploadConcurrencyHistory) {
+            if (uploadConcurrencyHistory.size() == MAX_CONCURRENCY_HISTORY) {
+                uploadConcurrencyHistory.removeFirst();
+            }
+            uploadConcurrencyHistory.addLast(new ConcurrencyLimitChange(System.currentTimeMillis(), limit));
+        }
     }
 
     @Override
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.reporting;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * Moving average of the upload throughput over the last {@link #WINDOW}. The totals are sampled at most once per
+ * {@link #SAMPLE_INTERVAL}, so recording them for every uploaded file is cheap, and the rate follows changes in
+ * throughput rather than averaging over the whole migration.
+ */
+class ThroughputWindow {
+    static final Duration WINDOW = Duration.ofMinutes(1);
+    static final Duration SAMPLE_INTERVAL = Duration.ofSeconds(1);
+
+    private final Deque<Sample> samples = new ArrayDeque<>();
+    private volatile long lastSampleMillis = Long.MIN_VALUE;
+
+    /**
+     * @return true when the totals were last recorded at least {@link #SAMPLE_INTERVAL} ago
+     */
+    boolean isDue(long timeMillis) {
+        final long last = lastSampleMillis;
+        return last == Long.MIN_VALUE || timeMillis - last >= SAMPLE_INTERVAL.toMillis();
+    }
+
+    /**
+     * Records the totals, unless they were recorded less than {@link #SAMPLE_INTERVAL} ago
+     */
+    void record(long timeMillis, long files, long bytes) {
+        synchronized (samples) {
+            final Sample last = samples.peekLast();
+            if (last != null && timeMillis - last.timeMillis < SAMPLE_INTERVAL.toMillis()) {
+                return;
+            }
+            samples.addLast(new Sample(timeMillis, files, bytes));
+            lastSampleMillis = timeMillis;
+            // One sample from before the window is kept, so the rate covers the whole window
+            while (samples.size() > 1 && timeMillis - second().timeMillis >= WINDOW.toMillis()) {
+                samples.removeFirst();
+            }
+        }
+    }
+
+    double filesPerSecond(long timeMillis, long files) {
+        synchronized (samples) {
+            final Sample oldest = samples.peekFirst();
+            return oldest == null ? 0.0 : perSecond(files - oldest.files, timeMillis - oldest.timeMillis);
+        }
+    }
+
+    double bytesPerSecond(long timeMillis, long bytes) {
+        synchronized (samples) {
+            final Sample oldest = samples.peekFirst();
+            return oldest == null ? 0.0 : perSecond(bytes - oldest.bytes, timeMillis - oldest.timeMillis);
+        }
+    }
+
+    void clear() {
+        synchronized (samples) {
+            samples.clear();
+            lastSampleMillis = Long.MIN_VALUE;
+        }
+    }
+
+    private Sample second() {
+        final Iterator<Sample> iterator = samples.iterator();
+        iterator.next();
+        return iterator.next();
+    }
+
+    private static double perSecond(long count, long elapsedMillis) {
+        if (elapsedMillis <= 0) {
+            return 0.0;
+        }
+        return count * 1000.0 / elapsedMillis;
+    }
+
+    private static class Sample {
+        private final long timeMillis;
+        private final long files;
+        private final long bytes;
+
+        Sample(long timeMillis, long files, long bytes) {
+            this.timeMillis = timeMillis;
+            this.files = files;
+            this.bytes = bytes;
+        }
+    }
+}
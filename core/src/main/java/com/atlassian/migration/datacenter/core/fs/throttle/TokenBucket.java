@@ -0,0 +1,117 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.throttle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket allowing a burst of up to one second worth of tokens. A request may take up to one second worth of
+ * tokens even if fewer are available, which puts the bucket into debt, and the next request waits until the debt
+ * is repaid, so large requests don't starve while the average rate is still respected. The debt is limited to one
+ * second worth of tokens at the current rate, also when the rate is lowered.
+ * <p>
+ * Waiting callers are woken up when the rate changes, so they wait for the debt at the new rate.
+ */
+class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final LongSupplier nanoClock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition rateChanged = lock.newCondition();
+    private double ratePerSecond = 0;
+    private double tokens = 0;
+    private long lastRefill;
+
+    TokenBucket(LongSupplier nanoClock) {
+        this.nanoClock = nanoClock;
+        this.lastRefill = nanoClock.getAsLong();
+    }
+
+    /**
+     * @param ratePerSecond tokens added per second, the bucket is unlimited if the rate isn't positive
+     */
+    void setRate(double ratePerSecond) {
+        lock.lock();
+        try {
+            if (ratePerSecond == this.ratePerSecond) {
+                return;
+            }
+            refill();
+            this.ratePerSecond = ratePerSecond;
+            tokens = ratePerSecond > 0 ? Math.max(-maxTokensPerRequest(), Math.min(tokens, ratePerSecond)) : 0;
+            rateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    double getRate() {
+        lock.lock();
+        try {
+            return ratePerSecond;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Takes tokens from the bucket, waiting until it is out of debt first. At most one second worth of tokens is
+     * taken, so the caller has to acquire the remainder of a larger request again.
+     *
+     * @param maxWaitNanos maximum time to wait for the bucket to get out of debt
+     * @return number of tokens taken, 0 if the bucket is still in debt after waiting for the given time
+     */
+    long acquire(long requested, long maxWaitNanos) throws InterruptedException {
+        final long start = nanoClock.getAsLong();
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                if (ratePerSecond <= 0) {
+                    return requested;
+                }
+                refill();
+                if (tokens >= 0) {
+                    final long taken = Math.min(requested, maxTokensPerRequest());
+                    tokens -= taken;
+                    return taken;
+                }
+                final long remainingWait = maxWaitNanos - (nanoClock.getAsLong() - start);
+                if (remainingWait <= 0) {
+                    return 0;
+                }
+                final long debtNanos = (long) Math.ceil(-tokens / ratePerSecond * NANOS_PER_SECOND);
+                rateChanged.awaitNanos(Math.min(remainingWait, debtNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long maxTokensPerRequest() {
+        return Math.max(1, (long) ratePerSecond);
+    }
+
+    private void refill() {
+        final long now = nanoClock.getAsLong();
+        if (ratePerSecond > 0) {
+            tokens = Math.min(ratePerSecond, tokens + (now - lastRefill) / NANOS_PER_SECOND * ratePerSecond);
+        }
+        lastRefill = now;
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.throttle;
+
+import com.atlassian.migration.datacenter.spi.fs.ThrottleWindow;
+import com.atlassian.migration.datacenter.spi.fs.UploadThrottleSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Clock;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Limits the number of bytes read and files uploaded per second by the file system migration. The limits and
+ * the schedule can be changed while the migration is running; the new rates also apply to callers which are
+ * already waiting.
+ */
+public class UploadThrottle {
+    private static final Logger logger = LoggerFactory.getLogger(UploadThrottle.class);
+    // waiting callers check the schedule this often, so they notice when a window starts or ends
+    private static final long SCHEDULE_CHECK_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Clock clock;
+    private final TokenBucket bytes;
+    private final TokenBucket files;
+    private volatile UploadThrottleSettings settings = UploadThrottleSettings.unlimited();
+    private volatile List<ScheduledWindow> schedule = new ArrayList<>();
+
+    public UploadThrottle() {
+        this(Clock.systemDefaultZone(), System::nanoTime);
+    }
+
+    UploadThrottle(Clock clock, LongSupplier nanoClock) {
+        this.clock = clock;
+        this.bytes = new TokenBucket(nanoClock);
+        this.files = new TokenBucket(nanoClock);
+    }
+
+    /**
+     * Blocks until another file may be uploaded
+     */
+    public void acquireFile() throws InterruptedException {
+        acquire(files, 1);
+    }
+
+    /**
+     * Blocks until the given number of bytes may be read
+     */
+    public void acquireBytes(long count) throws InterruptedException {
+        acquire(bytes, count);
+    }
+
+    public UploadThrottleSettings getSettings() {
+        return settings;
+    }
+
+    /**
+     * @throws IllegalArgumentException if a rate is negative or the schedule is invalid
+     */
+    public void update(UploadThrottleSettings settings) {
+        if (settings.getBytesPerSecond() < 0 || settings.getFilesPerSecond() < 0) {
+            throw new IllegalArgumentException("Upload rates must not be negative");
+        }
+        final List<ScheduledWindow> parsedSchedule = new ArrayList<>();
+        for (ThrottleWindow window : settings.getSchedule()) {
+            parsedSchedule.add(ScheduledWindow.parse(window));
+        }
+
+        synchronized (this) {
+            this.schedule = parsedSchedule;
+            this.settings = settings;
+        }
+        logger.info("Upload throttle changed to {} bytes/s and {} files/s with {} scheduled windows",
+                settings.getBytesPerSecond(), settings.getFilesPerSecond(), parsedSchedule.size());
+        applySchedule();
+    }
+
+    /**
+     * @return percentage of the configured rates which is currently allowed
+     */
+    int getCurrentPercentage() {
+        final LocalDateTime now = LocalDateTime.now(clock);
+        return schedule.stream()
+                .filter(window -> window.contains(now))
+                .mapToInt(window -> window.percentage)
+                .min()
+                .orElse(100);
+    }
+
+    private void acquire(TokenBucket bucket, long count) throws InterruptedException {
+        long remaining = count;
+        while (remaining > 0) {
+            applySchedule();
+            remaining -= bucket.acquire(remaining, SCHEDULE_CHECK_INTERVAL_NANOS);
+        }
+    }
+
+    private void applySchedule() {
+        final UploadThrottleSettings current = settings;
+        final int percentage = getCurrentPercentage();
+        bytes.setRate(scaledRate(current.getBytesPerSecond(), percentage));
+        files.setRate(scaledRate(current.getFilesPerSecond(), percentage));
+    }
+
+    private static double scaledRate(long rate, int percentage) {
+        if (rate <= 0) {
+            return 0;
+        }
+        // a window with 0% pauses the upload as much as the bucket allows without stopping it forever
+        return Math.max(rate * percentage / 100.0, 1);
+    }
+
+    private static class ScheduledWindow {
+        private final LocalTime start;
+        private final LocalTime end;
+        private final List<DayOfWeek> days;
+        private final int percentage;
+
+        private ScheduledWindow(LocalTime start, LocalTime end, List<DayOfWeek> days, int percentage) {
+            this.start = start;
+            this.end = end;
+            this.days = days;
+            this.percentage = percentage;
+        }
+
+        static ScheduledWindow parse(ThrottleWindow window) {
+            if (window.getPercentage() < 0 || window.getPercentage() > 100) {
+                throw new IllegalArgumentException("Throttle window percentage must be between 0 and 100 but was " + window.getPercentage());
+            }
+            final List<DayOfWeek> days = new ArrayList<>();
+            for (String day : window.getDays()) {
+                days.add(DayOfWeek.valueOf(day.toUpperCase(Locale.ENGLISH)));
+            }
+            if (window.getStart() == null || window.getEnd() == null) {
+                throw new IllegalArgumentException("Throttle window must have a start and an end");
+            }
+            try {
+                return new ScheduledWindow(LocalTime.parse(window.getStart()), LocalTime.parse(window.getEnd()), days, window.getPercentage());
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException(String.format("Invalid throttle window %s-%s, times must be formatted as HH:mm", window.getStart(), window.getEnd()), e);
+            }
+        }
+
+        boolean contains(LocalDateTime dateTime) {
+            final LocalTime time = dateTime.toLocalTime();
+            if (!start.isAfter(end)) {
+                return appliesOn(dateTime.getDayOfWeek()) && !time.isBefore(start) && time.isBefore(end);
+            }
+            // the window spans midnight, so the early morning belongs to the window which started the day before
+            if (!time.isBefore(start)) {
+                return appliesOn(dateTime.getDayOfWeek());
+            }
+            return time.isBefore(end) && appliesOn(dateTime.getDayOfWeek().minus(1));
+        }
+
+        private boolean appliesOn(DayOfWeek day) {
+            return days.isEmpty() || days.contains(day);
+        }
+    }
+}
@@ -19,12 +19,36 @@ package com.atlassian.migration.datacenter.core.util;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToLongFunction;
 
+/**
+ * Bounded queue between a producer and a consumer. The queue is bounded by the number of items and, optionally,
+ * by the total weight of the queued items (e.g. the number of bytes of the queued files). An item heavier than
+ * the weight limit is accepted when the queue holds no other weight, so it can't block the producer forever.
+ */
 public class UploadQueue<T> {
-    private BlockingQueue<Optional<T>> queue;
+    private final BlockingQueue<Optional<T>> queue;
+    private final long maxWeight;
+    private final ToLongFunction<T> weigher;
+    private final ReentrantLock weightLock = new ReentrantLock();
+    private final Condition weightReleased = weightLock.newCondition();
+    private volatile long queuedWeight = 0;
 
     public UploadQueue(Integer max) {
+        this(max, Long.MAX_VALUE, v -> 0);
+    }
+
+    /**
+     * @param max       maximum number of queued items
+     * @param maxWeight maximum total weight of queued items
+     * @param weigher   function returning the weight of an item
+     */
+    public UploadQueue(Integer max, long maxWeight, ToLongFunction<T> weigher) {
         this.queue = new LinkedBlockingQueue<>(max);
+        this.maxWeight = maxWeight;
+        this.weigher = weigher;
     }
 
     /**
@@ -34,7 +58,14 @@ public class UploadQueue<T> {
      * @throws InterruptedException
      */
     public void put(T v) throws InterruptedException {
-        queue.put(Optional.of(v));
+        final long weight = weigher.applyAsLong(v);
+        acquireWeight(weight);
+        try {
+            queue.put(Optional.of(v));
+        } catch (InterruptedException e) {
+            releaseWeight(weight);
+            throw e;
+        }
     }
 
     /**
@@ -44,16 +75,28 @@ public class UploadQueue<T> {
      * @throws InterruptedException
      */
     public Optional<T> take() throws InterruptedException {
-        return queue.take();
+        final Optional<T> v = queue.take();
+        if (v.isPresent()) {
+            releaseWeight(weigher.applyAsLong(v.get()));
+        }
+        return v;
     }
 
     /**
-     * Signal to the consumer that the producer is finished.
+     * Signal to the consumer that the producer is finished. This also works for a producer which has been
+     * interrupted, as the consumer would otherwise wait forever. The interrupt status is kept.
      *
-     * @throws InterruptedException
+     * @throws InterruptedException if the producer is interrupted while waiting for room in the queue
      */
     public void finish() throws InterruptedException {
-        queue.put(Optional.empty());
+        final boolean interrupted = Thread.interrupted();
+        try {
+            queue.put(Optional.empty());
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
     }
 
     public boolean contains(T o) {
@@ -67,4 +110,39 @@ public class UploadQueue<T> {
     public int size() {
         return queue.size();
     }
+
+    /**
+     * @return total weight of the items currently in the queue
+     */
+    public long weight() {
+        return queuedWeight;
+    }
+
+    private void acquireWeight(long weight) throws InterruptedException {
+        if (weight == 0) {
+            return;
+        }
+        weightLock.lockInterruptibly();
+        try {
+            while (queuedWeight > 0 && queuedWeight + weight > maxWeight) {
+                weightReleased.await();
+            }
+            queuedWeight += weight;
+        } finally {
+            weightLock.unlock();
+        }
+    }
+
+    private void releaseWeight(long weight) {
+        if (weight == 0) {
+            return;
+        }
+        weightLock.lock();
+        try {
+            queuedWeight -= weight;
+            weightReleased.signalAll();
+        } finally {
+            weightLock.unlock();
+        }
+    }
 }
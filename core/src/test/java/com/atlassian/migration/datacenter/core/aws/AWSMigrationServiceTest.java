@@ -18,6 +18,10 @@ package com.atlassian.migration.datacenter.core.aws;
 
 import com.atlassian.activeobjects.external.ActiveObjects;
 import com.atlassian.activeobjects.test.TestActiveObjects;
+import com.atlassian.jira.cluster.ClusterMessageConsumer;
+import com.atlassian.jira.cluster.ClusterMessagingService;
+import com.atlassian.migration.datacenter.core.events.MigrationEvent;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.dto.Migration;
 import com.atlassian.migration.datacenter.dto.MigrationContext;
 import com.atlassian.migration.datacenter.spi.MigrationStage;
@@ -31,10 +35,14 @@ import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnit;
 import org.mockito.junit.MockitoRule;
 
+import java.time.Duration;
+import java.util.List;
+
 import static com.atlassian.migration.datacenter.spi.MigrationStage.AUTHENTICATION;
 import static com.atlassian.migration.datacenter.spi.MigrationStage.ERROR;
 import static com.atlassian.migration.datacenter.spi.MigrationStage.NOT_STARTED;
@@ -42,7 +50,12 @@ import static com.atlassian.migration.datacenter.spi.MigrationStage.PROVISION_AP
 import static com.atlassian.migration.datacenter.spi.MigrationStage.PROVISION_APPLICATION_WAIT;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
 
 
 // We have to use the JUnit 4 API because there is no JUnit 5 active objects extension :(
@@ -52,6 +65,7 @@ public class AWSMigrationServiceTest {
     private ActiveObjects ao;
     private EntityManager entityManager;
     private AWSMigrationService sut;
+    private MigrationEventBus eventBus;
 
     @Rule
     public MockitoRule mockitoRule = MockitoJUnit.rule();
@@ -61,12 +75,16 @@ public class AWSMigrationServiceTest {
     private FilesystemMigrationService filesystemMigrationService;
     @Mock
     private SchedulerService schedulerService;
+    @Mock
+    private ClusterMessagingService clusterMessagingService;
 
     @Before
     public void setup() {
         assertNotNull(entityManager);
         ao = new TestActiveObjects(entityManager);
-        sut = new AWSMigrationService(ao);
+        eventBus = new MigrationEventBus();
+        sut = new AWSMigrationService(ao, clusterMessagingService, eventBus);
+        sut.registerCacheInvalidationListener();
         setupEntities();
     }
 
@@ -119,16 +137,13 @@ public class AWSMigrationServiceTest {
     public void shouldHaveBidirectionalRelationshipBetweenMigrationContextAndMigration() {
         initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
 
-        Migration migration = sut.getCurrentMigration();
-        MigrationContext context = migration.getContext();
-
         final String testDeploymentId = "test-id";
-        context.setApplicationDeploymentId(testDeploymentId);
-        context.save();
+        sut.updateContext(context -> context.setApplicationDeploymentId(testDeploymentId));
 
         Migration updatedMigration = sut.getCurrentMigration();
 
         assertEquals(testDeploymentId, updatedMigration.getContext().getApplicationDeploymentId());
+        assertSame(updatedMigration, updatedMigration.getContext().getMigration());
     }
 
     @Test
@@ -147,6 +162,7 @@ public class AWSMigrationServiceTest {
         migration.setStage(ERROR);
         migration.save();
         assertNumberOfMigrations(2);
+        givenAnotherNodeChangedTheMigration();
 
         assertThrows(Exception.class, () -> sut.getCurrentMigration(), "Invalid State - should only be 1 migration");
     }
@@ -160,6 +176,41 @@ public class AWSMigrationServiceTest {
         assertEquals(currentMigration.getStage(), existingMigration.getStage());
     }
 
+    @Test
+    public void shouldShareReadOnlyMigrationBetweenReads() throws InvalidMigrationStageError {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+
+        Migration migration = sut.getCurrentMigration();
+        assertSame(migration, sut.getCurrentMigration());
+
+        sut.transition(PROVISION_APPLICATION);
+
+        assertEquals(AUTHENTICATION, migration.getStage());
+        assertEquals(PROVISION_APPLICATION, sut.getCurrentMigration().getStage());
+    }
+
+    @Test
+    public void shouldNotAllowChangingStageOfCurrentMigration() {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+
+        Migration migration = sut.getCurrentMigration();
+
+        assertThrows(RuntimeException.class, () -> migration.setStage(PROVISION_APPLICATION));
+        assertThrows(RuntimeException.class, migration::save);
+        assertEquals(AUTHENTICATION, sut.getCurrentStage());
+    }
+
+    @Test
+    public void shouldNotAllowChangingCurrentContext() {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+
+        MigrationContext context = sut.getCurrentContext();
+
+        assertThrows(RuntimeException.class, () -> context.setApplicationDeploymentId("test-id"));
+        assertThrows(RuntimeException.class, context::save);
+        assertNull(sut.getCurrentContext().getApplicationDeploymentId());
+    }
+
     @Test
     public void shouldCreateMigrationWhenNoneExists() {
         Migration migration = sut.getCurrentMigration();
@@ -169,18 +220,15 @@ public class AWSMigrationServiceTest {
 
     @Test
     public void shouldGetLatestMigrationContext() throws MigrationAlreadyExistsException {
-        Migration migration = sut.createMigration();
-        MigrationContext context = migration.getContext();
+        sut.createMigration();
         final String testDeploymentId = "test-id";
-        context.setApplicationDeploymentId(testDeploymentId);
-        context.save();
+        sut.updateContext(context -> context.setApplicationDeploymentId(testDeploymentId));
 
         MigrationContext newContext = sut.getCurrentContext();
         assertEquals(testDeploymentId, newContext.getApplicationDeploymentId());
 
         final String newDeploymentId = "next-id";
-        newContext.setApplicationDeploymentId(newDeploymentId);
-        newContext.save();
+        sut.updateContext(context -> context.setApplicationDeploymentId(newDeploymentId));
 
         MigrationContext nextContext = sut.getCurrentContext();
         assertEquals(newDeploymentId, nextContext.getApplicationDeploymentId());
@@ -199,6 +247,69 @@ public class AWSMigrationServiceTest {
         assertNumberOfMigrationContexts(0);
     }
 
+    @Test
+    public void shouldWriteContextUpdateThroughToDatabaseAndNotifyOtherNodes() {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+
+        sut.updateContext(context -> context.setApplicationDeploymentId("test-id"));
+
+        assertEquals("test-id", ao.find(MigrationContext.class)[0].getApplicationDeploymentId());
+        assertEquals("test-id", sut.getCurrentContext().getApplicationDeploymentId());
+        verify(clusterMessagingService).sendRemote(eq(AWSMigrationService.CACHE_INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    public void shouldWriteTransitionThroughToDatabaseAndNotifyOtherNodes() throws InvalidMigrationStageError {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+
+        sut.transition(PROVISION_APPLICATION);
+
+        assertEquals(PROVISION_APPLICATION, ao.find(Migration.class)[0].getStage());
+        verify(clusterMessagingService).sendRemote(eq(AWSMigrationService.CACHE_INVALIDATION_CHANNEL), anyString());
+    }
+
+    @Test
+    public void shouldPublishStageTransitions() throws Exception {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+        final long before = eventBus.getLastSequence();
+
+        sut.transition(PROVISION_APPLICATION);
+
+        List<MigrationEvent> events = eventBus.awaitEventsAfter(before, Duration.ZERO);
+        assertEquals(1, events.size());
+        assertEquals(MigrationEvent.Type.STAGE_TRANSITION, events.get(0).getType());
+        assertEquals(PROVISION_APPLICATION.toString(), events.get(0).getData().get("stage"));
+    }
+
+    @Test
+    public void shouldReadStageFromDatabaseWhenAnotherNodeChangedTheMigration() {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+        assertEquals(AUTHENTICATION, sut.getCurrentStage());
+
+        Migration stored = ao.find(Migration.class)[0];
+        stored.setStage(PROVISION_APPLICATION);
+        stored.save();
+        givenAnotherNodeChangedTheMigration();
+
+        assertEquals(PROVISION_APPLICATION, sut.getCurrentStage());
+    }
+
+    @Test
+    public void shouldCreateNewMigrationAfterMigrationsAreDeleted() throws Exception {
+        initializeAndCreateSingleMigrationWithStage(AUTHENTICATION);
+
+        sut.deleteMigrations();
+
+        assertEquals(NOT_STARTED, sut.getCurrentStage());
+        assertNumberOfMigrations(1);
+    }
+
+    private void givenAnotherNodeChangedTheMigration() {
+        ArgumentCaptor<ClusterMessageConsumer> listener = ArgumentCaptor.forClass(ClusterMessageConsumer.class);
+        verify(clusterMessagingService).registerListener(eq(AWSMigrationService.CACHE_INVALIDATION_CHANNEL), listener.capture());
+        listener.getValue().receive(AWSMigrationService.CACHE_INVALIDATION_CHANNEL, "invalidate", "node2");
+    }
+
     private void assertNumberOfMigrations(int i) {
         assertEquals(i, ao.find(Migration.class).length);
     }
@@ -216,6 +327,8 @@ public class AWSMigrationServiceTest {
         }
         migration.setStage(stage);
         migration.save();
+        // the stage was changed without going through the service, so its copy has to be read again
+        sut.invalidateCache();
 
         return migration;
     }
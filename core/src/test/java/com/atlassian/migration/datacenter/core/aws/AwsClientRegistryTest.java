@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws;
+
+import com.atlassian.jira.cluster.ClusterMessageConsumer;
+import com.atlassian.jira.cluster.ClusterMessagingService;
+import com.atlassian.migration.datacenter.core.aws.region.RegionService;
+import com.atlassian.util.concurrent.Supplier;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.ssm.SsmClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class AwsClientRegistryTest {
+
+    @Mock
+    private RegionService regionService;
+
+    @Mock
+    private ClusterMessagingService clusterMessagingService;
+
+    private AwsClientRegistry registry;
+    private final List<Region> builtForRegions = new ArrayList<>();
+    private Supplier<SsmClient> supplier;
+
+    @BeforeEach
+    void setup() {
+        registry = new AwsClientRegistry(new StubAwsCredentialsProvider(), regionService, clusterMessagingService);
+        registry.registerConfigurationListener();
+        supplier = registry.supplier(SsmClient.class, resources -> {
+            builtForRegions.add(resources.getRegion());
+            return mock(SsmClient.class);
+        });
+        when(regionService.getRegion()).thenReturn("us-east-1");
+    }
+
+    @Test
+    void shouldReuseClientWhileConfigurationIsUnchanged() {
+        final SsmClient client = supplier.get();
+
+        assertSame(client, supplier.get());
+        assertSame(client, supplier.get());
+        assertEquals(1, builtForRegions.size());
+        verify(regionService, times(1)).getRegion();
+        verify(client, never()).close();
+    }
+
+    @Test
+    void shouldRebuildClientWithNewRegionWhenConfigurationChanges() {
+        final SsmClient client = supplier.get();
+
+        when(regionService.getRegion()).thenReturn("ap-southeast-2");
+        registry.configurationChanged();
+        final SsmClient rebuilt = supplier.get();
+
+        assertNotSame(client, rebuilt);
+        assertEquals(Region.AP_SOUTHEAST_2, builtForRegions.get(1));
+        verify(clusterMessagingService).sendRemote(eq(AwsClientRegistry.CONFIGURATION_CHANGED_CHANNEL), anyString());
+    }
+
+    @Test
+    void shouldKeepReplacedClientOpenUntilRegistryIsClosed() {
+        final SsmClient client = supplier.get();
+
+        registry.configurationChanged();
+        final SsmClient rebuilt = supplier.get();
+
+        verify(client, never()).close();
+
+        registry.close();
+
+        verify(client).close();
+        verify(rebuilt).close();
+    }
+
+    @Test
+    void shouldCloseReplacedClientAfterDelay() {
+        registry = new AwsClientRegistry(new StubAwsCredentialsProvider(), regionService, clusterMessagingService, Executors.newSingleThreadScheduledExecutor(), Duration.ofMillis(10));
+        supplier = registry.supplier(SsmClient.class, resources -> mock(SsmClient.class));
+        final SsmClient client = supplier.get();
+
+        registry.configurationChanged();
+        final SsmClient rebuilt = supplier.get();
+
+        verify(client, timeout(1000)).close();
+        verify(rebuilt, never()).close();
+        registry.close();
+    }
+
+    @Test
+    void shouldRebuildClientWhenConfigurationChangesOnAnotherNode() {
+        final ArgumentCaptor<ClusterMessageConsumer> listener = ArgumentCaptor.forClass(ClusterMessageConsumer.class);
+        verify(clusterMessagingService).registerListener(eq(AwsClientRegistry.CONFIGURATION_CHANGED_CHANNEL), listener.capture());
+        final SsmClient client = supplier.get();
+
+        listener.getValue().receive(AwsClientRegistry.CONFIGURATION_CHANGED_CHANNEL, "changed", "node2");
+
+        assertNotSame(client, supplier.get());
+    }
+
+    @Test
+    void shouldCloseClientsWithRegistry() {
+        final SsmClient client = supplier.get();
+
+        registry.close();
+
+        verify(client).close();
+        assertThrows(IllegalStateException.class, supplier::get);
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.atlassian.migration.datacenter.core.aws.cloud;
 
+import com.atlassian.migration.datacenter.core.aws.AwsClientRegistry;
 import com.atlassian.migration.datacenter.core.aws.auth.WriteCredentialsService;
 import com.atlassian.migration.datacenter.core.aws.region.InvalidAWSRegionException;
 import com.atlassian.migration.datacenter.core.aws.region.RegionService;
@@ -50,11 +51,14 @@ class AWSConfigurationServiceTest {
     @Mock
     MigrationService mockMigrationService;
 
+    @Mock
+    AwsClientRegistry mockClientRegistry;
+
     AWSConfigurationService sut;
 
     @BeforeEach
     void setUp() {
-        sut = new AWSConfigurationService(mockCredentialsWriter, mockRegionService, mockMigrationService, (accessKeyId, secretAccessKey) -> true);
+        sut = new AWSConfigurationService(mockCredentialsWriter, mockRegionService, mockMigrationService, mockClientRegistry, (accessKeyId, secretAccessKey) -> true);
     }
 
     @Test
@@ -69,6 +73,15 @@ class AWSConfigurationServiceTest {
         verify(mockCredentialsWriter).storeSecretAccessKey(password);
     }
 
+    @Test
+    void shouldRebuildAwsClientsWithNewConfiguration() throws InvalidMigrationStageError, InvalidCredentialsException {
+        mockValidMigration();
+
+        sut.configureCloudProvider("username", "password", "region");
+
+        verify(mockClientRegistry).configurationChanged();
+    }
+
     @Test
     void shouldStoreRegion() throws InvalidAWSRegionException, InvalidMigrationStageError, InvalidCredentialsException {
         mockValidMigration();
@@ -88,7 +101,7 @@ class AWSConfigurationServiceTest {
     @Test
     void shouldRaiseAnErrorWhenCredentialsAreInvalid() {
         mockValidMigration();
-        sut = new AWSConfigurationService(mockCredentialsWriter, mockRegionService, mockMigrationService, (accessKeyId, secretAccessKey) -> false);
+        sut = new AWSConfigurationService(mockCredentialsWriter, mockRegionService, mockMigrationService, mockClientRegistry, (accessKeyId, secretAccessKey) -> false);
         assertThrows(InvalidCredentialsException.class, () -> sut.configureCloudProvider("garbage", "garbage", "garbage"));
     }
 
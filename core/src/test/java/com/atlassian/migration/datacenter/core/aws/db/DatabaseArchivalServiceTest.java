@@ -13,6 +13,7 @@
 package com.atlassian.migration.datacenter.core.aws.db;
 
 import com.atlassian.migration.datacenter.core.aws.MigrationStageCallback;
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpSettings;
 import com.atlassian.migration.datacenter.core.db.DatabaseExtractor;
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
@@ -28,6 +29,7 @@ import java.nio.file.Path;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -36,6 +38,7 @@ class DatabaseArchivalServiceTest {
     @TempDir
     Path tempDir;
     private DatabaseArchivalService service;
+    private final DatabaseDumpSettings settings = new DatabaseDumpSettings(4, 1);
 
     @Mock
     private DatabaseExtractor databaseExtractor;
@@ -51,9 +54,9 @@ class DatabaseArchivalServiceTest {
 
     @Test
     void shouldArchiveDatabaseSuccessfully() throws Exception {
-        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"))).thenReturn(process);
+        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"), settings, false)).thenReturn(process);
         when(process.waitFor()).thenReturn(0);
-        Path target = service.archiveDatabase(tempDir, migrationStageCallback);
+        Path target = service.archiveDatabase(tempDir, settings, new DatabaseMigrationProgress(), migrationStageCallback);
         assertTrue(target.endsWith("db.dump"));
 
         verify(this.migrationStageCallback).assertInStartingStage();
@@ -61,12 +64,25 @@ class DatabaseArchivalServiceTest {
         verify(this.migrationStageCallback).transitionToServiceNextStage();
     }
 
+    @Test
+    void shouldStartVerboseParallelDumpWithoutWaitingForIt() throws Exception {
+        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"), settings, true)).thenReturn(process);
+
+        DatabaseDump dump = service.startDatabaseArchive(tempDir, settings, new DatabaseMigrationProgress(), migrationStageCallback);
+        assertTrue(dump.getTarget().endsWith("db.dump"));
+
+        verify(this.migrationStageCallback).assertInStartingStage();
+        verify(this.migrationStageCallback).transitionToServiceWaitStage();
+        verify(this.migrationStageCallback, never()).transitionToServiceNextStage();
+        verify(process, never()).waitFor();
+    }
+
     @Test
     void shouldThrowExceptionWhenStateTransitionToStartStageIsNotSuccessful() throws Exception {
         doThrow(InvalidMigrationStageError.class).when(migrationStageCallback).assertInStartingStage();
 
         assertThrows(InvalidMigrationStageError.class, () -> {
-            service.archiveDatabase(tempDir, migrationStageCallback);
+            service.archiveDatabase(tempDir, settings, new DatabaseMigrationProgress(), migrationStageCallback);
         });
     }
 
@@ -75,7 +91,7 @@ class DatabaseArchivalServiceTest {
         doThrow(InvalidMigrationStageError.class).when(migrationStageCallback).transitionToServiceWaitStage();
 
         assertThrows(InvalidMigrationStageError.class, () -> {
-            service.archiveDatabase(tempDir, migrationStageCallback);
+            service.archiveDatabase(tempDir, settings, new DatabaseMigrationProgress(), migrationStageCallback);
         });
         verify(migrationStageCallback).assertInStartingStage();
     }
@@ -83,12 +99,12 @@ class DatabaseArchivalServiceTest {
 
     @Test
     void shouldThrowExceptionWhenStateTransitionToEndStageIsNotSuccessful() throws Exception {
-        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"))).thenReturn(process);
+        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"), settings, false)).thenReturn(process);
         when(process.waitFor()).thenReturn(0);
         doThrow(InvalidMigrationStageError.class).when(migrationStageCallback).transitionToServiceNextStage();
 
         assertThrows(InvalidMigrationStageError.class, () -> {
-            service.archiveDatabase(tempDir, migrationStageCallback);
+            service.archiveDatabase(tempDir, settings, new DatabaseMigrationProgress(), migrationStageCallback);
         });
 
         verify(migrationStageCallback).assertInStartingStage();
@@ -97,11 +113,11 @@ class DatabaseArchivalServiceTest {
 
     @Test
     void shouldThrowExceptionWhenProcessExecutionFails() throws Exception {
-        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"))).thenReturn(process);
+        when(this.databaseExtractor.startDatabaseDump(tempDir.resolve("db.dump"), settings, false)).thenReturn(process);
         when(process.waitFor()).thenThrow(new InterruptedException());
 
         assertThrows(DatabaseMigrationFailure.class, () -> {
-            service.archiveDatabase(tempDir, migrationStageCallback);
+            service.archiveDatabase(tempDir, settings, new DatabaseMigrationProgress(), migrationStageCallback);
         });
 
         verify(migrationStageCallback).assertInStartingStage();
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseDumpBucketTest {
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @Test
+    void shouldDeleteMarkerEveryPageOfThePreviousDumpAndRestoredTables() throws Exception {
+        givenObjects(
+                page("db.dump/", null, "next-page", "db.dump/toc.dat"),
+                page("db.dump/", "next-page", null, "db.dump/3001.dat.gz"),
+                page(DatabaseDumpBucket.RESTORED_TABLES_PREFIX, null, null, DatabaseDumpBucket.RESTORED_TABLES_PREFIX + "3001/public.cwd_user"));
+        when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(DeleteObjectsResponse.builder().build()));
+
+        new DatabaseDumpBucket(s3AsyncClient, "bucket-name", "db.dump").clear();
+
+        ArgumentCaptor<DeleteObjectsRequest> deleteCaptor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+        verify(s3AsyncClient, times(4)).deleteObjects(deleteCaptor.capture());
+        assertEquals(Arrays.asList(
+                Collections.singletonList(DatabaseDumpBucket.UPLOAD_COMPLETE_MARKER),
+                Collections.singletonList("db.dump/toc.dat"),
+                Collections.singletonList("db.dump/3001.dat.gz"),
+                Collections.singletonList(DatabaseDumpBucket.RESTORED_TABLES_PREFIX + "3001/public.cwd_user")),
+                deleteCaptor.getAllValues().stream().map(DatabaseDumpBucketTest::keys).collect(Collectors.toList()));
+    }
+
+    @Test
+    void shouldReadRestoredTablesFromTheirMarkers() throws Exception {
+        givenObjects(page(DatabaseDumpBucket.RESTORED_TABLES_PREFIX, null, null,
+                DatabaseDumpBucket.RESTORED_TABLES_PREFIX + "3001/public.cwd_user",
+                DatabaseDumpBucket.RESTORED_TABLES_PREFIX + "3002/public.jiraissue"));
+
+        List<String> restored = new DatabaseDumpBucket(s3AsyncClient, "bucket-name", "db.dump").getRestoredTables();
+
+        assertEquals(Arrays.asList("public.cwd_user", "public.jiraissue"), restored);
+    }
+
+    @Test
+    void shouldWriteMarkerWhenUploadIsComplete() throws Exception {
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+        new DatabaseDumpBucket(s3AsyncClient, "bucket-name", "db.dump").markUploadComplete();
+
+        ArgumentCaptor<PutObjectRequest> putCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+        verify(s3AsyncClient).putObject(putCaptor.capture(), any(AsyncRequestBody.class));
+        assertEquals("bucket-name", putCaptor.getValue().bucket());
+        assertEquals(".dc-migration-assistant/db-dump-uploaded", putCaptor.getValue().key());
+    }
+
+    /**
+     * Answers every listing with the page of its prefix and continuation token, or an empty page
+     */
+    private void givenObjects(ListedPage... pages) {
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            ListObjectsV2Request request = invocation.getArgument(0);
+            ListObjectsV2Response response = Arrays.stream(pages)
+                    .filter(page -> page.prefix.equals(request.prefix()) && Objects.equals(page.continuationToken, request.continuationToken()))
+                    .map(page -> page.response)
+                    .findFirst()
+                    .orElse(ListObjectsV2Response.builder().build());
+            return CompletableFuture.completedFuture(response);
+        });
+    }
+
+    private static ListedPage page(String prefix, String continuationToken, String nextContinuationToken, String... keys) {
+        return new ListedPage(prefix, continuationToken, ListObjectsV2Response.builder()
+                .contents(Arrays.stream(keys).map(key -> S3Object.builder().key(key).build()).collect(Collectors.toList()))
+                .nextContinuationToken(nextContinuationToken)
+                .build());
+    }
+
+    private static class ListedPage {
+        private final String prefix;
+        private final String continuationToken;
+        private final ListObjectsV2Response response;
+
+        ListedPage(String prefix, String continuationToken, ListObjectsV2Response response) {
+            this.prefix = prefix;
+            this.continuationToken = continuationToken;
+            this.response = response;
+        }
+    }
+
+    private static List<String> keys(DeleteObjectsRequest request) {
+        return request.delete().objects().stream().map(ObjectIdentifier::key).collect(Collectors.toList());
+    }
+}
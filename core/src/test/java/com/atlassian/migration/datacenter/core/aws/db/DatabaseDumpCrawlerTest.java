@@ -0,0 +1,184 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.aws.MigrationStageCallback;
+import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationProgress.TableStatus;
+import com.atlassian.migration.datacenter.core.fs.CrawledFile;
+import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationReport;
+import com.atlassian.migration.datacenter.core.util.UploadQueue;
+import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseDumpCrawlerTest {
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private Process process;
+    @Mock
+    private MigrationStageCallback migrationStageCallback;
+
+    private Path target;
+    private DefaultFileSystemMigrationReport report;
+    private UploadQueue<CrawledFile> queue;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        target = Files.createDirectory(tempDir.resolve("db.dump"));
+        Files.write(target.resolve("3001.dat.gz"), "users".getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("3002.dat.gz"), "issues".getBytes(StandardCharsets.UTF_8));
+        Files.write(target.resolve("toc.dat"), "toc".getBytes(StandardCharsets.UTF_8));
+        report = new DefaultFileSystemMigrationReport();
+        queue = new UploadQueue<>(10);
+    }
+
+    @Test
+    void shouldQueueFinishedTablesBeforeTheRestOfTheDump() throws Exception {
+        givenDumpLog("pg_dump: dumping contents of table \"public.jiraissue\"\n" +
+                "pg_dump: finished item 3002 TABLE DATA jiraissue\n");
+        when(process.waitFor()).thenReturn(0);
+
+        crawler().crawlDirectory(target, queue);
+
+        List<Path> queued = drainQueue();
+        assertEquals(target.resolve("3002.dat.gz"), queued.get(0));
+        assertEquals(target.resolve("toc.dat"), queued.get(1));
+        assertEquals(new HashSet<>(Arrays.asList(target.resolve("3001.dat.gz"), target.resolve("3002.dat.gz"), target.resolve("toc.dat"))), new HashSet<>(queued));
+        assertEquals(3, queued.size());
+        assertEquals(3, report.getNumberOfFilesFound());
+        verify(migrationStageCallback).transitionToServiceNextStage();
+    }
+
+    @Test
+    void shouldCompleteDumpOnlyWhenExtractorSucceeds() throws Exception {
+        givenDumpLog("");
+        when(process.waitFor()).thenReturn(0);
+        DatabaseDump dump = new DatabaseDump(target, process, new DatabaseMigrationProgress(), migrationStageCallback);
+
+        assertFalse(dump.getCompletion().isDone());
+        new DatabaseDumpCrawler(dump, report).crawlDirectory(target, queue);
+
+        assertTrue(dump.getCompletion().isDone());
+        assertFalse(dump.getCompletion().isCompletedExceptionally());
+    }
+
+    @Test
+    void shouldReportTablesStartedAndFinishedByTheDumpToItsProgress() throws Exception {
+        givenDumpLog("pg_dump: dumping contents of table \"public.cwd_user\"\n" +
+                "pg_dump: dumping contents of table \"public.jiraissue\"\n" +
+                "pg_dump: finished item 3002 TABLE DATA jiraissue\n");
+        DatabaseMigrationProgress progress = new DatabaseMigrationProgress();
+        progress.exportStarted(Collections.emptyMap(), 2);
+        DatabaseDump dump = new DatabaseDump(target, process, progress, migrationStageCallback);
+        when(process.waitFor()).thenAnswer(invocation -> {
+            assertEquals(Arrays.asList(TableStatus.DUMPING, TableStatus.DUMPED), statuses(progress));
+            return 0;
+        });
+
+        new DatabaseDumpCrawler(dump, report).crawlDirectory(target, queue);
+
+        assertEquals(Arrays.asList(TableStatus.DUMPED, TableStatus.DUMPED), statuses(progress));
+    }
+
+    @Test
+    void shouldFinishQueueWithoutRemainingFilesWhenDumpFails() throws Exception {
+        givenDumpLog("pg_dump: finished item 3001 TABLE DATA cwd_user\n" +
+                "pg_dump: error: query failed: server closed the connection unexpectedly\n");
+        when(process.waitFor()).thenReturn(1);
+
+        assertThrows(DatabaseMigrationFailure.class, () -> crawler().crawlDirectory(target, queue));
+
+        assertEquals(Arrays.asList(target.resolve("3001.dat.gz")), drainQueue());
+        verify(migrationStageCallback).transitionToServiceErrorStage();
+        verify(migrationStageCallback, never()).transitionToServiceNextStage();
+    }
+
+    @Test
+    void shouldCompleteDumpExceptionallyWhenExtractorFails() throws Exception {
+        givenDumpLog("");
+        when(process.waitFor()).thenReturn(1);
+        DatabaseDump dump = new DatabaseDump(target, process, new DatabaseMigrationProgress(), migrationStageCallback);
+
+        assertThrows(DatabaseMigrationFailure.class, () -> new DatabaseDumpCrawler(dump, report).crawlDirectory(target, queue));
+
+        assertTrue(dump.getCompletion().isCompletedExceptionally());
+    }
+
+    @Test
+    void shouldFinishQueueAndFailWhenInterrupted() throws Exception {
+        givenDumpLog("pg_dump: finished item 3001 TABLE DATA cwd_user\n");
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedIOException.class, () -> crawler().crawlDirectory(target, queue));
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertTrue(drainQueue().isEmpty());
+        assertTrue(report.isCrawlingFinished());
+    }
+
+    private DatabaseDumpCrawler crawler() {
+        return new DatabaseDumpCrawler(new DatabaseDump(target, process, new DatabaseMigrationProgress(), migrationStageCallback), report);
+    }
+
+    private void givenDumpLog(String log) {
+        when(process.getErrorStream()).thenReturn(new ByteArrayInputStream(log.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<TableStatus> statuses(DatabaseMigrationProgress progress) {
+        return progress.getReport().getTables().stream().map(DatabaseMigrationProgress.TableProgress::getStatus).collect(Collectors.toList());
+    }
+
+    private List<Path> drainQueue() throws InterruptedException {
+        List<Path> paths = new ArrayList<>();
+        for (Optional<CrawledFile> file = queue.take(); file.isPresent(); file = queue.take()) {
+            paths.add(file.get().getPath());
+        }
+        return paths;
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.db;
+
+import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationProgress.PhaseProgress;
+import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationProgress.TableProgress;
+import com.atlassian.migration.datacenter.core.aws.db.DatabaseMigrationProgress.TableStatus;
+import com.atlassian.migration.datacenter.core.db.TableEstimate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DatabaseMigrationProgressTest {
+
+    private final Clock testClock = Clock.fixed(Instant.ofEpochMilli(0), ZoneId.systemDefault());
+    private DatabaseMigrationProgress sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new DatabaseMigrationProgress();
+        sut.setClock(testClock);
+    }
+
+    @Test
+    void shouldEstimateRemainingExportTimeFromDumpedTables() {
+        sut.exportStarted(estimates(), 2);
+        sut.tableDumpStarted("public.jiraissue");
+        sut.tableDumpStarted("public.cwd_user");
+
+        assertNull(sut.getReport().getExport().getSecondsRemaining());
+
+        sut.setClock(Clock.offset(testClock, Duration.ofSeconds(10)));
+        sut.tableDumped(3001, "cwd_user");
+
+        PhaseProgress export = sut.getReport().getExport();
+        assertEquals(1, export.getCompletedTables());
+        assertEquals(3, export.getTotalTables());
+        assertEquals(1000, export.getCompletedBytes());
+        assertEquals(100, export.getBytesPerSecond());
+        assertEquals(Long.valueOf(90), export.getSecondsRemaining());
+        assertEquals(Arrays.asList(TableStatus.DUMPED, TableStatus.DUMPING, TableStatus.PENDING), statuses());
+    }
+
+    @Test
+    void shouldFinishPreviousTableWhenSingleJobDumpStartsTheNextOne() {
+        sut.exportStarted(estimates(), 1);
+        sut.tableDumpStarted("public.cwd_user");
+        sut.tableDumpStarted("public.jiraissue");
+
+        assertEquals(Arrays.asList(TableStatus.DUMPED, TableStatus.DUMPING, TableStatus.PENDING), statuses());
+    }
+
+    @Test
+    void shouldMatchUploadedFilesToTablesByDumpId() {
+        sut.exportStarted(estimates(), 2);
+        sut.tableDumpStarted("public.cwd_user");
+        sut.tableDumped(3001, "cwd_user");
+        sut.uploadStarted();
+
+        sut.fileUploaded("3001.dat.gz", 300);
+        sut.fileUploaded("toc.dat", 20);
+
+        assertEquals(Arrays.asList(TableStatus.UPLOADED, TableStatus.PENDING, TableStatus.PENDING), statuses());
+        assertEquals(320, sut.getReport().getUploadedBytes());
+    }
+
+    @Test
+    void shouldCompleteEveryTableOfAFinishedPhase() {
+        sut.exportStarted(estimates(), 1);
+        sut.exportFinished();
+        sut.uploadStarted();
+        sut.uploadFinished();
+        sut.restoreStarted();
+
+        assertTrue(sut.isRestoring());
+        sut.tablesRestored(Collections.singletonList("public.jiraissue"));
+        assertEquals(Arrays.asList(TableStatus.UPLOADED, TableStatus.RESTORED, TableStatus.UPLOADED), statuses());
+
+        sut.restoreFinished();
+
+        assertFalse(sut.isRestoring());
+        assertEquals(Arrays.asList(TableStatus.RESTORED, TableStatus.RESTORED, TableStatus.RESTORED), statuses());
+        assertEquals(Long.valueOf(0), sut.getReport().getRestore().getSecondsRemaining());
+    }
+
+    @Test
+    void shouldTrackTablesWithoutEstimates() {
+        sut.exportStarted(Collections.emptyMap(), 2);
+        sut.tableDumpStarted("public.created_after_analyze");
+
+        List<TableProgress> tables = sut.getReport().getTables();
+        assertEquals(1, tables.size());
+        assertEquals("public.created_after_analyze", tables.get(0).getName());
+        assertEquals(0, tables.get(0).getEstimatedBytes());
+    }
+
+    private List<TableStatus> statuses() {
+        return sut.getReport().getTables().stream().map(TableProgress::getStatus).collect(Collectors.toList());
+    }
+
+    private static Map<String, TableEstimate> estimates() {
+        Map<String, TableEstimate> estimates = new HashMap<>();
+        estimates.put("public.cwd_user", new TableEstimate(10, 1000));
+        estimates.put("public.jiraissue", new TableEstimate(100, 8000));
+        estimates.put("public.worklog", new TableEstimate(50, 1000));
+        return estimates;
+    }
+}
@@ -22,10 +22,13 @@ import com.atlassian.migration.datacenter.core.aws.db.restore.DatabaseRestoreSta
 import com.atlassian.migration.datacenter.core.aws.db.restore.SsmPsqlDatabaseRestoreService;
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
 import com.atlassian.migration.datacenter.core.aws.ssm.SSMApi;
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpTuner;
+import com.atlassian.migration.datacenter.core.db.DatabaseExtractor;
 import com.atlassian.migration.datacenter.core.db.DatabaseExtractorFactory;
 import com.atlassian.migration.datacenter.core.util.MigrationRunner;
 import com.atlassian.migration.datacenter.spi.MigrationService;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
+import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationErrorReport;
 import com.atlassian.migration.datacenter.util.AwsCredentialsProviderShim;
 import org.junit.jupiter.api.BeforeEach;
@@ -51,10 +54,13 @@ import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
 
 import java.net.URI;
 import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyMap;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.when;
@@ -92,6 +98,8 @@ class DatabaseMigrationServiceIT {
     private MigrationRunner migrationRunner;
     @Mock
     AWSMigrationHelperDeploymentService migrationHelperDeploymentService;
+    @Mock
+    FilesystemMigrationService filesystemMigrationService;
 
     @BeforeEach
     void setUp() throws Exception {
@@ -124,15 +132,16 @@ class DatabaseMigrationServiceIT {
     @Test
     void testDatabaseMigration() throws ExecutionException, InterruptedException, InvalidMigrationStageError
     {
-        DatabaseArchivalService databaseArchivalService = new DatabaseArchivalService(DatabaseExtractorFactory.getExtractor(configuration));
+        DatabaseExtractor databaseExtractor = DatabaseExtractorFactory.getExtractor(configuration);
+        DatabaseArchivalService databaseArchivalService = new DatabaseArchivalService(databaseExtractor);
+        DatabaseDumpTuner dumpTuner = new DatabaseDumpTuner(databaseExtractor, filesystemMigrationService);
         DatabaseArchiveStageTransitionCallback archiveStageTransitionCallback = new DatabaseArchiveStageTransitionCallback(migrationService);
 
         DatabaseArtifactS3UploadService s3UploadService = new DatabaseArtifactS3UploadService(() -> s3client);
-        s3UploadService.postConstruct();
         DatabaseUploadStageTransitionCallback uploadStageTransitionCallback = new DatabaseUploadStageTransitionCallback(this.migrationService);
 
         when(ssmApi.runSSMDocument(anyString(), anyString(), anyMap())).thenReturn("my-commnd");
-        when(ssmApi.getSSMCommand(anyString(), anyString())).thenReturn(GetCommandInvocationResponse.builder().status(CommandInvocationStatus.SUCCESS).build());
+        when(ssmApi.awaitCommand(anyString(), anyString(), any(Duration.class))).thenReturn(CompletableFuture.completedFuture(GetCommandInvocationResponse.builder().status(CommandInvocationStatus.SUCCESS).build()));
         SsmPsqlDatabaseRestoreService restoreService = new SsmPsqlDatabaseRestoreService(ssmApi, migrationHelperDeploymentService);
         DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback  = new DatabaseRestoreStageTransitionCallback(this.migrationService);
 
@@ -144,7 +153,8 @@ class DatabaseMigrationServiceIT {
                                                                         s3UploadService,
                                                                         uploadStageTransitionCallback,
                                                                         restoreService,
-                                                                        restoreStageTransitionCallback, migrationHelperDeploymentService);
+                                                                        restoreStageTransitionCallback, migrationHelperDeploymentService,
+                                                                        dumpTuner);
 
         FileSystemMigrationErrorReport report = service.performMigration();
 
@@ -18,20 +18,28 @@ package com.atlassian.migration.datacenter.core.aws.db.restore;
 
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
 import com.atlassian.migration.datacenter.core.aws.ssm.SSMApi;
+import com.atlassian.migration.datacenter.core.aws.ssm.SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException;
 import com.atlassian.migration.datacenter.spi.exceptions.DatabaseMigrationFailure;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.ssm.model.CommandInvocationStatus;
 import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
 
+import java.time.Duration;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,7 +58,7 @@ class SsmPsqlDatabaseRestoreServiceTest {
 
     @BeforeEach
     void setUp() {
-        sut = new SsmPsqlDatabaseRestoreService(ssmApi, 1, migrationHelperDeploymentService);
+        sut = new SsmPsqlDatabaseRestoreService(ssmApi, Duration.ofSeconds(1), migrationHelperDeploymentService);
     }
 
     @Test
@@ -68,6 +76,32 @@ class SsmPsqlDatabaseRestoreServiceTest {
         assertThrows(DatabaseMigrationFailure.class, () -> sut.restoreDatabase(callback));
     }
 
+    @Test
+    void shouldAwaitRestoreStartedBeforeTheImportStage() throws InvalidMigrationStageError
+    {
+        givenCommandCompletesWithStatus(CommandInvocationStatus.SUCCESS);
+
+        String commandId = sut.startRestore();
+        verify(callback, never()).assertInStartingStage();
+
+        sut.awaitRestore(commandId, callback);
+
+        InOrder inOrder = inOrder(callback);
+        inOrder.verify(callback).assertInStartingStage();
+        inOrder.verify(callback).transitionToServiceWaitStage();
+        inOrder.verify(callback).transitionToServiceNextStage();
+    }
+
+    @Test
+    void shouldMoveToErrorStageWhenStartedRestoreFails() {
+        givenCommandCompletesWithStatus(CommandInvocationStatus.FAILED);
+
+        String commandId = sut.startRestore();
+
+        assertThrows(DatabaseMigrationFailure.class, () -> sut.awaitRestore(commandId, callback));
+        verify(callback).transitionToServiceErrorStage();
+    }
+
     private void givenCommandCompletesWithStatus(CommandInvocationStatus status) {
         final String mockCommandId = "fake-command";
         final String mockInstance = "i-0353cc9a8ad7dafc2";
@@ -77,12 +111,13 @@ class SsmPsqlDatabaseRestoreServiceTest {
 
         when(ssmApi.runSSMDocument(mocument, mockInstance, Collections.emptyMap())).thenReturn(mockCommandId);
 
-        when(ssmApi.getSSMCommand(mockCommandId, mockInstance)).thenReturn(
-                (GetCommandInvocationResponse) GetCommandInvocationResponse.builder()
-                        .status(status)
-                        .sdkHttpResponse(SdkHttpResponse.builder().statusText("it failed").build())
-                        .build()
-        );
+        final CompletableFuture<GetCommandInvocationResponse> invocation = new CompletableFuture<>();
+        if (status == CommandInvocationStatus.SUCCESS) {
+            invocation.complete(GetCommandInvocationResponse.builder().status(status).build());
+        } else {
+            invocation.completeExceptionally(new UnsuccessfulSSMCommandInvocationException("Command finished with status " + status));
+        }
+        when(ssmApi.awaitCommand(eq(mockCommandId), eq(mockInstance), any(Duration.class))).thenReturn(invocation);
     }
 
 }
\ No newline at end of file
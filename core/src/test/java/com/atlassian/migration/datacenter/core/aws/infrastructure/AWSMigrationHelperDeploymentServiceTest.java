@@ -41,10 +41,12 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.lenient;
@@ -91,6 +93,10 @@ class AWSMigrationHelperDeploymentServiceTest {
         }).when(mockContext).setHelperStackDeploymentId(anyString());
 
         lenient().when(mockContext.getHelperStackDeploymentId()).thenReturn(deploymentId.get());
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<MigrationContext>>getArgument(0).accept(mockContext);
+            return null;
+        }).when(mockMigrationService).updateContext(any());
 
         sut = new AWSMigrationHelperDeploymentService(mockCfn, () -> mockAutoscaling, mockMigrationService, 1);
     }
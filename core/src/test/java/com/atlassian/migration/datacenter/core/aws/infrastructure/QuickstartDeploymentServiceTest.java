@@ -40,8 +40,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.function.Consumer;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.lenient;
@@ -110,7 +112,11 @@ class QuickstartDeploymentServiceTest {
             properties.setProperty(passwordPropertyKey, invocation.getArgument(0));
             return null;
         }).when(dbCredentialsStorageService).storeCredentials(anyString());
-        when(mockMigrationService.getCurrentContext()).thenReturn(mockContext);
+        lenient().when(mockMigrationService.getCurrentContext()).thenReturn(mockContext);
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<MigrationContext>>getArgument(0).accept(mockContext);
+            return null;
+        }).when(mockMigrationService).updateContext(any());
 
         lenient().when(mockCfnApi.getStack(STACK_NAME)).thenReturn(Optional.of(Stack.builder().outputs(MOCK_OUTPUTS).build()));
         lenient().when(mockCfnApi.getExports()).thenReturn(MOCK_EXPORTS);
@@ -133,6 +139,13 @@ class QuickstartDeploymentServiceTest {
         verify(dbCredentialsStorageService).storeCredentials(TEST_DB_PASSWORD);
     }
 
+    @Test
+    void shouldStoreDeploymentIdInMigrationContext() throws InvalidMigrationStageError {
+        deploymentService.deployApplication(STACK_NAME, STACK_PARAMS);
+
+        verify(mockContext).setApplicationDeploymentId(STACK_NAME);
+    }
+
     @Test
     void shouldReturnInProgressWhileDeploying() throws InvalidMigrationStageError {
         when(mockContext.getApplicationDeploymentId()).thenReturn(STACK_NAME);
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.aws.ssm;
+
+import com.atlassian.migration.datacenter.core.aws.ssm.SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
+import software.amazon.awssdk.services.ssm.model.CommandInvocationStatus;
+import software.amazon.awssdk.services.ssm.model.GetCommandInvocationRequest;
+import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
+import software.amazon.awssdk.services.ssm.model.InvocationDoesNotExistException;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeast;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class SsmCommandTrackerTest {
+
+    private static final String COMMAND_ID = "command-id";
+    private static final String INSTANCE_ID = "i-0123456789";
+
+    @Mock
+    SsmAsyncClient client;
+
+    ScheduledExecutorService scheduler;
+
+    SsmCommandTracker sut;
+
+    @BeforeEach
+    void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        sut = new SsmCommandTracker(() -> client, scheduler, Clock.systemUTC(), Duration.ofMillis(1), Duration.ofMillis(5));
+    }
+
+    @AfterEach
+    void tearDown() {
+        sut.close();
+    }
+
+    @Test
+    void shouldCompleteWhenCommandSucceedsAfterRunning() throws Exception {
+        when(client.getCommandInvocation(any(GetCommandInvocationRequest.class))).thenReturn(
+                invocation(CommandInvocationStatus.PENDING),
+                invocation(CommandInvocationStatus.IN_PROGRESS),
+                invocation(CommandInvocationStatus.SUCCESS));
+
+        GetCommandInvocationResponse response = sut.track(COMMAND_ID, INSTANCE_ID, Duration.ofSeconds(10)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(CommandInvocationStatus.SUCCESS, response.status());
+        verify(client, times(3)).getCommandInvocation(any(GetCommandInvocationRequest.class));
+    }
+
+    @Test
+    void shouldFailAsSoonAsCommandFails() {
+        when(client.getCommandInvocation(any(GetCommandInvocationRequest.class))).thenReturn(invocation(CommandInvocationStatus.FAILED));
+
+        CompletableFuture<GetCommandInvocationResponse> command = sut.track(COMMAND_ID, INSTANCE_ID, Duration.ofSeconds(10));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> command.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof UnsuccessfulSSMCommandInvocationException);
+        verify(client, times(1)).getCommandInvocation(any(GetCommandInvocationRequest.class));
+    }
+
+    @Test
+    void shouldFailWhenCommandIsStillRunningAtDeadline() {
+        when(client.getCommandInvocation(any(GetCommandInvocationRequest.class))).thenReturn(invocation(CommandInvocationStatus.IN_PROGRESS));
+
+        CompletableFuture<GetCommandInvocationResponse> command = sut.track(COMMAND_ID, INSTANCE_ID, Duration.ofMillis(50));
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> command.get(5, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof UnsuccessfulSSMCommandInvocationException);
+        assertTrue(e.getCause().getMessage().contains("IN_PROGRESS"));
+        verify(client, atLeast(2)).getCommandInvocation(any(GetCommandInvocationRequest.class));
+    }
+
+    @Test
+    void shouldKeepPollingUntilInvocationReachesInstance() throws Exception {
+        CompletableFuture<GetCommandInvocationResponse> notDelivered = new CompletableFuture<>();
+        notDelivered.completeExceptionally(InvocationDoesNotExistException.builder().message("not there yet").build());
+        when(client.getCommandInvocation(any(GetCommandInvocationRequest.class))).thenReturn(
+                notDelivered,
+                invocation(CommandInvocationStatus.SUCCESS));
+
+        GetCommandInvocationResponse response = sut.track(COMMAND_ID, INSTANCE_ID, Duration.ofSeconds(10)).get(5, TimeUnit.SECONDS);
+
+        assertEquals(CommandInvocationStatus.SUCCESS, response.status());
+    }
+
+    @Test
+    void shouldFailOutstandingCommandsWhenClosed() {
+        sut = new SsmCommandTracker(() -> client, scheduler, Clock.systemUTC(), Duration.ofHours(1), Duration.ofHours(1));
+
+        CompletableFuture<GetCommandInvocationResponse> command = sut.track(COMMAND_ID, INSTANCE_ID, Duration.ofHours(2));
+        sut.close();
+
+        assertTrue(command.isCompletedExceptionally());
+    }
+
+    private static CompletableFuture<GetCommandInvocationResponse> invocation(CommandInvocationStatus status) {
+        return CompletableFuture.completedFuture(GetCommandInvocationResponse.builder().status(status).build());
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.db;
+
+import com.atlassian.migration.datacenter.spi.fs.FilesystemMigrationService;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.OptionalInt;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DatabaseDumpTunerTest {
+    private static final double MB = 1024 * 1024;
+
+    @Mock
+    private DatabaseExtractor databaseExtractor;
+    @Mock
+    private FilesystemMigrationService filesystemMigrationService;
+    @Mock
+    private FileSystemMigrationReport report;
+
+    private final CompressionBenchmark benchmark = new CompressionBenchmark(1024) {
+        @Override
+        CompressionRate measure(int level) {
+            switch (level) {
+                case 1:
+                    return new CompressionRate(100 * MB, 3.0);
+                case 3:
+                    return new CompressionRate(70 * MB, 3.5);
+                case 6:
+                    return new CompressionRate(30 * MB, 4.0);
+                default:
+                    return new CompressionRate(10 * MB, 4.2);
+            }
+        }
+    };
+
+    @Test
+    void shouldUseCoresLimitedByAvailableConnections() {
+        assertEquals(4, tuner(16).chooseJobs(OptionalInt.of(5)));
+        assertEquals(2, tuner(2).chooseJobs(OptionalInt.of(100)));
+        assertEquals(1, tuner(16).chooseJobs(OptionalInt.of(0)));
+        assertEquals(DatabaseDumpTuner.MAX_AUTOMATIC_JOBS, tuner(64).chooseJobs(OptionalInt.empty()));
+    }
+
+    @Test
+    void shouldUseLowCompressionWhenUploadIsFasterThanCompression() {
+        assertEquals(1, tuner(1).chooseCompressionLevel(1, 1024 * MB));
+    }
+
+    @Test
+    void shouldUseHighCompressionWhenUploadIsSlowerThanCompression() {
+        assertEquals(9, tuner(8).chooseCompressionLevel(8, 10 * MB));
+    }
+
+    @Test
+    void shouldUseDefaultCompressionWhenUploadThroughputIsUnknown() {
+        when(databaseExtractor.getAvailableConnections()).thenReturn(OptionalInt.of(3));
+        when(filesystemMigrationService.getReport()).thenReturn(null);
+
+        DatabaseDumpSettings settings = tuner(8).resolve(DatabaseDumpSettings.automatic());
+
+        assertEquals(2, settings.getJobs());
+        assertEquals(DatabaseDumpTuner.DEFAULT_COMPRESSION_LEVEL, settings.getCompressionLevel());
+    }
+
+    @Test
+    void shouldUseMeasuredUploadThroughputOfFilesystemMigration() {
+        when(filesystemMigrationService.getReport()).thenReturn(report);
+        when(report.getCurrentUploadedBytesPerSecond()).thenReturn(0.0);
+        when(report.getUploadedBytesPerSecond()).thenReturn(1024 * MB);
+
+        DatabaseDumpSettings settings = tuner(8).resolve(new DatabaseDumpSettings(1, DatabaseDumpSettings.AUTOMATIC));
+
+        assertEquals(1, settings.getJobs());
+        assertEquals(1, settings.getCompressionLevel());
+        verify(databaseExtractor, never()).getAvailableConnections();
+    }
+
+    @Test
+    void shouldPreferCurrentUploadThroughputOfRunningFilesystemMigration() {
+        when(filesystemMigrationService.getReport()).thenReturn(report);
+        when(report.getCurrentUploadedBytesPerSecond()).thenReturn(10 * MB);
+
+        DatabaseDumpSettings settings = tuner(8).resolve(new DatabaseDumpSettings(8, DatabaseDumpSettings.AUTOMATIC));
+
+        assertEquals(9, settings.getCompressionLevel());
+        verify(report, never()).getUploadedBytesPerSecond();
+    }
+
+    @Test
+    void shouldKeepRequestedSettings() {
+        DatabaseDumpSettings settings = tuner(8).resolve(new DatabaseDumpSettings(3, 0));
+
+        assertEquals(3, settings.getJobs());
+        assertEquals(0, settings.getCompressionLevel());
+        verify(databaseExtractor, never()).getAvailableConnections();
+        verify(filesystemMigrationService, never()).getReport();
+    }
+
+    @Test
+    void shouldMeasureCompressionOfSample() {
+        CompressionBenchmark.CompressionRate rate = new CompressionBenchmark(256 * 1024).measure(1);
+
+        assertTrue(rate.getBytesPerSecond() > 0);
+        assertTrue(rate.getRatio() > 1);
+    }
+
+    private DatabaseDumpTuner tuner(int availableProcessors) {
+        return new DatabaseDumpTuner(databaseExtractor, filesystemMigrationService, availableProcessors, benchmark);
+    }
+}
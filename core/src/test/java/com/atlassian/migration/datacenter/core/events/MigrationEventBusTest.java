@@ -0,0 +1,130 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.events;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MigrationEventBusTest {
+
+    private MigrationEventBus sut;
+
+    @BeforeEach
+    void setUp() {
+        sut = new MigrationEventBus(3, Clock.systemUTC());
+    }
+
+    @Test
+    void shouldReturnEventsAfterSequence() throws Exception {
+        publish("AUTHENTICATION");
+        MigrationEvent second = publish("PROVISION_APPLICATION");
+        MigrationEvent third = publish("PROVISION_APPLICATION_WAIT");
+
+        List<MigrationEvent> events = sut.awaitEventsAfter(1, Duration.ZERO);
+
+        assertEquals(2, events.size());
+        assertEquals(second.getSequence(), events.get(0).getSequence());
+        assertEquals(third.getSequence(), events.get(1).getSequence());
+        assertEquals(3, sut.getLastSequence());
+    }
+
+    @Test
+    void shouldReturnNoEventsWhenNothingIsPublishedBeforeTimeout() throws Exception {
+        publish("AUTHENTICATION");
+
+        List<MigrationEvent> events = sut.awaitEventsAfter(1, Duration.ofMillis(10));
+
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    void shouldWakeWaitingClientWhenEventIsPublished() throws Exception {
+        CompletableFuture<List<MigrationEvent>> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return sut.awaitEventsAfter(0, Duration.ofSeconds(10));
+            } catch (InterruptedException | MigrationEventBus.TooManyWaitersException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(waiting.isDone());
+
+        publish("AUTHENTICATION");
+
+        List<MigrationEvent> events = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals(1, events.size());
+        assertEquals("AUTHENTICATION", events.get(0).getData().get("stage"));
+    }
+
+    @Test
+    void shouldOnlyRetainMostRecentEvents() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            publish("STAGE_" + i);
+        }
+
+        List<MigrationEvent> events = sut.awaitEventsAfter(0, Duration.ZERO);
+
+        assertEquals(3, events.size());
+        assertEquals(3, events.get(0).getSequence());
+        assertEquals(5, events.get(2).getSequence());
+    }
+
+    @Test
+    void shouldReturnAllRetainedEventsWhenSequenceIsFromBeforeRestart() throws Exception {
+        publish("AUTHENTICATION");
+
+        List<MigrationEvent> events = sut.awaitEventsAfter(42, Duration.ZERO);
+
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    void shouldRejectClientsBeyondMaximumWaiters() throws Exception {
+        MigrationEventBus bus = new MigrationEventBus(3, 1, Clock.systemUTC());
+        CompletableFuture<List<MigrationEvent>> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return bus.awaitEventsAfter(0, Duration.ofSeconds(10));
+            } catch (InterruptedException | MigrationEventBus.TooManyWaitersException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(50);
+
+        assertThrows(MigrationEventBus.TooManyWaitersException.class, () -> bus.awaitEventsAfter(0, Duration.ofSeconds(10)));
+
+        bus.publish(MigrationEvent.Type.STAGE_TRANSITION, Collections.singletonMap("stage", "AUTHENTICATION"));
+        assertEquals(1, waiting.get(5, TimeUnit.SECONDS).size());
+        // published events are returned without waiting, however many clients wait
+        assertEquals(1, bus.awaitEventsAfter(0, Duration.ofSeconds(10)).size());
+    }
+
+    private MigrationEvent publish(String stage) {
+        return sut.publish(MigrationEvent.Type.STAGE_TRANSITION, Collections.singletonMap("stage", stage));
+    }
+}
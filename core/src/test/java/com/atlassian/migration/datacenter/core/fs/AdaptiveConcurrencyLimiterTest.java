@@ -0,0 +1,97 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private final AtomicLong clock = new AtomicLong(0);
+    private final List<Integer> limits = new ArrayList<>();
+
+    @Test
+    void shouldIncreaseLimitWhileThroughputRisesAndLatencyIsFlat() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 4, 64, limits::add, clock::get);
+
+        completeWindow(limiter, 100);
+        completeWindow(limiter, 100);
+
+        assertEquals(8 + 2 * AdaptiveConcurrencyLimiter.INCREASE_STEP, limiter.getLimit());
+        assertEquals(3, limits.size());
+    }
+
+    @Test
+    void shouldDecreaseLimitWhenLatencyInflates() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(8, 4, 64, limits::add, clock::get);
+
+        completeWindow(limiter, 100);
+        final int limitBeforeInflation = limiter.getLimit();
+        completeWindow(limiter, 1000);
+
+        assertEquals(limitBeforeInflation - 1, limiter.getLimit());
+    }
+
+    @Test
+    void shouldHalveLimitOnceWhenThrottled() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(32, 4, 64, limits::add, clock::get);
+        final S3Exception slowDown = (S3Exception) S3Exception.builder().statusCode(503).message("SlowDown").build();
+
+        limiter.acquire().release(0, new CompletionException(slowDown));
+        limiter.acquire().release(0, new CompletionException(slowDown));
+
+        assertEquals(16, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void shouldNotDecreaseLimitBelowMinimum() throws Exception {
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 4, 64, limits::add, clock::get);
+        final S3Exception slowDown = (S3Exception) S3Exception.builder().statusCode(503).build();
+
+        limiter.acquire().release(0, slowDown);
+
+        assertEquals(4, limiter.getLimit());
+    }
+
+    @Test
+    void shouldOnlyTreatThrottlingAndTimeoutsAsCongestion() {
+        assertTrue(AdaptiveConcurrencyLimiter.isCongestionSignal(S3Exception.builder().statusCode(503).build()));
+        assertTrue(AdaptiveConcurrencyLimiter.isCongestionSignal(new CompletionException(new java.util.concurrent.TimeoutException())));
+        assertFalse(AdaptiveConcurrencyLimiter.isCongestionSignal(S3Exception.builder().statusCode(403).build()));
+        assertFalse(AdaptiveConcurrencyLimiter.isCongestionSignal(new java.nio.file.NoSuchFileException("file")));
+    }
+
+    private void completeWindow(AdaptiveConcurrencyLimiter limiter, long latency) throws InterruptedException {
+        final int samples = Math.max(limiter.getLimit(), 8);
+        final List<AdaptiveConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < samples; i++) {
+            permits.add(limiter.acquire());
+        }
+        clock.addAndGet(latency);
+        permits.forEach(permit -> permit.release(1000, null));
+    }
+}
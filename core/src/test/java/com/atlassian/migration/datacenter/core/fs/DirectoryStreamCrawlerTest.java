@@ -41,7 +41,7 @@ class DirectoryStreamCrawlerTest {
     Path tempDir;
 
     private Crawler directoryStreamCrawler;
-    private UploadQueue<Path> queue;
+    private UploadQueue<CrawledFile> queue;
     private Set<Path> expectedPaths;
     private FileSystemMigrationReport report;
 
@@ -62,7 +62,9 @@ class DirectoryStreamCrawlerTest {
         directoryStreamCrawler = new DirectoryStreamCrawler(report);
         directoryStreamCrawler.crawlDirectory(tempDir, queue);
 
-        expectedPaths.forEach(path -> assertTrue(queue.contains(path), String.format("Expected %s is absent from crawler queue", path)));
+        for (Path path : expectedPaths) {
+            assertTrue(queue.contains(CrawledFile.of(path)), String.format("Expected %s is absent from crawler queue", path));
+        }
     }
 
     @Test
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationReport;
+import com.atlassian.migration.datacenter.core.util.UploadQueue;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ParallelDirectoryCrawlerTest {
+    @TempDir
+    Path tempDir;
+
+    private Crawler crawler;
+    private UploadQueue<CrawledFile> queue;
+    private Set<Path> expectedPaths;
+    private FileSystemMigrationReport report;
+
+    @BeforeEach
+    void createFiles() throws Exception {
+        queue = new UploadQueue<>(100);
+        expectedPaths = new HashSet<>();
+        report = new DefaultFileSystemMigrationReport();
+        crawler = new ParallelDirectoryCrawler(report, 4);
+
+        expectedPaths.add(Files.write(tempDir.resolve("newfile.txt"), "newfile content".getBytes()));
+        for (int i = 0; i < 5; i++) {
+            final Path subdirectory = Files.createDirectories(tempDir.resolve("subdirectory" + i).resolve("nested"));
+            expectedPaths.add(Files.write(subdirectory.resolve("subfile.txt"), "subfile content in the subdirectory".getBytes()));
+            expectedPaths.add(Files.write(subdirectory.getParent().resolve("file.txt"), "file content".getBytes()));
+        }
+    }
+
+    @Test
+    void shouldListAllSubdirectories() throws Exception {
+        crawler.crawlDirectory(tempDir, queue);
+
+        for (Path path : expectedPaths) {
+            assertTrue(queue.contains(CrawledFile.of(path)), String.format("Expected %s is absent from crawler queue", path));
+        }
+    }
+
+    @Test
+    void shouldFinishQueueExactlyOnce() throws Exception {
+        crawler.crawlDirectory(tempDir, queue);
+
+        final Set<Path> queuedPaths = new HashSet<>();
+        for (Optional<CrawledFile> file = queue.take(); file.isPresent(); file = queue.take()) {
+            queuedPaths.add(file.get().getPath());
+        }
+
+        assertEquals(expectedPaths, queuedPaths);
+        assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void incorrectStartDirectoryShouldReport() {
+        assertThrows(IOException.class, () -> crawler.crawlDirectory(Paths.get("nonexistent-directory-2010"), queue));
+
+        assertEquals(FilesystemMigrationStatus.FAILED, report.getStatus());
+        assertEquals(1, report.getFailedFiles().size());
+        assertTrue(report.isCrawlingFinished());
+    }
+
+    @Test
+    void shouldReportFileAsFoundWhenCrawled() throws Exception {
+        crawler.crawlDirectory(tempDir, queue);
+
+        assertEquals(expectedPaths.size(), report.getNumberOfFilesFound());
+    }
+
+    @Test
+    void shouldReportAllFilesFoundWhenComplete() throws IOException {
+        assertFalse(report.isCrawlingFinished());
+
+        crawler.crawlDirectory(tempDir, queue);
+
+        assertTrue(report.isCrawlingFinished());
+    }
+
+    @Test
+    void shouldQueueAllFilesThroughFullQueue() throws Exception {
+        final UploadQueue<CrawledFile> smallQueue = new UploadQueue<>(1);
+        final Set<Path> queuedPaths = new HashSet<>();
+        final Thread consumer = new Thread(() -> {
+            try {
+                for (Optional<CrawledFile> file = smallQueue.take(); file.isPresent(); file = smallQueue.take()) {
+                    queuedPaths.add(file.get().getPath());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        consumer.start();
+
+        new ParallelDirectoryCrawler(report, 1).crawlDirectory(tempDir, smallQueue);
+        consumer.join(10_000);
+
+        assertEquals(expectedPaths, queuedPaths);
+        assertEquals(expectedPaths.size(), report.getNumberOfFilesFound());
+    }
+
+    @Test
+    void shouldOnlyReportQueuedFilesAsFoundWhenInterrupted() throws Exception {
+        final UploadQueue<CrawledFile> smallQueue = new UploadQueue<>(1);
+        final CompletableFuture<Void> crawl = new CompletableFuture<>();
+        final Thread crawling = new Thread(() -> {
+            try {
+                crawler.crawlDirectory(tempDir, smallQueue);
+                crawl.complete(null);
+            } catch (IOException e) {
+                crawl.completeExceptionally(e);
+            }
+        });
+        crawling.start();
+        while (smallQueue.isEmpty()) {
+            Thread.sleep(10);
+        }
+
+        crawling.interrupt();
+        crawling.join(500);
+
+        assertTrue(report.getNumberOfFilesFound() <= 1);
+        // the consumer is still told that crawling has finished
+        assertTrue(smallQueue.take().isPresent());
+        assertFalse(smallQueue.take().isPresent());
+        final ExecutionException failure = assertThrows(ExecutionException.class, () -> crawl.get(5, TimeUnit.SECONDS));
+        assertTrue(failure.getCause() instanceof InterruptedIOException);
+    }
+
+    @Test
+    void shouldRejectInvalidParallelism() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelDirectoryCrawler(report, 0));
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import com.atlassian.migration.datacenter.core.fs.journal.FileUploadJournal;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
+import software.amazon.awssdk.services.s3.model.DeletedObject;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3DeletedFileRemoverTest {
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldRemoveFilesWhichWereNotFoundAgainAndWriteTombstones() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.recordUploaded("kept.txt", 10, 1000, "etag");
+            journal.recordUploaded("deleted.txt", 10, 1000, "etag");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.markPresent("kept.txt");
+
+            when(s3AsyncClient.deleteObjects(any(DeleteObjectsRequest.class))).thenReturn(CompletableFuture.completedFuture(
+                    DeleteObjectsResponse.builder().deleted(DeletedObject.builder().key("deleted.txt").build()).build()));
+            when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                    .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+            final S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).uploadJournal(journal).build();
+            final int removed = new S3DeletedFileRemover(config).removeDeletedFiles();
+
+            assertEquals(1, removed);
+
+            final ArgumentCaptor<DeleteObjectsRequest> deleteCaptor = ArgumentCaptor.forClass(DeleteObjectsRequest.class);
+            verify(s3AsyncClient).deleteObjects(deleteCaptor.capture());
+            assertEquals(Collections.singletonList("deleted.txt"), deleteCaptor.getValue().delete().objects().stream()
+                    .map(ObjectIdentifier::key)
+                    .collect(Collectors.toList()));
+
+            final ArgumentCaptor<PutObjectRequest> putCaptor = ArgumentCaptor.forClass(PutObjectRequest.class);
+            verify(s3AsyncClient).putObject(putCaptor.capture(), any(AsyncRequestBody.class));
+            assertEquals(S3DeletedFileRemover.TOMBSTONES_KEY, putCaptor.getValue().key());
+
+            assertTrue(journal.getKeysNotPresent().isEmpty());
+            assertFalse(journal.isUploaded("deleted.txt", 10, 1000));
+        }
+    }
+
+    @Test
+    void shouldOnlyClearTombstonesWhenNothingWasDeleted() throws Exception {
+        try (FileUploadJournal journal = new FileUploadJournal(tempDir.resolve("upload.log"))) {
+            journal.recordUploaded("kept.txt", 10, 1000, "etag");
+            journal.markPresent("kept.txt");
+
+            when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                    .thenReturn(CompletableFuture.completedFuture(PutObjectResponse.builder().build()));
+
+            final S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).uploadJournal(journal).build();
+
+            assertEquals(0, new S3DeletedFileRemover(config).removeDeletedFiles());
+            verify(s3AsyncClient, never()).deleteObjects(any(DeleteObjectsRequest.class));
+        }
+    }
+}
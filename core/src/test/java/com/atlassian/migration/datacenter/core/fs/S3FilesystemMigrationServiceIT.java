@@ -20,8 +20,10 @@ import com.atlassian.jira.config.util.JiraHome;
 import com.atlassian.migration.datacenter.core.aws.auth.AtlassianPluginAWSCredentialsProvider;
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
 import com.atlassian.migration.datacenter.core.aws.region.RegionService;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.core.fs.download.s3sync.S3SyncFileSystemDownloadManager;
 import com.atlassian.migration.datacenter.core.util.MigrationRunner;
+import com.atlassian.migration.datacenter.dto.Migration;
 import com.atlassian.migration.datacenter.spi.MigrationService;
 import com.atlassian.migration.datacenter.spi.MigrationStage;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus;
@@ -53,6 +55,7 @@ import java.util.Collections;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.testcontainers.containers.localstack.LocalStackContainer.Service.S3;
 
@@ -111,12 +114,14 @@ class S3FilesystemMigrationServiceIT {
     @Test
     void testSuccessfulDirectoryMigration(@TempDir Path dir) throws Exception {
         when(jiraHome.getHome()).thenReturn(dir.toFile());
+        when(jiraHome.getLocalHome()).thenReturn(Files.createTempDirectory("local-home").toFile());
         when(migrationService.getCurrentStage()).thenReturn(MigrationStage.FS_MIGRATION_COPY);
+        Migration migration = mock(Migration.class);
+        when(migrationService.getCurrentMigration()).thenReturn(migration);
 
         Path file = genRandFile();
 
-        S3FilesystemMigrationService fsService = new S3FilesystemMigrationService(() -> s3AsyncClient, jiraHome, fileSystemDownloader, migrationService, migrationRunner, migrationHelperDeploymentService);
-        fsService.postConstruct();
+        S3FilesystemMigrationService fsService = new S3FilesystemMigrationService(() -> s3AsyncClient, jiraHome, fileSystemDownloader, migrationService, migrationRunner, migrationHelperDeploymentService, new MigrationEventBus());
 
         fsService.startMigration();
 
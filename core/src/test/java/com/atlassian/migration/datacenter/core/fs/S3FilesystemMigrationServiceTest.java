@@ -18,6 +18,7 @@ package com.atlassian.migration.datacenter.core.fs;
 
 import com.atlassian.jira.config.util.JiraHome;
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.core.fs.download.s3sync.S3SyncFileSystemDownloadManager;
 import com.atlassian.migration.datacenter.core.util.MigrationRunner;
 import com.atlassian.migration.datacenter.dto.Migration;
@@ -29,6 +30,7 @@ import com.atlassian.scheduler.config.JobId;
 import com.atlassian.util.concurrent.Supplier;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
@@ -69,15 +71,25 @@ class S3FilesystemMigrationServiceTest {
     @Mock
     AWSMigrationHelperDeploymentService migrationHelperDeploymentService;
 
+    @Mock
+    MigrationEventBus eventBus;
+
     @InjectMocks
     S3FilesystemMigrationService fsService;
 
+    @TempDir
+    Path tempDir;
+
     @Test
     void shouldFailToStartMigrationWhenSharedHomeDirectoryIsInvalid() throws InvalidMigrationStageError
     {
         Path nonexistentDir = Paths.get(UUID.randomUUID().toString());
         when(this.migrationService.getCurrentStage()).thenReturn(MigrationStage.FS_MIGRATION_COPY);
         when(jiraHome.getHome()).thenReturn(nonexistentDir.toFile());
+        when(jiraHome.getLocalHome()).thenReturn(tempDir.toFile());
+        Migration mockMigration = mock(Migration.class);
+        when(migrationService.getCurrentMigration()).thenReturn(mockMigration);
+        when(mockMigration.getID()).thenReturn(42);
 
         fsService.startMigration();
 
@@ -150,6 +162,30 @@ class S3FilesystemMigrationServiceTest {
         assertThrows(InvalidMigrationStageError.class, () -> fsService.abortMigration());
     }
 
+    @Test
+    void shouldNotScheduleDeltaMigrationBeforeInitialMigrationHasCompleted() throws Exception {
+        Mockito.doThrow(InvalidMigrationStageError.class).when(migrationService).assertCurrentStage(MigrationStage.OFFLINE_WARNING);
+
+        assertThrows(InvalidMigrationStageError.class, () -> fsService.scheduleDeltaMigration(false));
+        verify(migrationRunner, Mockito.never()).runMigration(any(), any());
+    }
+
+    @Test
+    void shouldFailDeltaMigrationWithoutChangingStageWhenSharedHomeDirectoryIsInvalid() throws Exception {
+        Path nonexistentDir = Paths.get(UUID.randomUUID().toString());
+        when(jiraHome.getHome()).thenReturn(nonexistentDir.toFile());
+        when(jiraHome.getLocalHome()).thenReturn(tempDir.toFile());
+        Migration mockMigration = mock(Migration.class);
+        when(migrationService.getCurrentMigration()).thenReturn(mockMigration);
+        when(mockMigration.getID()).thenReturn(42);
+
+        fsService.startDeltaMigration(true);
+
+        verify(migrationService, Mockito.never()).transition(any());
+        verify(migrationService).error();
+        assertEquals(FilesystemMigrationStatus.FAILED, fsService.getReport().getStatus());
+    }
+
 
     private Migration createStubMigration(MigrationStage migrationStage) {
         Migration mockMigration = mock(Migration.class);
@@ -24,8 +24,11 @@ import org.mockito.ArgumentCaptor;
 import org.mockito.Captor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
 import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
 import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
@@ -36,14 +39,29 @@ import software.amazon.awssdk.services.s3.model.UploadPartRequest;
 import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 import java.io.File;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assume.assumeThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -57,6 +75,8 @@ class S3MultiPartUploaderTest {
     S3AsyncClient client;
     @Captor
     ArgumentCaptor<AsyncRequestBody> valueCaptor;
+    @Captor
+    ArgumentCaptor<CompleteMultipartUploadRequest> completeRequestCaptor;
     private String content = "123";
 
     @Test
@@ -120,6 +140,167 @@ class S3MultiPartUploaderTest {
         assertEquals(1, allValues.get(1).contentLength().get());
     }
 
+    @Test
+    void shouldUploadPartsConcurrentlyAndCompleteThemInOrder() throws Exception {
+        File file = createFile();
+
+        S3UploadConfig config = new S3UploadConfig("bucket", client, tempDir);
+        final S3MultiPartUploader uploader = new S3MultiPartUploader(config, file, "file");
+        uploader.setSizeToUpload(1);
+        uploader.setMaxPartsInFlight(content.length());
+
+        final List<CompletableFuture<UploadPartResponse>> partResponses = new ArrayList<>();
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().build()));
+        when(client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    final CompletableFuture<UploadPartResponse> response = new CompletableFuture<>();
+                    partResponses.add(response);
+                    return response;
+                });
+        when(client.completeMultipartUpload(completeRequestCaptor.capture()))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        final Future<?> upload = Executors.newSingleThreadExecutor().submit(() -> {
+            uploader.upload();
+            return null;
+        });
+
+        // all parts are in flight before any of them has completed
+        verify(client, timeout(1000).times(content.length())).uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class));
+
+        for (int i = partResponses.size() - 1; i >= 0; i--) {
+            partResponses.get(i).complete(UploadPartResponse.builder().eTag("etag-" + (i + 1)).build());
+        }
+        upload.get();
+
+        final List<CompletedPart> completedParts = completeRequestCaptor.getValue().multipartUpload().parts();
+        assertEquals(content.length(), completedParts.size());
+        for (int i = 0; i < completedParts.size(); i++) {
+            assertEquals(i + 1, completedParts.get(i).partNumber());
+            assertEquals("etag-" + (i + 1), completedParts.get(i).eTag());
+        }
+    }
+
+    @Test
+    void shouldReturnBufferMemoryWhenPartFails() throws Exception {
+        File file = createFile();
+
+        S3UploadConfig config = new S3UploadConfig("bucket", client, tempDir);
+        final S3MultiPartUploader uploader = new S3MultiPartUploader(config, file, "file");
+        uploader.setSizeToUpload(1);
+
+        final CompletableFuture<UploadPartResponse> failedPart = new CompletableFuture<>();
+        failedPart.completeExceptionally(new RuntimeException("part failed"));
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload").build()));
+        when(client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenReturn(failedPart);
+
+        assertThrows(ExecutionException.class, uploader::upload);
+
+        verify(client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        assertEquals(S3MultiPartUploader.MAX_BUFFER_MEMORY, S3MultiPartUploader.availableBufferMemory());
+    }
+
+    @Test
+    void shouldKeepBufferMemoryWithinBudgetWithConcurrentUploads() throws Exception {
+        final int partSize = 2;
+        final int budget = 4 * partSize;
+        final Semaphore bufferMemory = new Semaphore(budget, true);
+        S3UploadConfig config = new S3UploadConfig("bucket", client, tempDir);
+
+        final AtomicInteger bytesInFlight = new AtomicInteger();
+        final AtomicInteger peakBytesInFlight = new AtomicInteger();
+        final ScheduledExecutorService responses = Executors.newSingleThreadScheduledExecutor();
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().build()));
+        when(client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenAnswer(invocation -> {
+                    final ByteBuffer body = publishedBuffer(invocation.getArgument(1));
+                    final int inFlight = bytesInFlight.addAndGet(body.capacity());
+                    peakBytesInFlight.accumulateAndGet(inFlight, Math::max);
+                    final CompletableFuture<UploadPartResponse> response = new CompletableFuture<>();
+                    responses.schedule(() -> {
+                        bytesInFlight.addAndGet(-body.capacity());
+                        response.complete(UploadPartResponse.builder().build());
+                    }, 10, TimeUnit.MILLISECONDS);
+                    return response;
+                });
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        final int uploads = 3;
+        final ExecutorService executor = Executors.newFixedThreadPool(uploads);
+        final List<Future<?>> results = new ArrayList<>();
+        for (int i = 0; i < uploads; i++) {
+            final Path file = tempDir.resolve("file-" + i);
+            Files.write(file, "12345678".getBytes());
+            final S3MultiPartUploader uploader = new S3MultiPartUploader(config, file.toFile(), "file-" + i, null, bufferMemory, budget);
+            uploader.setSizeToUpload(partSize);
+            uploader.setMaxPartsInFlight(4);
+            results.add(executor.submit(() -> {
+                uploader.upload();
+                return null;
+            }));
+        }
+        for (Future<?> result : results) {
+            result.get(10, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+        responses.shutdown();
+
+        verify(client, times(uploads)).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        assertTrue(peakBytesInFlight.get() <= budget, "Parts in flight held " + peakBytesInFlight.get() + " bytes");
+        assertEquals(budget, bufferMemory.availablePermits());
+    }
+
+    @Test
+    void shouldFailWhenPartIsLargerThanBufferMemory() throws Exception {
+        File file = createFile();
+
+        S3UploadConfig config = new S3UploadConfig("bucket", client, tempDir);
+        final S3MultiPartUploader uploader = new S3MultiPartUploader(config, file, "file", null, new Semaphore(2), 2);
+        uploader.setSizeToUpload(3);
+
+        final ExecutionException e = assertThrows(ExecutionException.class, uploader::upload);
+
+        assertTrue(e.getCause() instanceof IllegalStateException);
+        verify(client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void partSizeShouldKeepLargeFilesUnderPartLimit() {
+        assertEquals(S3MultiPartUploader.DEFAULT_PART_SIZE, S3MultiPartUploader.calculatePartSize(1024));
+
+        final long oneTerabyte = 1024L * 1024 * 1024 * 1024;
+        final int partSize = S3MultiPartUploader.calculatePartSize(oneTerabyte);
+        assertTrue((oneTerabyte + partSize - 1) / partSize <= S3MultiPartUploader.MAX_NUMBER_OF_PARTS);
+    }
+
+    private static ByteBuffer publishedBuffer(AsyncRequestBody body) {
+        final AtomicReference<ByteBuffer> published = new AtomicReference<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+                published.set(buffer);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+        return published.get();
+    }
+
     private File createFile() throws Exception {
         final String filename = "file_to_upload.txt";
         final Path file = tempDir.resolve(filename);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class S3TransferProfileTest {
+
+    @Test
+    void smallNodeShouldUseStandardProfile() {
+        final S3TransferProfile profile = S3TransferProfile.detect(2, 0);
+
+        assertEquals(S3TransferProfile.STANDARD, profile.getName());
+        assertEquals(S3TransferProfile.MIN_CONNECTIONS, profile.getMaxConcurrency());
+        assertEquals(2, profile.getEventLoopThreads());
+        assertTrue(profile.isTcpKeepAlive());
+    }
+
+    @Test
+    void largeNodeShouldUseBulkProfile() {
+        final S3TransferProfile profile = S3TransferProfile.detect(16, 0);
+
+        assertEquals(S3TransferProfile.BULK, profile.getName());
+        assertEquals(16 * S3TransferProfile.ASSUMED_MBPS_PER_CORE / S3TransferProfile.MBPS_PER_CONNECTION, profile.getMaxConcurrency());
+        assertEquals(32, profile.getEventLoopThreads());
+    }
+
+    @Test
+    void configuredBandwidthShouldTakePrecedenceOverCores() {
+        assertEquals(125, S3TransferProfile.detect(4, 10_000).getMaxConcurrency());
+        assertEquals(S3TransferProfile.MIN_CONNECTIONS, S3TransferProfile.detect(64, 100).getMaxConcurrency());
+        assertEquals(S3TransferProfile.MAX_CONNECTIONS, S3TransferProfile.detect(4, 100_000).getMaxConcurrency());
+    }
+
+    @Test
+    void shouldRejectProfileWithoutConnections() {
+        assertThrows(IllegalArgumentException.class, () -> new S3TransferProfile("invalid", 0, 1, Duration.ofSeconds(1), Duration.ofSeconds(1), Duration.ofSeconds(1), true));
+    }
+}
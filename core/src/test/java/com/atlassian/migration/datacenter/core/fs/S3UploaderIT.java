@@ -52,7 +52,7 @@ import static org.mockito.Mockito.when;
 class S3UploaderIT {
     private static final String LOCALSTACK_S3_ENDPOINT = "http://localhost:4572";
     private static final String TREBUCHET_LOCALSTACK_BUCKET = "trebuchet-localstack-bucket";
-    private UploadQueue<Path> queue;
+    private UploadQueue<CrawledFile> queue;
     private S3Uploader uploader;
     private FileSystemMigrationReport report;
 
@@ -120,7 +120,7 @@ class S3UploaderIT {
     Path addFileToQueue(String fileName) throws IOException, InterruptedException {
         final Path file = tempDir.resolve(fileName);
         Files.write(file, "".getBytes());
-        queue.put(file);
+        queue.put(CrawledFile.of(file));
         return file;
     }
 }
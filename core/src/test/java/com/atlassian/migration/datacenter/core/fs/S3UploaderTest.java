@@ -16,6 +16,7 @@
 
 package com.atlassian.migration.datacenter.core.fs;
 
+import com.atlassian.migration.datacenter.core.fs.journal.FileUploadJournal;
 import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationReport;
 import com.atlassian.migration.datacenter.core.util.UploadQueue;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
@@ -25,23 +26,49 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
 import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
 import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
@@ -50,14 +77,11 @@ class S3UploaderTest {
     @Mock
     private S3AsyncClient s3AsyncClient;
 
-    @Mock
-    private CompletableFuture<PutObjectResponse> s3response;
-
     @Mock
     private SdkHttpResponse sdkHttpResponse;
 
 
-    private UploadQueue<Path> queue;
+    private UploadQueue<CrawledFile> queue;
     private S3Uploader uploader;
     private FileSystemMigrationReport report;
 
@@ -76,8 +100,7 @@ class S3UploaderTest {
     void uploadShouldConsumePathsWhileCrawlingIsRunning() throws IOException, InterruptedException, ExecutionException {
         PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
         when(sdkHttpResponse.isSuccessful()).thenReturn(true);
-        when(s3response.get()).thenReturn(putObjectResponse);
-        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(Path.class))).thenReturn(s3response);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(CompletableFuture.completedFuture(putObjectResponse));
 
         addFileToQueue("file1");
 
@@ -111,8 +134,7 @@ class S3UploaderTest {
     void uploadShouldReportFileAsMigrated() throws IOException, ExecutionException, InterruptedException {
         PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
         when(sdkHttpResponse.isSuccessful()).thenReturn(true);
-        when(s3response.get()).thenReturn(putObjectResponse);
-        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(Path.class))).thenReturn(s3response);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(CompletableFuture.completedFuture(putObjectResponse));
 
         Path testPath = addFileToQueue("file1");
         queue.finish();
@@ -132,7 +154,10 @@ class S3UploaderTest {
     @Test
     void uploadNonExistentDirectoryShouldReturnFailedCollection() throws InterruptedException, FilesystemUploader.FileUploadException {
         final Path nonExistentFile = tempDir.resolve("non-existent");
-        queue.put(nonExistentFile);
+        final CompletableFuture<PutObjectResponse> failedUpload = new CompletableFuture<>();
+        failedUpload.completeExceptionally(new NoSuchFileException(nonExistentFile.toString()));
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(failedUpload);
+        queue.put(new CrawledFile(nonExistentFile, 0, 0));
         queue.finish();
 
         uploader.upload(queue);
@@ -144,8 +169,7 @@ class S3UploaderTest {
     void shouldReportFileAsInFlightWhenUploadStarts() throws Exception {
         PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
         when(sdkHttpResponse.isSuccessful()).thenReturn(true);
-        when(s3response.get()).thenReturn(putObjectResponse);
-        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(Path.class))).thenReturn(s3response);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(CompletableFuture.completedFuture(putObjectResponse));
 
         addFileToQueue("file1");
 
@@ -166,10 +190,282 @@ class S3UploaderTest {
         submit.get();
     }
 
+    @Test
+    void slowUploadShouldNotBlockOtherUploads() throws Exception {
+        PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
+        when(sdkHttpResponse.isSuccessful()).thenReturn(true);
+        CompletableFuture<PutObjectResponse> slowResponse = new CompletableFuture<>();
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(slowResponse)
+                .thenReturn(CompletableFuture.completedFuture(putObjectResponse));
+
+        addFileToQueue("slow-file");
+
+        final Future<?> submit = Executors.newFixedThreadPool(1).submit(() -> {
+            try {
+                uploader.upload(queue);
+            } catch (FilesystemUploader.FileUploadException e) {
+                throw new RuntimeException(e);
+            }
+        });
+
+        // more files than connection slots, which would previously wait for the slow upload
+        for (int i = 0; i < S3Uploader.MAX_OPEN_CONNECTIONS * 2; i++) {
+            addFileToQueue("file" + i);
+        }
+        queue.finish();
+
+        Thread.sleep(1000);
+        assertEquals(S3Uploader.MAX_OPEN_CONNECTIONS * 2, report.getCountOfUploadedFiles());
+        assertFalse(submit.isDone());
+
+        slowResponse.complete(putObjectResponse);
+        submit.get();
+
+        assertEquals(S3Uploader.MAX_OPEN_CONNECTIONS * 2 + 1, report.getCountOfUploadedFiles());
+    }
+
+    @Test
+    void uploadShouldReportUploadedBytes() throws Exception {
+        PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
+        when(sdkHttpResponse.isSuccessful()).thenReturn(true);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(CompletableFuture.completedFuture(putObjectResponse));
+
+        final Path file = tempDir.resolve("file-with-content");
+        Files.write(file, "content".getBytes());
+        queue.put(CrawledFile.of(file));
+        queue.finish();
+
+        uploader.upload(queue);
+
+        assertEquals(7L, report.getCountOfUploadedBytes());
+    }
+
+    @Test
+    void filesAboveMultipartThresholdShouldBeUploadedInParts() throws Exception {
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).multipartUploadThreshold(4).build();
+        uploader = new S3Uploader(config, report);
+        when(s3AsyncClient.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload").build()));
+        when(s3AsyncClient.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(CompletableFuture.completedFuture(UploadPartResponse.builder().eTag("etag").build()));
+        when(s3AsyncClient.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().build()));
+
+        final Path file = tempDir.resolve("large-file");
+        Files.write(file, "larger than threshold".getBytes());
+        queue.put(CrawledFile.of(file));
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        verify(s3AsyncClient).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        assertEquals(1, report.getCountOfUploadedFiles());
+        assertEquals(Files.size(file), report.getCountOfUploadedBytes());
+        assertTrue(report.getFailedFiles().isEmpty());
+    }
+
+    @Test
+    void shouldSkipFilesRecordedInUploadJournal() throws Exception {
+        final FileUploadJournal journal = new FileUploadJournal(tempDir.resolve("journal.log"));
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).uploadJournal(journal).build();
+        uploader = new S3Uploader(config, report);
+
+        final Path file = addFileToQueue("already-uploaded");
+        journal.recordUploaded("already-uploaded", Files.size(file), file.toFile().lastModified(), "etag");
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, never()).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertEquals(1, report.getCountOfUploadedFiles());
+    }
+
+    @Test
+    void smallFilesShouldBeUploadedInBundles() throws Exception {
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).smallFileBundling(1024, 10).build();
+        uploader = new S3Uploader(config, report);
+
+        PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
+        when(sdkHttpResponse.isSuccessful()).thenReturn(true);
+        final List<String> bundledEntries = new ArrayList<>();
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(Path.class))).thenAnswer(invocation -> {
+            final PutObjectRequest request = invocation.getArgument(0);
+            assertTrue(request.key().startsWith(SmallFileBundler.BUNDLES_PREFIX));
+            try (ZipFile bundle = new ZipFile(((Path) invocation.getArgument(1)).toFile())) {
+                bundle.stream().map(ZipEntry::getName).forEach(bundledEntries::add);
+            }
+            return CompletableFuture.completedFuture(putObjectResponse);
+        });
+
+        for (int i = 0; i < 3; i++) {
+            final Path file = tempDir.resolve("small-" + i);
+            Files.write(file, "content".getBytes());
+            queue.put(CrawledFile.of(file));
+        }
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, times(2)).putObject(any(PutObjectRequest.class), any(Path.class));
+        assertEquals(Arrays.asList("small-0", "small-1", SmallFileBundler.MANIFEST_ENTRY, "small-2", SmallFileBundler.MANIFEST_ENTRY), bundledEntries);
+        assertEquals(3, report.getCountOfUploadedFiles());
+        assertEquals(21L, report.getCountOfUploadedBytes());
+        assertTrue(report.getFailedFiles().isEmpty());
+    }
+
+    @Test
+    void transientFailureShouldBeRetried() throws Exception {
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).uploadRetryPolicy(new UploadRetryPolicy(3, 1, 10)).build();
+        uploader = new S3Uploader(config, report);
+
+        PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
+        when(sdkHttpResponse.isSuccessful()).thenReturn(true);
+        final CompletableFuture<PutObjectResponse> failedUpload = new CompletableFuture<>();
+        failedUpload.completeExceptionally(S3Exception.builder().statusCode(500).message("InternalError").build());
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class)))
+                .thenReturn(failedUpload)
+                .thenReturn(CompletableFuture.completedFuture(putObjectResponse));
+
+        addFileToQueue("file1");
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertEquals(1, report.getCountOfUploadedFiles());
+        assertEquals(1, report.getNumberOfCommencedFileUploads());
+        assertTrue(report.getFailedFiles().isEmpty());
+    }
+
+    @Test
+    void fileShouldFailOnceAttemptsAreUsedUp() throws Exception {
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).uploadRetryPolicy(new UploadRetryPolicy(3, 1, 10)).build();
+        uploader = new S3Uploader(config, report);
+
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            final CompletableFuture<PutObjectResponse> failedUpload = new CompletableFuture<>();
+            failedUpload.completeExceptionally(S3Exception.builder().statusCode(503).message("SlowDown").build());
+            return failedUpload;
+        });
+
+        addFileToQueue("file1");
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, times(3)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertEquals(1, report.getFailedFiles().size());
+        assertEquals(0, report.getCountOfUploadedFiles());
+    }
+
+    @Test
+    void fatalFailureShouldNotBeRetried() throws Exception {
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).uploadRetryPolicy(new UploadRetryPolicy(3, 1, 10)).build();
+        uploader = new S3Uploader(config, report);
+
+        final CompletableFuture<PutObjectResponse> failedUpload = new CompletableFuture<>();
+        failedUpload.completeExceptionally(S3Exception.builder().statusCode(403).message("AccessDenied").build());
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(failedUpload);
+
+        addFileToQueue("file1");
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, times(1)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertEquals(1, report.getFailedFiles().size());
+    }
+
+    @Test
+    void filesAlreadyInBucketShouldBeSkipped() throws Exception {
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir).skipUnchangedObjects(true).build();
+        uploader = new S3Uploader(config, report);
+
+        final Instant uploadedAt = Instant.parse("2020-03-02T12:00:00Z");
+        final ListObjectsV2Response listing = ListObjectsV2Response.builder()
+                .isTruncated(false)
+                .contents(S3Object.builder().key("unchanged").size(7L).lastModified(uploadedAt).build())
+                .build();
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(CompletableFuture.completedFuture(listing));
+        PutObjectResponse putObjectResponse = (PutObjectResponse) PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).build();
+        when(sdkHttpResponse.isSuccessful()).thenReturn(true);
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenReturn(CompletableFuture.completedFuture(putObjectResponse));
+
+        final long modifiedBeforeUpload = uploadedAt.minus(1, ChronoUnit.DAYS).toEpochMilli();
+        queue.put(new CrawledFile(tempDir.resolve("unchanged"), 7, modifiedBeforeUpload));
+        queue.put(new CrawledFile(tempDir.resolve("resized"), 8, modifiedBeforeUpload));
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, times(1)).putObject(argThat((PutObjectRequest request) -> request.key().equals("resized")), any(AsyncRequestBody.class));
+        verify(s3AsyncClient, never()).putObject(argThat((PutObjectRequest request) -> request.key().equals("unchanged")), any(AsyncRequestBody.class));
+        assertEquals(2, report.getCountOfUploadedFiles());
+    }
+
+    @Test
+    void uploadWithMismatchedETagShouldBeRetried() throws Exception {
+        final FileUploadJournal journal = new FileUploadJournal(tempDir.resolve("journal.log"));
+        S3UploadConfig config = S3UploadConfig.builder("bucket-name", s3AsyncClient, tempDir)
+                .uploadJournal(journal)
+                .uploadRetryPolicy(new UploadRetryPolicy(3, 1, 10))
+                .build();
+        uploader = new S3Uploader(config, report);
+
+        final Path file = tempDir.resolve("file1");
+        Files.write(file, "content".getBytes());
+        final String checksum = "9a0364b9e99bb480dd25e1f0284c8555";
+        when(sdkHttpResponse.isSuccessful()).thenReturn(true);
+        final List<String> eTags = new ArrayList<>(Arrays.asList("\"00000000000000000000000000000000\"", "\"" + checksum + "\""));
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            consume(invocation.getArgument(1));
+            return CompletableFuture.completedFuture(PutObjectResponse.builder().sdkHttpResponse(sdkHttpResponse).eTag(eTags.remove(0)).build());
+        });
+
+        queue.put(CrawledFile.of(file));
+        queue.finish();
+
+        uploader.upload(queue);
+
+        verify(s3AsyncClient, times(2)).putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class));
+        assertEquals(1, report.getCountOfUploadedFiles());
+        assertTrue(report.getFailedFiles().isEmpty());
+        assertEquals(checksum, journal.getChecksum("file1").get().getChecksum());
+        assertTrue(journal.getChecksum("file1").get().isObjectETag());
+        journal.close();
+    }
+
+    private static void consume(AsyncRequestBody body) {
+        final CompletableFuture<Void> streamed = new CompletableFuture<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                streamed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                streamed.complete(null);
+            }
+        });
+        streamed.join();
+    }
+
     Path addFileToQueue(String fileName) throws IOException, InterruptedException {
         final Path file = tempDir.resolve(fileName);
         Files.write(file, "".getBytes());
-        queue.put(file);
+        queue.put(CrawledFile.of(file));
         return file;
     }
 
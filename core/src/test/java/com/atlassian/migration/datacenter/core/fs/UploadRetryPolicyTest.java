@@ -0,0 +1,78 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.exception.ApiCallTimeoutException;
+import software.amazon.awssdk.core.exception.SdkClientException;
+import software.amazon.awssdk.services.s3.model.S3Exception;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadRetryPolicyTest {
+
+    private final UploadRetryPolicy policy = new UploadRetryPolicy(5, 100, 1000, () -> 0.5);
+
+    @Test
+    void backoffShouldGrowExponentiallyUpToTheCap() {
+        assertEquals(50, policy.getBackoffMillis(1));
+        assertEquals(100, policy.getBackoffMillis(2));
+        assertEquals(200, policy.getBackoffMillis(3));
+        assertEquals(400, policy.getBackoffMillis(4));
+        assertEquals(500, policy.getBackoffMillis(5));
+        assertEquals(500, policy.getBackoffMillis(100));
+    }
+
+    @Test
+    void backoffShouldBeJitteredBelowTheBound() {
+        final UploadRetryPolicy jittered = new UploadRetryPolicy(5, 100, 1000);
+
+        for (int i = 0; i < 100; i++) {
+            final long backoff = jittered.getBackoffMillis(3);
+            assertTrue(backoff >= 0 && backoff <= 400, "backoff out of bounds: " + backoff);
+        }
+    }
+
+    @Test
+    void transientFailuresShouldBeRetryable() {
+        assertTrue(policy.isRetryable(new CompletionException(s3Exception(500))));
+        assertTrue(policy.isRetryable(s3Exception(503)));
+        assertTrue(policy.isRetryable(s3Exception(429)));
+        assertTrue(policy.isRetryable(SdkClientException.create("Unable to execute HTTP request", new IOException("Connection reset by peer"))));
+        assertTrue(policy.isRetryable(ApiCallTimeoutException.create(1000)));
+    }
+
+    @Test
+    void permanentFailuresShouldBeFatal() {
+        assertFalse(policy.isRetryable(new CompletionException(s3Exception(403))));
+        assertFalse(policy.isRetryable(s3Exception(404)));
+        assertFalse(policy.isRetryable(new NoSuchFileException("/var/atlassian/application-data/jira/missing")));
+        assertFalse(policy.isRetryable(new UncheckedIOException(new NoSuchFileException("missing"))));
+        assertFalse(policy.isRetryable(new IllegalStateException("unexpected")));
+    }
+
+    private static S3Exception s3Exception(int statusCode) {
+        return (S3Exception) S3Exception.builder().statusCode(statusCode).message("status " + statusCode).build();
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.checksum;
+
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ChecksumAsyncRequestBodyTest {
+
+    @Test
+    void shouldComputeChecksumOfStreamedContent() {
+        final ChecksumAsyncRequestBody body = new ChecksumAsyncRequestBody(AsyncRequestBody.fromString("content"));
+
+        assertNull(body.getChecksum());
+        final ByteBuffer streamed = consume(body);
+
+        assertEquals("9a0364b9e99bb480dd25e1f0284c8555", body.getChecksum());
+        assertEquals("content", StandardCharsets.UTF_8.decode(streamed).toString(), "content should be passed on unchanged");
+        assertEquals(7L, body.contentLength().get().longValue());
+    }
+
+    @Test
+    void shouldComputeChecksumAgainWhenResubscribed() {
+        final ChecksumAsyncRequestBody body = new ChecksumAsyncRequestBody(AsyncRequestBody.fromString("content"));
+
+        consume(body);
+        consume(body);
+
+        assertEquals("9a0364b9e99bb480dd25e1f0284c8555", body.getChecksum());
+    }
+
+    @Test
+    void md5ShouldNormalizeETags() {
+        assertEquals("9a0364b9e99bb480dd25e1f0284c8555", Md5.normalizeETag("\"9A0364B9E99BB480DD25E1F0284C8555\""));
+        assertNull(Md5.normalizeETag(null));
+        assertEquals("mgNkuembtIDdJeHwKEyFVQ==", Md5.toBase64(Md5.newDigest().digest("content".getBytes(StandardCharsets.UTF_8))));
+    }
+
+    private static ByteBuffer consume(AsyncRequestBody body) {
+        final ByteBuffer content = ByteBuffer.allocate(64);
+        final CompletableFuture<Void> streamed = new CompletableFuture<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                content.put(byteBuffer);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                streamed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                streamed.complete(null);
+            }
+        });
+        streamed.join();
+        content.flip();
+        return content;
+    }
+}
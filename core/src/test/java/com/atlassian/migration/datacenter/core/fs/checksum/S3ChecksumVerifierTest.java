@@ -0,0 +1,157 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.checksum;
+
+import com.atlassian.migration.datacenter.core.fs.S3UploadConfig;
+import com.atlassian.migration.datacenter.core.fs.journal.FileUploadJournal;
+import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationReport;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3ChecksumVerifierTest {
+
+    private static final String CHECKSUM = "9a0364b9e99bb480dd25e1f0284c8555";
+    private static final String OTHER_CHECKSUM = "0cc175b9c0f1b6a831c399e269772661";
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @TempDir
+    Path tempDir;
+
+    private FileUploadJournal journal;
+    private FileSystemMigrationReport report;
+    private S3ChecksumVerifier verifier;
+
+    @BeforeEach
+    void setup() throws Exception {
+        journal = new FileUploadJournal(tempDir.resolve("journal.log"));
+        report = new DefaultFileSystemMigrationReport();
+        verifier = new S3ChecksumVerifier(S3UploadConfig.builder("bucket", s3AsyncClient, tempDir.resolve("home")).uploadJournal(journal).build(), report);
+    }
+
+    @AfterEach
+    void tearDown() {
+        journal.close();
+    }
+
+    @Test
+    void shouldReportObjectsWhichDoNotMatchTheirChecksum() throws Exception {
+        journal.recordUploaded("matching", 7, 1000, quoted(CHECKSUM), CHECKSUM);
+        journal.recordUploaded("corrupted", 7, 1000, quoted(CHECKSUM), CHECKSUM);
+        journal.recordUploaded("missing", 7, 1000, quoted(CHECKSUM), CHECKSUM);
+        journal.recordUploaded("bundled", 7, 1000, quoted(OTHER_CHECKSUM), CHECKSUM);
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(CompletableFuture.completedFuture(ListObjectsV2Response.builder()
+                .isTruncated(false)
+                .contents(
+                        object("matching", CHECKSUM),
+                        object("corrupted", OTHER_CHECKSUM),
+                        object(".dc-migration-assistant/bundles/0000000000001/000000.zip", OTHER_CHECKSUM))
+                .build()));
+
+        assertEquals(2, verifier.verifyBucket());
+
+        final Set<Path> failedFiles = report.getFailedFiles().stream().map(FailedFileMigration::getFilePath).collect(Collectors.toSet());
+        assertEquals(2, failedFiles.size());
+        assertTrue(failedFiles.contains(tempDir.resolve("home").resolve("corrupted")));
+        assertTrue(failedFiles.contains(tempDir.resolve("home").resolve("missing")));
+    }
+
+    @Test
+    void shouldWriteManifestOfUploadedFiles() throws Exception {
+        journal.recordUploaded("data/attachments/file.txt", 7, 1000, quoted(CHECKSUM), CHECKSUM);
+        journal.recordUploaded("unknown.txt", 7, 1000, "etag");
+        final ByteArrayOutputStream manifest = new ByteArrayOutputStream();
+        when(s3AsyncClient.putObject(any(PutObjectRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            final PutObjectRequest request = invocation.getArgument(0);
+            assertTrue(request.key().startsWith(S3ChecksumVerifier.CHECKSUMS_PREFIX));
+            consume(invocation.getArgument(1), manifest);
+            return CompletableFuture.completedFuture(PutObjectResponse.builder().build());
+        });
+
+        assertEquals(1, verifier.writeManifest());
+
+        assertEquals(CHECKSUM + "  data/attachments/file.txt\n", new String(manifest.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    private static String quoted(String checksum) {
+        return "\"" + checksum + "\"";
+    }
+
+    private static S3Object object(String key, String checksum) {
+        return S3Object.builder().key(key).size(7L).eTag(quoted(checksum)).lastModified(Instant.now()).build();
+    }
+
+    private static void consume(AsyncRequestBody body, ByteArrayOutputStream content) {
+        final CompletableFuture<Void> streamed = new CompletableFuture<>();
+        body.subscribe(new Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(ByteBuffer byteBuffer) {
+                final byte[] bytes = new byte[byteBuffer.remaining()];
+                byteBuffer.get(bytes);
+                content.write(bytes, 0, bytes.length);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                streamed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                streamed.complete(null);
+            }
+        });
+        streamed.join();
+    }
+}
@@ -16,14 +16,19 @@
 
 package com.atlassian.migration.datacenter.core.fs.download.s3sync;
 
-import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFilesystemMigrationProgress;
-import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationProgress;
+import com.atlassian.migration.datacenter.core.fs.reporting.DefaultFileSystemMigrationReport;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
+import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationReport;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.when;
 
@@ -41,10 +46,10 @@ class S3SyncFileSystemDownloadManagerTest {
 
     @Test
     void shouldSetDownloadedFiles() throws S3SyncFileSystemDownloader.CannotLaunchCommandException, InterruptedException {
-        when(mockDownloader.getFileSystemDownloadStatus()).thenReturn(mockStatus);
+        when(mockDownloader.getFileSystemDownloadStatus()).thenReturn(CompletableFuture.completedFuture(mockStatus));
         when(mockStatus.getFilesRemainingToDownload()).thenReturn(100);
 
-        FileSystemMigrationProgress progress = new DefaultFilesystemMigrationProgress();
+        FileSystemMigrationReport progress = new DefaultFileSystemMigrationReport();
         for (int i = 0; i < 110; i++) {
             progress.reportFileUploaded();
         }
@@ -56,4 +61,21 @@ class S3SyncFileSystemDownloadManagerTest {
         assertEquals(10, progress.getCountOfDownloadFiles());
     }
 
+    @Test
+    void shouldReportFilesWhichFailedVerification() throws S3SyncFileSystemDownloader.CannotLaunchCommandException, InterruptedException {
+        when(mockDownloader.getFileSystemDownloadStatus()).thenReturn(CompletableFuture.completedFuture(mockStatus));
+        when(mockStatus.isComplete()).thenReturn(true);
+        when(mockStatus.getVerificationFailures()).thenReturn(Arrays.asList("data/attachments/file.txt: FAILED", "data/missing.txt: FAILED open or read"));
+
+        FileSystemMigrationReport report = new DefaultFileSystemMigrationReport();
+
+        sut.downloadFileSystem(report);
+
+        Thread.sleep(1000);
+
+        assertEquals(2, report.getFailedFiles().size());
+        assertTrue(report.getFailedFiles().stream().map(FailedFileMigration::getFilePath).anyMatch(Paths.get("data/attachments/file.txt")::equals));
+        assertTrue(report.getFailedFiles().stream().map(FailedFileMigration::getReason).anyMatch(reason -> reason.endsWith("FAILED open or read")));
+    }
+
 }
\ No newline at end of file
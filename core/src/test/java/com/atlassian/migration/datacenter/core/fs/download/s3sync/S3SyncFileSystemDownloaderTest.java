@@ -18,16 +18,19 @@ package com.atlassian.migration.datacenter.core.fs.download.s3sync;
 
 import com.atlassian.migration.datacenter.core.aws.infrastructure.AWSMigrationHelperDeploymentService;
 import com.atlassian.migration.datacenter.core.aws.ssm.SSMApi;
+import com.atlassian.migration.datacenter.core.aws.ssm.SuccessfulSSMCommandConsumer.UnsuccessfulSSMCommandInvocationException;
 import com.atlassian.migration.datacenter.core.fs.download.s3sync.S3SyncFileSystemDownloader.IndeterminateS3SyncStatusException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
-import software.amazon.awssdk.http.SdkHttpResponse;
 import software.amazon.awssdk.services.ssm.model.CommandInvocationStatus;
 import software.amazon.awssdk.services.ssm.model.GetCommandInvocationResponse;
 
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItem;
 import static org.junit.jupiter.api.Assertions.assertEquals;
@@ -64,15 +67,15 @@ class S3SyncFileSystemDownloaderTest {
         lenient().when(migrationHelperDeploymentService.getFsRestoreStatusDocument()).thenReturn("fs-restore-status-do");
         lenient().when(migrationHelperDeploymentService.getMigrationHostInstanceId()).thenReturn("i-0123456789");
 
-        sut = new S3SyncFileSystemDownloader(mockSsmApi, migrationHelperDeploymentService, 1);
+        sut = new S3SyncFileSystemDownloader(mockSsmApi, migrationHelperDeploymentService, Duration.ofSeconds(1));
     }
 
     @Test
     void shouldIssueCommandToInstance() throws S3SyncFileSystemDownloader.CannotLaunchCommandException {
-        when(mockSsmApi.getSSMCommand(any(), anyString())).thenReturn(
-                GetCommandInvocationResponse.builder()
+        when(mockSsmApi.awaitCommand(any(), anyString(), any(Duration.class))).thenReturn(
+                CompletableFuture.completedFuture(GetCommandInvocationResponse.builder()
                         .status(CommandInvocationStatus.SUCCESS)
-                        .build());
+                        .build()));
 
         sut.initiateFileSystemDownload();
 
@@ -81,10 +84,10 @@ class S3SyncFileSystemDownloaderTest {
 
     @Test
     void shouldNotThrowWhenCommandIsIssuedAndSucceeds() {
-        when(mockSsmApi.getSSMCommand(any(), anyString())).thenReturn(
-                GetCommandInvocationResponse.builder()
+        when(mockSsmApi.awaitCommand(any(), anyString(), any(Duration.class))).thenReturn(
+                CompletableFuture.completedFuture(GetCommandInvocationResponse.builder()
                         .status(CommandInvocationStatus.SUCCESS)
-                        .build());
+                        .build()));
 
         try {
             sut.initiateFileSystemDownload();
@@ -95,11 +98,9 @@ class S3SyncFileSystemDownloaderTest {
 
     @Test
     void shouldThrowWhenCommandDoesNotSucceedWithinTimeout() {
-        when(mockSsmApi.getSSMCommand(any(), anyString())).thenReturn(
-                (GetCommandInvocationResponse) GetCommandInvocationResponse.builder()
-                        .status(CommandInvocationStatus.DELAYED)
-                        .sdkHttpResponse(SdkHttpResponse.builder().statusText("whoopsie dooopsie").build())
-                        .build());
+        CompletableFuture<GetCommandInvocationResponse> timedOut = new CompletableFuture<>();
+        timedOut.completeExceptionally(new UnsuccessfulSSMCommandInvocationException("Command never completed successfully. Latest status is: DELAYED"));
+        when(mockSsmApi.awaitCommand(any(), anyString(), any(Duration.class))).thenReturn(timedOut);
 
         assertThrows(S3SyncFileSystemDownloader.CannotLaunchCommandException.class, () -> sut.initiateFileSystemDownload());
     }
@@ -174,10 +175,10 @@ class S3SyncFileSystemDownloaderTest {
                 .status(CommandInvocationStatus.SUCCESS)
                 .standardOutputContent(syncStatusDeterminedPartial)
                 .build();
-        when(mockSsmApi.getSSMCommand(anyString(), anyString())).thenReturn(mockStatusResponse);
+        when(mockSsmApi.awaitCommand(anyString(), anyString(), any(Duration.class))).thenReturn(CompletableFuture.completedFuture(mockStatusResponse));
     }
 
     private S3SyncCommandStatus whenStatusCommandIsInvoked() throws IndeterminateS3SyncStatusException {
-        return sut.getFileSystemDownloadStatus();
+        return sut.getFileSystemDownloadStatus().join();
     }
 }
\ No newline at end of file
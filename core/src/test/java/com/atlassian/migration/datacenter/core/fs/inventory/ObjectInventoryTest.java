@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.inventory;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ObjectInventoryTest {
+
+    private static final long UPLOADED_AT = 1_580_000_000_000L;
+    private static final long MODIFIED_BEFORE_UPLOAD = UPLOADED_AT - ObjectInventory.CLOCK_SKEW_TOLERANCE_MILLIS - 1;
+
+    private final ObjectInventory inventory = new ObjectInventory();
+
+    @Test
+    void shouldSkipObjectWithSameSizeWrittenAfterModification() {
+        inventory.put("data/attachments/TEST/10000/TEST-1/10001", 42, UPLOADED_AT);
+
+        assertTrue(inventory.isUnchanged("data/attachments/TEST/10000/TEST-1/10001", 42, MODIFIED_BEFORE_UPLOAD));
+    }
+
+    @Test
+    void shouldNotSkipChangedOrUnknownObjects() {
+        inventory.put("data/attachments/TEST/10000/TEST-1/10001", 42, UPLOADED_AT);
+
+        assertFalse(inventory.isUnchanged("data/attachments/TEST/10000/TEST-1/10001", 43, MODIFIED_BEFORE_UPLOAD));
+        assertFalse(inventory.isUnchanged("data/attachments/TEST/10000/TEST-1/10001", 42, UPLOADED_AT));
+        assertFalse(inventory.isUnchanged("data/attachments/TEST/10000/TEST-1/10002", 42, MODIFIED_BEFORE_UPLOAD));
+    }
+
+    @Test
+    void shouldKeepAllObjectsWhenGrowing() {
+        for (int i = 0; i < 10_000; i++) {
+            inventory.put("file-" + i, i, UPLOADED_AT);
+        }
+        inventory.put("file-0", 1, UPLOADED_AT);
+
+        assertEquals(10_000, inventory.size());
+        for (int i = 1; i < 10_000; i++) {
+            assertTrue(inventory.isUnchanged("file-" + i, i, MODIFIED_BEFORE_UPLOAD), "missing file-" + i);
+        }
+        assertTrue(inventory.isUnchanged("file-0", 1, MODIFIED_BEFORE_UPLOAD));
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.inventory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CommonPrefix;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class S3InventoryLoaderTest {
+
+    private static final Instant UPLOADED_AT = Instant.parse("2020-03-02T12:00:00Z");
+    private static final long MODIFIED_BEFORE_UPLOAD = UPLOADED_AT.toEpochMilli() - ObjectInventory.CLOCK_SKEW_TOLERANCE_MILLIS - 1;
+
+    @Mock
+    private S3AsyncClient s3AsyncClient;
+
+    @Test
+    void shouldListPrefixesAndFollowContinuationTokens() throws Exception {
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenAnswer(invocation -> {
+            final ListObjectsV2Request request = invocation.getArgument(0);
+            switch (request.prefix()) {
+                case "":
+                    return listing(null, new String[]{"dbconfig.xml"}, "data/", ".dc-migration-assistant/");
+                case "data/":
+                    if (request.continuationToken() == null) {
+                        return listing("page-2", new String[]{"data/first"});
+                    }
+                    return listing(null, new String[]{"data/second"});
+                default:
+                    throw new AssertionError("Unexpected listing of " + request.prefix());
+            }
+        });
+
+        final ObjectInventory inventory = new S3InventoryLoader(s3AsyncClient, "bucket", Collections.singletonList(".dc-migration-assistant/"), 1, 2).load();
+
+        assertEquals(3, inventory.size());
+        assertTrue(inventory.isUnchanged("dbconfig.xml", 1, MODIFIED_BEFORE_UPLOAD));
+        assertTrue(inventory.isUnchanged("data/first", 1, MODIFIED_BEFORE_UPLOAD));
+        assertTrue(inventory.isUnchanged("data/second", 1, MODIFIED_BEFORE_UPLOAD));
+        assertFalse(inventory.isUnchanged(".dc-migration-assistant/tombstones.txt", 1, MODIFIED_BEFORE_UPLOAD));
+    }
+
+    @Test
+    void shouldFailWhenAnyListingFails() {
+        final CompletableFuture<ListObjectsV2Response> failedListing = new CompletableFuture<>();
+        failedListing.completeExceptionally(new IllegalStateException("Access Denied"));
+        when(s3AsyncClient.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(failedListing);
+
+        assertThrows(ExecutionException.class, () -> new S3InventoryLoader(s3AsyncClient, "bucket", Collections.emptyList()).load());
+    }
+
+    private static CompletableFuture<ListObjectsV2Response> listing(String nextContinuationToken, String[] keys, String... prefixes) {
+        final ListObjectsV2Response.Builder response = ListObjectsV2Response.builder()
+                .isTruncated(nextContinuationToken != null)
+                .nextContinuationToken(nextContinuationToken);
+        final S3Object[] objects = new S3Object[keys.length];
+        for (int i = 0; i < keys.length; i++) {
+            objects[i] = S3Object.builder().key(keys[i]).size(1L).lastModified(UPLOADED_AT).build();
+        }
+        final CommonPrefix[] commonPrefixes = new CommonPrefix[prefixes.length];
+        for (int i = 0; i < prefixes.length; i++) {
+            commonPrefixes[i] = CommonPrefix.builder().prefix(prefixes[i]).build();
+        }
+        return CompletableFuture.completedFuture(response.contents(objects).commonPrefixes(commonPrefixes).build());
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.atlassian.migration.datacenter.core.fs.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class FileUploadJournalTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldRememberUploadedFilesAcrossRestarts() throws Exception {
+        final Path journalFile = tempDir.resolve("journal").resolve("upload.log");
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.recordUploaded("data/attachments/file.txt", 10, 1000, "etag");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            assertTrue(journal.isUploaded("data/attachments/file.txt", 10, 1000));
+            assertFalse(journal.isUploaded("data/attachments/file.txt", 11, 1000), "file with different size should be uploaded again");
+            assertFalse(journal.isUploaded("data/attachments/file.txt", 10, 2000), "modified file should be uploaded again");
+            assertFalse(journal.isUploaded("data/attachments/other.txt", 10, 1000));
+        }
+    }
+
+    @Test
+    void shouldResumeUnfinishedMultipartUpload() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.recordMultipartUploadStarted("large-file", 100, 1000, "upload-1", 20);
+            journal.recordPartUploaded("upload-1", 1, "etag-1");
+            journal.recordPartUploaded("upload-1", 2, "etag-2");
+            journal.recordMultipartUploadStarted("finished-file", 100, 1000, "upload-2", 20);
+            journal.recordMultipartUploadEnded("upload-2");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            final Optional<MultipartUploadState> state = journal.getMultipartUpload("large-file", 100, 1000);
+            assertTrue(state.isPresent());
+            assertEquals("upload-1", state.get().getUploadId());
+            assertEquals(20, state.get().getPartSize());
+            assertEquals("etag-1", state.get().getCompletedParts().get(1));
+            assertEquals("etag-2", state.get().getCompletedParts().get(2));
+
+            assertFalse(journal.getMultipartUpload("large-file", 100, 2000).isPresent());
+            assertFalse(journal.getMultipartUpload("finished-file", 100, 1000).isPresent());
+        }
+    }
+
+    @Test
+    void shouldIgnorePartiallyWrittenRecords() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+        Files.write(journalFile, Arrays.asList("U\t10\t1000\tetag\tcomplete.txt", "U\t10\t10"));
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            assertTrue(journal.isUploaded("complete.txt", 10, 1000));
+        }
+    }
+
+    @Test
+    void shouldNotMergeRecordsAppendedAfterPartiallyWrittenRecord() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+        Files.write(journalFile, "U\t10\t1000\tetag\tcomplete.txt\nU\t10\t10".getBytes(StandardCharsets.UTF_8));
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.recordUploaded("appended.txt", 10, 1000, "etag");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            assertTrue(journal.isUploaded("complete.txt", 10, 1000));
+            assertTrue(journal.isUploaded("appended.txt", 10, 1000));
+        }
+    }
+
+    @Test
+    void shouldKeepLatestRecordOfManyFiles() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+        final String checksum = "9a0364b9e99bb480dd25e1f0284c8555";
+        final String changedChecksum = "0123456789abcdef0123456789abcdef";
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            for (int i = 0; i < 5000; i++) {
+                journal.recordUploaded("file-" + i, i, 1000, "etag", checksum);
+            }
+            journal.recordUploaded("file-42", 42, 2000, "etag", changedChecksum);
+            journal.recordDeleted("file-43");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            assertTrue(journal.isUploaded("file-4999", 4999, 1000));
+            assertFalse(journal.isUploaded("file-42", 42, 1000), "file should have been replaced by its latest record");
+            assertTrue(journal.isUploaded("file-42", 42, 2000));
+            assertFalse(journal.isUploaded("file-43", 43, 1000));
+            assertEquals(changedChecksum, journal.getChecksum("file-42").get().getChecksum());
+            assertFalse(journal.getChecksum("file-43").isPresent());
+
+            final List<FileChecksum> checksums = new ArrayList<>();
+            journal.forEachChecksum(false, checksums::add);
+            assertEquals(4999, checksums.size());
+            assertEquals(1, checksums.stream().filter(fileChecksum -> fileChecksum.getKey().equals("file-42")).count());
+            journal.markPresent("file-0");
+            assertEquals(4998, journal.getKeysNotPresent().size());
+        }
+    }
+
+    @Test
+    void shouldEscapeKeysWithSeparators() {
+        final String key = "dir\\with\ttab\nand newline";
+
+        assertEquals(key, FileUploadJournal.unescape(FileUploadJournal.escape(key)));
+        assertFalse(FileUploadJournal.escape(key).contains("\t"));
+        assertFalse(FileUploadJournal.escape(key).contains("\n"));
+    }
+
+    @Test
+    void shouldReportUploadedFilesWhichWereNotFoundAgain() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.recordUploaded("kept.txt", 10, 1000, "etag");
+            journal.recordUploaded("deleted.txt", 10, 1000, "etag");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.markPresent("kept.txt");
+
+            assertEquals(Collections.singleton("deleted.txt"), journal.getKeysNotPresent());
+
+            journal.recordDeleted("deleted.txt");
+            assertTrue(journal.getKeysNotPresent().isEmpty());
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            assertFalse(journal.isUploaded("deleted.txt", 10, 1000), "deleted file should be forgotten");
+            assertTrue(journal.isUploaded("kept.txt", 10, 1000));
+        }
+    }
+
+    @Test
+    void shouldRememberChecksumsAcrossRestarts() throws Exception {
+        final Path journalFile = tempDir.resolve("upload.log");
+        final String checksum = "9a0364b9e99bb480dd25e1f0284c8555";
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            journal.recordUploaded("single.txt", 7, 1000, "\"" + checksum + "\"", checksum);
+            journal.recordUploaded("multipart.bin", 7, 1000, "\"etag-2\"", checksum);
+            journal.recordUploaded("unknown.txt", 7, 1000, "etag");
+        }
+
+        try (FileUploadJournal journal = new FileUploadJournal(journalFile)) {
+            assertTrue(journal.isUploaded("single.txt", 7, 1000));
+            assertEquals(checksum, journal.getChecksum("single.txt").get().getChecksum());
+            assertTrue(journal.getChecksum("single.txt").get().isObjectETag());
+            assertFalse(journal.getChecksum("multipart.bin").get().isObjectETag());
+            assertFalse(journal.getChecksum("unknown.txt").isPresent());
+
+            final List<String> checksummedKeys = new ArrayList<>();
+            journal.forEachChecksum(false, fileChecksum -> checksummedKeys.add(fileChecksum.getKey()));
+            Collections.sort(checksummedKeys);
+            assertEquals(Arrays.asList("multipart.bin", "single.txt"), checksummedKeys);
+
+            journal.recordUploaded("new.txt", 7, 2000, "\"" + checksum + "\"", checksum);
+            checksummedKeys.clear();
+            journal.forEachChecksum(true, fileChecksum -> checksummedKeys.add(fileChecksum.getKey()));
+            assertEquals(Collections.singletonList("new.txt"), checksummedKeys, "only files uploaded since the journal was opened");
+        }
+    }
+}
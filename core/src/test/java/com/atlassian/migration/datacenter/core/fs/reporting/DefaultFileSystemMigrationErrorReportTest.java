@@ -19,15 +19,22 @@ package com.atlassian.migration.datacenter.core.fs.reporting;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class DefaultFileSystemMigrationErrorReportTest {
 
+    @TempDir
+    Path tempDir;
+
     private DefaultFileSystemMigrationErrorReport sut;
 
     @BeforeEach
@@ -50,4 +57,79 @@ public class DefaultFileSystemMigrationErrorReportTest {
 
         assertTrue(sut.getFailedFiles().contains(new FailedFileMigration(testFile, testReason)));
     }
+
+    @Test
+    void shouldCountEveryFailureButOnlyKeepTheMostRecentInMemory() {
+        final int failures = DefaultFileSystemMigrationErrorReport.RECENT_FAILURES + 50;
+        for (int i = 0; i < failures; i++) {
+            sut.reportFileNotMigrated(new FailedFileMigration(Paths.get("file" + i), i % 2 == 0 ? "even" : "odd"));
+        }
+
+        assertEquals(failures, sut.getNumberOfFailedFiles());
+        assertEquals(DefaultFileSystemMigrationErrorReport.RECENT_FAILURES, sut.getFailedFiles().size());
+        assertTrue(sut.getFailedFiles().contains(new FailedFileMigration(Paths.get("file" + (failures - 1)), "odd")));
+        assertFalse(sut.getFailedFiles().contains(new FailedFileMigration(Paths.get("file0"), "even")));
+        assertEquals(75L, (long) sut.getFailureCountsByReason().get("even"));
+        assertEquals(75L, (long) sut.getFailureCountsByReason().get("odd"));
+    }
+
+    @Test
+    void shouldGroupReasonsBeyondTheLimit() {
+        for (int i = 0; i <= DefaultFileSystemMigrationErrorReport.MAX_REASONS; i++) {
+            sut.reportFileNotMigrated(new FailedFileMigration(Paths.get("file" + i), "reason" + i));
+        }
+
+        assertEquals(DefaultFileSystemMigrationErrorReport.MAX_REASONS, sut.getFailureCountsByReason().size());
+        assertEquals(2L, (long) sut.getFailureCountsByReason().get(DefaultFileSystemMigrationErrorReport.OTHER_REASONS));
+    }
+
+    @Test
+    void shouldReadAllFailuresFromTheLogAPageAtATime() throws Exception {
+        sut = new DefaultFileSystemMigrationErrorReport(tempDir.resolve("failures").resolve("failed.log.gz"));
+        final int failures = DefaultFileSystemMigrationErrorReport.RECENT_FAILURES * 3;
+        for (int i = 0; i < failures; i++) {
+            sut.reportFileNotMigrated(new FailedFileMigration(Paths.get("file" + i), "it broke"));
+        }
+
+        final List<FailedFileMigration> page = new ArrayList<>();
+        sut.readFailedFiles(250, 10, page::add);
+
+        assertEquals(10, page.size());
+        assertEquals(new FailedFileMigration(Paths.get("file250"), "it broke"), page.get(0));
+        assertEquals(new FailedFileMigration(Paths.get("file259"), "it broke"), page.get(9));
+
+        sut.reportFileNotMigrated(new FailedFileMigration(Paths.get("last"), "it broke"));
+        sut.close();
+
+        final List<FailedFileMigration> tail = new ArrayList<>();
+        sut.readFailedFiles(failures - 1, 100, tail::add);
+
+        assertEquals(2, tail.size());
+        assertEquals(new FailedFileMigration(Paths.get("last"), "it broke"), tail.get(1));
+    }
+
+    @Test
+    void shouldPreserveSeparatorsInLoggedFailures() throws Exception {
+        sut = new DefaultFileSystemMigrationErrorReport(tempDir.resolve("failed.log.gz"));
+        final FailedFileMigration failure = new FailedFileMigration(Paths.get("odd\tname"), "line one\nline\ttwo\\");
+        sut.reportFileNotMigrated(failure);
+
+        final List<FailedFileMigration> read = new ArrayList<>();
+        sut.readFailedFiles(0, 10, read::add);
+
+        assertEquals(1, read.size());
+        assertEquals(failure, read.get(0));
+    }
+
+    @Test
+    void shouldReadRecentFailuresWithoutALog() throws Exception {
+        sut.reportFileNotMigrated(new FailedFileMigration(Paths.get("first"), "it broke"));
+        sut.reportFileNotMigrated(new FailedFileMigration(Paths.get("second"), "it broke"));
+
+        final List<FailedFileMigration> read = new ArrayList<>();
+        sut.readFailedFiles(1, 10, read::add);
+
+        assertEquals(1, read.size());
+        assertEquals(new FailedFileMigration(Paths.get("second"), "it broke"), read.get(0));
+    }
 }
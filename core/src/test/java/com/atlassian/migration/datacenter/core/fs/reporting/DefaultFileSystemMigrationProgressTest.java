@@ -59,6 +59,26 @@ public class DefaultFileSystemMigrationProgressTest {
         assertEquals(1, sut.getNumberOfCommencedFileUploads());
     }
 
+    @Test
+    void shouldSumUploadedBytes() {
+        sut.reportBytesUploaded(100);
+        sut.reportBytesUploaded(24);
+
+        assertEquals(124, sut.getCountOfUploadedBytes());
+    }
+
+    @Test
+    void shouldSumFoundSkippedAndFailedBytes() {
+        sut.reportBytesFound(100);
+        sut.reportBytesFound(50);
+        sut.reportBytesSkipped(30);
+        sut.reportBytesFailed(20);
+
+        assertEquals(150, sut.getNumberOfBytesFound());
+        assertEquals(30, sut.getCountOfSkippedBytes());
+        assertEquals(20, sut.getCountOfFailedBytes());
+    }
+
     @Test
     void shouldHandleLargeNumberOfMigratedFiles() {
         int numFilesToMigrate = 1000000;
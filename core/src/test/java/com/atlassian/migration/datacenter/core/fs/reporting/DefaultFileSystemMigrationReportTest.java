@@ -16,6 +16,8 @@
 
 package com.atlassian.migration.datacenter.core.fs.reporting;
 
+import com.atlassian.migration.datacenter.core.events.MigrationEvent;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FailedFileMigration;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationErrorReport;
 import com.atlassian.migration.datacenter.spi.fs.reporting.FileSystemMigrationProgress;
@@ -35,7 +37,8 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.ZoneId;
-import java.util.Set;
+import java.util.List;
+import java.util.Map;
 
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.DONE;
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.FAILED;
@@ -43,7 +46,7 @@ import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigr
 import static com.atlassian.migration.datacenter.spi.fs.reporting.FilesystemMigrationStatus.UPLOADING;
 import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.assertEquals;
-import static org.mockito.Mockito.mock;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -86,6 +89,9 @@ public class DefaultFileSystemMigrationReportTest {
 
         sut.getFailedFiles();
         verify(errors).getFailedFiles();
+
+        sut.getNumberOfFailedFiles();
+        verify(errors).getNumberOfFailedFiles();
     }
 
     @Test
@@ -147,15 +153,96 @@ public class DefaultFileSystemMigrationReportTest {
         assertEquals(10L, sut.getElapsedTime().getSeconds());
     }
 
+    @Test
+    void shouldCalculateUploadThroughputSinceMigrationStarted() {
+        Clock testClock = Clock.fixed(Instant.ofEpochMilli(0), ZoneId.systemDefault());
+        sut.setClock(testClock);
+        sut.setStatus(UPLOADING);
+
+        when(progress.getCountOfUploadedFiles()).thenReturn(50L);
+        when(progress.getCountOfUploadedBytes()).thenReturn(1000L);
+        sut.setClock(Clock.offset(testClock, Duration.ofSeconds(10)));
+
+        assertEquals(5.0, sut.getUploadedFilesPerSecond());
+        assertEquals(100.0, sut.getUploadedBytesPerSecond());
+    }
+
+    @Test
+    void shouldCalculateCurrentThroughputOverTheLastMinute() {
+        sut = new DefaultFileSystemMigrationReport(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress());
+        Clock testClock = Clock.fixed(Instant.ofEpochMilli(0), ZoneId.systemDefault());
+        sut.setClock(testClock);
+        sut.setStatus(UPLOADING);
+        uploadFiles(100, 1000);
+
+        sut.setClock(Clock.offset(testClock, Duration.ofMinutes(10)));
+        sut.getCurrentUploadedBytesPerSecond();
+        uploadFiles(60, 1000);
+
+        sut.setClock(Clock.offset(testClock, Duration.ofMinutes(11)));
+
+        assertEquals(1.0, sut.getCurrentUploadedFilesPerSecond());
+        assertEquals(1000.0, sut.getCurrentUploadedBytesPerSecond());
+    }
+
+    @Test
+    void shouldEstimateTimeRemainingFromCurrentThroughput() {
+        sut = new DefaultFileSystemMigrationReport(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress());
+        Clock testClock = Clock.fixed(Instant.ofEpochMilli(0), ZoneId.systemDefault());
+        sut.setClock(testClock);
+        sut.setStatus(UPLOADING);
+        sut.reportBytesFound(220_000);
+        sut.reportBytesSkipped(10_000);
+
+        sut.setClock(Clock.offset(testClock, Duration.ofSeconds(160)));
+        uploadFiles(160, 1000);
+
+        assertEquals(Duration.ofSeconds(50), sut.getEstimatedTimeRemaining());
+
+        sut.setStatus(DONE);
+        assertEquals(Duration.ZERO, sut.getEstimatedTimeRemaining());
+    }
+
+    @Test
+    void shouldNotEstimateTimeForBytesOfFailedFiles() {
+        sut = new DefaultFileSystemMigrationReport(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress());
+        Clock testClock = Clock.fixed(Instant.ofEpochMilli(0), ZoneId.systemDefault());
+        sut.setClock(testClock);
+        sut.setStatus(UPLOADING);
+        sut.reportBytesFound(220_000);
+        sut.reportBytesFailed(20_000);
+
+        sut.setClock(Clock.offset(testClock, Duration.ofSeconds(160)));
+        uploadFiles(160, 1000);
+
+        assertEquals(Duration.ofSeconds(40), sut.getEstimatedTimeRemaining());
+    }
+
+    @Test
+    void shouldNotEstimateTimeRemainingBeforeMigrationStarts() {
+        assertNull(sut.getEstimatedTimeRemaining());
+        assertEquals(0.0, sut.getCurrentUploadedBytesPerSecond());
+    }
+
+    private void uploadFiles(int files, long bytesPerFile) {
+        for (int i = 0; i < files; i++) {
+            sut.reportFileUploaded();
+            sut.reportBytesUploaded(bytesPerFile);
+        }
+    }
+
+    @Test
+    void shouldReportNoThroughputBeforeMigrationStarts() {
+        assertEquals(0.0, sut.getUploadedFilesPerSecond());
+        assertEquals(0.0, sut.getUploadedBytesPerSecond());
+    }
+
     @Test
     void testToString() {
         final long successfullyMigrated = 888L;
-        final int failedFiles = 666;
+        final long failedFiles = 666L;
         when(progress.getCountOfUploadedFiles()).thenReturn(successfullyMigrated);
-
-        final Set errorList = mock(Set.class);
-        when(errorList.size()).thenReturn(failedFiles);
-        when(errors.getFailedFiles()).thenReturn(errorList);
+        when(errors.getNumberOfFailedFiles()).thenReturn(failedFiles);
 
         sut.setStatus(DONE);
 
@@ -164,4 +251,42 @@ public class DefaultFileSystemMigrationReportTest {
         Assert.assertThat(text, containsString(String.valueOf(successfullyMigrated)));
         Assert.assertThat(text, containsString(String.valueOf(failedFiles)));
     }
+
+    @Test
+    void shouldPublishProgressAtMostOncePerInterval() throws Exception {
+        MigrationEventBus eventBus = new MigrationEventBus();
+        sut = new DefaultFileSystemMigrationReport(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress(), eventBus);
+        Clock testClock = Clock.fixed(Instant.ofEpochSecond(1000), ZoneId.systemDefault());
+        sut.setClock(testClock);
+
+        sut.setStatus(UPLOADING);
+        sut.reportFileUploaded();
+        sut.reportBytesUploaded(100);
+        assertEquals(1, eventBus.getLastSequence());
+
+        sut.setClock(Clock.offset(testClock, DefaultFileSystemMigrationReport.PROGRESS_EVENT_INTERVAL));
+        sut.reportFileUploaded();
+
+        List<MigrationEvent> events = eventBus.awaitEventsAfter(0, Duration.ZERO);
+        assertEquals(2, events.size());
+        Map<String, Object> progress = events.get(1).getData();
+        assertEquals(MigrationEvent.Type.FILESYSTEM_PROGRESS, events.get(1).getType());
+        assertEquals(UPLOADING.toString(), progress.get("status"));
+        assertEquals(2L, progress.get("uploadedFiles"));
+        assertEquals(2L, progress.get("uploadedFilesDelta"));
+        assertEquals(100L, progress.get("uploadedBytesDelta"));
+    }
+
+    @Test
+    void shouldPublishProgressWhenStatusChanges() throws Exception {
+        MigrationEventBus eventBus = new MigrationEventBus();
+        sut = new DefaultFileSystemMigrationReport(new DefaultFileSystemMigrationErrorReport(), new DefaultFilesystemMigrationProgress(), eventBus);
+
+        sut.setStatus(UPLOADING);
+        sut.setStatus(DONE);
+
+        List<MigrationEvent> events = eventBus.awaitEventsAfter(0, Duration.ZERO);
+        assertEquals(2, events.size());
+        assertEquals(DONE.toString(), events.get(1).getData().get("status"));
+    }
 }
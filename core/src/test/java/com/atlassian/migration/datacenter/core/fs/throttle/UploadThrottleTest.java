@@ -0,0 +1,150 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.fs.throttle;
+
+import com.atlassian.migration.datacenter.spi.fs.ThrottleWindow;
+import com.atlassian.migration.datacenter.spi.fs.UploadThrottleSettings;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class UploadThrottleTest {
+
+    // 2020-03-02 is a Monday
+    private static final LocalDateTime MONDAY_NOON = LocalDateTime.of(2020, 3, 2, 12, 0);
+
+    private final AtomicLong nanoClock = new AtomicLong(0);
+
+    @Test
+    void shouldAllowFullRateOutsideOfScheduledWindows() {
+        final UploadThrottle throttle = throttleAt(MONDAY_NOON.withHour(20));
+        throttle.update(new UploadThrottleSettings(1000, 10, Collections.singletonList(new ThrottleWindow("09:00", "17:00", Collections.emptyList(), 25))));
+
+        assertEquals(100, throttle.getCurrentPercentage());
+    }
+
+    @Test
+    void shouldUseLowestPercentageOfMatchingWindows() {
+        final UploadThrottle throttle = throttleAt(MONDAY_NOON);
+        throttle.update(new UploadThrottleSettings(1000, 10, Arrays.asList(
+                new ThrottleWindow("09:00", "17:00", Collections.emptyList(), 50),
+                new ThrottleWindow("11:00", "13:00", Collections.singletonList("monday"), 10),
+                new ThrottleWindow("11:00", "13:00", Collections.singletonList("TUESDAY"), 0))));
+
+        assertEquals(10, throttle.getCurrentPercentage());
+    }
+
+    @Test
+    void shouldApplyWindowSpanningMidnightToTheFollowingMorning() {
+        final ThrottleWindow overnight = new ThrottleWindow("22:00", "06:00", Collections.singletonList("SUNDAY"), 30);
+
+        final UploadThrottle mondayMorning = throttleAt(MONDAY_NOON.withHour(3));
+        mondayMorning.update(new UploadThrottleSettings(1000, 0, Collections.singletonList(overnight)));
+        final UploadThrottle mondayNight = throttleAt(MONDAY_NOON.withHour(23));
+        mondayNight.update(new UploadThrottleSettings(1000, 0, Collections.singletonList(overnight)));
+
+        assertEquals(30, mondayMorning.getCurrentPercentage());
+        assertEquals(100, mondayNight.getCurrentPercentage());
+    }
+
+    @Test
+    void shouldRejectInvalidSettings() {
+        final UploadThrottle throttle = throttleAt(MONDAY_NOON);
+        final UploadThrottleSettings valid = new UploadThrottleSettings(1000, 0, Collections.emptyList());
+        throttle.update(valid);
+
+        assertThrows(IllegalArgumentException.class, () -> throttle.update(new UploadThrottleSettings(-1, 0, Collections.emptyList())));
+        assertThrows(IllegalArgumentException.class, () -> throttle.update(new UploadThrottleSettings(0, 0,
+                Collections.singletonList(new ThrottleWindow("9am", "17:00", Collections.emptyList(), 50)))));
+        assertThrows(IllegalArgumentException.class, () -> throttle.update(new UploadThrottleSettings(0, 0,
+                Collections.singletonList(new ThrottleWindow("09:00", "17:00", Collections.singletonList("someday"), 50)))));
+        assertThrows(IllegalArgumentException.class, () -> throttle.update(new UploadThrottleSettings(0, 0,
+                Collections.singletonList(new ThrottleWindow("09:00", "17:00", Collections.emptyList(), 150)))));
+        assertEquals(valid, throttle.getSettings());
+    }
+
+    @Test
+    void bucketShouldMakeCallerWaitWhileInDebt() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(nanoClock::get);
+        bucket.setRate(100);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+
+        assertEquals(100, bucket.acquire(100, 0));
+        assertEquals(50, bucket.acquire(50, 0));
+        assertEquals(0, bucket.acquire(10, 0));
+
+        nanoClock.addAndGet(TimeUnit.MILLISECONDS.toNanos(600));
+        assertEquals(1, bucket.acquire(1, 0));
+    }
+
+    @Test
+    void bucketShouldLimitDebtToOneSecondOfTheCurrentRate() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(nanoClock::get);
+        bucket.setRate(100);
+
+        assertEquals(100, bucket.acquire(1000, 0));
+
+        bucket.setRate(10);
+        nanoClock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(10, bucket.acquire(1000, 0));
+    }
+
+    @Test
+    void bucketShouldNotLimitWithoutRate() throws InterruptedException {
+        final TokenBucket bucket = new TokenBucket(nanoClock::get);
+
+        assertEquals(Long.MAX_VALUE, bucket.acquire(Long.MAX_VALUE, 0));
+        assertEquals(Long.MAX_VALUE, bucket.acquire(Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    void bucketShouldApplyRateChangesToWaitingCallers() throws Exception {
+        final TokenBucket bucket = new TokenBucket(System::nanoTime);
+        bucket.setRate(0.5);
+        assertEquals(1, bucket.acquire(1, 0));
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Long> waiting = executor.submit(() -> bucket.acquire(1, Long.MAX_VALUE));
+
+            bucket.setRate(0.1);
+            assertThrows(TimeoutException.class, () -> waiting.get(500, TimeUnit.MILLISECONDS));
+
+            bucket.setRate(1000);
+            assertEquals(1L, waiting.get(1, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private UploadThrottle throttleAt(LocalDateTime dateTime) {
+        return new UploadThrottle(Clock.fixed(dateTime.toInstant(ZoneOffset.UTC), ZoneOffset.UTC), nanoClock::get);
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.core.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UploadQueueTest {
+
+    @Test
+    void shouldBlockProducerWhenQueuedWeightExceedsLimit() throws Exception {
+        final UploadQueue<Long> queue = new UploadQueue<>(10, 100, Long::longValue);
+        queue.put(60L);
+        queue.put(40L);
+        assertEquals(100, queue.weight());
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<?> put = executor.submit(() -> {
+                queue.put(1L);
+                return null;
+            });
+            assertThrows(TimeoutException.class, () -> put.get(500, TimeUnit.MILLISECONDS));
+
+            assertEquals(60L, queue.take().get());
+            put.get(5, TimeUnit.SECONDS);
+            assertEquals(41, queue.weight());
+            assertEquals(2, queue.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void shouldAcceptItemHeavierThanLimitWhenQueueHasNoWeight() throws Exception {
+        final UploadQueue<Long> queue = new UploadQueue<>(10, 100, Long::longValue);
+        queue.put(500L);
+        queue.finish();
+
+        assertEquals(500L, queue.take().get());
+        assertEquals(0, queue.weight());
+        assertFalse(queue.take().isPresent());
+    }
+
+    @Test
+    void shouldFinishWhenProducerIsInterrupted() throws Exception {
+        final UploadQueue<Long> queue = new UploadQueue<>(10);
+
+        Thread.currentThread().interrupt();
+        try {
+            queue.finish();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertFalse(queue.take().isPresent());
+    }
+}
@@ -0,0 +1,38 @@
+import { callAppRest } from '../utils/api';
+
+enum RestApiPathConstants {
+    migrationEventsRestPath = `migration/events`,
+}
+
+export type MigrationEvent = {
+    sequence: number;
+    timestamp: string;
+    type: 'STAGE_TRANSITION' | 'FILESYSTEM_PROGRESS';
+    data: Record<string, any>;
+};
+
+type MigrationEventsResponse = {
+    lastSequence: number;
+    events: Array<MigrationEvent>;
+};
+
+export const events = {
+    /**
+     * Long polls for the migration events after the given sequence. Resolves with no events when nothing
+     * happens before the server side timeout, and rejects when the server is too busy to wait.
+     */
+    awaitEventsAfter: (since: number): Promise<MigrationEventsResponse> => {
+        return callAppRest(
+            'GET',
+            RestApiPathConstants.migrationEventsRestPath,
+            undefined,
+            undefined,
+            `since=${since}`
+        ).then(result => {
+            if (!result.ok) {
+                throw new Error(`Unable to get migration events: ${result.status}`);
+            }
+            return result.json();
+        });
+    },
+};
@@ -14,15 +14,34 @@ type FileSystemMigrationDuration = {
     nanos: number;
 };
 
+type ConcurrencyLimitChange = {
+    timestamp: number;
+    limit: number;
+};
+
 type FileSystemMigrationStatusResponse = {
     status: 'NOT_STARTED' | 'FAILED' | 'UPLOADING' | 'DOWNLOADING' | 'DONE';
     elapsedTime: FileSystemMigrationDuration;
     failedFiles: Array<FailedFile>;
+    numberOfFailedFiles: number;
+    failureCountsByReason: Record<string, number>;
     uploadedFiles: number;
     filesFound: number;
+    bytesFound: number;
     crawlingFinished: boolean;
     filesInFlight: number;
     downloadedFiles: number;
+    uploadedBytes: number;
+    skippedBytes: number;
+    uploadedFilesPerSecond: number;
+    uploadedBytesPerSecond: number;
+    currentUploadedFilesPerSecond: number;
+    currentUploadedBytesPerSecond: number;
+    estimatedTimeRemaining: FileSystemMigrationDuration | null;
+    queuedFiles: number;
+    queuedBytes: number;
+    uploadConcurrencyLimit: number;
+    uploadConcurrencyHistory: Array<ConcurrencyLimitChange>;
 };
 
 export const fs = {
@@ -98,6 +98,7 @@ const fsMigrationTranferPageProps: MigrationTransferProps = {
     description: I18n.getText('atlassian.migration.datacenter.fs.description'),
     nextText: I18n.getText('atlassian.migration.datacenter.fs.nextStep'),
     getProgress: getFsMigrationProgress,
+    followEvents: true,
 };
 
 export const FileSystemTransferPage: FunctionComponent = () => {
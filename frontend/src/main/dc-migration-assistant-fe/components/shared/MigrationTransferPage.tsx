@@ -25,6 +25,7 @@ import Spinner from '@atlaskit/spinner';
 
 import { I18n } from '@atlassian/wrm-react-i18n';
 import { overviewPath } from '../../utils/RoutePaths';
+import { events } from '../../api/events';
 
 const POLL_INTERVAL_MILLIS = 3000;
 
@@ -57,6 +58,11 @@ export type MigrationTransferProps = {
     nextText: string;
     started?: moment.Moment;
     getProgress: ProgressCallback;
+    /**
+     * Refresh the progress when the migration publishes an event instead of on an interval. Only for stages
+     * which publish progress events.
+     */
+    followEvents?: boolean;
 };
 
 const TransferPageContainer = styled.div`
@@ -180,6 +186,7 @@ export const MigrationTransferPage: FunctionComponent<MigrationTransferProps> =
     nextText,
     started,
     getProgress,
+    followEvents,
 }) => {
     const [progress, setProgress] = useState<Progress>();
     const [loading, setLoading] = useState<boolean>(true);
@@ -198,14 +205,39 @@ export const MigrationTransferPage: FunctionComponent<MigrationTransferProps> =
                 });
         };
 
-        const id = setInterval(async () => {
-            await updateProgress();
-        }, POLL_INTERVAL_MILLIS);
-
         setLoading(true);
         updateProgress();
 
-        return (): void => clearInterval(id);
+        if (!followEvents) {
+            const id = setInterval(async () => {
+                await updateProgress();
+            }, POLL_INTERVAL_MILLIS);
+            return (): void => clearInterval(id);
+        }
+
+        let stopped = false;
+        const refreshOnEvents = (since: number): void => {
+            events
+                .awaitEventsAfter(since)
+                .then(response => response.lastSequence)
+                // the server is busy or unreachable, so back off as if polling
+                .catch(
+                    () =>
+                        new Promise<number>(resolve =>
+                            setTimeout(() => resolve(since), POLL_INTERVAL_MILLIS)
+                        )
+                )
+                .then(lastSequence => {
+                    if (!stopped) {
+                        updateProgress().then(() => refreshOnEvents(lastSequence));
+                    }
+                });
+        };
+        refreshOnEvents(0);
+
+        return (): void => {
+            stopped = true;
+        };
     }, []);
 
     const transferError = progress?.error || error;
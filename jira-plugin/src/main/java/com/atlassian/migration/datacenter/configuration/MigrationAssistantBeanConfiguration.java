@@ -17,10 +17,12 @@
 package com.atlassian.migration.datacenter.configuration;
 
 import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.cluster.ClusterMessagingService;
 import com.atlassian.jira.config.util.JiraHome;
 import com.atlassian.migration.datacenter.core.application.ApplicationConfiguration;
 import com.atlassian.migration.datacenter.core.application.JiraConfiguration;
 import com.atlassian.migration.datacenter.core.aws.AWSMigrationService;
+import com.atlassian.migration.datacenter.core.aws.AwsClientRegistry;
 import com.atlassian.migration.datacenter.core.aws.CfnApi;
 import com.atlassian.migration.datacenter.core.aws.GlobalInfrastructure;
 import com.atlassian.migration.datacenter.core.aws.auth.AtlassianPluginAWSCredentialsProvider;
@@ -44,9 +46,13 @@ import com.atlassian.migration.datacenter.core.aws.region.AvailabilityZoneManage
 import com.atlassian.migration.datacenter.core.aws.region.PluginSettingsRegionManager;
 import com.atlassian.migration.datacenter.core.aws.region.RegionService;
 import com.atlassian.migration.datacenter.core.aws.ssm.SSMApi;
+import com.atlassian.migration.datacenter.core.aws.ssm.SsmCommandTracker;
+import com.atlassian.migration.datacenter.core.db.DatabaseDumpTuner;
 import com.atlassian.migration.datacenter.core.db.DatabaseExtractor;
 import com.atlassian.migration.datacenter.core.db.DatabaseExtractorFactory;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.core.fs.S3FilesystemMigrationService;
+import com.atlassian.migration.datacenter.core.fs.S3TransferProfile;
 import com.atlassian.migration.datacenter.core.fs.download.s3sync.S3SyncFileSystemDownloadManager;
 import com.atlassian.migration.datacenter.core.fs.download.s3sync.S3SyncFileSystemDownloader;
 import com.atlassian.migration.datacenter.core.util.EncryptionManager;
@@ -60,10 +66,10 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
-import software.amazon.awssdk.regions.Region;
 import software.amazon.awssdk.services.autoscaling.AutoScalingClient;
 import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.secretsmanager.SecretsManagerClient;
+import software.amazon.awssdk.services.ssm.SsmAsyncClient;
 import software.amazon.awssdk.services.ssm.SsmClient;
 
 import java.nio.file.Paths;
@@ -74,34 +80,58 @@ import java.nio.file.Paths;
 public class MigrationAssistantBeanConfiguration {
 
     @Bean
-    public Supplier<S3AsyncClient> s3AsyncClientSupplier(AwsCredentialsProvider credentialsProvider, RegionService regionService) {
-        return () -> S3AsyncClient.builder()
-                .credentialsProvider(credentialsProvider)
-                .region(Region.of(regionService.getRegion()))
-                .build();
+    public AwsClientRegistry awsClientRegistry(AwsCredentialsProvider credentialsProvider, RegionService regionService, ClusterMessagingService clusterMessagingService) {
+        return new AwsClientRegistry(credentialsProvider, regionService, clusterMessagingService);
     }
 
     @Bean
-    public Supplier<SsmClient> ssmClient(AwsCredentialsProvider credentialsProvider, RegionService regionService) {
-        return () -> SsmClient.builder()
-                .credentialsProvider(credentialsProvider)
-                .region(Region.of(regionService.getRegion()))
-                .build();
+    public Supplier<S3AsyncClient> s3AsyncClientSupplier(AwsClientRegistry clientRegistry) {
+        final S3TransferProfile transferProfile = S3TransferProfile.fromSystemProperties();
+        return clientRegistry.supplier(S3AsyncClient.class, resources -> S3AsyncClient.builder()
+                .credentialsProvider(resources.getCredentialsProvider())
+                .region(resources.getRegion())
+                .httpClientBuilder(transferProfile.httpClientBuilder())
+                .build());
     }
 
     @Bean
-    public Supplier<SecretsManagerClient> secretsManagerClient(AwsCredentialsProvider credentialsProvider, RegionService regionService) {
-        return () -> SecretsManagerClient.builder()
-                .credentialsProvider(credentialsProvider)
-                .region(Region.of(regionService.getRegion()))
-                .build();
+    public Supplier<SsmClient> ssmClient(AwsClientRegistry clientRegistry) {
+        return clientRegistry.supplier(SsmClient.class, resources -> SsmClient.builder()
+                .credentialsProvider(resources.getCredentialsProvider())
+                .region(resources.getRegion())
+                .httpClient(resources.getHttpClient())
+                .build());
     }
 
-    @Bean Supplier<AutoScalingClient> autoScalingClient(AwsCredentialsProvider credentialsProvider, RegionService regionService) {
-        return () -> AutoScalingClient.builder()
-                .credentialsProvider(credentialsProvider)
-                .region(Region.of(regionService.getRegion()))
-                .build();
+    @Bean
+    public Supplier<SsmAsyncClient> ssmAsyncClient(AwsClientRegistry clientRegistry) {
+        return clientRegistry.supplier(SsmAsyncClient.class, resources -> SsmAsyncClient.builder()
+                .credentialsProvider(resources.getCredentialsProvider())
+                .region(resources.getRegion())
+                .httpClientBuilder(resources.nettyHttpClientBuilder())
+                .build());
+    }
+
+    @Bean
+    public SsmCommandTracker ssmCommandTracker(Supplier<SsmAsyncClient> client) {
+        return new SsmCommandTracker(client);
+    }
+
+    @Bean
+    public Supplier<SecretsManagerClient> secretsManagerClient(AwsClientRegistry clientRegistry) {
+        return clientRegistry.supplier(SecretsManagerClient.class, resources -> SecretsManagerClient.builder()
+                .credentialsProvider(resources.getCredentialsProvider())
+                .region(resources.getRegion())
+                .httpClient(resources.getHttpClient())
+                .build());
+    }
+
+    @Bean Supplier<AutoScalingClient> autoScalingClient(AwsClientRegistry clientRegistry) {
+        return clientRegistry.supplier(AutoScalingClient.class, resources -> AutoScalingClient.builder()
+                .credentialsProvider(resources.getCredentialsProvider())
+                .region(resources.getRegion())
+                .httpClient(resources.getHttpClient())
+                .build());
     }
 
     @Bean
@@ -177,7 +207,8 @@ public class MigrationAssistantBeanConfiguration {
                                                              DatabaseArtifactS3UploadService s3UploadService,
                                                              DatabaseUploadStageTransitionCallback uploadStageTransitionCallback,
                                                              SsmPsqlDatabaseRestoreService restoreService,
-                                                             DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
+                                                             DatabaseRestoreStageTransitionCallback restoreStageTransitionCallback, AWSMigrationHelperDeploymentService migrationHelperDeploymentService,
+                                                             DatabaseDumpTuner databaseDumpTuner) {
         String tempDirectoryPath = System.getProperty("java.io.tmpdir");
         return new DatabaseMigrationService(
                 Paths.get(tempDirectoryPath),
@@ -189,17 +220,23 @@ public class MigrationAssistantBeanConfiguration {
                 uploadStageTransitionCallback,
                 restoreService,
                 restoreStageTransitionCallback,
-                migrationHelperDeploymentService);
+                migrationHelperDeploymentService,
+                databaseDumpTuner);
+    }
+
+    @Bean
+    public MigrationService migrationService(ActiveObjects ao, ClusterMessagingService clusterMessagingService, MigrationEventBus eventBus) {
+        return new AWSMigrationService(ao, clusterMessagingService, eventBus);
     }
 
     @Bean
-    public MigrationService migrationService(ActiveObjects ao) {
-        return new AWSMigrationService(ao);
+    public MigrationEventBus migrationEventBus() {
+        return new MigrationEventBus();
     }
 
     @Bean
-    public SSMApi ssmApi(Supplier<SsmClient> client, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
-        return new SSMApi(client, migrationHelperDeploymentService);
+    public SSMApi ssmApi(Supplier<SsmClient> client, SsmCommandTracker commandTracker, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
+        return new SSMApi(client, commandTracker, migrationHelperDeploymentService);
     }
 
     @Bean
@@ -212,6 +249,11 @@ public class MigrationAssistantBeanConfiguration {
         return DatabaseExtractorFactory.getExtractor(applicationConfiguration);
     }
 
+    @Bean
+    public DatabaseDumpTuner databaseDumpTuner(DatabaseExtractor databaseExtractor, FilesystemMigrationService filesystemMigrationService) {
+        return new DatabaseDumpTuner(databaseExtractor, filesystemMigrationService);
+    }
+
     @Bean
     public DatabaseArchivalService databaseArchivalService(DatabaseExtractor databaseExtractor) {
         return new DatabaseArchivalService(databaseExtractor);
@@ -228,8 +270,8 @@ public class MigrationAssistantBeanConfiguration {
     }
 
     @Bean
-    public AWSConfigurationService awsConfigurationService(WriteCredentialsService writeCredentialsService, RegionService regionService, MigrationService migrationService) {
-        return new AWSConfigurationService(writeCredentialsService, regionService, migrationService, new DefaultAwsCloudCredentialsValidator());
+    public AWSConfigurationService awsConfigurationService(WriteCredentialsService writeCredentialsService, RegionService regionService, MigrationService migrationService, AwsClientRegistry clientRegistry) {
+        return new AWSConfigurationService(writeCredentialsService, regionService, migrationService, clientRegistry, new DefaultAwsCloudCredentialsValidator());
     }
 
     @Bean
@@ -243,8 +285,8 @@ public class MigrationAssistantBeanConfiguration {
     }
 
     @Bean
-    public FilesystemMigrationService filesystemMigrationService(Supplier<S3AsyncClient> clientSupplier, JiraHome jiraHome, S3SyncFileSystemDownloadManager downloadManager, MigrationService migrationService, MigrationRunner migrationRunner, AWSMigrationHelperDeploymentService migrationHelperDeploymentService) {
-        return new S3FilesystemMigrationService(clientSupplier, jiraHome, downloadManager, migrationService, migrationRunner, migrationHelperDeploymentService);
+    public FilesystemMigrationService filesystemMigrationService(Supplier<S3AsyncClient> clientSupplier, JiraHome jiraHome, S3SyncFileSystemDownloadManager downloadManager, MigrationService migrationService, MigrationRunner migrationRunner, AWSMigrationHelperDeploymentService migrationHelperDeploymentService, MigrationEventBus eventBus) {
+        return new S3FilesystemMigrationService(clientSupplier, jiraHome, downloadManager, migrationService, migrationRunner, migrationHelperDeploymentService, eventBus);
     }
 
     @Bean
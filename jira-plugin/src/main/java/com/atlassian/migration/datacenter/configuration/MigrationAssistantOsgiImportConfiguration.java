@@ -17,6 +17,7 @@
 package com.atlassian.migration.datacenter.configuration;
 
 import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.cluster.ClusterMessagingService;
 import com.atlassian.jira.config.util.JiraHome;
 import com.atlassian.sal.api.auth.LoginUriProvider;
 import com.atlassian.sal.api.permission.PermissionEnforcer;
@@ -67,6 +68,11 @@ public class MigrationAssistantOsgiImportConfiguration {
         return importOsgiService(SchedulerService.class);
     }
 
+    @Bean
+    public ClusterMessagingService clusterMessagingService() {
+        return importOsgiService(ClusterMessagingService.class);
+    }
+
     @Bean
     public Supplier<PluginSettingsFactory> settingsFactorySupplier() {
         return lazyImportOsgiService(PluginSettingsFactory.class);
@@ -13,7 +13,9 @@
 package com.atlassian.migration.datacenter.configuration;
 
 import com.atlassian.activeobjects.external.ActiveObjects;
+import com.atlassian.jira.cluster.ClusterMessagingService;
 import com.atlassian.migration.datacenter.core.aws.AllowAnyTransitionMigrationServiceFacade;
+import com.atlassian.migration.datacenter.core.events.MigrationEventBus;
 import com.atlassian.migration.datacenter.spi.MigrationService;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -25,7 +27,7 @@ public class MigrationAssistantProfileSpecificConfiguration {
     @Bean
     @Profile("allowAnyTransition")
     @Primary
-    public MigrationService allowAnyTransitionMigrationService(ActiveObjects ao) {
-        return new AllowAnyTransitionMigrationServiceFacade(ao);
+    public MigrationService allowAnyTransitionMigrationService(ActiveObjects ao, ClusterMessagingService clusterMessagingService, MigrationEventBus eventBus) {
+        return new AllowAnyTransitionMigrationServiceFacade(ao, clusterMessagingService, eventBus);
     }
 }
\ No newline at end of file
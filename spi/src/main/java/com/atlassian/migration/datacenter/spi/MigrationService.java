@@ -21,6 +21,8 @@ import com.atlassian.migration.datacenter.dto.MigrationContext;
 import com.atlassian.migration.datacenter.spi.exceptions.InvalidMigrationStageError;
 import com.atlassian.migration.datacenter.spi.exceptions.MigrationAlreadyExistsException;
 
+import java.util.function.Consumer;
+
 /**
  * Manages the lifecycle of the migration
  */
@@ -60,6 +62,14 @@ public interface MigrationService {
      */
     MigrationContext getCurrentContext();
 
+    /**
+     * Applies the given changes to the context of the current migration and saves it. The context must only be
+     * changed through this method, so the other nodes of the cluster are told to read it again.
+     *
+     * @param update sets the fields of the context which should change
+     */
+    void updateContext(Consumer<MigrationContext> update);
+
     /**
      * Deletes all migrations and associated contexts. It should be used only in developer testing.
      */
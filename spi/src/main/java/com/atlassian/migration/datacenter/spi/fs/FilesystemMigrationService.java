@@ -37,6 +37,24 @@ public interface FilesystemMigrationService {
      */
     void startMigration() throws InvalidMigrationStageError;
 
+    /**
+     * Schedules a delta migration of the application home to run asynchronously using the
+     * {@link com.atlassian.scheduler.SchedulerService}. Only valid once the initial migration has completed.
+     *
+     * @param deleteRemovedFiles whether files deleted since the previous upload should be removed from the target
+     * @return a <code>Boolean</code> value that represents if a delta migration task has been successfully scheduled.
+     */
+    Boolean scheduleDeltaMigration(boolean deleteRemovedFiles) throws InvalidMigrationStageError;
+
+    /**
+     * Start a delta migration of the application home. Only the files created or modified since the previous
+     * upload are uploaded. This is a long running blocking operation and should be run in separate thread or
+     * scheduled job.
+     *
+     * @param deleteRemovedFiles whether files deleted since the previous upload should be removed from the target
+     */
+    void startDeltaMigration(boolean deleteRemovedFiles) throws InvalidMigrationStageError;
+
     /**
      * Provides filesystem migration report that can be used to monitor the operation
      *
@@ -51,6 +69,19 @@ public interface FilesystemMigrationService {
      */
     boolean isRunning();
 
+    /**
+     * @return the limits currently applied to the upload of the application home
+     */
+    UploadThrottleSettings getUploadThrottleSettings();
+
+    /**
+     * Changes the limits applied to the upload of the application home. The new limits also apply to a migration
+     * which is already running.
+     *
+     * @throws IllegalArgumentException if the settings are invalid
+     */
+    void setUploadThrottleSettings(UploadThrottleSettings settings);
+
     /**
      * Cancel filesystem migration that is currently in progress
      *
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.spi.fs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Window of the day, e.g. business hours, during which the file system migration is limited to a percentage
+ * of the configured rates. Unlimited rates stay unlimited during the window.
+ */
+public class ThrottleWindow {
+
+    private String start;
+    private String end;
+    private List<String> days;
+    private int percentage;
+
+    public ThrottleWindow() {
+    }
+
+    public ThrottleWindow(String start, String end, List<String> days, int percentage) {
+        this.start = start;
+        this.end = end;
+        this.days = days;
+        this.percentage = percentage;
+    }
+
+    /**
+     * @return local time the window starts at, formatted as HH:mm
+     */
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * @return local time the window ends at, formatted as HH:mm. Windows ending before they start span midnight.
+     */
+    public String getEnd() {
+        return end;
+    }
+
+    /**
+     * @return days of the week the window applies to, e.g. MONDAY. The window applies to every day when empty.
+     */
+    public List<String> getDays() {
+        return days == null ? new ArrayList<>() : days;
+    }
+
+    /**
+     * @return percentage of the configured rates allowed during the window
+     */
+    public int getPercentage() {
+        return percentage;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.spi.fs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Limits the rate at which the file system migration reads and uploads files, so the copy of the live shared
+ * home doesn't starve the application of I/O. A rate which isn't positive means the rate is unlimited.
+ */
+public class UploadThrottleSettings {
+
+    private long bytesPerSecond;
+    private long filesPerSecond;
+    private List<ThrottleWindow> schedule;
+
+    public UploadThrottleSettings() {
+        this(0, 0, new ArrayList<>());
+    }
+
+    public UploadThrottleSettings(long bytesPerSecond, long filesPerSecond, List<ThrottleWindow> schedule) {
+        this.bytesPerSecond = bytesPerSecond;
+        this.filesPerSecond = filesPerSecond;
+        this.schedule = schedule;
+    }
+
+    public static UploadThrottleSettings unlimited() {
+        return new UploadThrottleSettings();
+    }
+
+    /**
+     * @return maximum number of bytes read per second, outside of any scheduled window
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return maximum number of files uploaded per second, outside of any scheduled window
+     */
+    public long getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * @return windows of the day during which only a percentage of the rates is allowed
+     */
+    public List<ThrottleWindow> getSchedule() {
+        return schedule == null ? new ArrayList<>() : schedule;
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2020 Atlassian
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.atlassian.migration.datacenter.spi.fs.reporting;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+
+/**
+ * A change of the number of concurrent uploads allowed by the file system migration
+ */
+@JsonAutoDetect
+public class ConcurrencyLimitChange {
+
+    private long timestamp;
+
+    private int limit;
+
+    public ConcurrencyLimitChange() {
+    }
+
+    public ConcurrencyLimitChange(long timestamp, int limit) {
+        this.timestamp = timestamp;
+        this.limit = limit;
+    }
+
+    /**
+     * @return time of the change in milliseconds since the epoch
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -19,6 +19,7 @@ package com.atlassian.migration.datacenter.spi.fs.reporting;
 import com.fasterxml.jackson.annotation.JsonAutoDetect;
 
 import java.nio.file.Path;
+import java.util.Objects;
 
 @JsonAutoDetect
 public class FailedFileMigration {
@@ -52,4 +53,9 @@ public class FailedFileMigration {
         }
         return false;
     }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(filePath, reason);
+    }
 }
@@ -18,7 +18,10 @@ package com.atlassian.migration.datacenter.spi.fs.reporting;
 
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.io.IOException;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Represents the error status of a file system migration
@@ -27,10 +30,29 @@ import java.util.Set;
 public interface FileSystemMigrationErrorReport {
 
     /**
-     * Retrieves a set containing the files which have failed to migrate.
+     * Retrieves a set containing the files which have most recently failed to migrate. Implementers may bound the
+     * size of this set, so use {@link #readFailedFiles(long, int, Consumer)} to read all the failures.
      */
     Set<FailedFileMigration> getFailedFiles();
 
+    /**
+     * Retrieves the number of files which have failed to migrate, including those no longer in {@link #getFailedFiles()}
+     */
+    long getNumberOfFailedFiles();
+
+    /**
+     * Retrieves the number of files which have failed to migrate for each reason
+     */
+    Map<String, Long> getFailureCountsByReason();
+
+    /**
+     * Passes the failures to the consumer in the order they were reported, starting from the failure at the given
+     * offset and stopping after the given number of failures.
+     *
+     * @throws IOException when the failures can't be read
+     */
+    void readFailedFiles(long offset, int limit, Consumer<FailedFileMigration> consumer) throws IOException;
+
     /**
      * Reports that a file has failed to migrate. Implementers should be careful that the underlying
      * collection is thread safe as this may be called from multiple file upload threads.
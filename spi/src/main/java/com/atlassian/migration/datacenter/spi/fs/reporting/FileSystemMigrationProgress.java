@@ -19,6 +19,8 @@ package com.atlassian.migration.datacenter.spi.fs.reporting;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.util.List;
+
 /**
  * Tracks the progress of the file system migration
  */
@@ -33,6 +35,18 @@ public interface FileSystemMigrationProgress {
 
     void reportFileFound();
 
+    /**
+     * Gets the total size in bytes of the files which have been found to migrate
+     */
+    @JsonProperty("bytesFound")
+    Long getNumberOfBytesFound();
+
+    /**
+     * Reports that files of the given total size were found. Implementers should be careful that the underlying
+     * counter is thread safe as this may be called from multiple crawling threads.
+     */
+    void reportBytesFound(long bytes);
+
     /**
      * @return true if all files have been discovered by the migration, false otherwise. At this point, {@link FileSystemMigrationProgress#getNumberOfFilesFound()}
      * should return the number of files that will be migrated
@@ -65,6 +79,75 @@ public interface FileSystemMigrationProgress {
      */
     void reportFileUploaded();
 
+    /**
+     * Gets the total size in bytes of the files which have been successfully migrated
+     */
+    @JsonProperty("uploadedBytes")
+    Long getCountOfUploadedBytes();
+
+    /**
+     * Reports that the given number of bytes were migrated successfully. Implementers should be careful that the
+     * underlying counter is thread safe as this may be called from multiple file upload threads.
+     */
+    void reportBytesUploaded(long bytes);
+
+    /**
+     * Gets the total size in bytes of the files which weren't uploaded because they had been uploaded already
+     */
+    @JsonProperty("skippedBytes")
+    Long getCountOfSkippedBytes();
+
+    /**
+     * Reports that a file of the given size was skipped because it had been uploaded already
+     */
+    void reportBytesSkipped(long bytes);
+
+    /**
+     * Gets the total size in bytes of the files which were found but failed to migrate without further retries
+     */
+    @JsonProperty("failedBytes")
+    Long getCountOfFailedBytes();
+
+    /**
+     * Reports that a file of the given size was found but failed to migrate, and won't be retried
+     */
+    void reportBytesFailed(long bytes);
+
+    /**
+     * Gets the number of files which were found but whose upload hasn't started yet. A queue which is mostly full
+     * indicates that the upload is the bottleneck, a queue which is mostly empty indicates that the crawling is.
+     */
+    @JsonProperty("queuedFiles")
+    Integer getUploadQueueDepth();
+
+    /**
+     * Gets the total size in bytes of the files which were found but whose upload hasn't started yet
+     */
+    @JsonProperty("queuedBytes")
+    Long getUploadQueueBytes();
+
+    /**
+     * Reports the current occupancy of the queue of files waiting to be uploaded
+     */
+    void reportUploadQueueOccupancy(int depth, long bytes);
+
+    /**
+     * Gets the number of concurrent uploads currently allowed by the adaptive concurrency limiter
+     */
+    @JsonProperty("uploadConcurrencyLimit")
+    Integer getUploadConcurrencyLimit();
+
+    /**
+     * Gets the most recent changes of the number of concurrent uploads, oldest first
+     */
+    @JsonProperty("uploadConcurrencyHistory")
+    List<ConcurrencyLimitChange> getUploadConcurrencyHistory();
+
+    /**
+     * Reports that the number of concurrent uploads allowed has changed
+     */
+    void reportUploadConcurrencyLimit(int limit);
+
     /**
      * Gets the number of files that have been successfully downloaded on the remote application
      */
@@ -29,6 +29,34 @@ public interface FileSystemMigrationReport extends FileSystemMigrationErrorRepor
 
     Duration getElapsedTime();
 
+    /**
+     * Average number of files uploaded per second since the migration started
+     */
+    Double getUploadedFilesPerSecond();
+
+    /**
+     * Average number of bytes uploaded per second since the migration started
+     */
+    Double getUploadedBytesPerSecond();
+
+    /**
+     * Number of files uploaded per second over the last minute
+     */
+    Double getCurrentUploadedFilesPerSecond();
+
+    /**
+     * Number of bytes uploaded per second over the last minute
+     */
+    Double getCurrentUploadedBytesPerSecond();
+
+    /**
+     * Estimated time until the files found so far are uploaded, at the current upload rate. Until crawling has
+     * finished this underestimates the time remaining.
+     *
+     * @return the estimate, or null when the migration isn't uploading or nothing has been uploaded recently
+     */
+    Duration getEstimatedTimeRemaining();
+
     /**
      * Text representation of filesystem migration report. This can be used to consume the report in the logs.
      *
@@ -58,6 +58,11 @@ def parseError(error_file_path: str) -> str:
     with open(error_file_path) as errFile:
         return errFile.readlines()
 
+# Lines of md5sum -c output for the files which failed verification, e.g. "path/to/file: FAILED"
+def parseVerificationFailures(failures_file_path: str, limit: int) -> list:
+    with open(failures_file_path) as failuresFile:
+        return [line.rstrip("\n") for line in failuresFile.readlines()[:limit]]
+
 if len(sys.argv) != 3:
     print("Usage: {} <output file> <error file>".format(sys.argv[0]))
     exit(1)
@@ -80,6 +85,10 @@ except:
 if finished:
     result['finished'] = True
     result['code'] = exit_code
+    try:
+        result['verificationFailures'] = parseVerificationFailures("/var/atlassian/dc-migration-assistant/verify-failures.txt", 100)
+    except:
+        pass
 
 try:
     progress = parseSyncOutput(last_line)